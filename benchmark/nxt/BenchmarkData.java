@@ -0,0 +1,102 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import nxt.crypto.Crypto;
+
+/**
+ * Deterministic transactions and blocks shared by the benchmarks.
+ *
+ * Everything is built from fixed secret phrases and seeds and signed without
+ * touching the blockchain or the database, so results can be reproduced
+ * offline and compared between builds.
+ */
+final class BenchmarkData {
+
+	static final String SECRET_PHRASE = "benchmark secret phrase";
+	static final String GENERATOR_SECRET_PHRASE = "benchmark generator secret phrase";
+	static final byte[] PUBLIC_KEY = Crypto.getPublicKey(BenchmarkData.SECRET_PHRASE);
+	static final byte[] GENERATOR_PUBLIC_KEY = Crypto.getPublicKey(BenchmarkData.GENERATOR_SECRET_PHRASE);
+
+	/** Epoch time of all benchmark transactions and blocks */
+	static final int TIMESTAMP = 100000;
+
+	/**
+	 * Return a multiplicator derived from a seed
+	 *
+	 * @param seed
+	 *            Seed
+	 * @return Multiplicator
+	 */
+	static byte[] multiplicator(final long seed) {
+		final byte[] multiplicator = new byte[Constants.WORK_MULTIPLICATOR_BYTES];
+		for (int i = 0; i < multiplicator.length; i++) multiplicator[i] = (byte) ((seed >> ((i % 8) << 3)) + i);
+		return multiplicator;
+	}
+
+	/**
+	 * Return a signed proof of work transaction
+	 *
+	 * @param seed
+	 *            Seed of the multiplicator, transactions with different seeds
+	 *            have different identifiers
+	 * @return Transaction
+	 */
+	static TransactionImpl newPowTransaction(final long seed) {
+		try {
+			return new TransactionImpl.BuilderImpl((byte) 1, BenchmarkData.PUBLIC_KEY, 0, 0, (short) 1440,
+					new Attachment.PiggybackedProofOfWork(1234567890L, BenchmarkData.multiplicator(seed)))
+							.timestamp(BenchmarkData.TIMESTAMP).ecBlockHeight(0).ecBlockId(0)
+							.build(BenchmarkData.SECRET_PHRASE);
+		} catch (final NxtException.NotValidException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Return a signed block with proof of work transactions, built the way the
+	 * generator builds a block
+	 *
+	 * @param transactionCount
+	 *            Number of transactions
+	 * @return Block
+	 */
+	static BlockImpl newBlock(final int transactionCount) {
+		final List<TransactionImpl> transactions = new ArrayList<>(transactionCount);
+		final MessageDigest digest = Crypto.sha256();
+		int payloadLength = 0;
+		for (int i = 0; i < transactionCount; i++) {
+			final TransactionImpl transaction = BenchmarkData.newPowTransaction(i);
+			transactions.add(transaction);
+			digest.update(transaction.getBytes());
+			payloadLength += transaction.getFullSize();
+		}
+		final byte[] payloadHash = digest.digest();
+		final byte[] generationSignature = Crypto.sha256().digest(BenchmarkData.GENERATOR_PUBLIC_KEY);
+		return new BlockImpl(3, BenchmarkData.TIMESTAMP + 60, 1234567890123L, 0, 0, 0, payloadLength, payloadHash,
+				BenchmarkData.GENERATOR_PUBLIC_KEY, generationSignature, new byte[32], transactions,
+				BenchmarkData.GENERATOR_SECRET_PHRASE, null);
+	}
+
+	private BenchmarkData() {
+	}
+
+}
@@ -0,0 +1,161 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nxt.crypto.Crypto;
+import nxt.util.Convert;
+
+/**
+ * Cost of receiving a block with a given number of proof of work transactions
+ * from a peer and of encoding it for a peer.
+ *
+ * The receive benchmark parses the block, which verifies the block and all
+ * transaction signatures, and recomputes the payload hash, which is the
+ * stateless part of pushBlock. The push benchmark processes a peer block with
+ * payment transactions on a node started in-process the way the blockchain
+ * tests start it, and pops the block off again after each invocation. It uses
+ * the test network database of the working directory.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * BlockBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockBenchmark {
+
+	/**
+	 * Node on the test network with a funded fake forging account, set up
+	 * like AbstractForgingTest
+	 */
+	@State(Scope.Benchmark)
+	public static class Node {
+
+		private static final String SECRET_PHRASE = "Marty Mc Fly";
+		private static final long RECIPIENT_ID = Account.getId(Crypto.getPublicKey("Doc Brown"));
+
+		/** Test network redeem of the first address to the forging account */
+		private static final String REDEEM_SIGNATURE = "IP5OEbIfwKia1zCuigMCZKYTvjWPKmDuZON2Nj/kWD6RE7wxE5PR/ICiGwrqcnvpIjYPg+lx5HTnCufXvmNdG8c=";
+		private static final long REDEEM_AMOUNT = 353593009707920L;
+
+		private int startHeight;
+		private int height;
+		private JSONObject json;
+
+		@Setup(Level.Trial)
+		public void setup(final BlockBenchmark benchmark) throws NxtException {
+			final byte[] publicKey = Crypto.getPublicKey(Node.SECRET_PHRASE);
+			final Properties properties = new Properties();
+			properties.setProperty("nxt.isTestnet", "true");
+			properties.setProperty("nxt.isOffline", "true");
+			properties.setProperty("nxt.shareMyAddress", "false");
+			properties.setProperty("nxt.savePeers", "false");
+			properties.setProperty("nxt.disableGenerateBlocksThread", "true");
+			properties.setProperty("nxt.enableFakeForging", "true");
+			properties.setProperty("nxt.fakeForgingAccount", Convert.toUnsignedLong(Account.getId(publicKey)));
+			Nxt.init(properties);
+			final BlockchainProcessorImpl blockchainProcessor = BlockchainProcessorImpl.getInstance();
+			blockchainProcessor.setGetMoreBlocks(false);
+			TransactionProcessorImpl.getInstance().clearUnconfirmedTransactions();
+			this.startHeight = Nxt.getBlockchain().getHeight();
+			final Attachment.RedeemAttachment redeem = new Attachment.RedeemAttachment(Redeem.listOfAddresses[0],
+					Node.REDEEM_SIGNATURE);
+			Nxt.getTransactionProcessor()
+					.broadcast(Nxt.newTransactionBuilder(Convert.parseHexString(Genesis.REDEEM_ID_PUBKEY),
+							Node.REDEEM_AMOUNT, 0, (short) 1440, redeem).recipientId(Account.getId(publicKey))
+							.buildUnixTimeStamped(Node.SECRET_PHRASE, redeem.getRequiredTimestamp()));
+			blockchainProcessor.generateBlock(Node.SECRET_PHRASE, Nxt.getEpochTime());
+			for (int i = 0; i < benchmark.transactions; i++)
+				Nxt.getTransactionProcessor()
+						.broadcast(Nxt.newTransactionBuilder(publicKey, i + 1, Constants.ONE_NXT, (short) 1440,
+								Attachment.ORDINARY_PAYMENT).recipientId(Node.RECIPIENT_ID).build(Node.SECRET_PHRASE));
+			blockchainProcessor.generateBlock(Node.SECRET_PHRASE, Nxt.getEpochTime());
+			this.json = Nxt.getBlockchain().getLastBlock().getJSONObject();
+			this.height = Nxt.getBlockchain().getHeight() - 1;
+			blockchainProcessor.popOffTo(this.height);
+		}
+
+		@TearDown(Level.Invocation)
+		public void popOff() {
+			BlockchainProcessorImpl.getInstance().popOffTo(this.height);
+		}
+
+		@TearDown(Level.Trial)
+		public void shutdown() {
+			BlockchainProcessorImpl.getInstance().popOffTo(this.startHeight);
+			TransactionProcessorImpl.getInstance().clearUnconfirmedTransactions();
+		}
+	}
+
+	@Param({ "1", "64", "255" })
+	private int transactions;
+
+	private BlockImpl block;
+	private JSONObject json;
+
+	@Setup
+	public void setup() {
+		this.block = BenchmarkData.newBlock(this.transactions);
+		this.json = this.block.getJSONObject();
+	}
+
+	@Benchmark
+	public BlockImpl parseBlock() throws NxtException.NotValidException {
+		return BlockImpl.parseBlock(this.json);
+	}
+
+	@Benchmark
+	public byte[] receiveBlock() throws NxtException.NotValidException {
+		final BlockImpl block = BlockImpl.parseBlock(this.json);
+		final MessageDigest digest = Crypto.sha256();
+		for (final TransactionImpl transaction : block.getTransactions()) digest.update(transaction.getBytes());
+		return digest.digest();
+	}
+
+	@Benchmark
+	public void pushBlock(final Node node) throws NxtException {
+		Nxt.getBlockchainProcessor().processPeerBlock(node.json);
+	}
+
+	@Benchmark
+	public JSONObject getJSONObject() {
+		return this.block.getJSONObject();
+	}
+
+}
@@ -0,0 +1,115 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.math.BigInteger;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup throughput of ClockCache compared to the LRUCache and
+ * DoubleLongLRUCache classes it replaced, with four threads reading a working
+ * set slightly larger than the cache. The previous classes are not thread-safe
+ * and are guarded by their monitor, which is the minimum needed to share them.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * ClockCacheBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ClockCacheBenchmark {
+
+	private static final int CAPACITY = 128;
+	private static final int KEYS = 160;
+
+	private final ClockCache<BigInteger> clockCache = new ClockCache<>(ClockCacheBenchmark.CAPACITY);
+	private final ClockCache<Long> clockPairCache = new ClockCache<>(ClockCacheBenchmark.CAPACITY);
+	private final LRUCache lruCache = new LRUCache(ClockCacheBenchmark.CAPACITY);
+	private final DoubleLongLRUCache lruPairCache = new DoubleLongLRUCache(ClockCacheBenchmark.CAPACITY);
+
+	@Setup
+	public void setup() {
+		for (long key = 0; key < ClockCacheBenchmark.KEYS; key++) {
+			this.clockCache.put(key, BigInteger.valueOf(key));
+			this.clockPairCache.put(key, -key, key);
+			this.lruCache.set(key, BigInteger.valueOf(key));
+			this.lruPairCache.set(key, -key, key);
+		}
+	}
+
+	private static long nextKey() {
+		return ThreadLocalRandom.current().nextInt(ClockCacheBenchmark.KEYS);
+	}
+
+	@Benchmark
+	public Object clockCache() {
+		final long key = ClockCacheBenchmark.nextKey();
+		final BigInteger value = this.clockCache.get(key);
+		if (value != null) return value;
+		this.clockCache.put(key, BigInteger.ONE);
+		return null;
+	}
+
+	@Benchmark
+	public Object lruCache() {
+		final long key = ClockCacheBenchmark.nextKey();
+		synchronized (this.lruCache) {
+			final BigInteger value = this.lruCache.get(key);
+			if (value != null) return value;
+			this.lruCache.set(key, BigInteger.ONE);
+			return null;
+		}
+	}
+
+	@Benchmark
+	public long clockPairCache() {
+		final long key = ClockCacheBenchmark.nextKey();
+		final Long value = this.clockPairCache.get(key, -key);
+		if (value != null) return value;
+		this.clockPairCache.put(key, -key, key);
+		return key;
+	}
+
+	@Benchmark
+	public long lruPairCache() {
+		final long key = ClockCacheBenchmark.nextKey();
+		synchronized (this.lruPairCache) {
+			final long value = this.lruPairCache.get(key, -key);
+			if (value != -1) return value;
+			this.lruPairCache.set(key, -key, key);
+			return key;
+		}
+	}
+
+}
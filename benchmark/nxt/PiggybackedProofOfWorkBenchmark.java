@@ -0,0 +1,61 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of deriving the personalized input stream of a proof of work, which is
+ * computed for every POW submission during validation.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * PiggybackedProofOfWorkBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PiggybackedProofOfWorkBenchmark {
+
+	private Attachment.PiggybackedProofOfWork attachment;
+	private long blockId;
+
+	@Setup
+	public void setup() {
+		this.attachment = new Attachment.PiggybackedProofOfWork(1234567890L, BenchmarkData.multiplicator(1));
+		this.blockId = 1234567890123L;
+	}
+
+	@Benchmark
+	public int[] personalizedIntStream() {
+		return this.attachment.personalizedIntStream(BenchmarkData.PUBLIC_KEY, this.blockId);
+	}
+
+}
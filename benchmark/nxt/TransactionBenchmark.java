@@ -0,0 +1,85 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of serializing and parsing a proof of work transaction, the most
+ * frequent transaction type. Parsing from JSON includes the signature
+ * verification done for every transaction received from a peer, parsing from
+ * bytes is the path used when loading transactions.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * TransactionBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionBenchmark {
+
+	private TransactionImpl transaction;
+	private byte[] bytes;
+	private JSONObject json;
+
+	@Setup
+	public void setup() {
+		this.transaction = BenchmarkData.newPowTransaction(1);
+		this.bytes = this.transaction.getBytes();
+		this.json = this.transaction.getJSONObject();
+	}
+
+	/**
+	 * The serialized form is cached by the transaction, a new unsigned copy is
+	 * built from the parsed bytes so every invocation serializes again
+	 */
+	@Benchmark
+	public byte[] getBytes() throws NxtException.NotValidException {
+		return TransactionImpl.newTransactionBuilder(this.bytes).build().getBytes();
+	}
+
+	@Benchmark
+	public TransactionImpl newTransactionBuilderFromBytes() throws NxtException.NotValidException {
+		return TransactionImpl.newTransactionBuilder(this.bytes).build();
+	}
+
+	@Benchmark
+	public TransactionImpl parseTransaction() throws NxtException.NotValidException {
+		return TransactionImpl.parseTransaction(this.json);
+	}
+
+	@Benchmark
+	public JSONObject getJSONObject() {
+		return this.transaction.getJSONObject();
+	}
+
+}
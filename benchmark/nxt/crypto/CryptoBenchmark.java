@@ -0,0 +1,89 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.crypto;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the signature operations on a transaction sized message: signing,
+ * verification, and the Curve25519 key generation and shared secret used for
+ * public keys and message encryption.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * CryptoBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoBenchmark {
+
+	private static final String SECRET_PHRASE = "benchmark secret phrase";
+
+	private final byte[] message = new byte[300];
+	private byte[] publicKey;
+	private byte[] privateKey;
+	private byte[] keySeed;
+	private byte[] signature;
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < this.message.length; i++) this.message[i] = (byte) i;
+		this.keySeed = Crypto.getKeySeed(CryptoBenchmark.SECRET_PHRASE);
+		this.publicKey = Crypto.getPublicKey(CryptoBenchmark.SECRET_PHRASE);
+		this.privateKey = Crypto.getPrivateKey(CryptoBenchmark.SECRET_PHRASE);
+		this.signature = Crypto.sign(this.message, CryptoBenchmark.SECRET_PHRASE);
+	}
+
+	@Benchmark
+	public byte[] sign() {
+		return Crypto.sign(this.message, CryptoBenchmark.SECRET_PHRASE);
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return Crypto.verify(this.signature, this.message, this.publicKey);
+	}
+
+	@Benchmark
+	public byte[] keygen() {
+		final byte[] publicKey = new byte[32];
+		Curve25519.keygen(publicKey, null, this.keySeed.clone());
+		return publicKey;
+	}
+
+	@Benchmark
+	public byte[] sharedSecret() {
+		final byte[] sharedSecret = new byte[32];
+		Curve25519.curve(sharedSecret, this.privateKey, this.publicKey);
+		return sharedSecret;
+	}
+
+}
@@ -0,0 +1,75 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of compressing and uncompressing work source code of different sizes,
+ * as done when creating a work and when serving its source code.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * ConvertBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvertBenchmark {
+
+	@Param({ "1024", "16384", "65536" })
+	private int size;
+
+	private byte[] source;
+	private byte[] compressed;
+
+	@Setup
+	public void setup() {
+		final StringBuilder sb = new StringBuilder(this.size + 64);
+		for (int i = 0; sb.length() < this.size; i++)
+			sb.append("m[").append(i % 12).append("] = (m[").append((i + 5) % 12).append("] ^ ").append(i * 7919)
+					.append(") >>> ").append(i % 31).append(";\n");
+		this.source = sb.substring(0, this.size).getBytes(StandardCharsets.UTF_8);
+		this.compressed = Convert.compress(this.source);
+	}
+
+	@Benchmark
+	public byte[] compress() {
+		return Convert.compress(this.source);
+	}
+
+	@Benchmark
+	public byte[] uncompress() {
+		return Convert.uncompress(this.compressed);
+	}
+
+}
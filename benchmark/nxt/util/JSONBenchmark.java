@@ -0,0 +1,96 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of encoding a getNextBlocks sized response of 255 transaction objects
+ * with JSON.writeJSONString compared to the json-simple encoder.
+ *
+ * Run with: mvn -Pbenchmark package && java -jar target/benchmarks.jar
+ * JSONBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONBenchmark {
+
+	private final JSONObject response = new JSONObject();
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(1);
+		final byte[] bytes = new byte[64];
+		final JSONArray transactions = new JSONArray();
+		for (int i = 0; i < 255; i++) {
+			final JSONObject transaction = new JSONObject();
+			transaction.put("type", 3L);
+			transaction.put("subtype", 2L);
+			transaction.put("timestamp", 100000L + i);
+			transaction.put("deadline", 1440L);
+			random.nextBytes(bytes);
+			transaction.put("senderPublicKey", Convert.toHexString(bytes).substring(0, 64));
+			transaction.put("signature", Convert.toHexString(bytes));
+			transaction.put("amountNQT", 0L);
+			transaction.put("feeNQT", 0L);
+			transaction.put("ecBlockHeight", 0L);
+			transaction.put("ecBlockId", "0");
+			final JSONObject attachment = new JSONObject();
+			attachment.put("version.PiggybackedProofOfWork", 1L);
+			attachment.put("id", Long.toUnsignedString(random.nextLong()));
+			attachment.put("multiplicator", Convert.toHexString(bytes).substring(0, 64));
+			transaction.put("attachment", attachment);
+			transactions.add(transaction);
+		}
+		this.response.put("transactions", transactions);
+	}
+
+	@Benchmark
+	public String writeJSONString() throws IOException {
+		final StringWriter writer = new StringWriter(128 * 1024);
+		JSON.writeJSONString(this.response, writer);
+		return writer.toString();
+	}
+
+	@Benchmark
+	public String jsonSimple() throws IOException {
+		final StringWriter writer = new StringWriter(128 * 1024);
+		this.response.writeJSONString(writer);
+		return writer.toString();
+	}
+
+}
@@ -0,0 +1,87 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the signature verification log message of a transaction when
+ * signing events are not logged (the default), built eagerly as before and
+ * deferred behind the category guard. Both variants build the same message
+ * from transaction sized bytes and a transaction sized JSON object.
+ *
+ * Run with -prof gc to compare the allocation rate per verified transaction:
+ * mvn -Pbenchmark package && java -jar target/benchmarks.jar LoggerBenchmark
+ * -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggerBenchmark {
+
+	private final byte[] bytes = new byte[300];
+	private final JSONObject json = new JSONObject();
+	private long id;
+
+	@Setup
+	public void setup() {
+		ThreadLocalRandom.current().nextBytes(this.bytes);
+		this.json.put("type", 3);
+		this.json.put("subtype", 2);
+		this.json.put("senderPublicKey", Convert.toHexString(this.bytes).substring(0, 64));
+		this.json.put("signature", Convert.toHexString(this.bytes).substring(0, 128));
+		this.json.put("amountNQT", 100000000L);
+		this.json.put("feeNQT", 0L);
+		this.id = ThreadLocalRandom.current().nextLong();
+	}
+
+	@Benchmark
+	public void eagerMessage() {
+		Logger.logSignMessage("Verifying HEX:\t" + Convert.toHexString(this.bytes) + "\nJson Trans.:\t" + this.json
+				+ "\nTrans. IDNR:\t" + Convert.toUnsignedLong(this.id));
+	}
+
+	@Benchmark
+	public void deferredMessage() {
+		if (Logger.isSignEnabled())
+			Logger.logSignMessage("Verifying HEX:\t" + Convert.toHexString(this.bytes) + "\nJson Trans.:\t" + this.json
+					+ "\nTrans. IDNR:\t" + Convert.toUnsignedLong(this.id));
+	}
+
+	@Benchmark
+	public void supplierMessage() {
+		Logger.logSignMessage(() -> "Verifying HEX:\t" + Convert.toHexString(this.bytes) + "\nJson Trans.:\t"
+				+ this.json + "\nTrans. IDNR:\t" + Convert.toUnsignedLong(this.id));
+	}
+
+}
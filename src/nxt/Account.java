@@ -73,7 +73,25 @@ public final class Account {
 			account.save(con);
 		}
 
+		@Override
+		protected boolean supportsBatch() {
+			return true;
+		}
+
+		@Override
+		protected String getSaveStatement() {
+			return Account.SAVE_STATEMENT;
+		}
+
+		@Override
+		protected void setSaveParameters(final PreparedStatement pstmt, final Account account) throws SQLException {
+			account.setSaveParameters(pstmt);
+		}
+
 	};
+	private static final String SAVE_STATEMENT = "MERGE INTO account (id, balance, unconfirmed_balance, forged_balance, "
+			+ "active_lessee_id, supernode_deposit_blocked, has_control_phasing, height, latest) "
+			+ "KEY (id, height) VALUES (?, ?, ?, ?, ?, ?, ?, ?, TRUE)";
 	private static final DbKey.LongKeyFactory<AccountInfo> accountInfoDbKeyFactory = new DbKey.LongKeyFactory<AccountInfo>(
 			"account_id") {
 
@@ -525,6 +543,36 @@ public final class Account {
 	static void init() {
 	}
 
+	/**
+	 * Release the balance reserved by unconfirmed transactions that are no
+	 * longer in the unconfirmed pool, the caller must hold the blockchain write
+	 * lock and a database transaction
+	 *
+	 * The accounts are saved as new versions at the current height. The older
+	 * versions keep their reservations and get them back if the blockchain is
+	 * popped off below the current height.
+	 *
+	 * @return Number of released accounts
+	 */
+	static int releaseUnconfirmedBalances() {
+		final List<Long> accountIds = new ArrayList<>();
+		try (Connection con = Db.db.getConnection();
+				PreparedStatement pstmt = con.prepareStatement(
+						"SELECT id FROM account WHERE latest = TRUE AND unconfirmed_balance <> balance");
+				ResultSet rs = pstmt.executeQuery()) {
+			while (rs.next()) accountIds.add(rs.getLong("id"));
+		} catch (final SQLException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+		for (final long accountId : accountIds) {
+			final Account account = Account.getAccount(accountId);
+			account.unconfirmedBalanceNQT = account.balanceNQT;
+			account.save();
+			Account.listeners.notify(account, Event.UNCONFIRMED_BALANCE);
+		}
+		return accountIds.size();
+	}
+
 	public static boolean removeLeaseListener(final Listener<AccountLease> listener, final Event eventType) {
 		return Account.leaseListeners.removeListener(listener, eventType);
 	}
@@ -1017,23 +1065,24 @@ public final class Account {
 	}
 
 	private void save(final Connection con) throws SQLException {
-		try (PreparedStatement pstmt = con
-				.prepareStatement("MERGE INTO account (id, " + "balance, unconfirmed_balance, forged_balance, "
-						+ "active_lessee_id, supernode_deposit_blocked, has_control_phasing, height, latest) "
-						+ "KEY (id, height) VALUES (?, ?, ?, ?, ?, ?, ?, ?, TRUE)")) {
-			int i = 0;
-			pstmt.setLong(++i, this.id);
-			pstmt.setLong(++i, this.balanceNQT);
-			pstmt.setLong(++i, this.unconfirmedBalanceNQT);
-			pstmt.setLong(++i, this.forgedBalanceNQT);
-			DbUtils.setLongZeroToNull(pstmt, ++i, this.activeLesseeId);
-            pstmt.setBoolean(++i, this.supernodeDepositBlocked);
-            pstmt.setBoolean(++i, this.controls.contains(ControlType.PHASING_ONLY));
-			pstmt.setInt(++i, Nxt.getBlockchain().getHeight());
+		try (PreparedStatement pstmt = con.prepareStatement(Account.SAVE_STATEMENT)) {
+			this.setSaveParameters(pstmt);
 			pstmt.executeUpdate();
 		}
 	}
 
+	private void setSaveParameters(final PreparedStatement pstmt) throws SQLException {
+		int i = 0;
+		pstmt.setLong(++i, this.id);
+		pstmt.setLong(++i, this.balanceNQT);
+		pstmt.setLong(++i, this.unconfirmedBalanceNQT);
+		pstmt.setLong(++i, this.forgedBalanceNQT);
+		DbUtils.setLongZeroToNull(pstmt, ++i, this.activeLesseeId);
+		pstmt.setBoolean(++i, this.supernodeDepositBlocked);
+		pstmt.setBoolean(++i, this.controls.contains(ControlType.PHASING_ONLY));
+		pstmt.setInt(++i, Nxt.getBlockchain().getHeight());
+	}
+
 	void setAccountInfo(String name, String description) {
 		name = Convert.emptyToNull(name.trim());
 		description = Convert.emptyToNull(description.trim());
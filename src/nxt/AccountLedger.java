@@ -25,6 +25,7 @@ import java.util.*;
 
 import nxt.db.DbUtils;
 import nxt.db.DerivedDbTable;
+import nxt.db.TransactionalDb;
 import nxt.util.Convert;
 import nxt.util.Listener;
 import nxt.util.Listeners;
@@ -48,14 +49,32 @@ public class AccountLedger {
 		}
 
 		/**
-		 * Insert an entry into the table
+		 * Insert entries into the table
 		 *
-		 * @param ledgerEntry
-		 *            Ledger entry
+		 * The entries are written with a single prepared statement and receive
+		 * the ledger identifiers generated by the database
+		 *
+		 * @param ledgerEntries
+		 *            Ledger entries
 		 */
-		public void insert(final LedgerEntry ledgerEntry) {
+		public void insert(final List<LedgerEntry> ledgerEntries) {
 			try (Connection con = DerivedDbTable.db.getConnection()) {
-				ledgerEntry.save(con);
+				//
+				// H2 only returns the key of the last row of a batch, so the
+				// rows are inserted one at a time with the same statement
+				//
+				try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO account_ledger "
+						+ "(account_id, event_type, event_id, holding_type, holding_id, change, balance, "
+						+ "block_id, height, timestamp) " + "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+						Statement.RETURN_GENERATED_KEYS)) {
+					for (final LedgerEntry ledgerEntry : ledgerEntries) {
+						ledgerEntry.setSaveParameters(pstmt);
+						pstmt.executeUpdate();
+						try (ResultSet rs = pstmt.getGeneratedKeys()) {
+							if (rs.next()) ledgerEntry.ledgerId = rs.getLong(1);
+						}
+					}
+				}
 			} catch (final SQLException e) {
 				throw new RuntimeException(e.toString(), e);
 			}
@@ -82,6 +101,37 @@ public class AccountLedger {
 		}
 	}
 
+	/**
+	 * Account holding of pending ledger entries, entries with the same key form
+	 * a running balance
+	 */
+	private static final class BalanceKey {
+
+		private final long accountId;
+		private final LedgerHolding holding;
+		private final Long holdingId;
+
+		private BalanceKey(final LedgerEntry ledgerEntry) {
+			this.accountId = ledgerEntry.getAccountId();
+			this.holding = ledgerEntry.getHolding();
+			this.holdingId = ledgerEntry.getHoldingId();
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof BalanceKey)) return false;
+			final BalanceKey key = (BalanceKey) obj;
+			return (this.accountId == key.accountId) && (this.holding == key.holding)
+					&& Objects.equals(this.holdingId, key.holdingId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(this.accountId) ^ (this.holding != null ? this.holding.getCode() : 0)
+					^ Objects.hashCode(this.holdingId);
+		}
+	}
+
 	/**
 	 * Account ledger listener events
 	 */
@@ -333,37 +383,27 @@ public class AccountLedger {
 		}
 
 		/**
-		 * Save the ledger entry
+		 * Set the insert parameters of the ledger entry
 		 *
-		 * @param con
-		 *            Database connection
+		 * @param stmt
+		 *            Insert statement
 		 * @throws SQLException
 		 *             Database error occurred
 		 */
-		private void save(final Connection con) throws SQLException {
-			try (PreparedStatement stmt = con.prepareStatement(
-					"INSERT INTO account_ledger "
-							+ "(account_id, event_type, event_id, holding_type, holding_id, change, balance, "
-							+ "block_id, height, timestamp) " + "VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
-					Statement.RETURN_GENERATED_KEYS)) {
-				int i = 0;
-				stmt.setLong(++i, this.accountId);
-				stmt.setByte(++i, (byte) this.event.getCode());
-				stmt.setLong(++i, this.eventId);
-				if (this.holding != null) stmt.setByte(++i, (byte) this.holding.getCode());
-				else stmt.setByte(++i, (byte) -1);
-				DbUtils.setLong(stmt, ++i, this.holdingId);
-				stmt.setLong(++i, this.change);
-				stmt.setLong(++i, this.balance);
-				stmt.setLong(++i, this.blockId);
-				//noinspection SuspiciousNameCombination
-				stmt.setInt(++i, this.height);
-				stmt.setInt(++i, this.timestamp);
-				stmt.executeUpdate();
-				try (ResultSet rs = stmt.getGeneratedKeys()) {
-					if (rs.next()) this.ledgerId = rs.getLong(1);
-				}
-			}
+		private void setSaveParameters(final PreparedStatement stmt) throws SQLException {
+			int i = 0;
+			stmt.setLong(++i, this.accountId);
+			stmt.setByte(++i, (byte) this.event.getCode());
+			stmt.setLong(++i, this.eventId);
+			if (this.holding != null) stmt.setByte(++i, (byte) this.holding.getCode());
+			else stmt.setByte(++i, (byte) -1);
+			DbUtils.setLong(stmt, ++i, this.holdingId);
+			stmt.setLong(++i, this.change);
+			stmt.setLong(++i, this.balance);
+			stmt.setLong(++i, this.blockId);
+			//noinspection SuspiciousNameCombination
+			stmt.setInt(++i, this.height);
+			stmt.setInt(++i, this.timestamp);
 		}
 
 		/**
@@ -582,8 +622,11 @@ public class AccountLedger {
 	/** Blockchain processor */
 	private static final BlockchainProcessor blockchainProcessor = Nxt.getBlockchainProcessor();
 
-	/** Pending ledger entries */
-	private static final List<LedgerEntry> pendingEntries = new ArrayList<>();
+	/** Pending ledger entries in insert order, a combined entry moves to the end */
+	private static final Map<LedgerEntry, LedgerEntry> pendingEntries = new LinkedHashMap<>();
+
+	/** Pending ledger entries of each account holding in insert order */
+	private static final Map<BalanceKey, List<LedgerEntry>> pendingBalances = new HashMap<>();
 
 	/**
 	 * Process nxt.ledgerAccounts
@@ -631,17 +674,32 @@ public class AccountLedger {
 	 */
 	static void clearEntries() {
 		AccountLedger.pendingEntries.clear();
+		AccountLedger.pendingBalances.clear();
 	}
 
 	/**
 	 * Commit pending ledger entries
+	 *
+	 * The entries are written with a single batch insert and the listeners are
+	 * notified once the database transaction has been committed.
 	 */
 	static void commitEntries() {
-		for (final LedgerEntry ledgerEntry : AccountLedger.pendingEntries) {
-			AccountLedger.accountLedgerTable.insert(ledgerEntry);
-			AccountLedger.listeners.notify(ledgerEntry, Event.ADD_ENTRY);
-		}
-		AccountLedger.pendingEntries.clear();
+		if (AccountLedger.pendingEntries.isEmpty()) return;
+		final List<LedgerEntry> entries = new ArrayList<>(AccountLedger.pendingEntries.values());
+		AccountLedger.clearEntries();
+		AccountLedger.accountLedgerTable.insert(entries);
+		Db.db.registerCallback(new TransactionalDb.TransactionCallback() {
+
+			@Override
+			public void commit() {
+				entries.forEach(ledgerEntry -> AccountLedger.listeners.notify(ledgerEntry, Event.ADD_ENTRY));
+			}
+
+			@Override
+			public void rollback() {
+			}
+
+		});
 	}
 
 	/**
@@ -759,24 +817,26 @@ public class AccountLedger {
 		//
 		// Combine multiple ledger entries
 		//
-		int index = AccountLedger.pendingEntries.indexOf(ledgerEntry);
-		if (index >= 0) {
-			LedgerEntry existingEntry = AccountLedger.pendingEntries.remove(index);
+		final List<LedgerEntry> balanceEntries = AccountLedger.pendingBalances
+				.computeIfAbsent(new BalanceKey(ledgerEntry), key -> new ArrayList<>());
+		final LedgerEntry existingEntry = AccountLedger.pendingEntries.remove(ledgerEntry);
+		if (existingEntry != null) {
 			ledgerEntry.updateChange(existingEntry.getChange());
 			long adjustedBalance = existingEntry.getBalance() - existingEntry.getChange();
-			for (; index < AccountLedger.pendingEntries.size(); index++) {
-				existingEntry = AccountLedger.pendingEntries.get(index);
-				if ((existingEntry.getAccountId() == ledgerEntry.getAccountId())
-						&& (existingEntry.getHolding() == ledgerEntry.getHolding())
-						&& (((existingEntry.getHoldingId() == null) && (ledgerEntry.getHoldingId() == null))
-								|| existingEntry.getHoldingId() != null
-										&& Objects.equals(existingEntry.getHoldingId(), ledgerEntry.getHoldingId()))) {
-					adjustedBalance += existingEntry.getChange();
-					existingEntry.setBalance(adjustedBalance);
-				}
+			//
+			// Entries of the same event are usually logged back to back, so
+			// search from the end
+			//
+			int index = balanceEntries.lastIndexOf(existingEntry);
+			balanceEntries.remove(index);
+			for (; index < balanceEntries.size(); index++) {
+				final LedgerEntry laterEntry = balanceEntries.get(index);
+				adjustedBalance += laterEntry.getChange();
+				laterEntry.setBalance(adjustedBalance);
 			}
 		}
-		AccountLedger.pendingEntries.add(ledgerEntry);
+		AccountLedger.pendingEntries.put(ledgerEntry, ledgerEntry);
+		balanceEntries.add(ledgerEntry);
 	}
 
 	static boolean mustLogEntry(final long accountId, final boolean isUnconfirmed) {
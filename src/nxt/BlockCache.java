@@ -0,0 +1,314 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Block and transaction cache used by BlockDb and TransactionDb.
+ *
+ * The cache consists of a dense window of the most recent blocks indexed by
+ * height, including their transactions, and a tail of older blocks that
+ * have been requested recently. The tail is evicted in second chance order:
+ * a read marks a block as referenced, and a referenced block at the head of
+ * the eviction queue is moved back to its end once instead of being evicted.
+ * Readers never take a lock: the window is published as an immutable
+ * snapshot and all maps are concurrent. Writers are serialized on the cache
+ * monitor.
+ */
+final class BlockCache {
+
+	/**
+	 * Immutable snapshot of the dense block window
+	 */
+	private static final class Window {
+
+		private static final Window EMPTY = new Window(0, new BlockImpl[0]);
+
+		/** Height of the first block in the window */
+		private final int baseHeight;
+
+		/** Blocks in the window, indexed by height - baseHeight */
+		private final BlockImpl[] blocks;
+
+		/** Blocks in the window, indexed by block id */
+		private final Map<Long, BlockImpl> blocksById;
+
+		private Window(final int baseHeight, final BlockImpl[] blocks) {
+			this.baseHeight = baseHeight;
+			this.blocks = blocks;
+			this.blocksById = new HashMap<>(blocks.length * 2);
+			for (final BlockImpl block : blocks) this.blocksById.put(block.getId(), block);
+		}
+
+		private BlockImpl get(final int height) {
+			final int index = height - this.baseHeight;
+			return (index >= 0) && (index < this.blocks.length) ? this.blocks[index] : null;
+		}
+
+		private int getTopHeight() {
+			return (this.baseHeight + this.blocks.length) - 1;
+		}
+	}
+
+	/**
+	 * Block in the tail
+	 */
+	private static final class TailEntry {
+
+		private final BlockImpl block;
+		private volatile boolean referenced;
+
+		private TailEntry(final BlockImpl block) {
+			this.block = block;
+		}
+
+		private BlockImpl touch() {
+			this.referenced = true;
+			return this.block;
+		}
+	}
+
+	/** Number of recent blocks kept in the dense window */
+	static final int WINDOW_SIZE = Math.max(Nxt.getIntProperty("nxt.blockCacheSize", 64), 10);
+
+	/** Number of older blocks kept in the tail */
+	static final int TAIL_SIZE = Math.max(Nxt.getIntProperty("nxt.blockCacheTailSize", 128), 0);
+
+	private static volatile Window window = Window.EMPTY;
+
+	private static final Map<Long, TailEntry> tailById = new ConcurrentHashMap<>();
+	private static final Map<Integer, TailEntry> tailByHeight = new ConcurrentHashMap<>();
+
+	/** Tail eviction order, oldest first */
+	private static final Deque<TailEntry> tailQueue = new ArrayDeque<>();
+	private static final Map<Long, TransactionImpl> transactionCache = new ConcurrentHashMap<>();
+	private static final Map<Long, TransactionImpl> sncleanTransactionCache = new ConcurrentHashMap<>();
+
+	/** Incremented each time the cache is cleared, guards against caching stale database reads */
+	private static volatile long generation;
+
+	private static final AtomicLong blockHits = new AtomicLong();
+	private static final AtomicLong blockMisses = new AtomicLong();
+	private static final AtomicLong tailHits = new AtomicLong();
+	private static final AtomicLong transactionHits = new AtomicLong();
+	private static final AtomicLong transactionMisses = new AtomicLong();
+
+	/**
+	 * Add a pushed block to the window
+	 *
+	 * Blocks at or above the new height belong to an abandoned fork and are
+	 * discarded, blocks falling out of the window move to the LRU tail.
+	 *
+	 * @param block
+	 *            New last block
+	 */
+	static synchronized void push(final BlockImpl block) {
+		final Window current = BlockCache.window;
+		final int height = block.getHeight();
+		final boolean contiguous = (current.blocks.length > 0) && (current.getTopHeight() == (height - 1));
+		final List<BlockImpl> retained = new ArrayList<>(BlockCache.WINDOW_SIZE);
+		if (contiguous) for (final BlockImpl cacheBlock : current.blocks)
+			if (cacheBlock.getHeight() > (height - BlockCache.WINDOW_SIZE)) retained.add(cacheBlock);
+		retained.add(block);
+		block.getTransactions().forEach(tx -> {
+			BlockCache.transactionCache.put(tx.getId(), tx);
+			BlockCache.sncleanTransactionCache.put(tx.getSNCleanedId(), tx);
+		});
+		BlockCache.window = new Window(retained.get(0).getHeight(), retained.toArray(new BlockImpl[retained.size()]));
+		for (final BlockImpl cacheBlock : current.blocks) {
+			if (contiguous && (cacheBlock.getHeight() > (height - BlockCache.WINDOW_SIZE))) continue;
+			cacheBlock.getTransactions().forEach(tx -> {
+				BlockCache.transactionCache.remove(tx.getId(), tx);
+				BlockCache.sncleanTransactionCache.remove(tx.getSNCleanedId(), tx);
+			});
+			if (cacheBlock.getHeight() < height) BlockCache.addToTail(cacheBlock);
+		}
+	}
+
+	static synchronized void clear() {
+		BlockCache.generation++;
+		BlockCache.window = Window.EMPTY;
+		BlockCache.tailById.clear();
+		BlockCache.tailByHeight.clear();
+		BlockCache.tailQueue.clear();
+		BlockCache.transactionCache.clear();
+		BlockCache.sncleanTransactionCache.clear();
+	}
+
+	/**
+	 * Remove the blocks at or above a height after they have been popped off
+	 *
+	 * @param height
+	 *            Height of the first removed block
+	 */
+	static synchronized void removeFrom(final int height) {
+		BlockCache.generation++;
+		final Window current = BlockCache.window;
+		final int count = Math.max(Math.min(height - current.baseHeight, current.blocks.length), 0);
+		for (int i = count; i < current.blocks.length; i++)
+			current.blocks[i].getTransactions().forEach(tx -> {
+				BlockCache.transactionCache.remove(tx.getId(), tx);
+				BlockCache.sncleanTransactionCache.remove(tx.getSNCleanedId(), tx);
+			});
+		if (count < current.blocks.length) BlockCache.window = count > 0
+				? new Window(current.baseHeight, Arrays.copyOf(current.blocks, count)) : Window.EMPTY;
+		BlockCache.tailQueue.removeIf(entry -> {
+			if (entry.block.getHeight() < height) return false;
+			BlockCache.tailById.remove(entry.block.getId(), entry);
+			BlockCache.tailByHeight.remove(entry.block.getHeight(), entry);
+			return true;
+		});
+	}
+
+	static long getGeneration() {
+		return BlockCache.generation;
+	}
+
+	/**
+	 * Remember a block that had to be loaded from the database
+	 *
+	 * Blocks read inside a database transaction are not cached since the
+	 * transaction may still be rolled back.
+	 *
+	 * @param block
+	 *            Block loaded from the database
+	 * @param loadGeneration
+	 *            Cache generation at the time the database read started
+	 */
+	static synchronized void loaded(final BlockImpl block, final long loadGeneration) {
+		if ((block == null) || (loadGeneration != BlockCache.generation) || Db.db.isInTransaction()) return;
+		if (BlockCache.window.blocksById.containsKey(block.getId())) return;
+		BlockCache.addToTail(block);
+	}
+
+	private static void addToTail(final BlockImpl block) {
+		if (BlockCache.TAIL_SIZE == 0) return;
+		final TailEntry entry = new TailEntry(block);
+		final TailEntry old = BlockCache.tailByHeight.put(block.getHeight(), entry);
+		if (old != null) {
+			// Replaced by a block of another fork, rare enough for a linear removal
+			BlockCache.tailById.remove(old.block.getId(), old);
+			BlockCache.tailQueue.remove(old);
+		}
+		BlockCache.tailById.put(block.getId(), entry);
+		BlockCache.tailQueue.addLast(entry);
+		while (BlockCache.tailById.size() > BlockCache.TAIL_SIZE) {
+			final TailEntry eldest = BlockCache.tailQueue.removeFirst();
+			if (eldest.referenced) {
+				eldest.referenced = false;
+				BlockCache.tailQueue.addLast(eldest);
+			} else {
+				BlockCache.tailById.remove(eldest.block.getId(), eldest);
+				BlockCache.tailByHeight.remove(eldest.block.getHeight(), eldest);
+			}
+		}
+	}
+
+	static BlockImpl getBlock(final long blockId) {
+		final BlockImpl block = BlockCache.window.blocksById.get(blockId);
+		if (block != null) {
+			BlockCache.blockHits.incrementAndGet();
+			return block;
+		}
+		final TailEntry entry = BlockCache.tailById.get(blockId);
+		if (entry != null) {
+			BlockCache.tailHits.incrementAndGet();
+			return entry.touch();
+		}
+		BlockCache.blockMisses.incrementAndGet();
+		return null;
+	}
+
+	static BlockImpl getBlockAtHeight(final int height) {
+		final BlockImpl block = BlockCache.window.get(height);
+		if (block != null) {
+			BlockCache.blockHits.incrementAndGet();
+			return block;
+		}
+		final TailEntry entry = BlockCache.tailByHeight.get(height);
+		if (entry != null) {
+			BlockCache.tailHits.incrementAndGet();
+			return entry.touch();
+		}
+		BlockCache.blockMisses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Return the cached blocks following a block in the window
+	 *
+	 * @param blockId
+	 *            Block identifier
+	 * @return Following blocks in ascending height order or null if the block
+	 *         is not in the window
+	 */
+	static List<BlockImpl> getBlocksAfter(final long blockId) {
+		final Window current = BlockCache.window;
+		final BlockImpl block = current.blocksById.get(blockId);
+		if (block == null) return null;
+		BlockCache.blockHits.incrementAndGet();
+		final List<BlockImpl> result = new ArrayList<>(current.getTopHeight() - block.getHeight());
+		for (int height = block.getHeight() + 1; height <= current.getTopHeight(); height++)
+			result.add(current.get(height));
+		return result;
+	}
+
+	static TransactionImpl getTransaction(final long transactionId) {
+		final TransactionImpl transaction = BlockCache.transactionCache.get(transactionId);
+		if (transaction != null) BlockCache.transactionHits.incrementAndGet();
+		else BlockCache.transactionMisses.incrementAndGet();
+		return transaction;
+	}
+
+	static TransactionImpl getSNCleanTransaction(final long sncleanId) {
+		final TransactionImpl transaction = BlockCache.sncleanTransactionCache.get(sncleanId);
+		if (transaction != null) BlockCache.transactionHits.incrementAndGet();
+		else BlockCache.transactionMisses.incrementAndGet();
+		return transaction;
+	}
+
+	static JSONObject getStatistics() {
+		final Window current = BlockCache.window;
+		final JSONObject json = new JSONObject();
+		json.put("windowSize", BlockCache.WINDOW_SIZE);
+		json.put("windowBlocks", current.blocks.length);
+		json.put("tailSize", BlockCache.TAIL_SIZE);
+		json.put("tailBlocks", BlockCache.tailById.size());
+		json.put("cachedTransactions", BlockCache.transactionCache.size());
+		json.put("blockHits", BlockCache.blockHits.get());
+		json.put("tailHits", BlockCache.tailHits.get());
+		json.put("blockMisses", BlockCache.blockMisses.get());
+		json.put("transactionHits", BlockCache.transactionHits.get());
+		json.put("transactionMisses", BlockCache.transactionMisses.get());
+		return json;
+	}
+
+	private BlockCache() {
+	}
+
+}
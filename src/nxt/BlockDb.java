@@ -22,55 +22,22 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import nxt.db.DbUtils;
 import nxt.util.Logger;
 
 final class BlockDb {
 
-	/** Block cache */
-	static final int BLOCK_CACHE_SIZE = 10;
-	static final Map<Long, BlockImpl> blockCache = new HashMap<>();
-	static final SortedMap<Integer, BlockImpl> heightMap = new TreeMap<>();
-	static final Map<Long, TransactionImpl> transactionCache = new HashMap<>();
-	static final Map<Long, TransactionImpl> sncleantransactionCache = new HashMap<>();
 	static final Blockchain blockchain = Nxt.getBlockchain();
 	static {
-		Nxt.getBlockchainProcessor().addListener((block) -> {
-			synchronized (BlockDb.blockCache) {
-				final int height = block.getHeight();
-				final Iterator<BlockImpl> it = BlockDb.blockCache.values().iterator();
-				while (it.hasNext()) {
-					final Block cacheBlock = it.next();
-					final int cacheHeight = cacheBlock.getHeight();
-					if ((cacheHeight <= (height - BlockDb.BLOCK_CACHE_SIZE)) || (cacheHeight >= height)) {
-						cacheBlock.getTransactions().forEach((tx) -> BlockDb.transactionCache.remove(tx.getId()));
-						cacheBlock.getTransactions().forEach((tx) -> BlockDb.sncleantransactionCache.remove(tx.getSNCleanedId()));
-						BlockDb.heightMap.remove(cacheHeight);
-						it.remove();
-					}
-				}
-				block.getTransactions().forEach((tx) -> BlockDb.transactionCache.put(tx.getId(), (TransactionImpl) tx));
-				block.getTransactions().forEach((tx) -> BlockDb.sncleantransactionCache.put(tx.getSNCleanedId(), (TransactionImpl) tx));
-				BlockDb.heightMap.put(height, (BlockImpl) block);
-				BlockDb.blockCache.put(block.getId(), (BlockImpl) block);
-			}
-		}, BlockchainProcessor.Event.BLOCK_PUSHED);
+		Nxt.getBlockchainProcessor().addListener((block) -> BlockCache.push((BlockImpl) block),
+				BlockchainProcessor.Event.BLOCK_PUSHED);
 	}
 
 	static private void clearBlockCache() {
-		synchronized (BlockDb.blockCache) {
-			BlockDb.blockCache.clear();
-			BlockDb.heightMap.clear();
-			BlockDb.transactionCache.clear();
-		}
+		BlockCache.clear();
 	}
 
 	static void deleteAll() {
@@ -129,6 +96,7 @@ final class BlockDb {
 			}
 			return lastBlock;
 		}
+		BlockImpl lastBlock = null;
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmtSelect = con.prepareStatement("SELECT db_id FROM block WHERE timestamp >= "
 						+ "IFNULL ((SELECT timestamp FROM block WHERE id = ?), " + Integer.MAX_VALUE
@@ -144,7 +112,7 @@ final class BlockDb {
 						Db.db.commitTransaction();
 					}
 				}
-				final BlockImpl lastBlock = BlockDb.findLastBlock();
+				lastBlock = BlockDb.findLastBlock();
 				lastBlock.setNextBlockId(0);
 				try (PreparedStatement pstmt = con
 						.prepareStatement("UPDATE block SET next_block_id = NULL WHERE id = ?")) {
@@ -160,7 +128,8 @@ final class BlockDb {
 		} catch (final SQLException e) {
 			throw new RuntimeException(e.toString(), e);
 		} finally {
-			BlockDb.clearBlockCache();
+			if (lastBlock != null) BlockCache.removeFrom(lastBlock.getHeight() + 1);
+			else BlockDb.clearBlockCache();
 		}
 	}
 
@@ -183,19 +152,18 @@ final class BlockDb {
 
 	static BlockImpl findBlock(final long blockId) {
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.blockCache.get(blockId);
-			if (block != null) return block;
-		}
+		BlockImpl block = BlockCache.getBlock(blockId);
+		if (block != null) return block;
 		// Search the database
+		final long generation = BlockCache.getGeneration();
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE id = ?")) {
 			pstmt.setLong(1, blockId);
 			try (ResultSet rs = pstmt.executeQuery()) {
-				BlockImpl block = null;
 				if (rs.next()) block = BlockDb.loadBlock(con, rs);
-				return block;
 			}
+			BlockCache.loaded(block, generation);
+			return block;
 		} catch (final SQLException e) {
 			throw new RuntimeException(e.toString(), e);
 		}
@@ -204,14 +172,11 @@ final class BlockDb {
 	static BlockImpl findBlockAtHeight(final int height) {
 		// Check the cache
 
-		BlockImpl block;
-
-		synchronized (BlockDb.blockCache) {
-			block = BlockDb.heightMap.get(height);
-			if (block != null) return block;
-		}
+		BlockImpl block = BlockCache.getBlockAtHeight(height);
+		if (block != null) return block;
 
 		// Search the database
+		final long generation = BlockCache.getGeneration();
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE height = ?")) {
             //noinspection SuspiciousNameCombination
@@ -224,16 +189,16 @@ final class BlockDb {
 			throw new RuntimeException(e.toString(), e);
 		}
 
-		if (block != null) return block;
-        else throw new RuntimeException("Block at height " + height + " not found in database!");
+		if (block != null) {
+			BlockCache.loaded(block, generation);
+			return block;
+		} else throw new RuntimeException("Block at height " + height + " not found in database!");
 	}
 
 	static long findBlockIdAtHeight(final int height) {
 		// Check the cache
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.heightMap.get(height);
-			if (block != null) return block.getId();
-		}
+		final BlockImpl block = BlockCache.getBlockAtHeight(height);
+		if (block != null) return block.getId();
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT id FROM block WHERE height = ?")) {
@@ -299,10 +264,8 @@ final class BlockDb {
 	static boolean hasBlock(final long blockId, final int height) {
 
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.blockCache.get(blockId);
-			if (block != null) return block.getHeight() <= height;
-		}
+		final BlockImpl block = BlockCache.getBlock(blockId);
+		if (block != null) return block.getHeight() <= height;
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT height FROM block WHERE id = ?")) {
@@ -383,10 +346,7 @@ final class BlockDb {
 					pstmt.setLong(2, block.getPreviousBlockId());
 					pstmt.executeUpdate();
 				}
-				BlockImpl previousBlock;
-				synchronized (BlockDb.blockCache) {
-					previousBlock = BlockDb.blockCache.get(block.getPreviousBlockId());
-				}
+				final BlockImpl previousBlock = BlockCache.getBlock(block.getPreviousBlockId());
 				if (previousBlock != null) previousBlock.setNextBlockId(block.getId());
 			}
 		} catch (final SQLException e) {
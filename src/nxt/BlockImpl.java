@@ -38,8 +38,10 @@ public final class BlockImpl implements Block {
 		return softforkVotes;
 	}
 
-	private static final LRUCache powDifficultyLRUCache = new LRUCache(50);
-	private static final DoubleLongLRUCache powPerBlockAndWorkLRUCache = new DoubleLongLRUCache(100);
+	private static final ClockCache<BigInteger> powDifficultyCache = new ClockCache<>(
+			Nxt.getIntProperty("nxt.powDifficultyCacheSize", 64));
+	private static final ClockCache<Long> powPerBlockAndWorkCache = new ClockCache<>(
+			Nxt.getIntProperty("nxt.powPerBlockAndWorkCacheSize", 128));
 	private static final long[] badBlocks = new long[] {};
 	static {
 		Arrays.sort(BlockImpl.badBlocks);
@@ -47,7 +49,7 @@ public final class BlockImpl implements Block {
 
 	public static BigInteger calculateNextMinPowTarget(final long lastBlockId) {
 
-		final BigInteger cached = BlockImpl.powDifficultyLRUCache.get(lastBlockId);
+		final BigInteger cached = BlockImpl.powDifficultyCache.get(lastBlockId);
 		if (cached != null) return cached;
 
 		BigInteger converted_new_pow = BigInteger.valueOf(0);
@@ -61,7 +63,7 @@ public final class BlockImpl implements Block {
 				if (candidate.compareTo(converted_new_pow) == 1) converted_new_pow = candidate;
 			}
 
-			BlockImpl.powDifficultyLRUCache.set(lastBlockId, converted_new_pow);
+			BlockImpl.powDifficultyCache.put(lastBlockId, converted_new_pow);
 			return converted_new_pow;
 		}
 	}
@@ -258,6 +260,15 @@ public final class BlockImpl implements Block {
 		return this.hasValidSignature;
 	}
 
+	/**
+	 * Verify the block signature without accessing the database. The result is
+	 * cached, so a later call to verifyBlockSignature does not repeat the
+	 * cryptographic check.
+	 */
+	void preVerifySignature() {
+		if (this.generatorPublicKey != null) this.checkSignature();
+	}
+
 	public byte[] sign(String secretPhrase) throws Exception {
 		if (this.blockSignature != null) throw new Exception("Don't sign what is already signed!");
 		final byte[] data = this.bytes();
@@ -271,11 +282,11 @@ public final class BlockImpl implements Block {
 
 	@Override
 	public long countNumberPOWPerWorkId(final long work_id) {
-		long cached = BlockImpl.powPerBlockAndWorkLRUCache.get(this.getId(), work_id);
-		if (cached != -1) return cached;
-		cached = this.getTransactions().stream().filter(t -> t.getAttachment().getTransactionType() == TransactionType.WorkControl.PROOF_OF_WORK).map(t -> (Attachment.PiggybackedProofOfWork) t.getAttachment()).filter(patt -> patt.getWorkId() == work_id).count();
-		BlockImpl.powPerBlockAndWorkLRUCache.set(this.getId(), work_id, cached);
-		return cached;
+		final Long cached = BlockImpl.powPerBlockAndWorkCache.get(this.getId(), work_id);
+		if (cached != null) return cached;
+		final long count = this.getTransactions().stream().filter(t -> t.getAttachment().getTransactionType() == TransactionType.WorkControl.PROOF_OF_WORK).map(t -> (Attachment.PiggybackedProofOfWork) t.getAttachment()).filter(patt -> patt.getWorkId() == work_id).count();
+		BlockImpl.powPerBlockAndWorkCache.put(this.getId(), work_id, count);
+		return count;
 	}
 
 	@Override
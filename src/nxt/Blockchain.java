@@ -20,6 +20,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.List;
 
+import org.json.simple.JSONObject;
+
 import nxt.db.DbIterator;
 import nxt.util.Filter;
 
@@ -53,6 +55,8 @@ public interface Blockchain {
 
 	List<? extends Block> getBlocksAfter(long blockId, List<Long> blockList);
 
+	JSONObject getBlockCacheStatistics();
+
 	Block getECBlock(int timestamp);
 
 	List<? extends Transaction> getExpectedTransactions(Filter<Transaction> filter);
@@ -21,13 +21,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.json.simple.JSONObject;
+
 import nxt.Transaction;
 
 import nxt.db.DbIterator;
@@ -133,17 +134,14 @@ final class BlockchainImpl implements Blockchain {
 	@Override
 	public List<Long> getBlockIdsAfter(final long blockId, final int limit) {
 		// Check the block cache
-		final List<Long> result = new ArrayList<>(BlockDb.BLOCK_CACHE_SIZE);
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.blockCache.get(blockId);
-			if (block != null) {
-				final Collection<BlockImpl> cacheMap = BlockDb.heightMap.tailMap(block.getHeight() + 1).values();
-				for (final BlockImpl cacheBlock : cacheMap) {
-					if (result.size() >= limit) break;
-					result.add(cacheBlock.getId());
-				}
-				return result;
+		final List<Long> result = new ArrayList<>(Math.min(limit, BlockCache.WINDOW_SIZE));
+		final List<BlockImpl> cacheBlocks = BlockCache.getBlocksAfter(blockId);
+		if (cacheBlocks != null) {
+			for (final BlockImpl cacheBlock : cacheBlocks) {
+				if (result.size() >= limit) break;
+				result.add(cacheBlock.getId());
 			}
+			return result;
 		}
 		// Search the database
 		try (Connection con = Db.db.getConnection();
@@ -212,17 +210,14 @@ final class BlockchainImpl implements Blockchain {
 	public List<BlockImpl> getBlocksAfter(final long blockId, final int limit) {
 		if (limit <= 0) return Collections.emptyList();
 		// Check the block cache
-		final List<BlockImpl> result = new ArrayList<>(BlockDb.BLOCK_CACHE_SIZE);
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.blockCache.get(blockId);
-			if (block != null) {
-				final Collection<BlockImpl> cacheMap = BlockDb.heightMap.tailMap(block.getHeight() + 1).values();
-				for (final BlockImpl cacheBlock : cacheMap) {
-					if (result.size() >= limit) break;
-					result.add(cacheBlock);
-				}
-				return result;
+		final List<BlockImpl> result = new ArrayList<>(Math.min(limit, BlockCache.WINDOW_SIZE));
+		final List<BlockImpl> cacheBlocks = BlockCache.getBlocksAfter(blockId);
+		if (cacheBlocks != null) {
+			for (final BlockImpl cacheBlock : cacheBlocks) {
+				if (result.size() >= limit) break;
+				result.add(cacheBlock);
 			}
+			return result;
 		}
 		// Search the database
 		try (Connection con = Db.db.getConnection();
@@ -244,18 +239,15 @@ final class BlockchainImpl implements Blockchain {
 	public List<BlockImpl> getBlocksAfter(final long blockId, final List<Long> blockList) {
 		if (blockList.isEmpty()) return Collections.emptyList();
 		// Check the block cache
-		final List<BlockImpl> result = new ArrayList<>(BlockDb.BLOCK_CACHE_SIZE);
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.blockCache.get(blockId);
-			if (block != null) {
-				final Collection<BlockImpl> cacheMap = BlockDb.heightMap.tailMap(block.getHeight() + 1).values();
-				int index = 0;
-				for (final BlockImpl cacheBlock : cacheMap) {
-					if ((result.size() >= blockList.size()) || (cacheBlock.getId() != blockList.get(index++))) break;
-					result.add(cacheBlock);
-				}
-				return result;
+		final List<BlockImpl> result = new ArrayList<>(blockList.size());
+		final List<BlockImpl> cacheBlocks = BlockCache.getBlocksAfter(blockId);
+		if (cacheBlocks != null) {
+			int index = 0;
+			for (final BlockImpl cacheBlock : cacheBlocks) {
+				if ((result.size() >= blockList.size()) || (cacheBlock.getId() != blockList.get(index++))) break;
+				result.add(cacheBlock);
 			}
+			return result;
 		}
 		// Search the database
 		try (Connection con = Db.db.getConnection();
@@ -278,6 +270,11 @@ final class BlockchainImpl implements Blockchain {
 		return result;
 	}
 
+	@Override
+	public JSONObject getBlockCacheStatistics() {
+		return BlockCache.getStatistics();
+	}
+
 	@Override
 	public BlockImpl getECBlock(final int timestamp) {
 		final Block block = this.getLastBlock(timestamp);
@@ -103,6 +103,8 @@ public interface BlockchainProcessor extends Observable<Block, BlockchainProcess
 
 	void fullScanWithShutdown();
 
+	JSONObject getBlockPipelineStatistics();
+
 	int getInitialScanHeight();
 
 	Peer getLastBlockchainFeeder();
@@ -26,11 +26,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
@@ -45,7 +48,6 @@ import org.json.simple.JSONValue;
 import nxt.NxtException.NotValidException;
 import nxt.crypto.Crypto;
 import nxt.db.DerivedDbTable;
-import nxt.db.FilteringIterator;
 import nxt.peer.Peer;
 import nxt.peer.Peers;
 import nxt.util.Convert;
@@ -107,6 +109,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 		 */
 		@Override
 		public List<BlockImpl> call() {
+			final long startNanos = System.nanoTime();
 			this.requestCount++;
 			//
 			// Build the block request list
@@ -147,6 +150,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 				this.peer.blacklist(e);
 				this.stop = this.start + blockList.size();
 			}
+			BlockchainProcessorImpl.getInstance().fetchStage.record(blockList.size(), startNanos);
 			return blockList;
 		}
 
@@ -246,6 +250,9 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 		/** Block */
 		private final BlockImpl block;
 
+		/** Signature verification or null */
+		private volatile Future<?> verification;
+
 		/**
 		 * Create the peer block
 		 *
@@ -276,6 +283,196 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 		public Peer getPeer() {
 			return this.peer;
 		}
+
+		/**
+		 * Return the signature verification
+		 *
+		 * @return Verification future or null
+		 */
+		public Future<?> getVerification() {
+			return this.verification;
+		}
+
+		/**
+		 * Set the signature verification
+		 *
+		 * @param verification
+		 *            Verification future
+		 */
+		public void setVerification(final Future<?> verification) {
+			this.verification = verification;
+		}
+	}
+
+	/**
+	 * Apply stage of the block download
+	 *
+	 * Downloaded blocks are handed to the stage in chain order through a
+	 * bounded queue, so the download thread blocks once the stage falls too far
+	 * behind. The stage waits for the signature verification of each block and
+	 * pushes it while the remaining segments are still being downloaded. It
+	 * stops pushing if a block does not connect to our last block or is not
+	 * accepted, the remaining blocks are then handled once the download is
+	 * complete.
+	 */
+	private class BlockApplier implements Runnable {
+
+		/** End of the downloaded blocks */
+		private final PeerBlock end = new PeerBlock(null, null);
+
+		/** Blocks waiting to be applied */
+		private final BlockingQueue<PeerBlock> queue;
+
+		/** Blockchain height when the download started */
+		private final int startHeight;
+
+		/** Number of blocks consumed from the queue before the stage stopped */
+		private volatile int appliedCount;
+
+		/** Stage stopped pushing blocks */
+		private volatile boolean stopped;
+
+		/** Push failure */
+		private volatile RuntimeException failure;
+
+		/** End marker has been queued */
+		private boolean ended;
+
+		/**
+		 * Create the apply stage
+		 *
+		 * @param capacity
+		 *            Maximum number of queued blocks
+		 * @param startHeight
+		 *            Blockchain height when the download started
+		 */
+		private BlockApplier(final int capacity, final int startHeight) {
+			this.queue = new ArrayBlockingQueue<>(capacity);
+			this.startHeight = startHeight;
+		}
+
+		/**
+		 * Queue a block, waiting while the queue is full
+		 *
+		 * @param peerBlock
+		 *            Downloaded block
+		 * @return TRUE if the block was queued, FALSE if the stage has stopped
+		 * @throws InterruptedException
+		 *             Wait interrupted
+		 */
+		private boolean add(final PeerBlock peerBlock) throws InterruptedException {
+			if (this.stopped) return false;
+			this.queue.put(peerBlock);
+			return true;
+		}
+
+		/**
+		 * Wait for the queued blocks to be processed
+		 *
+		 * @param applyTask
+		 *            Future of the apply stage
+		 * @return Number of blocks consumed before the stage stopped
+		 * @throws InterruptedException
+		 *             Wait interrupted
+		 */
+		private int finish(final Future<?> applyTask) throws InterruptedException {
+			this.queue.put(this.end);
+			this.ended = true;
+			try {
+				applyTask.get();
+			} catch (final ExecutionException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+			if (this.failure != null) throw this.failure;
+			return this.appliedCount;
+		}
+
+		/**
+		 * Stop the stage after an aborted download
+		 *
+		 * The stage thread is not interrupted, an interrupt would close the
+		 * database files if it is pushing a block. The block being pushed is
+		 * committed or rolled back normally and the remaining queued blocks are
+		 * skipped.
+		 *
+		 * @param applyTask
+		 *            Future of the apply stage
+		 */
+		private void stop(final Future<?> applyTask) {
+			this.stopped = true;
+			boolean interrupted = false;
+			while (!this.ended) try {
+				this.queue.put(this.end);
+				this.ended = true;
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+			while (true) try {
+				applyTask.get();
+				break;
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			} catch (final ExecutionException e) {
+				break;
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+
+		/**
+		 * Process the queued blocks until the end of the download. The queue
+		 * is drained after the stage has stopped, so the download thread never
+		 * waits for a stopped stage.
+		 */
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					final PeerBlock peerBlock = this.queue.take();
+					if (peerBlock == this.end) return;
+					if (this.stopped) continue;
+					try {
+						BlockchainProcessorImpl.awaitVerification(peerBlock.getVerification());
+						this.apply(peerBlock);
+					} catch (final RuntimeException e) {
+						this.stopped = true;
+						this.failure = e;
+					}
+				}
+			} catch (final InterruptedException e) {
+				this.stopped = true;
+			}
+		}
+
+		/**
+		 * Push a block if it continues our chain
+		 *
+		 * @param peerBlock
+		 *            Downloaded block
+		 */
+		private void apply(final PeerBlock peerBlock) {
+			final BlockImpl block = peerBlock.getBlock();
+			BlockchainProcessorImpl.this.blockchain.writeLock();
+			try {
+				if (((BlockchainProcessorImpl.this.blockchain.getHeight() - this.startHeight) >= 720)
+						|| (BlockchainProcessorImpl.this.blockchain.getLastBlock().getId() != block.getPreviousBlockId())) {
+					this.stopped = true;
+					return;
+				}
+				this.appliedCount++;
+				try {
+					BlockchainProcessorImpl.this.pushBlock(block);
+				} catch (final BlockNotAcceptedException e) {
+					Logger.logDebugMessage("Will blacklist peer " + peerBlock.getPeer().getAnnouncedAddress()
+							+ " soon, block was not accepted!");
+					peerBlock.getPeer().blacklist(e);
+					this.stopped = true;
+					return;
+				}
+				if (SoftForkManager.getInstance().hardExit) this.stopped = true;
+			} finally {
+				BlockchainProcessorImpl.this.blockchain.writeUnlock();
+			}
+		}
 	}
 
 	/**
@@ -388,6 +585,15 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 	private final BlockchainImpl blockchain = BlockchainImpl.getInstance();
 
 	private final ExecutorService networkService = Executors.newCachedThreadPool();
+	private final ForkJoinPool verificationPool = new ForkJoinPool(
+			Math.max(Nxt.getIntProperty("nxt.signatureVerificationThreads", Runtime.getRuntime().availableProcessors()), 1));
+	private final int downloadPipelineDepth = Math.max(Nxt.getIntProperty("nxt.downloadPipelineDepth", 4), 1);
+	private final StageStatistics fetchStage = new StageStatistics();
+	private final StageStatistics verifyStage = new StageStatistics();
+	private final StageStatistics applyStage = new StageStatistics();
+	private final StageStatistics scanStage = new StageStatistics();
+	private final StageStatistics trimStage = new StageStatistics();
+	private final int trimSlicePause = Math.max(Nxt.getIntProperty("nxt.trimSlicePause", 10), 0);
 	private final List<DerivedDbTable> derivedTables = new CopyOnWriteArrayList<>();
 	private final boolean trimDerivedTables = Nxt.getBooleanProperty("nxt.trimDerivedTables");
 	private final int defaultNumberOfForkConfirmations = Nxt.getIntProperty(
@@ -396,6 +602,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 	private final boolean simulateEndlessDownload = Nxt.getBooleanProperty("nxt.simulateEndlessDownload");
 	private int initialScanHeight;
 	private volatile int lastTrimHeight;
+	private volatile int lastCheckpointHeight = -1;
 	private volatile int lastRestoreTime = 0;
 
 	private final Set<Long> prunableTransactions = new HashSet<>();
@@ -431,6 +638,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 				this.isTrimming = true;
 				this.networkService.submit(() -> {
 					this.trimDerivedTables();
+					this.checkpointDerivedTables();
 					this.isTrimming = false;
 				});
 			}
@@ -531,6 +739,26 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 					for (int start = 0; start < stop; start += segSize)
                         getList.add(new GetNextBlocks(this.chainBlockIds, start, Math.min(start + segSize, stop)));
 
+					//
+					// Blocks are verified in parallel as soon as their segment has
+					// been received and are handed in chain order to the apply
+					// stage, which pushes them while the remaining segments are
+					// still being downloaded. The number of segments waiting for
+					// verification and the number of blocks waiting to be applied
+					// are bounded. Pipelined application is only possible if we
+					// are extending our own chain, otherwise the blocks are
+					// processed as a fork once the download is complete.
+					//
+					final Deque<Future<?>> verifying = new ArrayDeque<>();
+					BlockApplier applier = null;
+					Future<?> applyTask = null;
+					if (BlockchainProcessorImpl.this.blockchain.getLastBlock().getId() == commonBlock.getId()) {
+						applier = new BlockApplier(BlockchainProcessorImpl.this.downloadPipelineDepth * segSize, startHeight);
+						applyTask = BlockchainProcessorImpl.this.networkService.submit(applier);
+					}
+					int handOffIndex = 1;
+					int applyIndex = 1;
+
 					int nextPeerIndex = ThreadLocalRandom.current().nextInt(this.connectedPublicPeers.size());
 					long maxResponseTime = 0;
 					Peer slowestPeer = null;
@@ -543,73 +771,96 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 					// after
 					// retrying with different peers.
 					//
-					download:
-					while (!getList.isEmpty()) {
-						//
-						// Submit threads to issue 'getNextBlocks' requests. The first
-						// segment
-						// will always be sent to the feeder peer. Subsequent segments
-						// will
-						// be sent to the feeder peer if we failed trying to download
-						// the blocks
-						// from another peer. We will stop the download and process any
-						// pending
-						// blocks if we are unable to download a segment from the feeder
-						// peer.
-						//
-						for (final GetNextBlocks nextBlocks : getList) {
-							Peer peer;
-							if (nextBlocks.getRequestCount() > 1) break download;
-							if ((nextBlocks.getStart() == 0) || (nextBlocks.getRequestCount() != 0)) peer = feederPeer;
-                            else {
-								if (nextPeerIndex >= this.connectedPublicPeers.size()) nextPeerIndex = 0;
-								peer = this.connectedPublicPeers.get(nextPeerIndex++);
-							}
-							if (nextBlocks.getPeer() == peer) break download;
-							nextBlocks.setPeer(peer);
-							final Future<List<BlockImpl>> future = BlockchainProcessorImpl.this.networkService
-									.submit(nextBlocks);
-							nextBlocks.setFuture(future);
-						}
-						//
-						// Get the results. A peer is on a different fork if a returned
-						// block is not in the block identifier list.
-						//
-						final Iterator<GetNextBlocks> it = getList.iterator();
-						while (it.hasNext()) {
-							final GetNextBlocks nextBlocks = it.next();
-							List<BlockImpl> blockList;
-							try {
-								blockList = nextBlocks.getFuture().get();
-							} catch (final ExecutionException exc) {
-								throw new RuntimeException(exc.getMessage(), exc);
-							}
-							if (blockList == null) {
-								nextBlocks.getPeer().deactivate();
-								continue;
-							}
-							final Peer peer = nextBlocks.getPeer();
-							int index = nextBlocks.getStart() + 1;
-							Logger.logDebugMessage("Received blocklist size: " + blockList.size() + " form peer "
-									+ peer.getAnnouncedAddress() + ", index = " + index);
-							for (final BlockImpl block : blockList) {
-								if (block.getId() != this.chainBlockIds.get(index)) {
-									Logger.logDebugMessage("... ignoring " + block.getId());
-									break;
+					try {
+						download:
+						while (!getList.isEmpty()) {
+							//
+							// Submit threads to issue 'getNextBlocks' requests. The first
+							// segment
+							// will always be sent to the feeder peer. Subsequent segments
+							// will
+							// be sent to the feeder peer if we failed trying to download
+							// the blocks
+							// from another peer. We will stop the download and process any
+							// pending
+							// blocks if we are unable to download a segment from the feeder
+							// peer.
+							//
+							for (final GetNextBlocks nextBlocks : getList) {
+								Peer peer;
+								if (nextBlocks.getRequestCount() > 1) break download;
+								if ((nextBlocks.getStart() == 0) || (nextBlocks.getRequestCount() != 0)) peer = feederPeer;
+	                            else {
+									if (nextPeerIndex >= this.connectedPublicPeers.size()) nextPeerIndex = 0;
+									peer = this.connectedPublicPeers.get(nextPeerIndex++);
 								}
-								Logger.logDebugMessage("... blockmapping " + block.getId() + " (was in original GetNextBlock? "
-										+ (nextBlocks.blockIds.indexOf(block.getId()) >= 0) + ")");
-								blockMap.put(block.getId(), new PeerBlock(peer, block));
-								index++;
+								if (nextBlocks.getPeer() == peer) break download;
+								nextBlocks.setPeer(peer);
+								final Future<List<BlockImpl>> future = BlockchainProcessorImpl.this.networkService
+										.submit(nextBlocks);
+								nextBlocks.setFuture(future);
 							}
-							if (index > nextBlocks.getStop()) it.remove();
-                            else nextBlocks.setStart(index - 1);
-							if (nextBlocks.getResponseTime() > maxResponseTime) {
-								maxResponseTime = nextBlocks.getResponseTime();
-								slowestPeer = nextBlocks.getPeer();
+							//
+							// Get the results. A peer is on a different fork if a returned
+							// block is not in the block identifier list.
+							//
+							final Iterator<GetNextBlocks> it = getList.iterator();
+							while (it.hasNext()) {
+								final GetNextBlocks nextBlocks = it.next();
+								List<BlockImpl> blockList;
+								try {
+									blockList = nextBlocks.getFuture().get();
+								} catch (final ExecutionException exc) {
+									throw new RuntimeException(exc.getMessage(), exc);
+								}
+								if (blockList == null) {
+									nextBlocks.getPeer().deactivate();
+									continue;
+								}
+								final Peer peer = nextBlocks.getPeer();
+								int index = nextBlocks.getStart() + 1;
+								final int startIndex = index;
+								Logger.logDebugMessage(() -> "Received blocklist size: " + blockList.size() + " form peer "
+										+ peer.getAnnouncedAddress() + ", index = " + startIndex);
+								final List<BlockImpl> mappedBlocks = new ArrayList<>(blockList.size());
+								for (final BlockImpl block : blockList) {
+									if (block.getId() != this.chainBlockIds.get(index)) {
+										Logger.logDebugMessage(() -> "... ignoring " + block.getId());
+										break;
+									}
+									Logger.logDebugMessage(() -> "... blockmapping " + block.getId() + " (was in original GetNextBlock? "
+											+ (nextBlocks.blockIds.indexOf(block.getId()) >= 0) + ")");
+									blockMap.put(block.getId(), new PeerBlock(peer, block));
+									mappedBlocks.add(block);
+									index++;
+								}
+								if (index > nextBlocks.getStop()) it.remove();
+	                            else nextBlocks.setStart(index - 1);
+								if (nextBlocks.getResponseTime() > maxResponseTime) {
+									maxResponseTime = nextBlocks.getResponseTime();
+									slowestPeer = nextBlocks.getPeer();
+								}
+								if (mappedBlocks.isEmpty()) continue;
+								while (verifying.size() >= BlockchainProcessorImpl.this.downloadPipelineDepth)
+									BlockchainProcessorImpl.awaitVerification(verifying.poll());
+								final Future<?> verification = BlockchainProcessorImpl.this.submitVerification(mappedBlocks);
+								verifying.add(verification);
+								for (final BlockImpl block : mappedBlocks) blockMap.get(block.getId()).setVerification(verification);
+								if (applier == null) continue;
+								while (handOffIndex < this.chainBlockIds.size()) {
+									final PeerBlock peerBlock = blockMap.get(this.chainBlockIds.get(handOffIndex));
+									if ((peerBlock == null) || !applier.add(peerBlock)) break;
+									handOffIndex++;
+								}
 							}
-						}
 
+						}
+						if (applier != null) {
+							applyIndex += applier.finish(applyTask);
+							applyTask = null;
+						}
+					} finally {
+						if (applyTask != null) applier.stop(applyTask);
 					}
 					if ((slowestPeer != null) && (this.connectedPublicPeers.size() >= Peers.maxNumberOfConnectedPublicPeers)
 							&& (this.chainBlockIds.size() > 360)) {
@@ -628,10 +879,11 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 							+ this.chainBlockIds.size() + ", local chain height: "
 							+ BlockchainProcessorImpl.this.blockchain.getHeight() + ", start height = " + startHeight);
 
+					verifying.forEach(BlockchainProcessorImpl::awaitVerification);
 					BlockchainProcessorImpl.this.blockchain.writeLock();
 					try {
 						final List<BlockImpl> forkBlocks = new ArrayList<>();
-						for (int index = 1; (index < this.chainBlockIds.size())
+						for (int index = applyIndex; !SoftForkManager.getInstance().hardExit && (index < this.chainBlockIds.size())
 								&& ((BlockchainProcessorImpl.this.blockchain.getHeight() - startHeight) < 720); index++) {
 							Logger.logDebugMessage("... inspecing chain block id " + this.chainBlockIds.get(index));
 							final PeerBlock peerBlock = blockMap.get(this.chainBlockIds.get(index));
@@ -1103,17 +1355,54 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 		return this.blockListeners.addListener(listener, eventType);
 	}
 
+	private void checkpointDerivedTables() {
+		if (DerivedTableCheckpoint.INTERVAL == 0) return;
+		this.blockchain.readLock();
+		try {
+			final BlockImpl lastBlock = this.blockchain.getLastBlock();
+			if (this.lastCheckpointHeight < 0)
+				this.lastCheckpointHeight = Math.max(DerivedTableCheckpoint.getHeight(this.derivedTables,
+						lastBlock.getHeight(), false), 0);
+			if (lastBlock.getHeight() < (this.lastCheckpointHeight + DerivedTableCheckpoint.INTERVAL)) return;
+			DerivedTableCheckpoint.create(this.derivedTables, lastBlock);
+			this.lastCheckpointHeight = lastBlock.getHeight();
+		} catch (final RuntimeException e) {
+			Logger.logErrorMessage("Unable to create derived table checkpoint", e);
+		} finally {
+			this.blockchain.readUnlock();
+		}
+	}
+
+	/**
+	 * Trim the derived tables
+	 *
+	 * The tables are trimmed slice by slice, each slice is committed and
+	 * releases the blockchain lock so that block processing is never held up
+	 * by more than a single slice. Outside of a scan the trimming pauses
+	 * between slices.
+	 */
 	private void doTrimDerivedTables() {
 		this.lastTrimHeight = Math.max(this.blockchain.getHeight() - Constants.MAX_ROLLBACK, 0);
 		if (this.lastTrimHeight > 0) for (final DerivedDbTable table : this.derivedTables) {
-            this.blockchain.readLock();
-            try {
-                table.trim(this.lastTrimHeight);
-                Db.db.commitTransaction();
-            } finally {
-                this.blockchain.readUnlock();
-            }
-        }
+			int deleted;
+			do {
+				final long startNanos = System.nanoTime();
+				this.blockchain.readLock();
+				try {
+					deleted = table.trimSlice(this.lastTrimHeight);
+					Db.db.commitTransaction();
+				} finally {
+					this.blockchain.readUnlock();
+				}
+				this.trimStage.record(Math.max(deleted, 0), startNanos);
+				if ((deleted >= 0) && !this.isScanning && (this.trimSlicePause > 0)) try {
+					Thread.sleep(this.trimSlicePause);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			} while (deleted >= 0);
+		}
 	}
 
 	@Override
@@ -1264,6 +1553,26 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 		return this.derivedTables;
 	}
 
+	/**
+	 * Return the pool used for signature verification
+	 *
+	 * @return Signature verification pool
+	 */
+	ForkJoinPool getVerificationPool() {
+		return this.verificationPool;
+	}
+
+	@Override
+	public JSONObject getBlockPipelineStatistics() {
+		final JSONObject json = new JSONObject();
+		json.put("fetch", this.fetchStage.getStatistics());
+		json.put("verify", this.verifyStage.getStatistics());
+		json.put("apply", this.applyStage.getStatistics());
+		json.put("scan", this.scanStage.getStatistics());
+		json.put("trim", this.trimStage.getStatistics());
+		return json;
+	}
+
 	@Override
 	public int getInitialScanHeight() {
 		return this.initialScanHeight;
@@ -1355,8 +1664,6 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 					block = this.popLastBlock();
 				}
 				for (final DerivedDbTable table : this.derivedTables) table.rollback(commonBlock.getHeight());
-				Db.db.clearCache();
-				Db.db.clearCache();
 				Db.db.commitTransaction();
 			} catch (final RuntimeException e) {
 				Logger.logErrorMessage("Error popping off to " + commonBlock.getHeight() + ", " + e.toString());
@@ -1408,7 +1715,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 		if(Nxt.getBlockchain().hasBlock(block.getId()))
 			return;
 
-		Logger.logDebugMessage("Process peer's block: " + block.getId());
+		Logger.logDebugMessage(() -> "Process peer's block: " + block.getId());
 
 		if (block.getPreviousBlockId() == lastBlock.getId()) this.pushBlock(block);
         else if ((block.getPreviousBlockId() == lastBlock.getPreviousBlockId())
@@ -1436,10 +1743,161 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 	}
 
 
+	/**
+	 * Verify the transaction signatures of a batch of blocks in parallel
+	 *
+	 * The results are cached in the transactions, so the signature checks done
+	 * by validateTransactions while holding the blockchain lock are reduced to
+	 * lookups. Failures are not reported here, they are detected again when
+	 * the block is validated.
+	 *
+	 * @param blocks
+	 *            Blocks to verify
+	 */
+	private void preVerifySignatures(final List<BlockImpl> blocks) {
+		int transactionCount = 0;
+		for (final BlockImpl block : blocks) transactionCount += block.getTransactions().size();
+		if (transactionCount < 2) return;
+		BlockchainProcessorImpl.awaitVerification(this.submitVerification(blocks));
+	}
+
+	/**
+	 * Submit the signature verification of a batch of blocks to the
+	 * verification pool
+	 *
+	 * @param blocks
+	 *            Blocks to verify
+	 * @return Verification future
+	 */
+	private Future<?> submitVerification(final List<BlockImpl> blocks) {
+		final List<TransactionImpl> transactions = new ArrayList<>();
+		for (final BlockImpl block : blocks) transactions.addAll(block.getTransactions());
+		return this.verificationPool.submit(() -> {
+			final long startNanos = System.nanoTime();
+			blocks.parallelStream().forEach(BlockImpl::preVerifySignature);
+			transactions.parallelStream().forEach(transaction -> {
+				try {
+					transaction.preVerifySignature();
+				} catch (final RuntimeException e) {
+					Logger.logDebugMessage("Signature pre-verification failed for transaction "
+							+ transaction.getStringId() + ": " + e.toString());
+				}
+			});
+			this.verifyStage.record(blocks.size(), startNanos);
+		});
+	}
+
+	/**
+	 * Wait for a signature verification to complete
+	 *
+	 * @param verification
+	 *            Verification future or null
+	 */
+	private static void awaitVerification(final Future<?> verification) {
+		if (verification == null) return;
+		try {
+			verification.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final ExecutionException e) {
+			Logger.logDebugMessage("Signature pre-verification failed: " + e.toString());
+		}
+	}
+
+	/**
+	 * Block read ahead by a scan
+	 */
+	private static final class ScanEntry {
+
+		/** Block or null if loading the block failed */
+		private final BlockImpl block;
+
+		/** Stateless checks of a validating scan or null */
+		private final Future<Exception> check;
+
+		private final RuntimeException loadException;
+
+		private ScanEntry(final BlockImpl block, final Future<Exception> check) {
+			this.block = block;
+			this.check = check;
+			this.loadException = null;
+		}
+
+		private ScanEntry(final RuntimeException loadException) {
+			this.block = null;
+			this.check = null;
+			this.loadException = loadException;
+		}
+	}
+
+	/**
+	 * Submit the checks of a validating scan that do not depend on the
+	 * blockchain state to the verification pool: the block and transaction
+	 * signatures, and the JSON and byte round trips of the block and its
+	 * transactions
+	 *
+	 * @param block
+	 *            Block loaded from the database
+	 * @return Future returning the exception of the failed check or null
+	 */
+	private Future<Exception> submitScanCheck(final BlockImpl block) {
+		return this.verificationPool.submit(() -> {
+			try {
+				block.preVerifySignature();
+				block.getTransactions().parallelStream().forEach(TransactionImpl::preVerifySignature);
+				final byte[] blockBytes = block.bytes();
+				final JSONObject blockJSON = (JSONObject) JSONValue.parse(block.getJSONObject().toJSONString());
+				if (!Arrays.equals(blockBytes, BlockImpl.parseBlock(blockJSON).bytes()))
+					throw new NotValidException("Block JSON cannot be parsed back to the same block");
+				for (final TransactionImpl transaction : block.getTransactions()) {
+					final byte[] transactionBytes = transaction.getBytes();
+					if (!Arrays.equals(transactionBytes,
+							TransactionImpl.newTransactionBuilder(transactionBytes).build().getBytes()))
+						throw new NotValidException("Transaction bytes cannot be parsed back to the same transaction: "
+								+ transaction.getJSONObject().toJSONString());
+					final JSONObject transactionJSON = (JSONObject) JSONValue
+							.parse(transaction.getJSONObject().toJSONString());
+					if (!Arrays.equals(transactionBytes,
+							TransactionImpl.newTransactionBuilder(transactionJSON).build().getBytes()))
+						throw new NotValidException("Transaction JSON cannot be parsed back to the same transaction: "
+								+ transaction.getJSONObject().toJSONString());
+				}
+				return null;
+			} catch (NxtException | RuntimeException e) {
+				return e;
+			}
+		});
+	}
+
+	/**
+	 * Wait for the stateless checks of a scanned block
+	 *
+	 * @param check
+	 *            Check future or null
+	 * @throws NxtException
+	 *             A check failed
+	 */
+	private static void awaitScanCheck(final Future<Exception> check) throws NxtException {
+		if (check == null) return;
+		final Exception e;
+		try {
+			e = check.get();
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex.toString(), ex);
+		} catch (final ExecutionException ex) {
+			throw new RuntimeException(ex.toString(), ex);
+		}
+		if (e instanceof NxtException) throw (NxtException) e;
+		if (e != null) throw (RuntimeException) e;
+	}
+
 	private void pushBlock(final BlockImpl block) throws BlockNotAcceptedException {
 
 		final int curTime = Nxt.getEpochTime();
 		boolean soft_skip = false;
+		this.preVerifySignatures(Collections.singletonList(block));
+		final long startNanos = System.nanoTime();
 		this.blockchain.writeLock();
 
 		try {
@@ -1451,15 +1909,15 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 				// Another safeguard to avoid duplicate block errors
 				if(previousLastBlock.getId() == block.getId() || Nxt.getBlockchain().hasBlock(block.getId())){
 					// Fall through, duplicate block bug!
-					Logger.logDebugMessage("Ignoring block: " + block.getId());
+					Logger.logDebugMessage(() -> "Ignoring block: " + block.getId());
 					soft_skip = true;
 				}else {
 
-					Logger.logDebugMessage("Validating block: " + block.getId());
+					Logger.logDebugMessage(() -> "Validating block: " + block.getId());
 
 					this.validate(block, previousLastBlock, curTime);
 
-					Logger.logDebugMessage("About to push block: " + block.getId());
+					Logger.logDebugMessage(() -> "About to push block: " + block.getId());
 
 
 					final long nextHitTime = Generator.getNextHitTime(previousLastBlock.getId(), curTime);
@@ -1483,7 +1941,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 					TransactionProcessorImpl.getInstance().requeueAllUnconfirmedTransactions();
 					this.addBlock(block);
 					this.accept(block, validPhasedTransactions, invalidPhasedTransactions, duplicates);
-					Logger.logDebugMessage("Added and accepted block: " + block.getId());
+					Logger.logDebugMessage(() -> "Added and accepted block: " + block.getId());
 					SoftForkManager.getInstance().recordNewVote(block);
 				}
 				Db.db.commitTransaction();
@@ -1498,6 +1956,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 			}
 			if(!soft_skip)
 				this.blockListeners.notify(block, Event.AFTER_BLOCK_ACCEPT);
+			this.applyStage.record(1, startNanos);
 		} finally {
 			this.blockchain.writeUnlock();
 		}
@@ -1615,12 +2074,25 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 				return;
 			}
 			this.scheduleScan(height, validate);
+			final int targetHeight = Math.max(height, 0);
 			if ((height > 0) && (height < this.getMinRollbackHeight())) {
 				Logger.logMessage("Rollback to height less than " + this.getMinRollbackHeight()
 						+ " not supported, will do a full scan");
 				height = 0;
 			}
 			if (height < 0) height = 0;
+			//
+			// A full scan without validation starts after the newest derived
+			// table checkpoint below the requested height
+			//
+			final int checkpointHeight = (height == 0) && !validate
+					? DerivedTableCheckpoint.getHeight(this.derivedTables,
+							targetHeight > 0 ? targetHeight - 1 : this.blockchain.getHeight(), true)
+					: -1;
+			if (checkpointHeight >= 0) {
+				Logger.logMessage("Restoring derived table checkpoint at height " + checkpointHeight);
+				height = checkpointHeight + 1;
+			}
 			Logger.logMessage("Scanning blockchain starting from height " + height + "...");
 			if (validate) Logger.logDebugMessage("Also verifying signatures and validating transactions...");
 			try (Connection con = Db.db.getConnection();
@@ -1638,12 +2110,15 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 					return;
 				}
 
-				for (final DerivedDbTable table : this.derivedTables)
+				if (checkpointHeight >= 0) {
+					DerivedTableCheckpoint.restore(this.derivedTables, checkpointHeight);
+					this.lastCheckpointHeight = checkpointHeight;
+				} else for (final DerivedDbTable table : this.derivedTables)
                     if (height == 0) table.truncate();
                     else table.rollback(height - 1);
 				Db.db.clearCache();
 				Db.db.commitTransaction();
-				Logger.logDebugMessage("Rolled back derived tables");
+				Logger.logDebugMessage(checkpointHeight >= 0 ? "Restored derived tables" : "Rolled back derived tables");
 				BlockImpl currentBlock = BlockDb.findBlockAtHeight(height);
 				this.blockListeners.notify(currentBlock, Event.RESCAN_BEGIN);
 				long currentBlockId = currentBlock.getId();
@@ -1663,15 +2138,36 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                 if (height > 0) pstmtSelect.setInt(pstmtSelectIndex++, height);
 				long dbId = Long.MIN_VALUE;
 				boolean hasMore = true;
+				final int scanDepth = validate ? this.verificationPool.getParallelism() * 4 : 1;
+				long lastProgress = System.currentTimeMillis();
 				outer: while (hasMore) {
 					hasMore = false;
 					pstmtSelect.setLong(pstmtSelectIndex, dbId);
 					try (ResultSet rs = pstmtSelect.executeQuery()) {
-						while (rs.next()) {
+						final Deque<ScanEntry> scanAhead = new ArrayDeque<>();
+						while (true) {
+							//
+							// Read ahead and submit the stateless checks of the
+							// following blocks while the current one is applied
+							//
+							while ((scanAhead.size() < scanDepth) && ((scanAhead.peekLast() == null)
+									|| (scanAhead.peekLast().block != null)) && rs.next())
+								try {
+									dbId = rs.getLong("db_id");
+									final BlockImpl block = BlockDb.loadBlock(con, rs, true);
+									block.loadTransactions();
+									scanAhead.add(new ScanEntry(block,
+											validate && (block.getId() != Genesis.GENESIS_BLOCK_ID)
+													? this.submitScanCheck(block) : null));
+								} catch (final RuntimeException e) {
+									scanAhead.add(new ScanEntry(e));
+								}
+							final ScanEntry scanEntry = scanAhead.poll();
+							if (scanEntry == null) break;
+							final long startNanos = System.nanoTime();
 							try {
-								dbId = rs.getLong("db_id");
-								currentBlock = BlockDb.loadBlock(con, rs, true);
-								currentBlock.loadTransactions();
+								if (scanEntry.block == null) throw scanEntry.loadException;
+								currentBlock = scanEntry.block;
 								if ((currentBlock.getId() != currentBlockId)
 										|| (currentBlock.getHeight() > (this.blockchain.getHeight() + 1)))
                                     throw new NotValidException("Database blocks in the wrong order!");
@@ -1681,29 +2177,9 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 								if (validate && (currentBlockId != Genesis.GENESIS_BLOCK_ID)) {
 									final int curTime = Nxt.getEpochTime();
 									this.validate(currentBlock, this.blockchain.getLastBlock(), curTime);
-									final byte[] blockBytes = currentBlock.bytes();
-									final JSONObject blockJSON = (JSONObject) JSONValue
-											.parse(currentBlock.getJSONObject().toJSONString());
-									if (!Arrays.equals(blockBytes, BlockImpl.parseBlock(blockJSON).bytes()))
-                                        throw new NotValidException(
-                                                "Block JSON cannot be parsed back to the same block");
+									BlockchainProcessorImpl.awaitScanCheck(scanEntry.check);
 									this.validateTransactions(currentBlock, this.blockchain.getLastBlock(), curTime,
 											duplicates, true);
-									for (final TransactionImpl transaction : currentBlock.getTransactions()) {
-										final byte[] transactionBytes = transaction.getBytes();
-										if (!Arrays.equals(transactionBytes, TransactionImpl
-												.newTransactionBuilder(transactionBytes).build().getBytes()))
-                                            throw new NotValidException(
-                                                    "Transaction bytes cannot be parsed back to the same transaction: "
-                                                            + transaction.getJSONObject().toJSONString());
-										final JSONObject transactionJSON = (JSONObject) JSONValue
-												.parse(transaction.getJSONObject().toJSONString());
-										if (!Arrays.equals(transactionBytes, TransactionImpl
-												.newTransactionBuilder(transactionJSON).build().getBytes()))
-                                            throw new NotValidException(
-                                                    "Transaction JSON cannot be parsed back to the same transaction: "
-                                                            + transaction.getJSONObject().toJSONString());
-									}
 								}
 								this.blockListeners.notify(currentBlock, Event.BEFORE_BLOCK_ACCEPT);
 								this.blockchain.setLastBlock(currentBlock);
@@ -1723,6 +2199,9 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 									currentBlock.loadTransactions();
 									TransactionProcessorImpl.getInstance().processLater(currentBlock.getTransactions());
 								}
+								for (final ScanEntry entry : scanAhead)
+									if (entry.block != null) TransactionProcessorImpl.getInstance()
+											.processLater(entry.block.getTransactions());
 								while (rs.next()) try {
                                     currentBlock = BlockDb.loadBlock(con, rs, true);
                                     currentBlock.loadTransactions();
@@ -1738,6 +2217,13 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 								break outer;
 							}
 							this.blockListeners.notify(currentBlock, Event.BLOCK_SCANNED);
+							this.scanStage.record(1, startNanos);
+							if ((System.currentTimeMillis() - lastProgress) >= 10000) {
+								lastProgress = System.currentTimeMillis();
+								final JSONObject statistics = this.scanStage.getStatistics();
+								Logger.logMessage("Scanned blockchain to height " + currentBlock.getHeight() + ", "
+										+ statistics.get("perSecond") + " blocks per second");
+							}
 							hasMore = true;
 						}
 						dbId = dbId + 1;
@@ -1779,12 +2265,11 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
 			final Map<TransactionType, Map<String, Integer>> duplicates, final Block previousBlock,
 			final int blockTimestamp) {
 		final List<UnconfirmedTransaction> orderedUnconfirmedTransactions = new ArrayList<>();
-		try (FilteringIterator<UnconfirmedTransaction> unconfirmedTransactions = new FilteringIterator<>(
-				TransactionProcessorImpl.getInstance().getAllUnconfirmedTransactions(), transaction -> this
-						.hasAllReferencedTransactions(transaction.getTransaction(), transaction.getTimestamp(), 0))) {
-			for (final UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions)
-                orderedUnconfirmedTransactions.add(unconfirmedTransaction);
-		}
+		for (final UnconfirmedTransaction unconfirmedTransaction : TransactionProcessorImpl.getInstance()
+				.getAllUnconfirmedTransactions())
+			if (this.hasAllReferencedTransactions(unconfirmedTransaction.getTransaction(),
+					unconfirmedTransaction.getTimestamp(), 0))
+				orderedUnconfirmedTransactions.add(unconfirmedTransaction);
 		final SortedSet<UnconfirmedTransaction> sortedTransactions = new TreeSet<>(
 				BlockchainProcessorImpl.transactionArrivalComparator);
 		int payloadLength = 0;
@@ -1799,7 +2284,7 @@ public final class BlockchainProcessorImpl implements BlockchainProcessor {
                     continue;
 				if ((blockTimestamp > 0)
 						&& ( (!Generator.allowsFakeForgingInPrincipal() && ((unconfirmedTransaction.getTimestamp() > (blockTimestamp + Constants.MAX_TIMEDRIFT)))||(!Objects.equals(unconfirmedTransaction.getAttachment().getTransactionType(), TransactionType.Payment.REDEEM) && (unconfirmedTransaction.getExpiration() < blockTimestamp))))) {
-					Logger.logInfoMessage("Skipping unconf. " + Convert.toUnsignedLong(unconfirmedTransaction.getId()) + " because timeout is past blockTimeStamp!");
+					Logger.logInfoMessage(() -> "Skipping unconf. " + Convert.toUnsignedLong(unconfirmedTransaction.getId()) + " because timeout is past blockTimeStamp!");
 
 					continue;
 				}
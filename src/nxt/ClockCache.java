@@ -0,0 +1,157 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed size, thread-safe cache keyed by one or two long values.
+ *
+ * Entries are immutable and stored in an open-addressing table, a key lives in
+ * one of the slots of a short probe window starting at its hash position.
+ * Lookups do not lock and compare the primitive keys without boxing them.
+ * Every insert allocates a new entry holding the keys and a reference to the
+ * value, and a primitive value such as the POW count has to be boxed by the
+ * caller, so the cache saves the computation of a value and not the
+ * allocation. When the probe window of a new key is full, an entry of the
+ * window is evicted using the CLOCK algorithm: entries are marked when they
+ * are read and the clock hand skips (and unmarks) marked entries. Insertion
+ * is best-effort, an insert losing a race to a concurrent update is dropped.
+ *
+ * @param <V>
+ *            Value type
+ */
+final class ClockCache<V> {
+
+	/**
+	 * Cache entry
+	 *
+	 * @param <V>
+	 *            Value type
+	 */
+	private static final class Entry<V> {
+
+		private final long key1;
+		private final long key2;
+		private final V value;
+		private volatile boolean referenced = true;
+
+		private Entry(final long key1, final long key2, final V value) {
+			this.key1 = key1;
+			this.key2 = key2;
+			this.value = value;
+		}
+	}
+
+	/** Maximum number of slots a key may be stored in */
+	private static final int PROBE_LENGTH = 8;
+
+	private final AtomicReferenceArray<Entry<V>> table;
+	private final int mask;
+	private final int probeLength;
+	private final AtomicInteger clockHand = new AtomicInteger();
+
+	/**
+	 * Create the cache
+	 *
+	 * @param capacity
+	 *            Minimum number of entries, rounded up to a power of two
+	 */
+	ClockCache(final int capacity) {
+		int size = 1;
+		while (size < Math.max(capacity, 1)) size <<= 1;
+		this.table = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.probeLength = Math.min(ClockCache.PROBE_LENGTH, size);
+	}
+
+	private int index(final long key1, final long key2) {
+		long hash = (key1 * 0x9E3779B97F4A7C15L) ^ (key2 * 0xC2B2AE3D27D4EB4FL);
+		hash ^= hash >>> 32;
+		return (int) hash & this.mask;
+	}
+
+	V get(final long key) {
+		return this.get(key, 0);
+	}
+
+	/**
+	 * Return the cached value
+	 *
+	 * @param key1
+	 *            First key
+	 * @param key2
+	 *            Second key
+	 * @return Cached value or null if the key is not cached
+	 */
+	V get(final long key1, final long key2) {
+		final int start = this.index(key1, key2);
+		for (int i = 0; i < this.probeLength; i++) {
+			final Entry<V> entry = this.table.get((start + i) & this.mask);
+			if (entry == null) break;
+			if ((entry.key1 == key1) && (entry.key2 == key2)) {
+				if (!entry.referenced) entry.referenced = true;
+				return entry.value;
+			}
+		}
+		return null;
+	}
+
+	void put(final long key, final V value) {
+		this.put(key, 0, value);
+	}
+
+	/**
+	 * Cache a value
+	 *
+	 * Slots are never emptied once used, so a lookup can stop at the first
+	 * empty slot of the probe window.
+	 *
+	 * @param key1
+	 *            First key
+	 * @param key2
+	 *            Second key
+	 * @param value
+	 *            Value
+	 */
+	void put(final long key1, final long key2, final V value) {
+		final Entry<V> created = new Entry<>(key1, key2, value);
+		final int start = this.index(key1, key2);
+		for (int i = 0; i < this.probeLength; i++) {
+			final int slot = (start + i) & this.mask;
+			Entry<V> entry = this.table.get(slot);
+			if ((entry == null) && this.table.compareAndSet(slot, null, created)) return;
+			if (entry == null) entry = this.table.get(slot);
+			if ((entry.key1 == key1) && (entry.key2 == key2)) {
+				this.table.compareAndSet(slot, entry, created);
+				return;
+			}
+		}
+		final int hand = this.clockHand.getAndIncrement();
+		for (int i = 0; i < (2 * this.probeLength); i++) {
+			final int slot = (start + ((hand + i) & (this.probeLength - 1))) & this.mask;
+			final Entry<V> entry = this.table.get(slot);
+			if (entry.referenced) entry.referenced = false;
+			else {
+				this.table.compareAndSet(slot, entry, created);
+				return;
+			}
+		}
+	}
+
+}
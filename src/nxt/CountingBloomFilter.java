@@ -0,0 +1,143 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+/**
+ * Counting Bloom filter over byte arrays.
+ *
+ * Each slot is a 4-bit counter, so values can be removed again as long as
+ * they have been added before. A counter that reaches its maximum sticks
+ * and is never decremented, which can only increase the false positive rate.
+ * A negative answer of mightContain is always definite.
+ */
+final class CountingBloomFilter {
+
+	private static final int COUNTERS_PER_WORD = 16;
+
+	private static final long COUNTER_MAX = 15;
+
+	/**
+	 * Return the number of values a filter can hold before exceeding the
+	 * requested false positive rate
+	 *
+	 * @param bytes
+	 *            Filter memory in bytes
+	 * @param falsePositiveRate
+	 *            False positive rate
+	 * @return Number of values
+	 */
+	static int getCapacity(final int bytes, final double falsePositiveRate) {
+		final long counters = (long) CountingBloomFilter.getWords(bytes) * CountingBloomFilter.COUNTERS_PER_WORD;
+		return (int) ((counters * Math.log(2) * Math.log(2)) / -Math.log(falsePositiveRate));
+	}
+
+	private static int getWords(final int bytes) {
+		return Integer.highestOneBit(Math.max(bytes / 8, 1));
+	}
+
+	private static long hash(final byte[] value) {
+		long h = 0xcbf29ce484222325L;
+		if (value != null) for (final byte b : value) {
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private final long[] words;
+
+	private final int mask;
+
+	private final int hashCount;
+
+	private int entries;
+
+	/**
+	 * Create an empty filter
+	 *
+	 * @param bytes
+	 *            Filter memory in bytes, rounded down to a power of two
+	 * @param falsePositiveRate
+	 *            False positive rate at capacity, determines the number of
+	 *            hash functions
+	 */
+	CountingBloomFilter(final int bytes, final double falsePositiveRate) {
+		this.words = new long[CountingBloomFilter.getWords(bytes)];
+		this.mask = (this.words.length * CountingBloomFilter.COUNTERS_PER_WORD) - 1;
+		this.hashCount = Math.max((int) Math.round(-Math.log(falsePositiveRate) / Math.log(2)), 1);
+	}
+
+	synchronized void add(final byte[] value) {
+		final long h = CountingBloomFilter.hash(value);
+		final long h1 = CountingBloomFilter.mix(h);
+		final long h2 = CountingBloomFilter.mix(h ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < this.hashCount; i++) {
+			final int index = (int) (h1 + (i * h2)) & this.mask;
+			final int word = index / CountingBloomFilter.COUNTERS_PER_WORD;
+			final int shift = (index % CountingBloomFilter.COUNTERS_PER_WORD) * 4;
+			if (((this.words[word] >>> shift) & CountingBloomFilter.COUNTER_MAX) < CountingBloomFilter.COUNTER_MAX)
+				this.words[word] += 1L << shift;
+		}
+		this.entries++;
+	}
+
+	synchronized void remove(final byte[] value) {
+		final long h = CountingBloomFilter.hash(value);
+		final long h1 = CountingBloomFilter.mix(h);
+		final long h2 = CountingBloomFilter.mix(h ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < this.hashCount; i++) {
+			final int index = (int) (h1 + (i * h2)) & this.mask;
+			final int word = index / CountingBloomFilter.COUNTERS_PER_WORD;
+			final int shift = (index % CountingBloomFilter.COUNTERS_PER_WORD) * 4;
+			final long counter = (this.words[word] >>> shift) & CountingBloomFilter.COUNTER_MAX;
+			if ((counter > 0) && (counter < CountingBloomFilter.COUNTER_MAX)) this.words[word] -= 1L << shift;
+		}
+		if (this.entries > 0) this.entries--;
+	}
+
+	synchronized boolean mightContain(final byte[] value) {
+		final long h = CountingBloomFilter.hash(value);
+		final long h1 = CountingBloomFilter.mix(h);
+		final long h2 = CountingBloomFilter.mix(h ^ 0x9e3779b97f4a7c15L) | 1;
+		for (int i = 0; i < this.hashCount; i++) {
+			final int index = (int) (h1 + (i * h2)) & this.mask;
+			final int word = index / CountingBloomFilter.COUNTERS_PER_WORD;
+			final int shift = (index % CountingBloomFilter.COUNTERS_PER_WORD) * 4;
+			if (((this.words[word] >>> shift) & CountingBloomFilter.COUNTER_MAX) == 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return the number of values added and not removed again
+	 *
+	 * @return Number of values
+	 */
+	synchronized int getEntries() {
+		return this.entries;
+	}
+
+}
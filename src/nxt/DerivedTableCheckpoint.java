@@ -0,0 +1,276 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nxt.crypto.Crypto;
+import nxt.db.DerivedDbTable;
+import nxt.db.TransactionalDb;
+import nxt.util.Logger;
+
+/**
+ * Checkpoint of the derived tables.
+ *
+ * A checkpoint is a copy of every derived table taken at a block height,
+ * stored in a checkpoint_ table next to the original one. The derived_checkpoint
+ * table records the height and id of the block, the database version and the
+ * number of rows and digest of each copied table. A checkpoint is only
+ * restored if the block at its height is still part of the blockchain and
+ * none of the copies has changed since, otherwise the rescan falls back to
+ * replaying all blocks. Persistent tables are never rolled back and are not
+ * part of a checkpoint, the unconfirmed transactions are truncated just like
+ * a full scan does.
+ *
+ * Checkpoints are disabled by default. The copies double the disk space used
+ * by the derived tables, and the blockchain stays locked while a checkpoint
+ * is created, so no blocks are pushed or forged during the copy.
+ */
+final class DerivedTableCheckpoint {
+
+	/** Number of blocks between two checkpoints, 0 disables checkpoints */
+	static final int INTERVAL = Math.max(Nxt.getIntProperty("nxt.derivedCheckpointInterval", 0), 0);
+
+	private static final String PREFIX = "checkpoint_";
+
+	/** Unconfirmed transactions are not restored, they are processed again */
+	private static final String UNCONFIRMED_TABLE = "unconfirmed_transaction";
+
+	/**
+	 * Number of rows and digest of a table
+	 *
+	 * The SHA-256 hashes of the rows are added up in four 64-bit lanes, so the
+	 * digest does not depend on the order the rows are read in.
+	 */
+	private static final class TableDigest {
+
+		private final long rowCount;
+		private final byte[] digest;
+
+		private TableDigest(final long rowCount, final byte[] digest) {
+			this.rowCount = rowCount;
+			this.digest = digest;
+		}
+	}
+
+	/**
+	 * Copy the derived tables to a new checkpoint
+	 *
+	 * The caller must hold the blockchain lock so that no block is pushed or
+	 * popped while the tables are copied. The copy is not done within a
+	 * database transaction, the previous checkpoint is invalidated before the
+	 * first table is copied and the new one becomes valid once the last table
+	 * has been copied.
+	 *
+	 * @param tables
+	 *            Derived tables
+	 * @param block
+	 *            Last block
+	 */
+	static void create(final List<DerivedDbTable> tables, final Block block) {
+		if (Db.db.isInTransaction()) throw new IllegalStateException("Cannot create a checkpoint in a transaction");
+		final long startTime = System.currentTimeMillis();
+		try (Connection con = Db.db.getConnection();
+				Statement stmt = con.createStatement();
+				PreparedStatement pstmtInsert = con.prepareStatement("INSERT INTO derived_checkpoint "
+						+ "(table_name, height, block_id, db_version, row_count, digest) VALUES (?, ?, ?, ?, ?, ?)")) {
+			stmt.executeUpdate("DELETE FROM derived_checkpoint");
+			final int dbVersion = DerivedTableCheckpoint.getDbVersion(stmt);
+			long totalRows = 0;
+			for (final DerivedDbTable table : tables) {
+				if (!DerivedTableCheckpoint.isCopied(table)) continue;
+				final String checkpointTable = DerivedTableCheckpoint.PREFIX + table.toString();
+				stmt.executeUpdate("DROP TABLE IF EXISTS " + checkpointTable);
+				stmt.executeUpdate("CREATE TABLE " + checkpointTable + " AS SELECT * FROM " + table.toString());
+				final TableDigest tableDigest = DerivedTableCheckpoint.getDigest(stmt, checkpointTable);
+				pstmtInsert.setString(1, table.toString());
+				pstmtInsert.setInt(2, block.getHeight());
+				pstmtInsert.setLong(3, block.getId());
+				pstmtInsert.setInt(4, dbVersion);
+				pstmtInsert.setLong(5, tableDigest.rowCount);
+				pstmtInsert.setBytes(6, tableDigest.digest);
+				pstmtInsert.addBatch();
+				totalRows += tableDigest.rowCount;
+			}
+			pstmtInsert.executeBatch();
+			Logger.logMessage("Created derived table checkpoint at height " + block.getHeight() + ", " + totalRows
+					+ " rows copied in " + (System.currentTimeMillis() - startTime) + " ms");
+		} catch (final SQLException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Return the height of the valid checkpoint
+	 *
+	 * @param tables
+	 *            Derived tables
+	 * @param maxHeight
+	 *            Maximum checkpoint height
+	 * @param verify
+	 *            Compare the digests of the copies with the recorded ones,
+	 *            this reads all copied rows
+	 * @return Checkpoint height or -1 if there is no valid checkpoint at or
+	 *         below the maximum height
+	 */
+	static int getHeight(final List<DerivedDbTable> tables, final int maxHeight, final boolean verify) {
+		if (DerivedTableCheckpoint.INTERVAL == 0) return -1;
+		try (Connection con = Db.db.getConnection(); Statement stmt = con.createStatement()) {
+			final Map<String, TableDigest> digests = new HashMap<>();
+			int height = -1;
+			long blockId = 0;
+			int dbVersion = -1;
+			try (ResultSet rs = stmt.executeQuery("SELECT * FROM derived_checkpoint")) {
+				while (rs.next()) {
+					if ((height >= 0) && ((rs.getInt("height") != height) || (rs.getLong("block_id") != blockId)
+							|| (rs.getInt("db_version") != dbVersion))) {
+						Logger.logWarningMessage("Derived table checkpoint is inconsistent, ignoring it");
+						return -1;
+					}
+					height = rs.getInt("height");
+					blockId = rs.getLong("block_id");
+					dbVersion = rs.getInt("db_version");
+					digests.put(rs.getString("table_name").toLowerCase(),
+							new TableDigest(rs.getLong("row_count"), rs.getBytes("digest")));
+				}
+			}
+			if ((height < 0) || (height > maxHeight)) return -1;
+			if (dbVersion != DerivedTableCheckpoint.getDbVersion(stmt)) {
+				Logger.logMessage("Derived table checkpoint at height " + height
+						+ " was created by a different database version, ignoring it");
+				return -1;
+			}
+			if ((height > Nxt.getBlockchain().getHeight())
+					|| (BlockDb.findBlockIdAtHeight(height) != blockId)) {
+				Logger.logMessage("Derived table checkpoint at height " + height
+						+ " is not part of the current blockchain, ignoring it");
+				return -1;
+			}
+			for (final DerivedDbTable table : tables) {
+				if (!DerivedTableCheckpoint.isCopied(table)) continue;
+				final TableDigest recorded = digests.get(table.toString().toLowerCase());
+				if (recorded == null) {
+					Logger.logWarningMessage("Derived table checkpoint at height " + height + " is incomplete for "
+							+ table.toString() + ", ignoring it");
+					return -1;
+				}
+				if (!verify) continue;
+				final TableDigest actual = DerivedTableCheckpoint.getDigest(stmt,
+						DerivedTableCheckpoint.PREFIX + table.toString());
+				if ((actual.rowCount != recorded.rowCount) || !Arrays.equals(actual.digest, recorded.digest)) {
+					Logger.logWarningMessage("Derived table checkpoint at height " + height + " has been modified for "
+							+ table.toString() + ", ignoring it");
+					return -1;
+				}
+			}
+			return height;
+		} catch (final SQLException e) {
+			Logger.logWarningMessage("Unable to read derived table checkpoint: " + e.toString());
+			return -1;
+		}
+	}
+
+	/**
+	 * Replace the content of the derived tables with the checkpoint
+	 *
+	 * The in-memory state of the restored tables is rebuilt once the database
+	 * transaction has been committed.
+	 *
+	 * @param tables
+	 *            Derived tables
+	 * @param height
+	 *            Checkpoint height
+	 */
+	static void restore(final List<DerivedDbTable> tables, final int height) {
+		final List<DerivedDbTable> restored = new ArrayList<>();
+		for (final DerivedDbTable table : tables) {
+			if (table.isPersistent()) continue;
+			if (!DerivedTableCheckpoint.isCopied(table)) table.truncate();
+			else {
+				table.restore(DerivedTableCheckpoint.PREFIX + table.toString(), height);
+				table.rollback(height);
+				restored.add(table);
+			}
+		}
+		Db.db.registerCallback(new TransactionalDb.TransactionCallback() {
+
+			@Override
+			public void commit() {
+				restored.forEach(DerivedDbTable::afterRestore);
+			}
+
+			@Override
+			public void rollback() {
+			}
+
+		});
+	}
+
+	private static boolean isCopied(final DerivedDbTable table) {
+		return !table.isPersistent() && !DerivedTableCheckpoint.UNCONFIRMED_TABLE.equals(table.toString());
+	}
+
+	private static int getDbVersion(final Statement stmt) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery("SELECT next_update FROM version")) {
+			rs.next();
+			return rs.getInt("next_update");
+		}
+	}
+
+	private static TableDigest getDigest(final Statement stmt, final String table) throws SQLException {
+		final MessageDigest digest = Crypto.sha256();
+		final long[] lanes = new long[4];
+		long rowCount = 0;
+		try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table)) {
+			final int columnCount = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				for (int i = 1; i <= columnCount; i++) {
+					final String value = rs.getString(i);
+					if (value == null) digest.update(new byte[] { -1, -1, -1, -1 });
+					else {
+						final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+						digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+						digest.update(bytes);
+					}
+				}
+				final ByteBuffer rowDigest = ByteBuffer.wrap(digest.digest());
+				for (int i = 0; i < lanes.length; i++) lanes[i] += rowDigest.getLong();
+				rowCount++;
+			}
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(32);
+		for (final long lane : lanes) buffer.putLong(lane);
+		return new TableDigest(rowCount, buffer.array());
+	}
+
+	private DerivedTableCheckpoint() {
+	}
+
+}
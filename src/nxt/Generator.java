@@ -257,10 +257,11 @@ public final class Generator implements Comparable<Generator> {
 		final long absolute = (long) inverse;
 		final BigInteger factor = BigInteger.valueOf(absolute);
 
-		Logger.logDebugMessage("Generator: Hit for [Bal: " + effectiveBalance.toString() + "]: in " + ((block.getTimestamp() + (hit.divide(BigInteger.valueOf(block.getBaseTarget())
-				.multiply(effectiveBalance.multiply(factor))).longValue())) - Nxt.getEpochTime()) + "seconds");
-		return block.getTimestamp() + hit.divide(BigInteger.valueOf(block.getBaseTarget())
+		final long hitTime = block.getTimestamp() + hit.divide(BigInteger.valueOf(block.getBaseTarget())
 				.multiply(effectiveBalance.multiply(factor))).longValue();
+		Logger.logDebugMessage(() -> "Generator: Hit for [Bal: " + effectiveBalance.toString() + "]: in "
+				+ (hitTime - Nxt.getEpochTime()) + "seconds");
+		return hitTime;
 	}
 
 	/**
@@ -384,7 +385,7 @@ public final class Generator implements Comparable<Generator> {
 			final int timestamp) {
 
 		final float scaledHitTIme = Redeem.getRedeemedPercentage();
-		Logger.logDebugMessage("[!!] Up to now, " + String.valueOf(scaledHitTIme) + " of all XEL have been redeemed.");
+		Logger.logDebugMessage(() -> "[!!] Up to now, " + String.valueOf(scaledHitTIme) + " of all XEL have been redeemed.");
 		final float inverse = (float) (1.0 / scaledHitTIme);
 		final long absolute = (long) inverse;
 		final BigInteger factor = BigInteger.valueOf(absolute);
@@ -0,0 +1,287 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import org.json.simple.JSONObject;
+
+import nxt.util.Convert;
+
+/**
+ * Invertible Bloom lookup table over transaction identifiers.
+ *
+ * Two peers build a table over their unconfirmed transaction identifiers
+ * using the same salt and size. Subtracting one table from the other cancels
+ * every identifier known to both of them, and the identifiers known to only
+ * one side can be listed again as long as the number of differences is
+ * small compared to the number of cells. The size of the exchanged table
+ * therefore depends on the difference between the pools and not on their
+ * size.
+ *
+ * The table is split into one partition per hash function so an identifier
+ * always occupies HASH_COUNT distinct cells. The salt keeps the cell
+ * positions unpredictable for a peer trying to provoke decoding failures.
+ */
+public final class InvertibleBloomLookupTable {
+
+	/** Number of cells each identifier is added to */
+	private static final int HASH_COUNT = 3;
+
+	/** Encoded cell size: count, identifier sum and check sum */
+	private static final int CELL_SIZE = 4 + 8 + 4;
+
+	/** Maximum number of cells in a table received from a peer */
+	public static final int MAX_CELLS = InvertibleBloomLookupTable.HASH_COUNT * 16384;
+
+	/**
+	 * Return the length of a table in the format returned by getJSONObject
+	 *
+	 * @param cellCount
+	 *            Number of cells
+	 * @return Length of the encoded cells in characters
+	 */
+	public static int getEncodedLength(final int cellCount) {
+		return cellCount * InvertibleBloomLookupTable.CELL_SIZE * 2;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Parse a table received from a peer
+	 *
+	 * @param json
+	 *            Table as returned by getJSONObject
+	 * @return Table
+	 * @throws IllegalArgumentException
+	 *             The table is not valid
+	 */
+	public static InvertibleBloomLookupTable parse(final JSONObject json) {
+		final Object salt = json.get("salt");
+		final Object cells = json.get("cells");
+		if (!(salt instanceof Number) || !(cells instanceof String))
+			throw new IllegalArgumentException("Invalid transaction table");
+		final byte[] bytes = Convert.parseHexString((String) cells);
+		final int cellCount = bytes.length / InvertibleBloomLookupTable.CELL_SIZE;
+		if ((cellCount == 0) || (cellCount > InvertibleBloomLookupTable.MAX_CELLS)
+				|| ((cellCount % InvertibleBloomLookupTable.HASH_COUNT) != 0)
+				|| ((bytes.length % InvertibleBloomLookupTable.CELL_SIZE) != 0))
+			throw new IllegalArgumentException("Invalid transaction table size " + bytes.length);
+		final InvertibleBloomLookupTable table = new InvertibleBloomLookupTable(((Number) salt).longValue(), cellCount);
+		try {
+			final ByteBuffer buf = ByteBuffer.wrap(bytes);
+			for (int i = 0; i < cellCount; i++) {
+				table.counts[i] = buf.getInt();
+				table.idSums[i] = buf.getLong();
+				table.checkSums[i] = buf.getInt();
+			}
+		} catch (final BufferUnderflowException e) {
+			throw new IllegalArgumentException("Invalid transaction table", e);
+		}
+		return table;
+	}
+
+	private final long salt;
+	private final int partitionSize;
+	private final int[] counts;
+	private final long[] idSums;
+	private final int[] checkSums;
+
+	/**
+	 * Create an empty table
+	 *
+	 * @param salt
+	 *            Salt shared by both peers
+	 * @param cellCount
+	 *            Number of cells, rounded up to a multiple of the number of
+	 *            hash functions
+	 */
+	public InvertibleBloomLookupTable(final long salt, final int cellCount) {
+		this.salt = salt;
+		this.partitionSize = Math.max((cellCount + InvertibleBloomLookupTable.HASH_COUNT - 1)
+				/ InvertibleBloomLookupTable.HASH_COUNT, 1);
+		final int size = this.partitionSize * InvertibleBloomLookupTable.HASH_COUNT;
+		this.counts = new int[size];
+		this.idSums = new long[size];
+		this.checkSums = new int[size];
+	}
+
+	private InvertibleBloomLookupTable(final InvertibleBloomLookupTable table) {
+		this.salt = table.salt;
+		this.partitionSize = table.partitionSize;
+		this.counts = table.counts.clone();
+		this.idSums = table.idSums.clone();
+		this.checkSums = table.checkSums.clone();
+	}
+
+	/**
+	 * Add a transaction identifier
+	 *
+	 * @param id
+	 *            Transaction identifier
+	 */
+	public void add(final long id) {
+		this.update(id, 1);
+	}
+
+	/**
+	 * Remove a transaction identifier that has been added before
+	 *
+	 * @param id
+	 *            Transaction identifier
+	 */
+	public void remove(final long id) {
+		this.update(id, -1);
+	}
+
+	/**
+	 * Return a copy of the table
+	 *
+	 * @return Table with the same salt and content
+	 */
+	public InvertibleBloomLookupTable copy() {
+		return new InvertibleBloomLookupTable(this);
+	}
+
+	/**
+	 * Return the number of cells
+	 *
+	 * @return Number of cells
+	 */
+	public int getCellCount() {
+		return this.counts.length;
+	}
+
+	/**
+	 * Return the salt
+	 *
+	 * @return Salt
+	 */
+	public long getSalt() {
+		return this.salt;
+	}
+
+	/**
+	 * Return the table in the format accepted by parse
+	 *
+	 * @return JSON object
+	 */
+	public JSONObject getJSONObject() {
+		final ByteBuffer buf = ByteBuffer.allocate(this.counts.length * InvertibleBloomLookupTable.CELL_SIZE);
+		for (int i = 0; i < this.counts.length; i++)
+			buf.putInt(this.counts[i]).putLong(this.idSums[i]).putInt(this.checkSums[i]);
+		final JSONObject json = new JSONObject();
+		json.put("salt", this.salt);
+		json.put("cells", Convert.toHexString(buf.array()));
+		return json;
+	}
+
+	/**
+	 * Subtract a table with the same salt and size and list the differences
+	 *
+	 * The table is consumed by the operation.
+	 *
+	 * @param other
+	 *            Table of the other peer
+	 * @param onlyHere
+	 *            Receives the identifiers only added to this table
+	 * @param onlyThere
+	 *            Receives the identifiers only added to the other table
+	 * @return TRUE if all differences have been listed, FALSE if there are too
+	 *         many differences for the table size
+	 */
+	public boolean subtractAndDecode(final InvertibleBloomLookupTable other, final Set<Long> onlyHere,
+			final Set<Long> onlyThere) {
+		if ((other.salt != this.salt) || (other.counts.length != this.counts.length))
+			throw new IllegalArgumentException("Transaction tables do not match");
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] -= other.counts[i];
+			this.idSums[i] ^= other.idSums[i];
+			this.checkSums[i] ^= other.checkSums[i];
+		}
+		//
+		// Peel pure cells until no more are found, each listed identifier is
+		// removed again which may turn other cells pure. A table crafted by
+		// the other peer can make a removed identifier reappear, so decoding
+		// fails if an identifier does not belong to its pure cell or is
+		// listed twice, and every cell is peeled at most once.
+		//
+		int peels = 0;
+		boolean found = true;
+		while (found) {
+			found = false;
+			for (int i = 0; i < this.counts.length; i++) {
+				final int count = this.counts[i];
+				if (((count != 1) && (count != -1)) || (this.checkSums[i] != this.checkSum(this.idSums[i]))) continue;
+				final long id = this.idSums[i];
+				if (!this.isCell(id, i) || onlyHere.contains(id) || onlyThere.contains(id)
+						|| (++peels > this.counts.length))
+					return false;
+				if (count == 1) onlyHere.add(id);
+				else onlyThere.add(id);
+				this.update(id, -count);
+				found = true;
+			}
+		}
+		for (int i = 0; i < this.counts.length; i++)
+			if ((this.counts[i] != 0) || (this.idSums[i] != 0) || (this.checkSums[i] != 0)) return false;
+		return true;
+	}
+
+	private int checkSum(final long id) {
+		return (int) InvertibleBloomLookupTable.mix(id ^ this.salt);
+	}
+
+	/**
+	 * Return the cell of an identifier in a partition
+	 *
+	 * @param hash
+	 *            Salted identifier hash
+	 * @param partition
+	 *            Partition index
+	 * @return Cell index
+	 */
+	private int getCell(final long hash, final int partition) {
+		final long partitionHash = InvertibleBloomLookupTable.mix(hash + partition);
+		return (partition * this.partitionSize) + (int) ((partitionHash >>> 1) % this.partitionSize);
+	}
+
+	private boolean isCell(final long id, final int cell) {
+		return this.getCell(InvertibleBloomLookupTable.mix(id + this.salt), cell / this.partitionSize) == cell;
+	}
+
+	private void update(final long id, final int delta) {
+		final long hash = InvertibleBloomLookupTable.mix(id + this.salt);
+		final int check = this.checkSum(id);
+		for (int i = 0; i < InvertibleBloomLookupTable.HASH_COUNT; i++) {
+			final int cell = this.getCell(hash, i);
+			this.counts[cell] += delta;
+			this.idSums[cell] ^= id;
+			this.checkSums[cell] ^= check;
+		}
+	}
+
+}
@@ -79,8 +79,10 @@ public final class Nxt {
 				AccountLedger.init();
 				PrunableSourceCode.init();
 				Redeem.init();
+				PowWindow.init();
 				Work.init();
 				PowAndBounty.init();
+				WorkSnapshot.init();
 				// LEAVE THIS OUT FOR NOW PowAndBountyAnnouncements.init();
 				Peers.init();
 				APIProxy.init();
@@ -540,6 +542,7 @@ public final class Nxt {
 		Users.shutdown();
 		ThreadPool.shutdown();
 		Peers.shutdown();
+		TransactionProcessorImpl.getInstance().shutdown();
 		Db.shutdown();
 		Logger.logShutdownMessage("Elastic server " + Nxt.VERSION + " stopped.");
 		Logger.shutdown();
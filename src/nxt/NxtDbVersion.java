@@ -1317,6 +1317,12 @@ class NxtDbVersion extends DbVersion {
 		case 489:
 			this.apply("CREATE INDEX IF NOT EXISTS asset_dividend_height_idx ON asset_dividend (height)");
 		case 490:
+			this.apply("CREATE TABLE IF NOT EXISTS derived_checkpoint (table_name VARCHAR NOT NULL, "
+					+ "height INT NOT NULL, block_id BIGINT NOT NULL, db_version INT NOT NULL, row_count BIGINT NOT NULL, "
+					+ "digest BINARY(32) NOT NULL)");
+		case 491:
+			this.apply("DROP TABLE IF EXISTS unconfirmed_transaction");
+		case 492:
 			return;
 		default:
 			throw new RuntimeException("Blockchain database inconsistent with code, at update " + nextUpdate
@@ -23,9 +23,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.json.simple.JSONObject;
 
@@ -33,10 +40,12 @@ import nxt.db.DbClause;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.DbUtils;
+import nxt.db.TransactionalDb;
 import nxt.db.VersionedEntityDbTable;
 import nxt.util.Convert;
 import nxt.util.Listener;
 import nxt.util.Listeners;
+import nxt.util.Logger;
 
 public final class PowAndBounty {
 
@@ -71,8 +80,101 @@ public final class PowAndBounty {
 			participant.save(con);
 		}
 
+		@Override
+		protected boolean supportsBatch() {
+			return true;
+		}
+
+		@Override
+		protected String getSaveStatement() {
+			return PowAndBounty.SAVE_STATEMENT;
+		}
+
+		@Override
+		protected void setSaveParameters(final PreparedStatement pstmt, final PowAndBounty participant)
+				throws SQLException {
+			participant.setSaveParameters(pstmt);
+		}
+
+		@Override
+		public void rollback(final int height) {
+			PowAndBounty.removeFromHashFiltersOnCommit(height);
+			super.rollback(height);
+		}
+
+		@Override
+		public void truncate() {
+			PowAndBounty.clearHashFiltersOnCommit();
+			super.truncate();
+		}
+
+		@Override
+		public void afterRestore() {
+			PowAndBounty.rebuildHashFilters();
+		}
+
 	};
 
+	private static final String SAVE_STATEMENT = "MERGE INTO pow_and_bounty (id, referenced_storage_height, too_late, "
+			+ "work_id, hash, account_id, multiplicator, is_pow, storage, height, latest) KEY (id, height) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)";
+
+	/** Memory of the hash filter of a single work in bytes */
+	private static final int HASH_FILTER_MEMORY = Math.max(Nxt.getIntProperty("nxt.powHashFilterMemory", 32768), 8);
+
+	/** False positive rate of a hash filter at its capacity */
+	private static final double HASH_FILTER_FALSE_POSITIVE_RATE;
+
+	static {
+		double falsePositiveRate = 0.01;
+		final String value = Nxt.getStringProperty("nxt.powHashFilterFalsePositiveRate", "0.01");
+		try {
+			falsePositiveRate = Double.parseDouble(value);
+		} catch (final NumberFormatException e) {
+			Logger.logMessage("nxt.powHashFilterFalsePositiveRate is not numeric, using default value 0.01");
+		}
+		HASH_FILTER_FALSE_POSITIVE_RATE = Math.min(Math.max(falsePositiveRate, 1.0E-6), 0.5);
+	}
+
+	/**
+	 * Filters of the submission hashes stored per work. A filter is created
+	 * when a work is created or loaded, submissions of works without a filter
+	 * and of retired (closed) works are looked up in the database.
+	 */
+	private static volatile Map<Long, CountingBloomFilter> hashFilters = new ConcurrentHashMap<>();
+
+	private static volatile Set<Long> retiredWorks = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Submissions added to the hash filters by height, kept for the rollback
+	 * window to remove them again when blocks are popped off
+	 */
+	private static final NavigableMap<Integer, List<Submission>> recentSubmissions = new TreeMap<>();
+
+	/**
+	 * Submission hash of a work
+	 */
+	private static final class Submission {
+
+		private final long workId;
+		private final byte[] hash;
+
+		private Submission(final long workId, final byte[] hash) {
+			this.workId = workId;
+			this.hash = hash;
+		}
+	}
+
+	private static final AtomicLong hashFilterNegatives = new AtomicLong();
+	private static final AtomicLong hashFilterQueries = new AtomicLong();
+	private static final AtomicLong hashFilterFalsePositives = new AtomicLong();
+
+	static {
+		Work.addListener(work -> PowAndBounty.retireWork(work.getWork_id()), Work.Event.WORK_CANCELLED);
+		Work.addListener(work -> PowAndBounty.hashFilters.computeIfAbsent(work.getWork_id(),
+				PowAndBounty::newHashFilter), Work.Event.WORK_CREATED);
+	}
+
 
 	static PowAndBounty addBounty(final Transaction transaction, final Attachment.PiggybackedProofOfBounty attachment) {
 		final PowAndBounty shuffling = new PowAndBounty(transaction, attachment);
@@ -123,7 +225,7 @@ public final class PowAndBounty {
 		// "Should" return the last X bounties (from the last repetition only)
 		return PowAndBounty.powAndBountyTable.getManyBy(new DbClause.LongClause("work_id", wid)
 						.and(new DbClause.BooleanClause("is_pow", false)).and(new DbClause.BooleanClause("latest", true)), 0,
-				Work.getWorkByWorkId(wid).getBounty_limit(), " ORDER BY height DESC");
+				Work.getReadOnlyWorkByWorkId(wid).getBounty_limit(), " ORDER BY height DESC");
 	}
 
 
@@ -153,12 +255,190 @@ public final class PowAndBounty {
 				.and(new DbClause.BooleanClause("latest", true)), 0, -1, "");
 	}
 
+	/**
+	 * Check if a submission hash has already been stored for a work
+	 *
+	 * The database is only queried if the hash filter of the work reports a
+	 * possible match, the work has no filter or it has been retired.
+	 *
+	 * @param workId
+	 *            Work identifier
+	 * @param hash
+	 *            Submission hash
+	 * @return TRUE if the hash has been submitted before
+	 */
 	static boolean hasHash(final long workId, final byte[] hash) {
-		return PowAndBounty.powAndBountyTable
+		final CountingBloomFilter filter = PowAndBounty.hashFilters.get(workId);
+		final boolean filtered = (filter != null) && !PowAndBounty.retiredWorks.contains(workId);
+		if (filtered && !filter.mightContain(hash)) {
+			PowAndBounty.hashFilterNegatives.incrementAndGet();
+			return false;
+		}
+		PowAndBounty.hashFilterQueries.incrementAndGet();
+		final boolean found = PowAndBounty.powAndBountyTable
 				.getCount(new DbClause.BytesClause("hash", hash).and(new DbClause.LongClause("work_id", workId))) > 0;
+		if (filtered && !found) PowAndBounty.hashFilterFalsePositives.incrementAndGet();
+		return found;
+	}
+
+	private static CountingBloomFilter newHashFilter(final long workId) {
+		return new CountingBloomFilter(PowAndBounty.HASH_FILTER_MEMORY, PowAndBounty.HASH_FILTER_FALSE_POSITIVE_RATE);
+	}
+
+	/**
+	 * Add a stored submission to the hash filter of its work
+	 *
+	 * The submission is remembered with the current height for the rollback
+	 * window. A submission of a database transaction that is rolled back stays
+	 * in the filter, which can only cause a false positive.
+	 *
+	 * @param workId
+	 *            Work identifier
+	 * @param hash
+	 *            Submission hash
+	 */
+	private static void addToHashFilter(final long workId, final byte[] hash) {
+		if (PowAndBounty.retiredWorks.contains(workId)) return;
+		final CountingBloomFilter filter = PowAndBounty.hashFilters.computeIfAbsent(workId,
+				PowAndBounty::newHashFilter);
+		final int height = Nxt.getBlockchain().getHeight();
+		synchronized (PowAndBounty.recentSubmissions) {
+			filter.add(hash);
+			PowAndBounty.recentSubmissions.computeIfAbsent(height, h -> new ArrayList<>())
+					.add(new Submission(workId, hash));
+			PowAndBounty.recentSubmissions.headMap(height - Constants.MAX_ROLLBACK).clear();
+		}
+	}
+
+	/**
+	 * Stop filtering the submissions of a closed work and release its filter
+	 *
+	 * Retiring is permanent, a work reopened by a rollback falls back to the
+	 * database lookup.
+	 *
+	 * @param workId
+	 *            Work identifier
+	 */
+	private static void retireWork(final long workId) {
+		PowAndBounty.retiredWorks.add(workId);
+		PowAndBounty.hashFilters.remove(workId);
+	}
+
+	/**
+	 * Remove the submissions above a height from the hash filters once the
+	 * rollback has been committed
+	 *
+	 * Only the submissions remembered for the rollback window are removed,
+	 * submissions stored before the node was started stay in the filters,
+	 * which can only cause false positives. Removing them before the commit
+	 * could turn the filters into false negatives if the database transaction
+	 * is rolled back.
+	 *
+	 * @param height
+	 *            Rollback height
+	 */
+	private static void removeFromHashFiltersOnCommit(final int height) {
+		Db.db.registerCallback(new TransactionalDb.TransactionCallback() {
+
+			@Override
+			public void commit() {
+				synchronized (PowAndBounty.recentSubmissions) {
+					final Map<Integer, List<Submission>> removed = PowAndBounty.recentSubmissions
+							.tailMap(height, false);
+					removed.values().forEach(submissions -> submissions.forEach(submission -> {
+						final CountingBloomFilter filter = PowAndBounty.hashFilters.get(submission.workId);
+						if (filter != null) filter.remove(submission.hash);
+					}));
+					removed.clear();
+				}
+			}
+
+			@Override
+			public void rollback() {
+			}
+
+		});
+	}
+
+	/**
+	 * Drop all hash filters once the truncation of the table has been
+	 * committed, the filters are created again as the works are replayed
+	 */
+	private static void clearHashFiltersOnCommit() {
+		Db.db.registerCallback(new TransactionalDb.TransactionCallback() {
+
+			@Override
+			public void commit() {
+				synchronized (PowAndBounty.recentSubmissions) {
+					PowAndBounty.hashFilters = new ConcurrentHashMap<>();
+					PowAndBounty.retiredWorks = ConcurrentHashMap.newKeySet();
+					PowAndBounty.recentSubmissions.clear();
+				}
+			}
+
+			@Override
+			public void rollback() {
+			}
+
+		});
+	}
+
+	/**
+	 * Rebuild the hash filters of all open works from the database
+	 */
+	private static void rebuildHashFilters() {
+		final Map<Long, CountingBloomFilter> filters = new ConcurrentHashMap<>();
+		final Set<Long> retired = ConcurrentHashMap.newKeySet();
+		try (Connection con = Db.db.getConnection();
+			 PreparedStatement pstmtWorks = con
+					 .prepareStatement("SELECT work_id, closed FROM work WHERE latest = TRUE");
+			 PreparedStatement pstmtHashes = con.prepareStatement("SELECT work_id, hash FROM pow_and_bounty")) {
+			try (ResultSet rs = pstmtWorks.executeQuery()) {
+				while (rs.next()) {
+					final long workId = rs.getLong("work_id");
+					if (rs.getBoolean("closed")) retired.add(workId);
+					else filters.put(workId, PowAndBounty.newHashFilter(workId));
+				}
+			}
+			try (ResultSet rs = pstmtHashes.executeQuery()) {
+				while (rs.next()) {
+					final CountingBloomFilter filter = filters.get(rs.getLong("work_id"));
+					if (filter != null) filter.add(rs.getBytes("hash"));
+				}
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+		synchronized (PowAndBounty.recentSubmissions) {
+			PowAndBounty.hashFilters = filters;
+			PowAndBounty.retiredWorks = retired;
+			PowAndBounty.recentSubmissions.clear();
+		}
+		Logger.logDebugMessage("Loaded submission hash filters of " + filters.size() + " works");
+	}
+
+	/**
+	 * Return the hash filter statistics
+	 *
+	 * @return Number of filtered works, their capacity and the number of
+	 *         lookups answered by the filters, passed to the database and
+	 *         turned out to be false positives
+	 */
+	public static JSONObject getHashFilterStatistics() {
+		final JSONObject json = new JSONObject();
+		json.put("works", PowAndBounty.hashFilters.size());
+		json.put("retiredWorks", PowAndBounty.retiredWorks.size());
+		json.put("memoryPerWork", PowAndBounty.HASH_FILTER_MEMORY);
+		json.put("capacityPerWork", CountingBloomFilter.getCapacity(PowAndBounty.HASH_FILTER_MEMORY,
+				PowAndBounty.HASH_FILTER_FALSE_POSITIVE_RATE));
+		json.put("negatives", PowAndBounty.hashFilterNegatives.get());
+		json.put("queries", PowAndBounty.hashFilterQueries.get());
+		json.put("falsePositives", PowAndBounty.hashFilterFalsePositives.get());
+		return json;
 	}
 
 	static void init() {
+		PowAndBounty.rebuildHashFilters();
 	}
 
 	public static boolean removeListener(final Listener<PowAndBounty> listener, final Event eventType) {
@@ -249,6 +529,7 @@ public final class PowAndBounty {
 			this.too_late = true;
 		}
 		PowAndBounty.powAndBountyTable.insert(this);
+		PowAndBounty.addToHashFilter(this.work_id, this.hash);
 
 		if(kill_fund)
 			w.kill_bounty_fund(bl);
@@ -278,6 +559,7 @@ public final class PowAndBounty {
 			this.too_late = true;
 		}
 		PowAndBounty.powAndBountyTable.insert(this);
+		PowAndBounty.addToHashFilter(this.work_id, this.hash);
 		PowAndBounty.listeners.notify(this, Event.BOUNTY_SUBMITTED);
 	}
 
@@ -290,24 +572,26 @@ public final class PowAndBounty {
 	}
 
 	private void save(final Connection con) throws SQLException {
-		try (PreparedStatement pstmt = con.prepareStatement(
-				"MERGE INTO pow_and_bounty (id, referenced_storage_height, too_late, work_id, hash, account_id, multiplicator, is_pow, storage, "
-						+ " height, latest) " + "KEY (id, height) " + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)")) {
-			int i = 0;
-			pstmt.setLong(++i, this.id);
-			pstmt.setLong(++i, this.referenced_storage_height);
-			pstmt.setBoolean(++i, this.too_late);
-			pstmt.setLong(++i, this.work_id);
-			DbUtils.setBytes(pstmt, ++i, this.hash);
-			pstmt.setLong(++i, this.accountId);
-			pstmt.setBytes(++i, this.multiplicator);
-			pstmt.setBoolean(++i, this.is_pow);
-			pstmt.setBytes(++i, Convert.int2byte(this.storage));
-			pstmt.setInt(++i, Nxt.getBlockchain().getHeight());
+		try (PreparedStatement pstmt = con.prepareStatement(PowAndBounty.SAVE_STATEMENT)) {
+			this.setSaveParameters(pstmt);
 			pstmt.executeUpdate();
 		}
 	}
 
+	private void setSaveParameters(final PreparedStatement pstmt) throws SQLException {
+		int i = 0;
+		pstmt.setLong(++i, this.id);
+		pstmt.setLong(++i, this.referenced_storage_height);
+		pstmt.setBoolean(++i, this.too_late);
+		pstmt.setLong(++i, this.work_id);
+		DbUtils.setBytes(pstmt, ++i, this.hash);
+		pstmt.setLong(++i, this.accountId);
+		pstmt.setBytes(++i, this.multiplicator);
+		pstmt.setBoolean(++i, this.is_pow);
+		pstmt.setBytes(++i, Convert.int2byte(this.storage));
+		pstmt.setInt(++i, Nxt.getBlockchain().getHeight());
+	}
+
 	private JSONObject toJsonObject() {
 		final JSONObject response = new JSONObject();
 		response.put("id", Convert.toUnsignedLong(this.id));
@@ -329,7 +613,7 @@ public final class PowAndBounty {
 		else if(Account.getPublicKey(participantAccount.getId()) == null)
 			response.put("inputs", "sender account has no public key yet");
 		else{
-			int[] ints = dummy.personalizedIntStream(Account.getPublicKey(participantAccount.getId()), Work.getWorkByWorkId(this.work_id).getBlock_id());
+			int[] ints = dummy.personalizedIntStream(Account.getPublicKey(participantAccount.getId()), Work.getReadOnlyWorkByWorkId(this.work_id).getBlock_id());
 			StringBuilder builder = new StringBuilder();
 			for (int i : ints) {
 				builder.append(i);
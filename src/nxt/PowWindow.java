@@ -0,0 +1,279 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding window of per-block POW counters used by the work retargeting.
+ *
+ * The window is a ring buffer over the last WINDOW_SIZE applied blocks. Each
+ * block is summarized once when it is applied (timestamps, total number of
+ * POW transactions and the number of POW transactions per work) and removed
+ * again when it is popped off. Every work with POW transactions in the window
+ * has its own ring buffer of per-block counts indexed like the block ring
+ * and a running sum, so reading the count of a work for a block of the window
+ * is an array access and pushing or popping a block only touches the works
+ * it contains. A work whose running sum drops to zero is forgotten.
+ *
+ * Blocks outside the window, for example right after a restart or after
+ * popping off more blocks than the window holds, are summarized from the
+ * block itself. Entries are linked by block id, so a stale window never
+ * returns blocks of another fork.
+ *
+ * The window is changed and read holding the blockchain write lock.
+ */
+final class PowWindow {
+
+	/**
+	 * Summary of the POW transactions contained in a single block
+	 */
+	static final class Entry {
+
+		private final long blockId;
+		private final long previousBlockId;
+		private final int timestamp;
+		private final int timestampPrevious;
+		private final int totalPow;
+		private final long[] workIds;
+		private final int[] counts;
+
+		/** Position in the window or -1 if the entry is not part of the window */
+		private final long position;
+
+		private Entry(final Block block, final long position) {
+			this.blockId = block.getId();
+			this.previousBlockId = block.getPreviousBlockId();
+			this.timestamp = block.getTimestamp();
+			this.timestampPrevious = block.getTimestampPrevious();
+			this.position = position;
+			int total = 0;
+			final Map<Long, Integer> perWork = new HashMap<>();
+			for (final Transaction transaction : block.getTransactions()) {
+				if (transaction.getAttachment().getTransactionType() != TransactionType.WorkControl.PROOF_OF_WORK)
+					continue;
+				final long workId = ((Attachment.PiggybackedProofOfWork) transaction.getAttachment()).getWorkId();
+				perWork.merge(workId, 1, Integer::sum);
+				total++;
+			}
+			this.totalPow = total;
+			this.workIds = new long[perWork.size()];
+			int i = 0;
+			for (final long workId : perWork.keySet()) this.workIds[i++] = workId;
+			Arrays.sort(this.workIds);
+			this.counts = new int[this.workIds.length];
+			for (i = 0; i < this.workIds.length; i++) this.counts[i] = perWork.get(this.workIds[i]);
+		}
+
+		long getBlockId() {
+			return this.blockId;
+		}
+
+		long getPreviousBlockId() {
+			return this.previousBlockId;
+		}
+
+		int getTimestamp() {
+			return this.timestamp;
+		}
+
+		int getTimestampPrevious() {
+			return this.timestampPrevious;
+		}
+
+		int getTotalPow() {
+			return this.totalPow;
+		}
+	}
+
+	/**
+	 * Per-block POW counts of a single work
+	 */
+	static final class Counter {
+
+		private final long workId;
+		private final int[] counts = new int[PowWindow.WINDOW_SIZE];
+		private final long[] positions = new long[PowWindow.WINDOW_SIZE];
+
+		/** Number of POW transactions of the work in the window */
+		private int sum;
+
+		private Counter(final long workId) {
+			this.workId = workId;
+			Arrays.fill(this.positions, -1);
+		}
+
+		/**
+		 * Return the number of POW transactions of the work in a block
+		 *
+		 * @param entry
+		 *            Block summary
+		 * @return Number of POW transactions
+		 */
+		int get(final Entry entry) {
+			if ((entry.position < 0) || (PowWindow.entries[PowWindow.slot(entry.position)] != entry)) {
+				final int index = Arrays.binarySearch(entry.workIds, this.workId);
+				return index < 0 ? 0 : entry.counts[index];
+			}
+			final int slot = PowWindow.slot(entry.position);
+			return this.positions[slot] == entry.position ? this.counts[slot] : 0;
+		}
+	}
+
+	/** Number of blocks the retargeting looks back at */
+	static final int WINDOW_SIZE = 28;
+
+	/** Summaries of the blocks in the window indexed by slot */
+	private static final Entry[] entries = new Entry[PowWindow.WINDOW_SIZE];
+
+	/** Counters of the works with POW transactions in the window */
+	private static final Map<Long, Counter> counters = new HashMap<>();
+
+	/** Position of the newest block, positions increase by one per pushed block */
+	private static long headPosition = -1;
+
+	/** Number of blocks in the window */
+	private static int size;
+
+	static {
+		Nxt.getBlockchainProcessor().addListener(PowWindow::push, BlockchainProcessor.Event.BEFORE_BLOCK_APPLY);
+		Nxt.getBlockchainProcessor().addListener(block -> {
+			synchronized (PowWindow.class) {
+				if ((PowWindow.size > 0) && (PowWindow.head().blockId == block.getId())) PowWindow.pop();
+			}
+		}, BlockchainProcessor.Event.BLOCK_POPPED);
+		Nxt.getBlockchainProcessor().addListener(block -> {
+			synchronized (PowWindow.class) {
+				while (PowWindow.size > 0) PowWindow.pop();
+			}
+		}, BlockchainProcessor.Event.RESCAN_BEGIN);
+	}
+
+	private static int slot(final long position) {
+		return (int) (position % PowWindow.WINDOW_SIZE);
+	}
+
+	private static Entry head() {
+		return PowWindow.entries[PowWindow.slot(PowWindow.headPosition)];
+	}
+
+	/**
+	 * Add an applied block to the window
+	 *
+	 * Blocks that are not predecessors of the new block, left over from a
+	 * block that failed to apply, are removed first.
+	 *
+	 * @param block
+	 *            Block about to be applied
+	 */
+	private static synchronized void push(final Block block) {
+		while ((PowWindow.size > 0) && (PowWindow.head().blockId != block.getPreviousBlockId())) PowWindow.pop();
+		if (PowWindow.size == PowWindow.WINDOW_SIZE) {
+			PowWindow.release(PowWindow.entries[PowWindow.slot(PowWindow.headPosition + 1)]);
+			PowWindow.size--;
+		}
+		final Entry entry = new Entry(block, ++PowWindow.headPosition);
+		final int slot = PowWindow.slot(entry.position);
+		PowWindow.entries[slot] = entry;
+		PowWindow.size++;
+		for (int i = 0; i < entry.workIds.length; i++) {
+			final Counter counter = PowWindow.counters.computeIfAbsent(entry.workIds[i], Counter::new);
+			counter.counts[slot] = entry.counts[i];
+			counter.positions[slot] = entry.position;
+			counter.sum += entry.counts[i];
+		}
+	}
+
+	/**
+	 * Remove the newest block from the window
+	 */
+	private static void pop() {
+		final int slot = PowWindow.slot(PowWindow.headPosition);
+		PowWindow.release(PowWindow.entries[slot]);
+		PowWindow.entries[slot] = null;
+		PowWindow.headPosition--;
+		PowWindow.size--;
+	}
+
+	/**
+	 * Remove the counts of a block leaving the window
+	 */
+	private static void release(final Entry entry) {
+		final int slot = PowWindow.slot(entry.position);
+		for (int i = 0; i < entry.workIds.length; i++) {
+			final Counter counter = PowWindow.counters.get(entry.workIds[i]);
+			counter.positions[slot] = -1;
+			counter.sum -= entry.counts[i];
+			if (counter.sum == 0) PowWindow.counters.remove(entry.workIds[i]);
+		}
+	}
+
+	/**
+	 * Return the summary of a block
+	 *
+	 * @param block
+	 *            Block
+	 * @return Summary from the window or summarized from the block
+	 */
+	static synchronized Entry get(final Block block) {
+		for (int i = 0; i < PowWindow.size; i++) {
+			final Entry entry = PowWindow.entries[PowWindow.slot(PowWindow.headPosition - i)];
+			if (entry.blockId == block.getId()) return entry;
+		}
+		return new Entry(block, -1);
+	}
+
+	/**
+	 * Return the summary of the block preceding the given one
+	 *
+	 * @param entry
+	 *            Summary of the current block
+	 * @return Summary of the previous block or null if there is none
+	 */
+	static synchronized Entry getPrevious(final Entry entry) {
+		if (entry.getPreviousBlockId() == 0) return null;
+		if ((entry.position > 0) && (entry.position > (PowWindow.headPosition - PowWindow.size + 1))
+				&& (entry.position <= PowWindow.headPosition)) {
+			final Entry previous = PowWindow.entries[PowWindow.slot(entry.position - 1)];
+			if (previous.blockId == entry.getPreviousBlockId()) return previous;
+		}
+		final Block previousBlock = BlockchainImpl.getInstance().getBlock(entry.getPreviousBlockId());
+		return previousBlock == null ? null : PowWindow.get(previousBlock);
+	}
+
+	/**
+	 * Return the POW counter of a work
+	 *
+	 * @param workId
+	 *            Work identifier
+	 * @return Counter, a new empty one if the work has no POW transactions in
+	 *         the window
+	 */
+	static synchronized Counter getCounter(final long workId) {
+		final Counter counter = PowWindow.counters.get(workId);
+		return counter != null ? counter : new Counter(workId);
+	}
+
+	static void init() {
+	}
+
+	private PowWindow() {
+	}
+
+}
@@ -20,13 +20,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
+import nxt.db.TransactionalDb;
 import nxt.db.VersionedEntityDbTable;
 
 public final class Redeem {
@@ -81,9 +80,85 @@ public final class Redeem {
 		protected void save(final Connection con, final Redeem prunableSourceCode) throws SQLException {
 			prunableSourceCode.save(con);
 		}
+
+		@Override
+		public void afterRestore() {
+			Redeem.invalidateRedeemedAmount();
+		}
 	};
 	public  static int[] times;
 
+	/** Index of the first entry of each claimable address */
+	private static final Map<String, Integer> addressIndex = new HashMap<>();
+
+	/**
+	 * Changes to the redeemed amount made by the database transaction of a
+	 * thread, not yet visible to other threads
+	 */
+	private static final class PendingAmount {
+
+		private long amount;
+
+		/** Set if the transaction has rolled back redeems */
+		private boolean invalid;
+	}
+
+	private static final ThreadLocal<PendingAmount> pendingAmount = new ThreadLocal<>();
+
+	/** Sum of the committed redeems or -1 if it has to be loaded */
+	private static long redeemedAmount = -1;
+
+	/** Incremented whenever the committed redeems change */
+	private static long redeemedGeneration;
+
+	private static final Object redeemedLock = new Object();
+
+	private static final TransactionalDb.TransactionCallback redeemedCallback = new TransactionalDb.TransactionCallback() {
+
+		@Override
+		public void commit() {
+			final PendingAmount pending = Redeem.pendingAmount.get();
+			Redeem.pendingAmount.remove();
+			synchronized (Redeem.redeemedLock) {
+				Redeem.redeemedGeneration++;
+				if (pending.invalid || (Redeem.redeemedAmount < 0)) Redeem.redeemedAmount = -1;
+				else Redeem.redeemedAmount += pending.amount;
+			}
+		}
+
+		@Override
+		public void rollback() {
+			Redeem.pendingAmount.remove();
+		}
+
+	};
+
+	static {
+		Nxt.getBlockchainProcessor().addListener(block -> {
+			if (Db.db.isInTransaction()) Redeem.getPendingAmount().invalid = true;
+			else Redeem.invalidateRedeemedAmount();
+		}, BlockchainProcessor.Event.BLOCK_POPPED);
+		Nxt.getBlockchainProcessor().addListener(block -> Redeem.invalidateRedeemedAmount(),
+				BlockchainProcessor.Event.RESCAN_BEGIN);
+	}
+
+	private static void invalidateRedeemedAmount() {
+		synchronized (Redeem.redeemedLock) {
+			Redeem.redeemedGeneration++;
+			Redeem.redeemedAmount = -1;
+		}
+	}
+
+	private static PendingAmount getPendingAmount() {
+		PendingAmount pending = Redeem.pendingAmount.get();
+		if (pending == null) {
+			pending = new PendingAmount();
+			Redeem.pendingAmount.set(pending);
+			Db.db.registerCallback(Redeem.redeemedCallback);
+		}
+		return pending;
+	}
+
 	static void add(final TransactionImpl transaction) {
 		Redeem.add(transaction, Nxt.getBlockchain().getLastBlockTimestamp(), Nxt.getBlockchain().getHeight());
 	}
@@ -91,12 +166,15 @@ public final class Redeem {
 	private static void add(final TransactionImpl transaction, final int blockTimestamp, final int height) {
 
 		Redeem prunableSourceCode = Redeem.redeemTable.get(transaction.getDbKey());
+		long previousAmount = 0;
 		if (prunableSourceCode == null) prunableSourceCode = new Redeem(transaction, blockTimestamp, height);
         else if (prunableSourceCode.height != height)
             throw new RuntimeException("Attempt to modify redeem from height " + prunableSourceCode.height
                     + " at height " + height);
+        else previousAmount = prunableSourceCode.amount;
 		prunableSourceCode.update(transaction);
 		Redeem.redeemTable.insert(prunableSourceCode);
+		Redeem.getPendingAmount().amount += prunableSourceCode.amount - previousAmount;
 
 		Account participantAccount = Account.addOrGetAccount(prunableSourceCode.receiver_id); // todo check account creation
 
@@ -107,27 +185,50 @@ public final class Redeem {
 	}
 
 	public static Long getClaimableAmount(final String targetValue) {
-		int cntr = 0;
-		for (final String s : Redeem.listOfAddresses) {
-			if (Objects.equals(s, targetValue)) return Redeem.amounts[cntr];
-			cntr += 1;
-		}
-		return 0L;
+		final Integer index = Redeem.addressIndex.get(targetValue);
+		return index != null ? Redeem.amounts[index] : 0L;
 	}
 
 	public static int getCount() {
 		return Redeem.redeemTable.getCount();
 	}
 
+	/**
+	 * Return the redeemed share of the maximum balance
+	 *
+	 * The sum of the redeems is kept in memory and updated when a block is
+	 * committed, it is only loaded from the database after blocks have been
+	 * popped off.
+	 *
+	 * @return Redeemed percentage
+	 */
 	public static float getRedeemedPercentage() {
+		return (float) Redeem.getRedeemedAmount() / (float) Constants.MAX_BALANCE_NQT;
+	}
+
+	private static long getRedeemedAmount() {
+		final PendingAmount pending = Redeem.pendingAmount.get();
+		if ((pending != null) && pending.invalid) return Redeem.loadRedeemedAmount();
+		final long generation;
+		synchronized (Redeem.redeemedLock) {
+			if (Redeem.redeemedAmount >= 0)
+				return Redeem.redeemedAmount + (pending != null ? pending.amount : 0);
+			generation = Redeem.redeemedGeneration;
+		}
+		long amount = Redeem.loadRedeemedAmount();
+		if (pending != null) return amount;
+		synchronized (Redeem.redeemedLock) {
+			if (generation == Redeem.redeemedGeneration) Redeem.redeemedAmount = amount;
+		}
+		return amount;
+	}
+
+	private static long loadRedeemedAmount() {
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con
 						.prepareStatement("SELECT SUM(AMOUNT) as amount FROM redeems WHERE latest = true")) {
 			try (ResultSet rs = pstmt.executeQuery()) {
-				if (rs.next()) {
-					final long redeemed = rs.getLong("amount");
-					return (float) redeemed / (float) Constants.MAX_BALANCE_NQT;
-				} else return 0.0f;
+				return rs.next() ? rs.getLong("amount") : 0;
 			}
 		} catch (final SQLException e) {
 			throw new RuntimeException(e.toString(), e);
@@ -135,7 +236,7 @@ public final class Redeem {
 	}
 
 	public static boolean hasAddress(final String targetValue) {
-		return Arrays.stream(Redeem.listOfAddresses).anyMatch(s -> Objects.equals(s, targetValue));
+		return Redeem.addressIndex.containsKey(targetValue);
 	}
 
 	static void init() {
@@ -157,6 +258,8 @@ public final class Redeem {
 			System.err.println("Wrong Redeem Entries");
 			System.exit(1);
 		}
+
+		for (int i = 0; i < Redeem.listOfAddresses.length; i++) Redeem.addressIndex.putIfAbsent(Redeem.listOfAddresses[i], i);
 	}
 
 	public static boolean isAlreadyRedeemed(final String address) {
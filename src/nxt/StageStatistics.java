@@ -0,0 +1,62 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Throughput counters of a single processing stage.
+ *
+ * The stage records the number of processed items together with the time it
+ * was busy processing them, so the throughput is reported per busy second and
+ * is not diluted by the time the stage was waiting for input.
+ */
+final class StageStatistics {
+
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong busyNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Record a processed batch
+	 *
+	 * @param items
+	 *            Number of items processed
+	 * @param startNanos
+	 *            Value of System.nanoTime() when processing started
+	 */
+	void record(final int items, final long startNanos) {
+		final long nanos = System.nanoTime() - startNanos;
+		this.count.addAndGet(items);
+		this.busyNanos.addAndGet(nanos);
+		this.maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	JSONObject getStatistics() {
+		final long items = this.count.get();
+		final long nanos = this.busyNanos.get();
+		final JSONObject json = new JSONObject();
+		json.put("count", items);
+		json.put("busyTime", nanos / 1000000);
+		json.put("maxTime", this.maxNanos.get() / 1000000);
+		json.put("perSecond", nanos == 0 ? 0 : (items * 1000000000L) / nanos);
+		return json;
+	}
+
+}
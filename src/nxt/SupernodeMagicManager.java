@@ -4,19 +4,56 @@ import nxt.crypto.Crypto;
 import nxt.peer.Peer;
 import nxt.util.Convert;
 import nxt.util.Logger;
+import org.json.simple.JSONObject;
 
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 class SNJob {
     Peer peer;
     TransactionImpl t;
+    long sncleanId;
 }
+
+/**
+ * Co-signs transactions relayed to this supernode.
+ *
+ * Relayed transactions are queued in a bounded queue, a transaction that is
+ * already queued or being signed is dropped. A single worker drains the queue
+ * in batches, signs each batch in parallel on the signature verification pool
+ * and broadcasts it with a single acquisition of the blockchain write lock.
+ */
 public class SupernodeMagicManager {
 
-    private static ExecutorService fixedPool;
+    /** Maximum number of transactions waiting to be signed */
+    private static final int QUEUE_SIZE = Math.max(Nxt.getIntProperty("nxt.supernodeQueueSize", 4096), 1);
+
+    /** Maximum number of transactions signed and broadcast together */
+    private static final int BATCH_SIZE = 256;
+
+    /** Time a caller waits for room in a full queue */
+    private static final long OFFER_TIMEOUT = 1000;
+
+    private static final BlockingQueue<SNJob> queue = new ArrayBlockingQueue<>(SupernodeMagicManager.QUEUE_SIZE);
+
+    /** Cleaned identifiers of the transactions queued or being signed */
+    private static final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private static final StageStatistics signStage = new StageStatistics();
+    private static final AtomicLong duplicates = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+
+    private static volatile boolean started;
     private static SupernodeMagicManager instance;
 
     private SupernodeMagicManager () {}
@@ -27,24 +64,123 @@ public class SupernodeMagicManager {
         return SupernodeMagicManager.instance;
     }
 
-    public static void add( TransactionImpl t, Peer p){
+    /**
+     * Return the deadline for queueing a batch of relayed transactions
+     *
+     * @return Deadline in System.nanoTime() units, one second from now
+     */
+    public static long getOfferDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SupernodeMagicManager.OFFER_TIMEOUT);
+    }
+
+    /**
+     * Queue a relayed transaction for signing
+     *
+     * The caller waits up to one second when the queue is full.
+     *
+     * @param t
+     *            Transaction validated except for the supernode signature
+     * @param p
+     *            Peer that relayed the transaction
+     * @return FALSE if the transaction was dropped because the queue is full
+     */
+    public static boolean add( TransactionImpl t, Peer p){
+        return SupernodeMagicManager.add(t, p, SupernodeMagicManager.getOfferDeadline());
+    }
+
+    /**
+     * Queue a relayed transaction for signing
+     *
+     * The caller waits for room in a full queue until the deadline has
+     * passed, a batch of transactions shares a single deadline. Once the
+     * deadline has passed a transaction is only queued if there is room.
+     *
+     * @param t
+     *            Transaction validated except for the supernode signature
+     * @param p
+     *            Peer that relayed the transaction
+     * @param deadline
+     *            Deadline returned by {@link #getOfferDeadline()}
+     * @return FALSE if the transaction was dropped because the queue is full
+     */
+    public static boolean add( TransactionImpl t, Peer p, long deadline){
         SNJob j = new SNJob();
         j.peer = p;
         j.t = t;
-        Runnable aRunnable = () -> {
-            SNJob cop;
-            try {
-                // Do dummy work
-                t.signSuperNode(Nxt.supernodePass);
-                boolean wasGood = true;
+        j.sncleanId = t.getSNCleanedId();
+        if (!SupernodeMagicManager.pending.add(j.sncleanId)) {
+            SupernodeMagicManager.duplicates.incrementAndGet();
+            return true;
+        }
+        boolean queued = false;
+        try {
+            queued = SupernodeMagicManager.started
+                    && SupernodeMagicManager.queue.offer(j, Math.max(deadline - System.nanoTime(), 0),
+                            TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queued) {
+            SupernodeMagicManager.pending.remove(j.sncleanId);
+            SupernodeMagicManager.dropped.incrementAndGet();
+        }
+        return queued;
+    }
 
-                Nxt.getTransactionProcessor().broadcast(t);
-            } catch (NxtException.ValidationException e) {
-                // Did not work after all
+    /**
+     * Return the signing pipeline counters
+     *
+     * @return Queue depth and capacity, sign rate, and the number of
+     *         duplicate, dropped and rejected transactions
+     */
+    public static JSONObject getStatistics() {
+        final JSONObject json = SupernodeMagicManager.signStage.getStatistics();
+        json.put("queueDepth", SupernodeMagicManager.queue.size());
+        json.put("queueSize", SupernodeMagicManager.QUEUE_SIZE);
+        json.put("duplicates", SupernodeMagicManager.duplicates.get());
+        json.put("dropped", SupernodeMagicManager.dropped.get());
+        json.put("rejected", SupernodeMagicManager.rejected.get());
+        return json;
+    }
+
+    private static void processQueue() {
+        final List<SNJob> batch = new ArrayList<>(SupernodeMagicManager.BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(SupernodeMagicManager.queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-        };
-        fixedPool.submit(aRunnable); // submit to work pool
+            SupernodeMagicManager.queue.drainTo(batch, SupernodeMagicManager.BATCH_SIZE - 1);
+            try {
+                SupernodeMagicManager.processBatch(batch);
+            } catch (RuntimeException e) {
+                Logger.logErrorMessage("Supernode signing failed", e);
+            } finally {
+                batch.forEach(job -> SupernodeMagicManager.pending.remove(job.sncleanId));
+                batch.clear();
+            }
+        }
     }
+
+    private static void processBatch(final List<SNJob> batch) {
+        final long startNanos = System.nanoTime();
+        final List<TransactionImpl> transactions = new ArrayList<>(batch.size());
+        batch.forEach(job -> transactions.add(job.t));
+        try {
+            BlockchainProcessorImpl.getInstance().getVerificationPool()
+                    .submit(() -> transactions.parallelStream().forEach(t -> t.signSuperNode(Nxt.supernodePass))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        SupernodeMagicManager.signStage.record(transactions.size(), startNanos);
+        SupernodeMagicManager.rejected.addAndGet(TransactionProcessorImpl.getInstance().broadcast(transactions));
+    }
+
     private static void make(Attachment attachment, Appendix appdx, String secretPhrase, long recipientId, long amountNQT) throws Exception{
 
 
@@ -73,7 +209,12 @@ public class SupernodeMagicManager {
     }
     public void initialized(){
 
-        fixedPool = Executors.newFixedThreadPool(4);
+        if (!SupernodeMagicManager.started) {
+            Thread worker = new Thread(SupernodeMagicManager::processQueue, "SupernodeSigning");
+            worker.setDaemon(true);
+            worker.start();
+            SupernodeMagicManager.started = true;
+        }
 
         ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor();
         exec.scheduleAtFixedRate(new Runnable() {
@@ -78,10 +78,8 @@ final class TransactionDb {
 
 	static List<TransactionImpl> findBlockTransactions(final long blockId) {
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final BlockImpl block = BlockDb.blockCache.get(blockId);
-			if (block != null) return block.getTransactions();
-		}
+		final BlockImpl block = BlockCache.getBlock(blockId);
+		if (block != null) return block.getTransactions();
 		// Search the database
 		try (Connection con = Db.db.getConnection()) {
 			return TransactionDb.findBlockTransactions(con, blockId);
@@ -126,10 +124,8 @@ final class TransactionDb {
 
 	private static TransactionImpl findTransaction(final long transactionId, final int height) {
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final TransactionImpl transaction = BlockDb.transactionCache.get(transactionId);
-			if (transaction != null) return transaction.getHeight() <= height ? transaction : null;
-		}
+		final TransactionImpl transaction = BlockCache.getTransaction(transactionId);
+		if (transaction != null) return transaction.getHeight() <= height ? transaction : null;
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT * FROM transaction WHERE id = ?")) {
@@ -153,12 +149,10 @@ final class TransactionDb {
 	private static TransactionImpl findTransactionByFullHash(final byte[] fullHash, final int height) {
 		final long transactionId = Convert.fullHashToId(fullHash);
 		// Check the cache
-		synchronized (BlockDb.blockCache) {
-			final TransactionImpl transaction = BlockDb.transactionCache.get(transactionId);
-			if (transaction != null)
-                return ((transaction.getHeight() <= height) && Arrays.equals(transaction.fullHash(), fullHash)
-                        ? transaction : null);
-		}
+		final TransactionImpl transaction = BlockCache.getTransaction(transactionId);
+		if (transaction != null)
+			return ((transaction.getHeight() <= height) && Arrays.equals(transaction.fullHash(), fullHash)
+					? transaction : null);
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT * FROM transaction WHERE id = ?")) {
@@ -178,10 +172,8 @@ final class TransactionDb {
 
 	static byte[] getFullHash(final long transactionId) {
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final TransactionImpl transaction = BlockDb.transactionCache.get(transactionId);
-			if (transaction != null) return transaction.fullHash();
-		}
+		final TransactionImpl transaction = BlockCache.getTransaction(transactionId);
+		if (transaction != null) return transaction.fullHash();
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT full_hash FROM transaction WHERE id = ?")) {
@@ -200,10 +192,8 @@ final class TransactionDb {
 
 	static boolean hasTransaction(final long transactionId, final int height) {
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final TransactionImpl transaction = BlockDb.transactionCache.get(transactionId);
-			if (transaction != null) return (transaction.getHeight() <= height);
-		}
+		final TransactionImpl transaction = BlockCache.getTransaction(transactionId);
+		if (transaction != null) return (transaction.getHeight() <= height);
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con.prepareStatement("SELECT height FROM transaction WHERE id = ?")) {
@@ -222,10 +212,8 @@ final class TransactionDb {
 
 	private static boolean hasSNCleanTransaction(final long SNCleantransactionId, final int height) {
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final TransactionImpl transaction = BlockDb.sncleantransactionCache.get(SNCleantransactionId);
-			if (transaction != null) return (transaction.getHeight() <= height);
-		}
+		final TransactionImpl transaction = BlockCache.getSNCleanTransaction(SNCleantransactionId);
+		if (transaction != null) return (transaction.getHeight() <= height);
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 			 PreparedStatement pstmt = con.prepareStatement("SELECT height FROM transaction WHERE sncleanid = ?")) {
@@ -245,11 +233,9 @@ final class TransactionDb {
 	static boolean hasTransactionByFullHash(final byte[] fullHash, final int height) {
 		final long transactionId = Convert.fullHashToId(fullHash);
 		// Check the block cache
-		synchronized (BlockDb.blockCache) {
-			final TransactionImpl transaction = BlockDb.transactionCache.get(transactionId);
-			if (transaction != null)
-                return ((transaction.getHeight() <= height) && Arrays.equals(transaction.fullHash(), fullHash));
-		}
+		final TransactionImpl transaction = BlockCache.getTransaction(transactionId);
+		if (transaction != null)
+			return ((transaction.getHeight() <= height) && Arrays.equals(transaction.fullHash(), fullHash));
 		// Search the database
 		try (Connection con = Db.db.getConnection();
 				PreparedStatement pstmt = con
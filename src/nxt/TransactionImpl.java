@@ -444,7 +444,7 @@ public final class TransactionImpl implements Transaction {
 			this.bytes = null;
 			this.id = 0;
 			this.sncleanid = 0;
-			Logger.logSignMessage("Signing HEX:\t" + Convert.toHexString(toSignBytes) +
+			Logger.logSignMessage(() -> "Signing HEX:\t" + Convert.toHexString(toSignBytes) +
 					"\nJson Trans.:\t" + this.getJSONObject() + "\nTrans. IDNR:\t"+Convert.toUnsignedLong(this.getId()));
 		} else {
 			this.signature = null;
@@ -555,13 +555,26 @@ public final class TransactionImpl implements Transaction {
 
             this.hasValidSignature = (this.signature != null) && Crypto.verify(this.signature,
                     this.zeroSignature(toVerifyBytes), this.getSenderPublicKey());
-            Logger.logSignMessage("Verifying HEX:\t" + Convert.toHexString(toVerifyBytes) +
-                    "\nZero'ed HEX:\t" + Convert.toHexString(this.zeroSignature(toVerifyBytes)) +
-                    "\nJson Trans.:\t" + this.getJSONObject() + "\nVERIFY RESULT:\t" + this.hasValidSignature + "\nTrans. IDNR:\t" + Convert.toUnsignedLong(this.getId()));
+            // The message serializes the whole transaction, only build it if signing events are logged
+            if (Logger.isSignEnabled())
+                Logger.logSignMessage("Verifying HEX:\t" + Convert.toHexString(toVerifyBytes) +
+                        "\nZero'ed HEX:\t" + Convert.toHexString(this.zeroSignature(toVerifyBytes)) +
+                        "\nJson Trans.:\t" + this.getJSONObject() + "\nVERIFY RESULT:\t" + this.hasValidSignature + "\nTrans. IDNR:\t" + Convert.toUnsignedLong(this.getId()));
         }
 		return this.hasValidSignature;
 	}
 
+	/**
+	 * Verify the transaction and supernode signatures without accessing the
+	 * database. The results are cached, so a later call to verifySignature
+	 * does not repeat the cryptographic checks.
+	 */
+	void preVerifySignature() {
+		if ((this.senderPublicKey == null) && !(this.getAttachment() instanceof Attachment.RedeemAttachment)) return;
+		if (this.checkSignature() && (Convert.emptyToNull(this.supernode_signature) != null))
+			this.checkSuperNodeSignature();
+	}
+
 	private boolean checkSuperNodeSignature() {
 		if (!this.hasValidSupernodeSignature) {
 			byte[] zerobytes = this.zeroPartSignature(this.getBytes());
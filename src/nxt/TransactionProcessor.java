@@ -18,12 +18,12 @@ package nxt;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
-import nxt.db.DbIterator;
 import nxt.util.Observable;
 
 public interface TransactionProcessor extends Observable<List<? extends Transaction>, TransactionProcessor.Event> {
@@ -42,16 +42,21 @@ public interface TransactionProcessor extends Observable<List<? extends Transact
 
 	Transaction[] getAllBroadcastedTransactions();
 
-	DbIterator<? extends Transaction> getAllUnconfirmedTransactions();
-
-	DbIterator<? extends Transaction> getAllUnconfirmedTransactions(String sort);
+	List<? extends Transaction> getAllUnconfirmedTransactions();
 
 	Transaction[] getAllWaitingTransactions();
 
 	SortedSet<? extends Transaction> getCachedUnconfirmedTransactions(List<String> exclude);
 
+	SortedSet<? extends Transaction> getCachedUnconfirmedTransactions(InvertibleBloomLookupTable table,
+			Set<Long> missing);
+
+	long getReconcileSalt();
+
 	Transaction getUnconfirmedTransaction(long transactionId);
 
+	JSONObject getIngestStatistics();
+
 	void processLater(Collection<? extends Transaction> transactions);
 
 	void processPeerTransactions(JSONObject request) throws NxtException.ValidationException;
@@ -16,20 +16,21 @@
 
 package nxt;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
-import nxt.db.DbClause;
-import nxt.db.DbIterator;
 import nxt.db.DbKey;
-import nxt.db.EntityDbTable;
+import nxt.db.DerivedDbTable;
 import nxt.peer.Peer;
 import nxt.peer.Peers;
 import nxt.util.Convert;
@@ -51,6 +52,10 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 		maxUnconfirmedTransactions = n <= 0 ? Integer.MAX_VALUE : n;
 	}
 
+	/** File the unconfirmed transactions are saved to on shutdown, empty to drop them */
+	private static final String snapshotFile = Nxt.getStringProperty(
+			Constants.isTestnet ? "nxt.testUnconfirmedPoolSnapshot" : "nxt.unconfirmedPoolSnapshot", "");
+
 	private static final TransactionProcessorImpl instance = new TransactionProcessorImpl();
 
 	private static final Comparator<UnconfirmedTransaction> cachedUnconfirmedTransactionComparator = (t1, t2) -> {
@@ -72,10 +77,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 		return TransactionProcessorImpl.instance;
 	}
 
-	private final Map<DbKey, UnconfirmedTransaction> transactionCache = new HashMap<>();
-	private final Map<Long, UnconfirmedTransaction> SNCleantransactionCache = new HashMap<>();
-
-	private volatile boolean cacheInitialized = false;
+	private final UnconfirmedPool pool = new UnconfirmedPool();
 
 	final DbKey.LongKeyFactory<UnconfirmedTransaction> unconfirmedTransactionDbKeyFactory = new DbKey.LongKeyFactory<UnconfirmedTransaction>(
 			"id") {
@@ -87,59 +89,21 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
 	};
 
-	private final EntityDbTable<UnconfirmedTransaction> unconfirmedTransactionTable = new EntityDbTable<UnconfirmedTransaction>(
-			"unconfirmed_transaction", this.unconfirmedTransactionDbKeyFactory) {
-
-		@Override
-		protected String defaultSort() {
-			return " ORDER BY transaction_height ASC, fee_per_byte DESC, arrival_timestamp ASC, id ASC ";
-		}
-
-		@Override
-		protected UnconfirmedTransaction load(final Connection con, final ResultSet rs, final DbKey dbKey)
-				throws SQLException {
-			return new UnconfirmedTransaction(rs);
-		}
+	/**
+	 * The unconfirmed pool is not stored in the database, this table only
+	 * follows the rollbacks and scans of the derived tables
+	 */
+	private final DerivedDbTable unconfirmedTransactionTable = new DerivedDbTable("unconfirmed_transaction") {
 
 		@Override
 		public void rollback(final int height) {
-			try (Connection con = Db.db.getConnection();
-					PreparedStatement pstmt = con
-							.prepareStatement("SELECT * FROM unconfirmed_transaction WHERE height > ?")) {
-				//noinspection SuspiciousNameCombination
-				pstmt.setInt(1, height);
-				try (ResultSet rs = pstmt.executeQuery()) {
-					while (rs.next()) {
-						final UnconfirmedTransaction unconfirmedTransaction = this.load(con, rs, null);
-						TransactionProcessorImpl.this.waitingTransactions.add(unconfirmedTransaction);
-						TransactionProcessorImpl.this.transactionCache.remove(unconfirmedTransaction.getDbKey());
-						TransactionProcessorImpl.this.SNCleantransactionCache.remove(unconfirmedTransaction.getSNCleanedId());
-					}
-				}
-			} catch (final SQLException e) {
-				throw new RuntimeException(e.toString(), e);
-			}
-			super.rollback(height);
-			TransactionProcessorImpl.this.unconfirmedDuplicates.clear();
-		}
-
-		@Override
-		protected void save(final Connection con, final UnconfirmedTransaction unconfirmedTransaction)
-				throws SQLException {
-			unconfirmedTransaction.save(con);
-			if (TransactionProcessorImpl.this.transactionCache
-					.size() < TransactionProcessorImpl.maxUnconfirmedTransactions) {
-				TransactionProcessorImpl.this.transactionCache.put(unconfirmedTransaction.getDbKey(),
-						unconfirmedTransaction);
-				TransactionProcessorImpl.this.SNCleantransactionCache.put(unconfirmedTransaction.getSNCleanedId(),
-						unconfirmedTransaction);
-			}
+			TransactionProcessorImpl.this.waitingTransactions
+					.addAll(TransactionProcessorImpl.this.pool.removeAbove(height));
 		}
 
 		@Override
 		public void truncate() {
-			super.truncate();
-			this.clearCache();
+			TransactionProcessorImpl.this.pool.clear();
 		}
 
 	};
@@ -172,10 +136,56 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
 	};
 
-	private final Map<TransactionType, Map<String, Integer>> unconfirmedDuplicates = new HashMap<>();
+	/**
+	 * Reconciliation state of a peer
+	 */
+	private static final class Reconciliation {
+
+		/** Number of cells of the next lookup table, follows the differences found in the last exchanges */
+		private volatile int cells = TransactionProcessorImpl.MIN_RECONCILE_CELLS;
+
+		/** Salt of the lookup tables of the peer, a random salt until the peer returned its own */
+		private volatile long salt = ThreadLocalRandom.current().nextLong();
+
+		/**
+		 * Size the next lookup table for a number of differences
+		 *
+		 * The size doubles from the minimum, so peers request few distinct
+		 * sizes and find them in the lookup table cache of the pool. A size
+		 * above the maximum sends the exclude list in the next exchange.
+		 *
+		 * @param differences
+		 *            Number of differences
+		 */
+		private void setDifferences(final long differences) {
+			int cells = TransactionProcessorImpl.MIN_RECONCILE_CELLS;
+			while ((cells < (3 * differences)) && (cells <= InvertibleBloomLookupTable.MAX_CELLS))
+				cells *= 2;
+			this.cells = cells;
+		}
+	}
+
+	/** Minimum number of cells of the lookup table sent to reconcile unconfirmed transactions */
+	private static final int MIN_RECONCILE_CELLS = 48;
+
+	/** Average length of an exclude list entry: unsigned identifier, quotes and separator */
+	private static final int EXCLUDE_ENTRY_LENGTH = 22;
+
+	/** Hosts of peers that do not support reconciliation and still need the exclude list */
+	private final Set<String> excludeListPeers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	/** Reconciliation state by peer host */
+	private final Map<String, Reconciliation> reconciliations = new ConcurrentHashMap<>();
+
+	/** Parsing and signature verification of peer transactions */
+	private final StageStatistics verifyStage = new StageStatistics();
+
+	/** Peer transaction batches added holding the blockchain write lock */
+	private final StageStatistics applyStage = new StageStatistics();
 
 	private TransactionProcessorImpl() {
 		if (!Constants.isLightClient) {
+			ThreadPool.runBeforeStart(this::restorePool, false);
 			if (!Constants.isOffline) {
 				Runnable processTransactionsThread = () -> {
 
@@ -187,14 +197,34 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 							if (peer == null) return;
 							final JSONObject request = new JSONObject();
 							request.put("requestType", "getUnconfirmedTransactions");
-							final JSONArray exclude = new JSONArray();
-							this.getAllUnconfirmedTransactionIds()
-									.forEach(transactionId -> exclude.add(Long.toUnsignedString(transactionId)));
-							Collections.sort(exclude);
-							request.put("exclude", exclude);
+							final Reconciliation reconciliation = this.reconciliations.computeIfAbsent(peer.getHost(),
+									k -> new Reconciliation());
+							final List<Long> transactionIds = this.getAllUnconfirmedTransactionIds();
+							// Send the lookup table only if it is smaller than the exclude list
+							final int cells = reconciliation.cells;
+							final boolean reconcile = !this.excludeListPeers.contains(peer.getHost())
+									&& (cells <= InvertibleBloomLookupTable.MAX_CELLS)
+									&& (InvertibleBloomLookupTable.getEncodedLength(cells) < (transactionIds.size()
+											* TransactionProcessorImpl.EXCLUDE_ENTRY_LENGTH));
+							if (reconcile) {
+								final InvertibleBloomLookupTable table = new InvertibleBloomLookupTable(
+										reconciliation.salt, cells);
+								transactionIds.forEach(table::add);
+								request.put("reconcile", table.getJSONObject());
+							} else {
+								final JSONArray exclude = new JSONArray();
+								transactionIds
+										.forEach(transactionId -> exclude.add(Long.toUnsignedString(transactionId)));
+								Collections.sort(exclude);
+								request.put("exclude", exclude);
+							}
 							final JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
 							if (response == null) return;
+							if (reconcile && !this.processReconcileResponse(peer, reconciliation, response)) return;
 							final JSONArray transactionsData = (JSONArray) response.get("unconfirmedTransactions");
+							// The peer sent the transactions we are missing, size the next table for at least as many
+							if (!reconcile && (cells > InvertibleBloomLookupTable.MAX_CELLS))
+								reconciliation.setDifferences(transactionsData != null ? transactionsData.size() : 0);
 							if ((transactionsData == null) || (transactionsData.size() == 0)) return;
 							try {
 								this.processPeerTransactions(transactionsData);
@@ -251,11 +281,8 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 					try {
 						if (Nxt.getBlockchainProcessor().isDownloading()
 								&& !TransactionProcessorImpl.testUnconfirmedTransactions) return;
-						final List<UnconfirmedTransaction> expiredTransactions = new ArrayList<>();
-						try (DbIterator<UnconfirmedTransaction> iterator = this.unconfirmedTransactionTable.getManyBy(
-								new DbClause.IntClause("expiration", DbClause.Op.LT, Nxt.getEpochTime()), 0, -1, "")) {
-							while (iterator.hasNext()) expiredTransactions.add(iterator.next());
-						}
+						final List<UnconfirmedTransaction> expiredTransactions = this.pool
+								.getExpired(Nxt.getEpochTime());
 						if (expiredTransactions.size() > 0) {
 							BlockchainImpl.getInstance().writeLock();
 							try {
@@ -342,47 +369,101 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
 		BlockchainImpl.getInstance().writeLock();
 		try {
-			if (TransactionDb.hasTransaction(transaction.getId())) {
-				Logger.logInfoMessage("Transaction " + transaction.getStringId()
-						+ " already in blockchain, will not broadcast again");
-				return;
-			}
-			if (this.getUnconfirmedTransaction(((TransactionImpl) transaction).getDbKey()) != null) {
-				if (TransactionProcessorImpl.enableTransactionRebroadcasting) {
-					this.broadcastedTransactions.add((TransactionImpl) transaction);
-					Logger.logInfoMessage("Transaction " + transaction.getStringId()
-							+ " already in unconfirmed pool, will re-broadcast");
-				} else Logger.logInfoMessage("Transaction " + transaction.getStringId()
-						+ " already in unconfirmed pool, will not broadcast again");
-				return;
-			}
-			transaction.validate();
-			final UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction(
-					(TransactionImpl) transaction, System.currentTimeMillis());
-			final boolean broadcastLater = BlockchainProcessorImpl.getInstance().isProcessingBlock();
-			if (broadcastLater) {
-				this.waitingTransactions.add(unconfirmedTransaction);
-				this.broadcastedTransactions.add((TransactionImpl) transaction);
-				Logger.logInfoMessage("Will broadcast new transaction later " + transaction.getStringId());
-			} else {
-				this.processTransaction(unconfirmedTransaction);
-				Logger.logInfoMessage("Accepted new transaction " + transaction.getStringId());
-				final List<Transaction> acceptedTransactions = Collections.singletonList(transaction);
-				Peers.sendToSomePeers(acceptedTransactions);
-				this.transactionListeners.notify(acceptedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS);
-				this.transactionListeners.notify(acceptedTransactions, Event.BROADCASTED_OWN_TRANSACTION);
-				if (TransactionProcessorImpl.enableTransactionRebroadcasting)
-					this.broadcastedTransactions.add((TransactionImpl) transaction);
-			}
+			final List<Transaction> acceptedTransactions = new ArrayList<>(1);
+			this.broadcastLocked((TransactionImpl) transaction, acceptedTransactions);
+			this.broadcastAccepted(acceptedTransactions);
+		} finally {
+			BlockchainImpl.getInstance().writeUnlock();
+		}
+	}
+
+	/**
+	 * Broadcast a batch of own transactions
+	 *
+	 * The blockchain write lock is taken once for the whole batch and the
+	 * accepted transactions are sent to the peers together. Invalid
+	 * transactions are skipped.
+	 *
+	 * @param transactions
+	 *            Transactions carrying all required signatures
+	 * @return Number of transactions rejected as invalid
+	 */
+	int broadcast(final List<TransactionImpl> transactions) {
+		int rejected = 0;
+		BlockchainImpl.getInstance().writeLock();
+		try {
+			final List<Transaction> acceptedTransactions = new ArrayList<>(transactions.size());
+			for (final TransactionImpl transaction : transactions)
+				try {
+					this.broadcastLocked(transaction, acceptedTransactions);
+				} catch (final NxtException.ValidationException e) {
+					Logger.logDebugMessage(() -> "Transaction " + transaction.getStringId() + " not broadcast: "
+							+ e.getMessage());
+					rejected++;
+				}
+			this.broadcastAccepted(acceptedTransactions);
 		} finally {
 			BlockchainImpl.getInstance().writeUnlock();
 		}
+		return rejected;
+	}
+
+	/**
+	 * Add an own transaction to the unconfirmed pool, the caller must hold the
+	 * blockchain write lock
+	 *
+	 * @param transaction
+	 *            Transaction
+	 * @param acceptedTransactions
+	 *            Transactions to send to the peers, the transaction is added if
+	 *            it has been accepted
+	 * @throws NxtException.ValidationException
+	 *             Transaction is not valid
+	 */
+	private void broadcastLocked(final TransactionImpl transaction, final List<Transaction> acceptedTransactions)
+			throws NxtException.ValidationException {
+		if (TransactionDb.hasTransaction(transaction.getId())) {
+			Logger.logInfoMessage("Transaction " + transaction.getStringId()
+					+ " already in blockchain, will not broadcast again");
+			return;
+		}
+		if (this.pool.get(transaction.getId()) != null) {
+			if (TransactionProcessorImpl.enableTransactionRebroadcasting) {
+				this.broadcastedTransactions.add(transaction);
+				Logger.logInfoMessage("Transaction " + transaction.getStringId()
+						+ " already in unconfirmed pool, will re-broadcast");
+			} else Logger.logInfoMessage("Transaction " + transaction.getStringId()
+					+ " already in unconfirmed pool, will not broadcast again");
+			return;
+		}
+		transaction.validate();
+		final UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction(transaction,
+				System.currentTimeMillis());
+		final boolean broadcastLater = BlockchainProcessorImpl.getInstance().isProcessingBlock();
+		if (broadcastLater) {
+			this.waitingTransactions.add(unconfirmedTransaction);
+			this.broadcastedTransactions.add(transaction);
+			Logger.logInfoMessage("Will broadcast new transaction later " + transaction.getStringId());
+		} else {
+			this.processTransaction(unconfirmedTransaction);
+			Logger.logInfoMessage("Accepted new transaction " + transaction.getStringId());
+			acceptedTransactions.add(transaction);
+			if (TransactionProcessorImpl.enableTransactionRebroadcasting)
+				this.broadcastedTransactions.add(transaction);
+		}
+	}
+
+	private void broadcastAccepted(final List<Transaction> acceptedTransactions) {
+		if (acceptedTransactions.isEmpty()) return;
+		Peers.sendToSomePeers(acceptedTransactions);
+		this.transactionListeners.notify(acceptedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS);
+		this.transactionListeners.notify(acceptedTransactions, Event.BROADCASTED_OWN_TRANSACTION);
 	}
 
 	@Override
 	public void clearUnconfirmedThatGotInvalidLately() {
 
-		final DbIterator<UnconfirmedTransaction> it = this.getAllUnconfirmedTransactions();
+		final Iterator<UnconfirmedTransaction> it = this.pool.getAll().iterator();
 		while (it.hasNext()) {
 			final UnconfirmedTransaction u = it.next();
 			final TransactionImpl tImpl = u.getTransaction();
@@ -438,14 +519,10 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 			final List<Transaction> removed = new ArrayList<>();
 			try {
 				Db.db.beginTransaction();
-				try (DbIterator<UnconfirmedTransaction> unconfirmedTransactions = this
-						.getAllUnconfirmedTransactions()) {
-					for (final UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
-						unconfirmedTransaction.getTransaction().undoUnconfirmed();
-						removed.add(unconfirmedTransaction.getTransaction());
-					}
+				for (final UnconfirmedTransaction unconfirmedTransaction : this.pool.clear()) {
+					unconfirmedTransaction.getTransaction().undoUnconfirmed();
+					removed.add(unconfirmedTransaction.getTransaction());
 				}
-				this.unconfirmedTransactionTable.truncate();
 				Db.db.commitTransaction();
 			} catch (final Exception e) {
 				Logger.logErrorMessage(e.toString(), e);
@@ -454,11 +531,8 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 			} finally {
 				Db.db.endTransaction();
 			}
-			this.unconfirmedDuplicates.clear();
 			this.waitingTransactions.clear();
 			this.broadcastedTransactions.clear();
-			this.transactionCache.clear();
-			this.SNCleantransactionCache.clear();
 			this.transactionListeners.notify(removed, Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
 		} finally {
 			BlockchainImpl.getInstance().writeUnlock();
@@ -475,26 +549,51 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 		}
 	}
 
-	private List<Long> getAllUnconfirmedTransactionIds() {
-		final List<Long> result = new ArrayList<>();
-		try (Connection con = Db.db.getConnection();
-				PreparedStatement pstmt = con.prepareStatement("SELECT id FROM unconfirmed_transaction");
-				ResultSet rs = pstmt.executeQuery()) {
-			while (rs.next()) result.add(rs.getLong("id"));
-		} catch (final SQLException e) {
-			throw new RuntimeException(e.toString(), e);
+	/**
+	 * Process the reconciliation result of a getUnconfirmedTransactions
+	 * response and adapt the size of the next lookup table
+	 *
+	 * @param peer
+	 *            Peer
+	 * @param reconciliation
+	 *            Reconciliation state of the peer
+	 * @param response
+	 *            Peer response
+	 * @return TRUE if the response contains the transactions missing in our
+	 *         pool
+	 */
+	private boolean processReconcileResponse(final Peer peer, final Reconciliation reconciliation,
+			final JSONObject response) {
+		if (response.get("error") != null) return false;
+		final Object reconciled = response.get("reconciled");
+		if (reconciled == null) {
+			Logger.logDebugMessage("Peer " + peer.getHost() + " does not support transaction reconciliation");
+			this.excludeListPeers.add(peer.getHost());
+			return false;
 		}
-		return result;
+		final Object salt = response.get("salt");
+		if (salt != null) reconciliation.salt = Convert.parseLong(salt);
+		if (!(Boolean) reconciled) {
+			reconciliation.cells *= 2;
+			return false;
+		}
+		reconciliation.setDifferences(Convert.parseLong(response.get("differences")));
+		return true;
 	}
 
-	@Override
-	public DbIterator<UnconfirmedTransaction> getAllUnconfirmedTransactions() {
-		return this.unconfirmedTransactionTable.getAll(0, -1);
+	private List<Long> getAllUnconfirmedTransactionIds() {
+		return this.pool.getIds();
 	}
 
+	/**
+	 * Return the unconfirmed transactions
+	 *
+	 * @return Unconfirmed transactions in the order they are included in a
+	 *         new block
+	 */
 	@Override
-	public DbIterator<UnconfirmedTransaction> getAllUnconfirmedTransactions(final String sort) {
-		return this.unconfirmedTransactionTable.getAll(0, -1, sort);
+	public List<UnconfirmedTransaction> getAllUnconfirmedTransactions() {
+		return this.pool.getAll();
 	}
 
 	@Override
@@ -521,68 +620,114 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 	public SortedSet<? extends Transaction> getCachedUnconfirmedTransactions(final List<String> exclude) {
 		final SortedSet<UnconfirmedTransaction> transactionSet = new TreeSet<>(
 				TransactionProcessorImpl.cachedUnconfirmedTransactionComparator);
-		Nxt.getBlockchain().readLock();
-		try {
-			//
-			// Initialize the unconfirmed transaction cache if it hasn't been
-			// done yet
-			//
-			synchronized (this.transactionCache) {
-				if (!this.cacheInitialized) {
-					final DbIterator<UnconfirmedTransaction> it = this.getAllUnconfirmedTransactions();
-					while (it.hasNext()) {
-						final UnconfirmedTransaction unconfirmedTransaction = it.next();
-						this.transactionCache.put(unconfirmedTransaction.getDbKey(), unconfirmedTransaction);
-						this.SNCleantransactionCache.put(unconfirmedTransaction.getSNCleanedId(), unconfirmedTransaction);
-					}
-					this.cacheInitialized = true;
-				}
-			}
-			//
-			// Build the result set
-			//
-			this.transactionCache.values().forEach(transaction -> {
-				if (Collections.binarySearch(exclude, transaction.getStringId()) < 0) transactionSet.add(transaction);
-			});
-		} finally {
-			Nxt.getBlockchain().readUnlock();
-		}
+		//
+		// Build the result set
+		//
+		this.pool.getAll().forEach(transaction -> {
+			if (Collections.binarySearch(exclude, transaction.getStringId()) < 0) transactionSet.add(transaction);
+		});
 		return transactionSet;
 	}
 
-	private Transaction getUnconfirmedTransaction(final DbKey dbKey) {
-		Nxt.getBlockchain().readLock();
-		try {
-			final Transaction transaction = this.transactionCache.get(dbKey);
-			if (transaction != null) return transaction;
-		} finally {
-			Nxt.getBlockchain().readUnlock();
+	/**
+	 * Get the cached unconfirmed transactions missing in the pool of a peer
+	 *
+	 * @param table
+	 *            Lookup table of the unconfirmed transaction identifiers of
+	 *            the peer
+	 * @param missing
+	 *            Receives the identifiers of the peer transactions missing in
+	 *            our pool
+	 * @return Transactions only in our pool or null if the table is too small
+	 *         for the number of differences
+	 */
+	@Override
+	public SortedSet<? extends Transaction> getCachedUnconfirmedTransactions(final InvertibleBloomLookupTable table,
+			final Set<Long> missing) {
+		final SortedSet<UnconfirmedTransaction> transactionSet = new TreeSet<>(
+				TransactionProcessorImpl.cachedUnconfirmedTransactionComparator);
+		final InvertibleBloomLookupTable localTable;
+		if (table.getSalt() == this.pool.getLookupSalt()) localTable = this.pool.getLookupTable(table.getCellCount());
+		else {
+			// The peer does not know our salt yet
+			localTable = new InvertibleBloomLookupTable(table.getSalt(), table.getCellCount());
+			this.getAllUnconfirmedTransactionIds().forEach(localTable::add);
 		}
-		return this.unconfirmedTransactionTable.get(dbKey);
+		final Set<Long> onlyHere = new HashSet<>();
+		if (!localTable.subtractAndDecode(table, onlyHere, missing)) return null;
+		onlyHere.forEach(id -> {
+			final UnconfirmedTransaction transaction = this.pool.get(id);
+			if (transaction != null) transactionSet.add(transaction);
+		});
+		return transactionSet;
+	}
+
+	@Override
+	public long getReconcileSalt() {
+		return this.pool.getLookupSalt();
 	}
 
 	@Override
 	public Transaction getUnconfirmedSNCleanTransaction(final long snclean) {
-		Nxt.getBlockchain().readLock();
-		try {
-			final Transaction transaction = this.SNCleantransactionCache.get(snclean);
-			if (transaction != null) return transaction;
-		} finally {
-			Nxt.getBlockchain().readUnlock();
-		}
-		return this.unconfirmedTransactionTable.getBy(new DbClause.LongClause("sncleanid",snclean));
+		return this.pool.getBySNCleanId(snclean);
 	}
 
 	@Override
 	public Transaction getUnconfirmedTransaction(final long transactionId) {
-		final DbKey dbKey = this.unconfirmedTransactionDbKeyFactory.newKey(transactionId);
-		return this.getUnconfirmedTransaction(dbKey);
+		return this.pool.get(transactionId);
 	}
 
 	Collection<UnconfirmedTransaction> getWaitingTransactions() {
 		return Collections.unmodifiableCollection(this.waitingTransactions);
 	}
 
+	/**
+	 * Restore the unconfirmed pool saved on the last shutdown
+	 *
+	 * The unconfirmed balances in the database hold the reservations of the
+	 * pool at the last shutdown. If the pool cannot be restored as it was,
+	 * the reservations are released through the accounts at the current height
+	 * and the saved transactions are processed again.
+	 */
+	private void restorePool() {
+		BlockchainImpl.getInstance().writeLock();
+		try {
+			boolean restored = false;
+			if (!TransactionProcessorImpl.snapshotFile.isEmpty()) {
+				final Path path = Paths.get(TransactionProcessorImpl.snapshotFile);
+				if (Files.exists(path)) {
+					try {
+						restored = this.pool.restoreSnapshot(path, Nxt.getBlockchain().getLastBlock().getId(),
+								this.waitingTransactions);
+						Logger.logMessage("Loaded " + (this.pool.size() + this.waitingTransactions.size())
+								+ " unconfirmed transactions from " + path);
+					} catch (IOException | NxtException.NotValidException | RuntimeException e) {
+						Logger.logErrorMessage("Unable to load unconfirmed transactions from " + path, e);
+					}
+					try {
+						Files.delete(path);
+					} catch (final IOException e) {
+						Logger.logErrorMessage("Unable to delete " + path, e);
+					}
+				}
+			}
+			if (!restored) try {
+				Db.db.beginTransaction();
+				final int count = Account.releaseUnconfirmedBalances();
+				Db.db.commitTransaction();
+				if (count > 0) Logger.logMessage("Released the unconfirmed balance of " + count + " accounts");
+			} catch (final Exception e) {
+				Logger.logErrorMessage(e.toString(), e);
+				Db.db.rollbackTransaction();
+				throw e;
+			} finally {
+				Db.db.endTransaction();
+			}
+		} finally {
+			BlockchainImpl.getInstance().writeUnlock();
+		}
+	}
+
 	void notifyListeners(final List<? extends Transaction> transactions, final Event eventType) {
 		this.transactionListeners.notify(transactions, eventType);
 	}
@@ -611,32 +756,68 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 		final List<TransactionImpl> sendToPeersTransactions = new ArrayList<>();
 		final List<TransactionImpl> addedUnconfirmedTransactions = new ArrayList<>();
 		final List<Exception> exceptions = new ArrayList<>();
-		for (final Object transactionData : transactionsData)
+		//
+		// Parse the transactions and verify their signatures in parallel
+		// without holding any lock
+		//
+		final Object[] parsed = this.parsePeerTransactions(transactionsData);
+		//
+		// Check and validate the new transactions
+		//
+		final List<UnconfirmedTransaction> candidates = new ArrayList<>();
+		final List<Object> candidatesData = new ArrayList<>();
+		for (int i = 0; i < parsed.length; i++) {
+			final Object transactionData = transactionsData.get(i);
 			try {
-				final TransactionImpl transaction = TransactionImpl.parseTransaction((JSONObject) transactionData);
+				if (parsed[i] instanceof Exception) throw (Exception) parsed[i];
+				final TransactionImpl transaction = (TransactionImpl) parsed[i];
 				receivedTransactions.add(transaction);
-				if ((this.getUnconfirmedTransaction(transaction.getDbKey()) != null)
+				if ((this.pool.get(transaction.getId()) != null)
 						|| TransactionDb.hasTransaction(transaction.getId())) continue;
 
 				if (transaction.getType().mustHaveSupernodeSignature() && (this.getUnconfirmedSNCleanTransaction(transaction.getSNCleanedId()) != null || TransactionDb.hasSNCleanTransaction(transaction.getSNCleanedId())))
 					continue;
 
 				transaction.validate();
-				final UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction(transaction,
-						arrivalTimestamp);
-				this.processTransaction(unconfirmedTransaction);
-				if (this.broadcastedTransactions.contains(transaction))
-					Logger.logInfoMessage("Received back transaction " + transaction.getStringId()
-							+ " that we broadcasted, will not forward again to peers");
-				else sendToPeersTransactions.add(transaction);
-				addedUnconfirmedTransactions.add(transaction);
-
+				TransactionProcessorImpl.checkTransaction(transaction);
+				candidates.add(new UnconfirmedTransaction(transaction, arrivalTimestamp));
+				candidatesData.add(transactionData);
 			} catch (final NxtException.NotCurrentlyValidException ignore) {
-			} catch (NxtException.ValidationException | RuntimeException e) {
+			} catch (final Exception e) {
 				Logger.logInfoMessage(String.format("Invalid transaction from peer: %s",
 						((JSONObject) transactionData).toJSONString()), e);
 				exceptions.add(e);
 			}
+		}
+		//
+		// Add the transactions to the unconfirmed pool holding the write lock
+		// once for the whole batch
+		//
+		if (!candidates.isEmpty()) {
+			BlockchainImpl.getInstance().writeLock();
+			final long startNanos = System.nanoTime();
+			try {
+				for (int i = 0; i < candidates.size(); i++) {
+					final TransactionImpl transaction = candidates.get(i).getTransaction();
+					try {
+						this.processTransactionLocked(candidates.get(i));
+						if (this.broadcastedTransactions.contains(transaction))
+							Logger.logInfoMessage("Received back transaction " + transaction.getStringId()
+									+ " that we broadcasted, will not forward again to peers");
+						else sendToPeersTransactions.add(transaction);
+						addedUnconfirmedTransactions.add(transaction);
+					} catch (final NxtException.NotCurrentlyValidException ignore) {
+					} catch (NxtException.ValidationException | RuntimeException e) {
+						Logger.logInfoMessage(String.format("Invalid transaction from peer: %s",
+								((JSONObject) candidatesData.get(i)).toJSONString()), e);
+						exceptions.add(e);
+					}
+				}
+			} finally {
+				this.applyStage.record(candidates.size(), startNanos);
+				BlockchainImpl.getInstance().writeUnlock();
+			}
+		}
 		if (sendToPeersTransactions.size() > 0) Peers.sendToSomePeers(sendToPeersTransactions);
 		if (addedUnconfirmedTransactions.size() > 0)
 			this.transactionListeners.notify(addedUnconfirmedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS);
@@ -647,6 +828,47 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 		}
 	}
 
+	/**
+	 * Parse peer transactions and verify their signatures on the signature
+	 * verification pool
+	 *
+	 * @param transactionsData
+	 *            Transactions
+	 * @return Parsed transaction or the parsing exception for each
+	 *         transaction
+	 */
+	private Object[] parsePeerTransactions(final JSONArray transactionsData) {
+		final Object[] parsed = new Object[transactionsData.size()];
+		final long startNanos = System.nanoTime();
+		final Runnable parse = () -> IntStream.range(0, parsed.length).parallel().forEach(i -> {
+			try {
+				final TransactionImpl transaction = TransactionImpl.parseTransaction((JSONObject) transactionsData.get(i));
+				transaction.preVerifySignature();
+				parsed[i] = transaction;
+			} catch (NxtException.NotValidException | RuntimeException e) {
+				parsed[i] = e;
+			}
+		});
+		try {
+			BlockchainProcessorImpl.getInstance().getVerificationPool().submit(parse).get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e.toString(), e);
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+		this.verifyStage.record(parsed.length, startNanos);
+		return parsed;
+	}
+
+	@Override
+	public JSONObject getIngestStatistics() {
+		final JSONObject json = new JSONObject();
+		json.put("verify", this.verifyStage.getStatistics());
+		json.put("apply", this.applyStage.getStatistics());
+		return json;
+	}
+
 	@Override
 	public void processPeerTransactions(final JSONObject request) throws NxtException.ValidationException {
 		final JSONArray transactionsData = (JSONArray) request.get("transactions");
@@ -656,53 +878,82 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 	private void processTransaction(final UnconfirmedTransaction unconfirmedTransaction)
 			throws NxtException.ValidationException {
 		final TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+		TransactionProcessorImpl.checkTransaction(transaction);
+		// Verify the signatures before taking the lock, the results are cached
+		transaction.preVerifySignature();
+		BlockchainImpl.getInstance().writeLock();
+		try {
+			this.processTransactionLocked(unconfirmedTransaction);
+		} finally {
+			BlockchainImpl.getInstance().writeUnlock();
+		}
+	}
+
+	/**
+	 * Check the transaction fields that do not depend on the blockchain state
+	 *
+	 * @param transaction
+	 *            Transaction
+	 * @throws NxtException.ValidationException
+	 *             Transaction is not valid
+	 */
+	private static void checkTransaction(final TransactionImpl transaction) throws NxtException.ValidationException {
 		final int curTime = Nxt.getEpochTime();
 		if ((transaction.getTimestamp() > (curTime + Constants.MAX_TIMEDRIFT))
 				|| ((transaction.getExpiration() < curTime) && !Objects.equals(transaction.getAttachment().getTransactionType(), TransactionType.Payment.REDEEM)))
 			throw new NxtException.NotCurrentlyValidException("Invalid transaction timestamp: Bigger than timedrift = " + ((transaction.getTimestamp() > (curTime + Constants.MAX_TIMEDRIFT))) + ", expiration lower than currTime = " + (transaction.getExpiration() < curTime));
 		if (transaction.getVersion() < 1) throw new NxtException.NotValidException("Invalid transaction version");
 		if (transaction.getId() == 0L) throw new NxtException.NotValidException("Invalid transaction id 0");
+	}
 
-		BlockchainImpl.getInstance().writeLock();
+	/**
+	 * Add a transaction to the unconfirmed pool
+	 *
+	 * The caller must hold the blockchain write lock
+	 *
+	 * @param unconfirmedTransaction
+	 *            Unconfirmed transaction
+	 * @throws NxtException.ValidationException
+	 *             Transaction is not valid
+	 */
+	private void processTransactionLocked(final UnconfirmedTransaction unconfirmedTransaction)
+			throws NxtException.ValidationException {
+		final TransactionImpl transaction = unconfirmedTransaction.getTransaction();
 		try {
-			try {
-				Db.db.beginTransaction();
-				if ((Nxt.getBlockchain().getHeight() < Constants.LAST_KNOWN_BLOCK)
-						&& !TransactionProcessorImpl.testUnconfirmedTransactions)
-					throw new NxtException.NotCurrentlyValidException(
-							"Blockchain not ready to accept transactions: last block " + Nxt.getBlockchain().getHeight()
-									+ " < " + Constants.LAST_KNOWN_BLOCK);
+			Db.db.beginTransaction();
+			if ((Nxt.getBlockchain().getHeight() < Constants.LAST_KNOWN_BLOCK)
+					&& !TransactionProcessorImpl.testUnconfirmedTransactions)
+				throw new NxtException.NotCurrentlyValidException(
+						"Blockchain not ready to accept transactions: last block " + Nxt.getBlockchain().getHeight()
+								+ " < " + Constants.LAST_KNOWN_BLOCK);
 
-				if ((this.getUnconfirmedTransaction(transaction.getDbKey()) != null)
-						|| TransactionDb.hasTransaction(transaction.getId()))
-					throw new NxtException.ExistingTransactionException("Transaction already processed");
+			if ((this.pool.get(transaction.getId()) != null)
+					|| TransactionDb.hasTransaction(transaction.getId()))
+				throw new NxtException.ExistingTransactionException("Transaction already processed");
 
-				if(transaction.getType().mustHaveSupernodeSignature() && (this.getUnconfirmedSNCleanTransaction(transaction.getSNCleanedId()) != null || TransactionDb.hasSNCleanTransaction(transaction.getSNCleanedId())))
-					throw new NxtException.ExistingTransactionException("Core-Transaction (SN Cleaned) already processed");
+			if(transaction.getType().mustHaveSupernodeSignature() && (this.getUnconfirmedSNCleanTransaction(transaction.getSNCleanedId()) != null || TransactionDb.hasSNCleanTransaction(transaction.getSNCleanedId())))
+				throw new NxtException.ExistingTransactionException("Core-Transaction (SN Cleaned) already processed");
 
-				if (!transaction.verifySignature()) if (Account.getAccount(transaction.getSenderId()) != null)
-					throw new NxtException.NotValidException("Transaction signature verification failed");
-				else throw new NxtException.NotCurrentlyValidException("Unknown transaction sender");
+			if (!transaction.verifySignature()) if (Account.getAccount(transaction.getSenderId()) != null)
+				throw new NxtException.NotValidException("Transaction signature verification failed");
+			else throw new NxtException.NotCurrentlyValidException("Unknown transaction sender");
 
-				if (!transaction.applyUnconfirmed())
-					throw new NxtException.InsufficientBalanceException("Insufficient balance");
+			if (!transaction.applyUnconfirmed())
+				throw new NxtException.InsufficientBalanceException("Insufficient balance");
 
-				if (transaction.isUnconfirmedDuplicate(this.unconfirmedDuplicates))
-					if (transaction.getExtraInfo().length() > 0) throw new NxtException.NotCurrentlyValidException(
-							"Duplicate unconfirmed transaction: " + transaction.getExtraInfo());
-					else throw new NxtException.NotCurrentlyValidException("Duplicate unconfirmed transaction");
+			if (transaction.isUnconfirmedDuplicate(this.pool.getDuplicates()))
+				if (transaction.getExtraInfo().length() > 0) throw new NxtException.NotCurrentlyValidException(
+						"Duplicate unconfirmed transaction: " + transaction.getExtraInfo());
+				else throw new NxtException.NotCurrentlyValidException("Duplicate unconfirmed transaction");
 
-				this.unconfirmedTransactionTable.insert(unconfirmedTransaction);
+			this.pool.add(unconfirmedTransaction, Nxt.getBlockchain().getHeight());
 
-				Db.db.commitTransaction();
-			} catch (final Exception e) {
-				Db.db.rollbackTransaction();
-				throw e;
-			} finally {
-				Db.db.endTransaction();
-			}
+			Db.db.commitTransaction();
+		} catch (final Exception e) {
+			Db.db.rollbackTransaction();
+			throw e;
 		} finally {
-			BlockchainImpl.getInstance().writeUnlock();
+			Db.db.endTransaction();
 		}
 	}
 
@@ -742,15 +993,11 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 	public void rebroadcastAllUnconfirmedTransactions() {
 		BlockchainImpl.getInstance().writeLock();
 		try {
-			try (DbIterator<UnconfirmedTransaction> oldNonBroadcastedTransactions = this
-					.getAllUnconfirmedTransactions()) {
-				for (final UnconfirmedTransaction unconfirmedTransaction : oldNonBroadcastedTransactions)
-					if (unconfirmedTransaction.getTransaction().isUnconfirmedDuplicate(this.unconfirmedDuplicates))
-						Logger.logDebugMessage("Skipping duplicate unconfirmed transaction "
-								+ unconfirmedTransaction.getTransaction().getJSONObject().toString());
-					else if (TransactionProcessorImpl.enableTransactionRebroadcasting)
-						this.broadcastedTransactions.add(unconfirmedTransaction.getTransaction());
-			}
+			// The duplicate counters of the pool already include all pooled
+			// transactions
+			if (TransactionProcessorImpl.enableTransactionRebroadcasting)
+				for (final UnconfirmedTransaction unconfirmedTransaction : this.pool.getAll())
+					this.broadcastedTransactions.add(unconfirmedTransaction.getTransaction());
 		} finally {
 			BlockchainImpl.getInstance().writeUnlock();
 		}
@@ -776,20 +1023,10 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 			}
 			return;
 		}
-		try (Connection con = Db.db.getConnection();
-				PreparedStatement pstmt = con.prepareStatement("DELETE FROM unconfirmed_transaction WHERE id = ?")) {
-			pstmt.setLong(1, transaction.getId());
-			final int deleted = pstmt.executeUpdate();
-			if (deleted > 0) {
-				transaction.undoUnconfirmed();
-				this.transactionCache.remove(transaction.getDbKey());
-				this.SNCleantransactionCache.remove(transaction.getSNCleanedId());
-				this.transactionListeners.notify(Collections.singletonList(transaction),
-						Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
-			}
-		} catch (final SQLException e) {
-			Logger.logErrorMessage(e.toString(), e);
-			throw new RuntimeException(e.toString(), e);
+		if (this.pool.remove(transaction.getId()) != null) {
+			transaction.undoUnconfirmed();
+			this.transactionListeners.notify(Collections.singletonList(transaction),
+					Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
 		}
 	}
 
@@ -812,18 +1049,12 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 				return;
 			}
 			final List<Transaction> removed = new ArrayList<>();
-			try (DbIterator<UnconfirmedTransaction> unconfirmedTransactions = this.getAllUnconfirmedTransactions()) {
-				for (final UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
-					unconfirmedTransaction.getTransaction().undoUnconfirmed();
-					if (removed.size() < TransactionProcessorImpl.maxUnconfirmedTransactions)
-						removed.add(unconfirmedTransaction.getTransaction());
-					this.waitingTransactions.add(unconfirmedTransaction);
-				}
+			for (final UnconfirmedTransaction unconfirmedTransaction : this.pool.clear()) {
+				unconfirmedTransaction.getTransaction().undoUnconfirmed();
+				if (removed.size() < TransactionProcessorImpl.maxUnconfirmedTransactions)
+					removed.add(unconfirmedTransaction.getTransaction());
+				this.waitingTransactions.add(unconfirmedTransaction);
 			}
-			this.unconfirmedTransactionTable.truncate();
-			this.unconfirmedDuplicates.clear();
-			this.transactionCache.clear();
-			this.SNCleantransactionCache.clear();
 			this.transactionListeners.notify(removed, Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
 		} finally {
 			BlockchainImpl.getInstance().writeUnlock();
@@ -905,4 +1136,23 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 		return processed;
 	}
 
+	/**
+	 * Save the unconfirmed and waiting transactions to the snapshot file, the
+	 * pool is restored on the next start
+	 */
+	void shutdown() {
+		if (TransactionProcessorImpl.snapshotFile.isEmpty() || Constants.isLightClient) return;
+		final Path path = Paths.get(TransactionProcessorImpl.snapshotFile);
+		BlockchainImpl.getInstance().readLock();
+		try {
+			this.pool.saveSnapshot(path, Nxt.getBlockchain().getLastBlock().getId(), this.waitingTransactions);
+			Logger.logShutdownMessage("Saved " + (this.pool.size() + this.waitingTransactions.size())
+					+ " unconfirmed transactions to " + path);
+		} catch (final IOException e) {
+			Logger.logShutdownMessage("Unable to save unconfirmed transactions to " + path, e);
+		} finally {
+			BlockchainImpl.getInstance().readUnlock();
+		}
+	}
+
 }
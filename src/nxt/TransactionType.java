@@ -736,7 +736,7 @@ public abstract class TransactionType {
 						String.valueOf(attachment.getWorkId()), duplicates, true);
 
 				if (!duplicate) {
-					final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+					final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 					// to prevent it getting to the lower
 // system levels
 					if (w == null) return true; // Assume tx with invalid work is duplicate
@@ -771,7 +771,7 @@ public abstract class TransactionType {
 				final Attachment.WorkIdentifierCancellationRequest attachment = (Attachment.WorkIdentifierCancellationRequest) transaction
 						.getAttachment();
 
-				final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+				final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 
 				if (w == null) throw new NxtException.NotCurrentlyValidException(
 						"Work " + attachment.getWorkId() + " does not exist yet");
@@ -795,7 +795,7 @@ public abstract class TransactionType {
 			@Override
 			boolean applyAttachmentUnconfirmed(Transaction transaction, Account senderAccount) {
 				Attachment.PiggybackedProofOfWork attachment = (Attachment.PiggybackedProofOfWork) transaction.getAttachment();
-				final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+				final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 				// unconfirmed TX do not add anything to the balance before block inclusion
 				return w != null;
 			}
@@ -862,7 +862,7 @@ public abstract class TransactionType {
 					// This is required to limit the amount of unconfirmed POWs
 					// to not exceed either the money or the hard limit per
 					// block.
-					final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+					final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 
 					if(w==null) return true;
 
@@ -928,7 +928,7 @@ public abstract class TransactionType {
 				final Attachment.PiggybackedProofOfWork attachment = (Attachment.PiggybackedProofOfWork) transaction
 						.getAttachment();
 
-				final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+				final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 
 				if (w == null) throw new NxtException.NotCurrentlyValidException(
 						"Work " + Convert.toUnsignedLong(attachment.getWorkId()) + " does not exist");
@@ -1098,7 +1098,7 @@ public abstract class TransactionType {
 			@Override
 			boolean applyAttachmentUnconfirmed(Transaction transaction, Account senderAccount) {
 				Attachment.PiggybackedProofOfBounty attachment = (Attachment.PiggybackedProofOfBounty) transaction.getAttachment();
-				final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+				final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 
 				if(w!=null) {
 					// Check if we had an announcement for this workid earlier, if not delay the transaction indefinitely
@@ -1174,7 +1174,7 @@ public abstract class TransactionType {
 					// requester.
 					// But first, check out how many more we want from what has
 					// been already confirmed!
-					final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+					final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 
 					if(w == null) return true;
 
@@ -1231,7 +1231,7 @@ public abstract class TransactionType {
 				}
 
 
-				final Work w = Work.getWorkByWorkId(attachment.getWorkId());
+				final Work w = Work.getReadOnlyWorkByWorkId(attachment.getWorkId());
 
 				if (w == null) throw new NxtException.NotCurrentlyValidException(
 						"Work " + Convert.toUnsignedLong(attachment.getWorkId()) + " does not exist");
@@ -0,0 +1,495 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import nxt.db.TransactionalDb;
+import nxt.util.Convert;
+
+/**
+ * In-memory pool of the unconfirmed transactions.
+ *
+ * The transactions are indexed by id and by supernode cleaned id, ordered by
+ * block generation priority and by expiration. Changes made within a database
+ * transaction are undone if the database transaction is rolled back, so the
+ * pool stays consistent with the unconfirmed account balances.
+ *
+ * The pool also holds the duplicate counters of the unconfirmed transactions.
+ * The counters of a proof of work are released as soon as it leaves the pool,
+ * so a work accepts new proofs of work without waiting for the next block.
+ *
+ * The pool keeps lookup tables of the transaction identifiers for the cell
+ * counts recently requested by reconciling peers. They are updated with
+ * every change, so answering a reconciliation request does not need to add
+ * the whole pool to a new table. The tables use a salt chosen at startup
+ * which is returned to the peers.
+ *
+ * The caller must hold the blockchain write lock to change the pool.
+ */
+final class UnconfirmedPool {
+
+	/**
+	 * Unconfirmed transaction in the pool
+	 *
+	 * The sort keys are copied when the transaction is added, the height of a
+	 * transaction changes once it is included in a block.
+	 */
+	private static final class Entry {
+
+		private final UnconfirmedTransaction transaction;
+
+		/** Blockchain height at the time the transaction was added */
+		private final int height;
+
+		private final int transactionHeight;
+		private final int expiration;
+
+		private Entry(final UnconfirmedTransaction transaction, final int height) {
+			this.transaction = transaction;
+			this.height = height;
+			this.transactionHeight = transaction.getHeight();
+			// Special Treatment for REDEEM Transactions with older timestamp here
+			if (transaction.getAttachment().getTransactionType() == TransactionType.Payment.REDEEM)
+				this.expiration = Convert.toEpochTime(transaction.getArrivalTimestamp())
+						+ (transaction.getDeadline() * 60);
+			else this.expiration = transaction.getExpiration();
+		}
+	}
+
+	/**
+	 * Change of the pool within a database transaction
+	 */
+	private static final class Change {
+
+		private final Entry entry;
+		private final boolean added;
+
+		private Change(final Entry entry, final boolean added) {
+			this.entry = entry;
+			this.added = added;
+		}
+	}
+
+	/** Block generation order: transaction height, fee per byte, arrival time */
+	private static final Comparator<Entry> PRIORITY_ORDER = (e1, e2) -> {
+		int compare;
+		// Sort by transaction_height ASC
+		compare = Integer.compare(e1.transactionHeight, e2.transactionHeight);
+		if (compare != 0) return compare;
+		// Sort by fee_per_byte DESC
+		compare = Long.compare(e1.transaction.getFeePerByte(), e2.transaction.getFeePerByte());
+		if (compare != 0) return -compare;
+		// Sort by arrival_timestamp ASC
+		compare = Long.compare(e1.transaction.getArrivalTimestamp(), e2.transaction.getArrivalTimestamp());
+		if (compare != 0) return compare;
+		// Sort by transaction ID ASC
+		return Long.compare(e1.transaction.getId(), e2.transaction.getId());
+	};
+
+	private static final Comparator<Entry> EXPIRATION_ORDER = (e1, e2) -> {
+		final int compare = Integer.compare(e1.expiration, e2.expiration);
+		return compare != 0 ? compare : Long.compare(e1.transaction.getId(), e2.transaction.getId());
+	};
+
+	/** Maximum number of lookup tables kept up to date */
+	private static final int LOOKUP_TABLE_COUNT = 4;
+
+	private final Map<Long, Entry> byId = new HashMap<>();
+	private final Map<Long, Entry> bySNCleanId = new HashMap<>();
+	private final TreeSet<Entry> byPriority = new TreeSet<>(UnconfirmedPool.PRIORITY_ORDER);
+	private final TreeSet<Entry> byExpiration = new TreeSet<>(UnconfirmedPool.EXPIRATION_ORDER);
+
+	/** Duplicate counters used by TransactionType.isUnconfirmedDuplicate */
+	private final Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
+
+	/** Salt of the lookup tables */
+	private final long lookupSalt = ThreadLocalRandom.current().nextLong();
+
+	/** Lookup tables of the transaction identifiers by cell count, least recently used first */
+	private final Map<Integer, InvertibleBloomLookupTable> lookupTables = new LinkedHashMap<Integer, InvertibleBloomLookupTable>(
+			UnconfirmedPool.LOOKUP_TABLE_COUNT, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Integer, InvertibleBloomLookupTable> eldest) {
+			return this.size() > UnconfirmedPool.LOOKUP_TABLE_COUNT;
+		}
+
+	};
+
+	/** Changes of the current database transaction */
+	private final ThreadLocal<List<Change>> pendingChanges = new ThreadLocal<>();
+
+	private final TransactionalDb.TransactionCallback pendingCallback = new TransactionalDb.TransactionCallback() {
+
+		@Override
+		public void commit() {
+			UnconfirmedPool.this.pendingChanges.remove();
+		}
+
+		@Override
+		public void rollback() {
+			UnconfirmedPool.this.undoPendingChanges();
+		}
+
+	};
+
+	/**
+	 * Add a transaction that passed the duplicate check
+	 *
+	 * @param transaction
+	 *            Unconfirmed transaction
+	 * @param height
+	 *            Current blockchain height
+	 */
+	synchronized void add(final UnconfirmedTransaction transaction, final int height) {
+		final Entry entry = new Entry(transaction, height);
+		this.addEntry(entry);
+		this.recordChange(entry, true);
+	}
+
+	/**
+	 * Remove a transaction
+	 *
+	 * @param transactionId
+	 *            Transaction identifier
+	 * @return Removed transaction or null if it is not in the pool
+	 */
+	synchronized UnconfirmedTransaction remove(final long transactionId) {
+		final Entry entry = this.byId.get(transactionId);
+		if (entry == null) return null;
+		this.removeEntry(entry);
+		this.releaseDuplicates(entry);
+		this.recordChange(entry, false);
+		return entry.transaction;
+	}
+
+	/**
+	 * Remove the transactions added above a height
+	 *
+	 * The duplicate counters are reset to the proofs of work left in the pool.
+	 *
+	 * @param height
+	 *            Height
+	 * @return Removed transactions
+	 */
+	synchronized List<UnconfirmedTransaction> removeAbove(final int height) {
+		final List<UnconfirmedTransaction> removed = new ArrayList<>();
+		for (final Entry entry : new ArrayList<>(this.byId.values())) {
+			if (entry.height <= height) continue;
+			this.removeEntry(entry);
+			this.recordChange(entry, false);
+			removed.add(entry.transaction);
+		}
+		this.resetDuplicates();
+		return removed;
+	}
+
+	/**
+	 * Remove all transactions and reset the duplicate counters
+	 *
+	 * @return Removed transactions in block generation order
+	 */
+	synchronized List<UnconfirmedTransaction> clear() {
+		final List<UnconfirmedTransaction> removed = new ArrayList<>(this.byPriority.size());
+		for (final Entry entry : new ArrayList<>(this.byPriority)) {
+			this.removeEntry(entry);
+			this.recordChange(entry, false);
+			removed.add(entry.transaction);
+		}
+		this.duplicates.clear();
+		return removed;
+	}
+
+	synchronized UnconfirmedTransaction get(final long transactionId) {
+		final Entry entry = this.byId.get(transactionId);
+		return entry != null ? entry.transaction : null;
+	}
+
+	synchronized UnconfirmedTransaction getBySNCleanId(final long sncleanId) {
+		final Entry entry = this.bySNCleanId.get(sncleanId);
+		return entry != null ? entry.transaction : null;
+	}
+
+	/**
+	 * Return all transactions
+	 *
+	 * @return Transactions in block generation order
+	 */
+	synchronized List<UnconfirmedTransaction> getAll() {
+		final List<UnconfirmedTransaction> transactions = new ArrayList<>(this.byPriority.size());
+		this.byPriority.forEach(entry -> transactions.add(entry.transaction));
+		return transactions;
+	}
+
+	synchronized List<Long> getIds() {
+		return new ArrayList<>(this.byId.keySet());
+	}
+
+	/**
+	 * Return the expired transactions
+	 *
+	 * @param time
+	 *            Current epoch time
+	 * @return Transactions expiring before the time
+	 */
+	synchronized List<UnconfirmedTransaction> getExpired(final int time) {
+		final List<UnconfirmedTransaction> expired = new ArrayList<>();
+		for (final Entry entry : this.byExpiration) {
+			if (entry.expiration >= time) break;
+			expired.add(entry.transaction);
+		}
+		return expired;
+	}
+
+	/**
+	 * Return the duplicate counters, the caller must hold the blockchain write
+	 * lock to change them
+	 *
+	 * @return Duplicate counters
+	 */
+	synchronized Map<TransactionType, Map<String, Integer>> getDuplicates() {
+		return this.duplicates;
+	}
+
+	synchronized int size() {
+		return this.byId.size();
+	}
+
+	long getLookupSalt() {
+		return this.lookupSalt;
+	}
+
+	/**
+	 * Return a lookup table of the transaction identifiers
+	 *
+	 * @param cellCount
+	 *            Number of cells
+	 * @return Table using the pool salt, the caller may consume it
+	 */
+	synchronized InvertibleBloomLookupTable getLookupTable(final int cellCount) {
+		return this.lookupTables.computeIfAbsent(cellCount, k -> {
+			final InvertibleBloomLookupTable table = new InvertibleBloomLookupTable(this.lookupSalt, cellCount);
+			this.byId.keySet().forEach(table::add);
+			return table;
+		}).copy();
+	}
+
+	private void addEntry(final Entry entry) {
+		this.byId.put(entry.transaction.getId(), entry);
+		this.bySNCleanId.put(entry.transaction.getSNCleanedId(), entry);
+		this.byPriority.add(entry);
+		this.byExpiration.add(entry);
+		this.lookupTables.values().forEach(table -> table.add(entry.transaction.getId()));
+	}
+
+	private void removeEntry(final Entry entry) {
+		this.byId.remove(entry.transaction.getId());
+		this.bySNCleanId.remove(entry.transaction.getSNCleanedId(), entry);
+		this.byPriority.remove(entry);
+		this.byExpiration.remove(entry);
+		this.lookupTables.values().forEach(table -> table.remove(entry.transaction.getId()));
+	}
+
+	/**
+	 * Count a proof of work the way TransactionType.isUnconfirmedDuplicate
+	 * does: the hash is exclusive and the work allows a limited number
+	 */
+	private void countDuplicates(final Entry entry) {
+		if (entry.transaction.getType() != TransactionType.WorkControl.PROOF_OF_WORK) return;
+		final Attachment.PiggybackedProofOfWork attachment = (Attachment.PiggybackedProofOfWork) entry.transaction
+				.getAttachment();
+		final Map<String, Integer> counters = this.duplicates
+				.computeIfAbsent(TransactionType.WorkControl.PROOF_OF_WORK, k -> new HashMap<>());
+		counters.put(Convert.toHexString(attachment.getHash()), 0);
+		counters.merge(String.valueOf(attachment.getWorkId()), 1, Integer::sum);
+	}
+
+	private void releaseDuplicates(final Entry entry) {
+		if (entry.transaction.getType() != TransactionType.WorkControl.PROOF_OF_WORK) return;
+		final Attachment.PiggybackedProofOfWork attachment = (Attachment.PiggybackedProofOfWork) entry.transaction
+				.getAttachment();
+		final Map<String, Integer> counters = this.duplicates.get(TransactionType.WorkControl.PROOF_OF_WORK);
+		if (counters == null) return;
+		counters.remove(Convert.toHexString(attachment.getHash()));
+		counters.computeIfPresent(String.valueOf(attachment.getWorkId()), (k, count) -> count > 1 ? count - 1 : null);
+	}
+
+	/**
+	 * Reset the duplicate counters to the proofs of work in the pool
+	 */
+	private void resetDuplicates() {
+		this.duplicates.clear();
+		this.byId.values().forEach(this::countDuplicates);
+	}
+
+	private void recordChange(final Entry entry, final boolean added) {
+		if (!Db.db.isInTransaction()) return;
+		List<Change> changes = this.pendingChanges.get();
+		if (changes == null) {
+			changes = new ArrayList<>();
+			this.pendingChanges.set(changes);
+			Db.db.registerCallback(this.pendingCallback);
+		}
+		changes.add(new Change(entry, added));
+	}
+
+	private synchronized void undoPendingChanges() {
+		final List<Change> changes = this.pendingChanges.get();
+		this.pendingChanges.remove();
+		if (changes == null) return;
+		for (int i = changes.size() - 1; i >= 0; i--) {
+			final Change change = changes.get(i);
+			if (change.added) {
+				this.removeEntry(change.entry);
+				this.releaseDuplicates(change.entry);
+			} else {
+				this.addEntry(change.entry);
+				this.countDuplicates(change.entry);
+			}
+		}
+	}
+
+	/**
+	 * Write the pool and the waiting transactions to a snapshot file
+	 *
+	 * @param path
+	 *            Snapshot file
+	 * @param blockId
+	 *            Last block identifier
+	 * @param waitingTransactions
+	 *            Transactions waiting to be processed
+	 * @throws IOException
+	 *             Unable to write the file
+	 */
+	synchronized void saveSnapshot(final Path path, final long blockId,
+			final Collection<UnconfirmedTransaction> waitingTransactions) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeLong(blockId);
+			out.writeInt(this.byPriority.size());
+			for (final Entry entry : this.byPriority) {
+				out.writeInt(entry.height);
+				UnconfirmedPool.writeTransaction(out, entry.transaction);
+			}
+			out.writeInt(waitingTransactions.size());
+			for (final UnconfirmedTransaction transaction : waitingTransactions)
+				UnconfirmedPool.writeTransaction(out, transaction);
+		}
+	}
+
+	/**
+	 * Restore the pool from a snapshot file
+	 *
+	 * If the snapshot was saved at the last block the transactions are put
+	 * back with the heights they were added at, the unconfirmed balances still
+	 * hold their reservations at every account version. Otherwise they are
+	 * added to the waiting transactions and processed again.
+	 *
+	 * @param path
+	 *            Snapshot file
+	 * @param blockId
+	 *            Last block identifier
+	 * @param waitingTransactions
+	 *            Transactions waiting to be processed
+	 * @return true if the pool was restored
+	 * @throws IOException
+	 *             Unable to read the file
+	 * @throws NxtException.NotValidException
+	 *             Snapshot contains an invalid transaction
+	 */
+	synchronized boolean restoreSnapshot(final Path path, final long blockId,
+			final Collection<UnconfirmedTransaction> waitingTransactions)
+			throws IOException, NxtException.NotValidException {
+		final List<Entry> entries;
+		final List<UnconfirmedTransaction> waiting;
+		final long snapshotBlockId;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			snapshotBlockId = in.readLong();
+			int count = in.readInt();
+			entries = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				final int height = in.readInt();
+				entries.add(new Entry(UnconfirmedPool.readTransaction(in), height));
+			}
+			count = in.readInt();
+			waiting = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) waiting.add(UnconfirmedPool.readTransaction(in));
+		}
+		final boolean restore = (snapshotBlockId == blockId) && this.byId.isEmpty();
+		if (restore) for (final Entry entry : entries) {
+			this.addEntry(entry);
+			this.countDuplicates(entry);
+		}
+		else entries.forEach(entry -> waitingTransactions.add(entry.transaction));
+		waitingTransactions.addAll(waiting);
+		return restore;
+	}
+
+	private static void writeTransaction(final DataOutputStream out, final UnconfirmedTransaction transaction)
+			throws IOException {
+		out.writeLong(transaction.getArrivalTimestamp());
+		out.writeInt(transaction.getHeight());
+		final byte[] bytes = transaction.getBytes();
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		final JSONObject prunableJSON = transaction.getPrunableAttachmentJSON();
+		if (prunableJSON == null) out.writeInt(-1);
+		else {
+			final byte[] prunableBytes = prunableJSON.toJSONString().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(prunableBytes.length);
+			out.write(prunableBytes);
+		}
+	}
+
+	private static UnconfirmedTransaction readTransaction(final DataInputStream in)
+			throws IOException, NxtException.NotValidException {
+		final long arrivalTimestamp = in.readLong();
+		final int height = in.readInt();
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		final int prunableLength = in.readInt();
+		JSONObject prunableAttachments = null;
+		if (prunableLength >= 0) {
+			final byte[] prunableBytes = new byte[prunableLength];
+			in.readFully(prunableBytes);
+			prunableAttachments = (JSONObject) JSONValue.parse(new String(prunableBytes, StandardCharsets.UTF_8));
+		}
+		final TransactionImpl transaction = TransactionImpl.newTransactionBuilder(bytes, prunableAttachments).build();
+		transaction.setHeight(height);
+		return new UnconfirmedTransaction(transaction, arrivalTimestamp);
+	}
+
+}
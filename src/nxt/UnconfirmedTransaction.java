@@ -16,17 +16,10 @@
 
 package nxt;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Types;
 import java.util.List;
 import java.util.Objects;
 
-import nxt.util.Convert;
 import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
 
 import nxt.db.DbKey;
 import nxt.util.Filter;
@@ -49,23 +42,6 @@ class UnconfirmedTransaction implements Transaction {
 		return transaction.getSupernodeSig();
 	}
 
-	UnconfirmedTransaction(final ResultSet rs) throws SQLException {
-		try {
-			final byte[] transactionBytes = rs.getBytes("transaction_bytes");
-			JSONObject prunableAttachments = null;
-			final String prunableJSON = rs.getString("prunable_json");
-			if (prunableJSON != null) prunableAttachments = (JSONObject) JSONValue.parse(prunableJSON);
-			final TransactionImpl.BuilderImpl builder = TransactionImpl.newTransactionBuilder(transactionBytes,
-					prunableAttachments);
-			this.transaction = builder.build();
-			this.transaction.setHeight(rs.getInt("transaction_height"));
-			this.arrivalTimestamp = rs.getLong("arrival_timestamp");
-			this.feePerByte = rs.getLong("fee_per_byte");
-		} catch (final NxtException.ValidationException e) {
-			throw new RuntimeException(e.toString(), e);
-		}
-	}
-
 	UnconfirmedTransaction(final TransactionImpl transaction, final long arrivalTimestamp) {
 		this.transaction = transaction;
 		this.arrivalTimestamp = arrivalTimestamp;
@@ -279,33 +255,6 @@ class UnconfirmedTransaction implements Transaction {
 		return this.transaction.hashCode();
 	}
 
-	void save(final Connection con) throws SQLException {
-		try (PreparedStatement pstmt = con
-				.prepareStatement("INSERT INTO unconfirmed_transaction (id, sncleanid, transaction_height, "
-						+ "fee_per_byte, expiration, transaction_bytes, prunable_json, arrival_timestamp, height) "
-						+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
-			int i = 0;
-			pstmt.setLong(++i, this.transaction.getId());
-			pstmt.setLong(++i, this.transaction.getSNCleanedId());
-			pstmt.setInt(++i, this.transaction.getHeight());
-			pstmt.setLong(++i, this.feePerByte);
-
-			// Special Treatment for REDEEM Transactions with older timestamp here
-
-			if(this.transaction.getAttachment().getTransactionType() == TransactionType.Payment.REDEEM)
-                pstmt.setInt(++i, Convert.toEpochTime(this.arrivalTimestamp) + (this.transaction.getDeadline() * 60));
-            else pstmt.setInt(++i, this.transaction.getExpiration());
-
-			pstmt.setBytes(++i, this.transaction.getBytes());
-			final JSONObject prunableJSON = this.transaction.getPrunableAttachmentJSON();
-			if (prunableJSON != null) pstmt.setString(++i, prunableJSON.toJSONString());
-            else pstmt.setNull(++i, Types.VARCHAR);
-			pstmt.setLong(++i, this.arrivalTimestamp);
-			pstmt.setInt(++i, Nxt.getBlockchain().getHeight());
-			pstmt.executeUpdate();
-		}
-	}
-
 	@Override
 	public void setExtraInfo(final String extraInfo) {
 		this.extraInfo = extraInfo;
@@ -24,8 +24,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.simple.JSONObject;
 
@@ -33,6 +39,7 @@ import nxt.db.DbClause;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.DbUtils;
+import nxt.db.TransactionalDb;
 import nxt.db.VersionedEntityDbTable;
 import nxt.util.Convert;
 import nxt.util.Listener;
@@ -69,6 +76,100 @@ public final class Work {
             shuffling.save(con);
         }
 
+        @Override
+        protected boolean supportsBatch() {
+            return true;
+        }
+
+        @Override
+        protected String getSaveStatement() {
+            return Work.SAVE_STATEMENT;
+        }
+
+        @Override
+        protected void setSaveParameters(final PreparedStatement pstmt, final Work shuffling) throws SQLException {
+            shuffling.setSaveParameters(pstmt);
+        }
+
+        @Override
+        public void rollback(final int height) {
+            Work.recordChange(new IndexChange(null, height));
+            super.rollback(height);
+        }
+
+        @Override
+        public void truncate() {
+            Work.recordChange(new IndexChange(null, -1));
+            super.truncate();
+        }
+
+        @Override
+        public void afterRestore() {
+            synchronized (Work.openWorksLock) {
+                Work.openWorks = null;
+            }
+        }
+
+    };
+
+    /**
+     * Open work of the index with the height of its last committed change
+     */
+    private static final class IndexedWork {
+
+        private final Work work;
+        private final int height;
+
+        private IndexedWork(final Work work, final int height) {
+            this.work = work;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Change of the work table within a database transaction, a work saved at
+     * a height or a rollback to a height if the work is null
+     */
+    private static final class IndexChange {
+
+        private final Work work;
+        private final int height;
+
+        private IndexChange(final Work work, final int height) {
+            this.work = work;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Committed open works (latest and not closed) indexed by work id, null
+     * until the index is loaded. The works in it are copies shared between
+     * threads and must never be modified.
+     */
+    private static volatile Map<Long, IndexedWork> openWorks;
+
+    /** Heights at which works were closed, kept for the rollback window in height order */
+    private static final Map<Long, Integer> closedWorks = new LinkedHashMap<>();
+
+    private static final Object openWorksLock = new Object();
+
+    /** Changes of the work table in the database transaction of the current thread */
+    private static final ThreadLocal<List<IndexChange>> pendingChanges = new ThreadLocal<>();
+
+    private static final TransactionalDb.TransactionCallback openWorksCallback = new TransactionalDb.TransactionCallback() {
+
+        @Override
+        public void commit() {
+            final List<IndexChange> changes = Work.pendingChanges.get();
+            Work.pendingChanges.remove();
+            if (changes != null) Work.applyChanges(changes);
+        }
+
+        @Override
+        public void rollback() {
+            Work.pendingChanges.remove();
+        }
+
     };
 
     static {
@@ -82,7 +183,7 @@ public final class Work {
                 if (shuffling.close_pending || --shuffling.blocksRemaining <= 0) shuffling.natural_timeout(block);
                 else {
                     shuffling.updatePowTarget(block);
-                    Work.workTable.insert(shuffling);
+                    Work.insert(shuffling);
                 }
             });
         }, BlockchainProcessor.Event.AFTER_BLOCK_APPLY);
@@ -90,13 +191,21 @@ public final class Work {
 
     private static final double LOG2 = Math.log(2.0);
 
+    private static final String SAVE_STATEMENT = "MERGE INTO work (id, closing_timestamp, work_id, block_id, "
+            + "sender_account_id, xel_per_pow, repetitions, repetitions_left, title, blocks_remaining, closed, "
+            + "close_pending, cancelled, timedout, xel_per_bounty, balance_pow_fund, balance_bounty_fund, "
+            + "balance_pow_fund_orig, balance_bounty_fund_orig, received_bounties, received_bounty_announcements, "
+            + "received_pows, bounty_limit, originating_height, height, work_min_pow_target, combined_storage, latest) "
+            + "KEY (id, height) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)";
+
     public static boolean addListener(final Listener<Work> listener, final Event eventType) {
         return Work.listeners.addListener(listener, eventType);
     }
 
     static void addWork(final Transaction transaction, final Attachment.WorkCreation attachment) {
         final Work shuffling = new Work(transaction, attachment);
-        Work.workTable.insert(shuffling);
+        Work.insert(shuffling);
         Work.listeners.notify(shuffling, Event.WORK_CREATED);
     }
 
@@ -214,6 +323,138 @@ public final class Work {
         }
     }
 
+    /**
+     * Return the latest version of a work without reading the database
+     *
+     * Open works are served from an in-memory index of the last committed
+     * state, closed works and lookups inside a database transaction that has
+     * already modified the work table fall back to getWorkByWorkId. The
+     * returned work may be shared with other threads, it must only be used
+     * for reading. Callers changing the work have to use getWorkByWorkId.
+     *
+     * @param work_id
+     *            Work identifier
+     * @return Work or null if the work does not exist
+     */
+    static Work getReadOnlyWorkByWorkId(final long work_id) {
+        if (Work.pendingChanges.get() == null) {
+            final IndexedWork indexedWork = Work.getOpenWorks().get(work_id);
+            if (indexedWork != null) return indexedWork.work;
+        }
+        return Work.getWorkByWorkId(work_id);
+    }
+
+    private static Map<Long, IndexedWork> getOpenWorks() {
+        Map<Long, IndexedWork> works = Work.openWorks;
+        if (works != null) return works;
+        synchronized (Work.openWorksLock) {
+            if (Work.openWorks == null) {
+                works = new ConcurrentHashMap<>();
+                try (Connection con = Db.db.getConnection();
+                     PreparedStatement pstmt = con.prepareStatement(
+                             "SELECT work.* FROM work WHERE work.closed = FALSE AND work.latest = TRUE");
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        final Work work = new Work(rs, Work.workDbKeyFactory.newKey(rs));
+                        works.put(work.work_id, new IndexedWork(work, rs.getInt("height")));
+                    }
+                } catch (final SQLException e) {
+                    throw new RuntimeException(e.toString(), e);
+                }
+                Work.closedWorks.clear();
+                Work.openWorks = works;
+            }
+            return Work.openWorks;
+        }
+    }
+
+    /**
+     * Remember a change of the work table in the current database transaction
+     *
+     * The open work index is bypassed for the rest of the transaction and the
+     * changes are applied to it once the transaction has been committed.
+     * Trimming only removes rows that are no longer the latest version and
+     * does not affect the index.
+     */
+    private static void recordChange(final IndexChange change) {
+        if (!Db.db.isInTransaction()) {
+            synchronized (Work.openWorksLock) {
+                Work.openWorks = null;
+            }
+            return;
+        }
+        List<IndexChange> changes = Work.pendingChanges.get();
+        if (changes == null) {
+            changes = new ArrayList<>();
+            Work.pendingChanges.set(changes);
+            Db.db.registerCallback(Work.openWorksCallback);
+        }
+        changes.add(change);
+    }
+
+    /**
+     * Apply the committed changes of a database transaction to the open work
+     * index
+     *
+     * Saved works replace their index entry or leave the index once closed.
+     * A rollback reloads the works changed above the rollback height.
+     */
+    private static void applyChanges(final List<IndexChange> changes) {
+        synchronized (Work.openWorksLock) {
+            final Map<Long, IndexedWork> works = Work.openWorks;
+            if (works == null) return;
+            for (final IndexChange change : changes)
+                if (change.work != null) Work.indexWork(works, new Work(change.work), change.height);
+                else if (change.height < 0) {
+                    works.clear();
+                    Work.closedWorks.clear();
+                } else Work.reloadWorks(works, change.height);
+            final int minHeight = Nxt.getBlockchain().getHeight() - Constants.MAX_ROLLBACK;
+            final Iterator<Integer> it = Work.closedWorks.values().iterator();
+            while (it.hasNext() && (it.next() < minHeight)) it.remove();
+        }
+    }
+
+    private static void indexWork(final Map<Long, IndexedWork> works, final Work work, final int height) {
+        Work.closedWorks.remove(work.work_id);
+        if (work.closed) {
+            works.remove(work.work_id);
+            Work.closedWorks.put(work.work_id, height);
+        } else works.put(work.work_id, new IndexedWork(work, height));
+    }
+
+    private static void reloadWorks(final Map<Long, IndexedWork> works, final int height) {
+        final Set<Long> workIds = new HashSet<>();
+        works.forEach((workId, indexedWork) -> {
+            if (indexedWork.height > height) workIds.add(workId);
+        });
+        Work.closedWorks.forEach((workId, closedHeight) -> {
+            if (closedHeight > height) workIds.add(workId);
+        });
+        workIds.forEach(workId -> {
+            works.remove(workId);
+            Work.closedWorks.remove(workId);
+        });
+        try (Connection con = Db.db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement(
+                     "SELECT work.* FROM work WHERE work.work_id = ? AND work.latest = TRUE")) {
+            for (final long workId : workIds) {
+                pstmt.setLong(1, workId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) Work.indexWork(works, new Work(rs, Work.workDbKeyFactory.newKey(rs)),
+                            rs.getInt("height"));
+                }
+            }
+        } catch (final SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    private static void insert(final Work work) {
+        Work.recordChange(new IndexChange(work, Nxt.getBlockchain().getHeight()));
+        Work.workTable.insert(work);
+    }
+
     static void init() {
     }
 
@@ -293,6 +534,39 @@ public final class Work {
         this.combined_storage = Convert.byte2int(rs.getBytes("combined_storage"));
     }
 
+    /**
+     * Copy a work for the open work index
+     */
+    private Work(final Work work) {
+        this.id = work.id;
+        this.work_id = work.work_id;
+        this.block_id = work.block_id;
+        this.dbKey = work.dbKey;
+        this.xel_per_pow = work.xel_per_pow;
+        this.title = work.title;
+        this.blocksRemaining = work.blocksRemaining;
+        this.closed = work.closed;
+        this.close_pending = work.close_pending;
+        this.cancelled = work.cancelled;
+        this.timedout = work.timedout;
+        this.xel_per_bounty = work.xel_per_bounty;
+        this.repetitions = work.repetitions;
+        this.repetitions_left = work.repetitions_left;
+        this.balance_pow_fund = work.balance_pow_fund;
+        this.balance_bounty_fund = work.balance_bounty_fund;
+        this.balance_pow_fund_orig = work.balance_pow_fund_orig;
+        this.balance_bounty_fund_orig = work.balance_bounty_fund_orig;
+        this.received_bounties = work.received_bounties;
+        this.received_pows = work.received_pows;
+        this.bounty_limit = work.bounty_limit;
+        this.sender_account_id = work.sender_account_id;
+        this.originating_height = work.originating_height;
+        this.received_bounty_announcements = work.received_bounty_announcements;
+        this.closing_timestamp = work.closing_timestamp;
+        this.work_min_pow_target = work.work_min_pow_target;
+        this.combined_storage = work.combined_storage != null ? work.combined_storage.clone() : null;
+    }
+
     private Work(final Transaction transaction, final Attachment.WorkCreation attachment) {
         this.id = transaction.getId();
         this.work_id = transaction.getSNCleanedId();
@@ -457,7 +731,7 @@ public final class Work {
             // all was paid out, close it!
             if (this.balance_bounty_fund < this.xel_per_bounty) this.natural_timeout(bl);
             else{
-                Work.workTable.insert(this);
+                Work.insert(this);
             }
         }
     }
@@ -513,7 +787,7 @@ public final class Work {
 
         }
 
-        Work.workTable.insert(this);
+        Work.insert(this);
 
         // notify
         Work.listeners.notify(this, Event.WORK_CANCELLED);
@@ -612,7 +886,7 @@ public final class Work {
 				// pass through
 			}
 
-		Work.workTable.insert(this);
+		Work.insert(this);
 
 		// notify
 		Work.listeners.notify(this, Event.WORK_CANCELLED);
@@ -630,7 +904,7 @@ public final class Work {
 
             // all was paid out, close it!
             if (this.balance_pow_fund < this.xel_per_pow) this.natural_timeout(bl);
-            else Work.workTable.insert(this);
+            else Work.insert(this);
         }
 
     }
@@ -641,49 +915,49 @@ public final class Work {
             this.received_bounty_announcements++;
             // all was paid out, close it!
             if (this.received_bounty_announcements == this.bounty_limit) this.natural_timeout(bl);
-            else Work.workTable.insert(this);
+            else Work.insert(this);
         }
     }
 
     private void save(final Connection con) throws SQLException {
-        try (PreparedStatement pstmt = con.prepareStatement(
-                "MERGE INTO work (id, closing_timestamp, work_id, block_id, sender_account_id, xel_per_pow, repetitions, repetitions_left, title, blocks_remaining, closed, close_pending, cancelled, timedout, xel_per_bounty, balance_pow_fund, balance_bounty_fund, balance_pow_fund_orig, balance_bounty_fund_orig, received_bounties, received_bounty_announcements, received_pows, bounty_limit, originating_height, height, work_min_pow_target, combined_storage, latest) "
-                        + "KEY (id, height) "
-                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)")) {
-            int i = 0;
-            pstmt.setLong(++i, this.id);
-            pstmt.setInt(++i, this.closing_timestamp);
-            pstmt.setLong(++i, this.work_id);
-            pstmt.setLong(++i, this.block_id);
-            pstmt.setLong(++i, this.sender_account_id);
-            pstmt.setLong(++i, this.xel_per_pow);
-            pstmt.setInt(++i, this.repetitions);
-            pstmt.setInt(++i, this.repetitions_left);
-            pstmt.setString(++i, this.title);
-            pstmt.setShort(++i, this.blocksRemaining);
-            pstmt.setBoolean(++i, this.closed);
-            pstmt.setBoolean(++i, this.close_pending);
-            pstmt.setBoolean(++i, this.cancelled);
-            pstmt.setBoolean(++i, this.timedout);
-            pstmt.setLong(++i, this.xel_per_bounty);
-            pstmt.setLong(++i, this.balance_pow_fund);
-            pstmt.setLong(++i, this.balance_bounty_fund);
-            pstmt.setLong(++i, this.balance_pow_fund_orig);
-            pstmt.setLong(++i, this.balance_bounty_fund_orig);
-            pstmt.setInt(++i, this.received_bounties);
-            pstmt.setInt(++i, this.received_bounty_announcements);
-            pstmt.setInt(++i, this.received_pows);
-            pstmt.setInt(++i, this.bounty_limit);
-            //noinspection SuspiciousNameCombination
-            pstmt.setInt(++i, this.originating_height);
-            pstmt.setInt(++i,Nxt.getBlockchain().getHeight());
-            pstmt.setBytes(++i, this.work_min_pow_target.toByteArray());
-            pstmt.setBytes(++i, Convert.int2byte(this.combined_storage));
-
+        try (PreparedStatement pstmt = con.prepareStatement(Work.SAVE_STATEMENT)) {
+            this.setSaveParameters(pstmt);
             pstmt.executeUpdate();
         }
     }
 
+    private void setSaveParameters(final PreparedStatement pstmt) throws SQLException {
+        int i = 0;
+        pstmt.setLong(++i, this.id);
+        pstmt.setInt(++i, this.closing_timestamp);
+        pstmt.setLong(++i, this.work_id);
+        pstmt.setLong(++i, this.block_id);
+        pstmt.setLong(++i, this.sender_account_id);
+        pstmt.setLong(++i, this.xel_per_pow);
+        pstmt.setInt(++i, this.repetitions);
+        pstmt.setInt(++i, this.repetitions_left);
+        pstmt.setString(++i, this.title);
+        pstmt.setShort(++i, this.blocksRemaining);
+        pstmt.setBoolean(++i, this.closed);
+        pstmt.setBoolean(++i, this.close_pending);
+        pstmt.setBoolean(++i, this.cancelled);
+        pstmt.setBoolean(++i, this.timedout);
+        pstmt.setLong(++i, this.xel_per_bounty);
+        pstmt.setLong(++i, this.balance_pow_fund);
+        pstmt.setLong(++i, this.balance_bounty_fund);
+        pstmt.setLong(++i, this.balance_pow_fund_orig);
+        pstmt.setLong(++i, this.balance_bounty_fund_orig);
+        pstmt.setInt(++i, this.received_bounties);
+        pstmt.setInt(++i, this.received_bounty_announcements);
+        pstmt.setInt(++i, this.received_pows);
+        pstmt.setInt(++i, this.bounty_limit);
+        //noinspection SuspiciousNameCombination
+        pstmt.setInt(++i, this.originating_height);
+        pstmt.setInt(++i,Nxt.getBlockchain().getHeight());
+        pstmt.setBytes(++i, this.work_min_pow_target.toByteArray());
+        pstmt.setBytes(++i, Convert.int2byte(this.combined_storage));
+    }
+
     public void setBlocksRemaining(final short blocksRemaining) {
         this.blocksRemaining = blocksRemaining;
     }
@@ -728,14 +1002,25 @@ public final class Work {
     public JSONObject toJsonObjectWithSource() {
         final JSONObject obj = this.toJsonObject();
 
-        final PrunableSourceCode p = PrunableSourceCode.getPrunableSourceCodeByWorkId(this.work_id);
-        if (p == null) obj.put("source", "");
-        else obj.put("source", Ascii85.encode(Convert.uncompress(p.getSource())));
+        obj.put("source", Work.getEncodedSource(this.work_id));
         // Todo, add current storage here somehow
 
         return obj;
     }
 
+    /**
+     * Return the Ascii85 encoded source code of a work
+     *
+     * @param workId
+     *            Work identifier
+     * @return Encoded source code or an empty string if the source has been pruned
+     */
+    static String getEncodedSource(final long workId) {
+        final PrunableSourceCode p = PrunableSourceCode.getPrunableSourceCodeByWorkId(workId);
+        if (p == null) return "";
+        return Ascii85.encode(Convert.uncompress(p.getSource()));
+    }
+
     private double kimoto(double x) {
         return 1 + 0.7084 * Math.pow(x / 28.0, -1.228);
     }
@@ -757,7 +1042,7 @@ public final class Work {
             // Do standard retargeting (yet to be peer reviewed)
 
             long PastBlocksMass = 0;
-            final int account_for_blocks_max = 28;
+            final int account_for_blocks_max = PowWindow.WINDOW_SIZE;
             final int account_for_blocks_min = 1;
             final int max_full_check_depth = 10;
             long seconds_passed = 0;
@@ -767,14 +1052,16 @@ public final class Work {
             int fullCnt = 0;
             int emptyCnt = 0;
             double local_adjustment = 1;
-            Block b = currentBlock;
+            final PowWindow.Entry head = PowWindow.get(currentBlock);
+            final PowWindow.Counter powCounter = PowWindow.getCounter(this.getId());
+            PowWindow.Entry b = head;
             int counter = 0;
             int current_timestamp = b.getTimestamp();
             double trs_per_second, target_per_second;
             while (isFull || isEmpty) {
-                if (b == null || b.getId() == this.getBlock_id()) break;
+                if (b == null || b.getBlockId() == this.getBlock_id()) break;
                 counter = counter + 1;
-                long num = b.countNumberPOWPerWorkId(this.getId());
+                long num = powCounter.get(b);
 
                 if (isFull && num == 20) fullCnt += 1;
                 else isFull = false;
@@ -782,16 +1069,16 @@ public final class Work {
                 if (isEmpty && num == 0) emptyCnt += 1;
                 else isEmpty = false;
 
-                if (b.getPreviousBlock() == null || counter == account_for_blocks_max) break;
-                b = b.getPreviousBlock();
+                if (counter == account_for_blocks_max) break;
+                b = PowWindow.getPrevious(b);
             }
-            b = currentBlock;
+            b = head;
             counter = 0;
             while (true) {
-                if (b == null || b.getId() == this.getBlock_id()) break;
+                if (b == null || b.getBlockId() == this.getBlock_id()) break;
                 counter = counter + 1;
-                PastBlocksMass += b.countNumberPOWPerWorkId(this.getId());
-                PastBlocksTotalMass += b.countNumberPOW();
+                PastBlocksMass += powCounter.get(b);
+                PastBlocksTotalMass += b.getTotalPow();
 
 
                 if (b.getTimestamp() > current_timestamp)
@@ -809,31 +1096,36 @@ public final class Work {
                     double kim = kimoto(PastBlocksMass * 30);
 
                     if (counter >= account_for_blocks_min && (local_adjustment > kim || local_adjustment < 1 / kim)) {
-                        Logger.logKomotoMessage("Komoto: kim = " + kim + ", 1/kim = " + 1 / kim + ", trs_per_second = " + trs_per_second + ", adjustment = " + local_adjustment);
+                        if (Logger.isKomotoEnabled())
+                            Logger.logKomotoMessage("Komoto: kim = " + kim + ", 1/kim = " + 1 / kim + ", trs_per_second = " + trs_per_second + ", adjustment = " + local_adjustment);
                         break;
                     }
                 }
 
-                if (b.getPreviousBlock() == null || counter == account_for_blocks_max) break;
-                b = b.getPreviousBlock();
+                if (counter == account_for_blocks_max) break;
+                b = PowWindow.getPrevious(b);
             }
 
 
             if (!(emptyCnt == 10 && PastBlocksTotalMass > 0)) {
                 // We have received at least one POW in the last 60 seconds
-                Logger.logKomotoMessage("\n\n*** RETARGETING ***");
-                Logger.logKomotoMessage("Workid: " + this.getId());
-                Logger.logKomotoMessage("Accounted last blocks: " + counter);
-                Logger.logKomotoMessage("Blocks span how much time: " + seconds_passed);
-                Logger.logKomotoMessage("How many seen POWs: " + PastBlocksMass);
-                Logger.logKomotoMessage("Scalingfactor: " + local_adjustment + "\n\n");
+                if (Logger.isKomotoEnabled()) {
+                    Logger.logKomotoMessage("\n\n*** RETARGETING ***");
+                    Logger.logKomotoMessage("Workid: " + this.getId());
+                    Logger.logKomotoMessage("Accounted last blocks: " + counter);
+                    Logger.logKomotoMessage("Blocks span how much time: " + seconds_passed);
+                    Logger.logKomotoMessage("How many seen POWs: " + PastBlocksMass);
+                    Logger.logKomotoMessage("Scalingfactor: " + local_adjustment + "\n\n");
+                }
 
             } else {
                 // This job is just too boring, others still get POWs
                 local_adjustment = 1;
-                Logger.logKomotoMessage("\n\n*** RETARGETING ***");
-                Logger.logKomotoMessage("Workid: " + this.getId());
-                Logger.logKomotoMessage("Skipped retargeting, no POW received for this job but others!\n\n");
+                if (Logger.isKomotoEnabled()) {
+                    Logger.logKomotoMessage("\n\n*** RETARGETING ***");
+                    Logger.logKomotoMessage("Workid: " + this.getId());
+                    Logger.logKomotoMessage("Skipped retargeting, no POW received for this job but others!\n\n");
+                }
 
             }
 
@@ -847,7 +1139,8 @@ public final class Work {
 
             if (targetI.compareTo(Constants.least_possible_target) == 1) targetI = Constants.least_possible_target;
             else if (targetI.compareTo(BigInteger.valueOf(1L)) == -1) targetI = BigInteger.valueOf(1L);
-            Logger.logKomotoMessage("New target: " + Convert.toHexString(targetI.toByteArray()));
+            if (Logger.isKomotoEnabled())
+                Logger.logKomotoMessage("New target: " + Convert.toHexString(targetI.toByteArray()));
 
 
         } else {
@@ -0,0 +1,331 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import nxt.db.DbIterator;
+import nxt.util.AsyncListener;
+import nxt.util.Convert;
+import nxt.util.Listener;
+import nxt.util.Listeners;
+
+/**
+ * Immutable snapshot of the mineable work list.
+ *
+ * The snapshot is built once per block and contains the serialized GetMineableWork response including the work source
+ * code. Encoded source code is carried over from one snapshot to the next, so
+ * only new work has to be read from the database. A snapshot is identified by
+ * the id of the last block it was built for, which is used as the HTTP entity
+ * tag.
+ *
+ * Snapshots are built on the block listener dispatch thread once the pushed
+ * block has been committed and the blockchain lock has been released, so
+ * pushing blocks never waits for the database reads. A request arriving
+ * before that builds the snapshot itself.
+ *
+ * The changes between consecutive snapshots are kept for a number of
+ * snapshots, so clients that already have the work list only need to receive
+ * the new, updated and removed work.
+ */
+public final class WorkSnapshot {
+
+	public enum Event {
+		SNAPSHOT_CREATED
+	}
+
+	/**
+	 * Changes between two consecutive snapshots
+	 */
+	private static final class Delta {
+
+		private final long fromBlockId;
+		private final Map<Long, JSONObject> added = new LinkedHashMap<>();
+		private final Map<Long, JSONObject> updated = new HashMap<>();
+		private final List<Long> removed = new ArrayList<>();
+
+		private Delta(final WorkSnapshot previous, final WorkSnapshot snapshot) {
+			this.fromBlockId = previous.blockId;
+			for (final Map.Entry<Long, JSONObject> entry : snapshot.worksById.entrySet()) {
+				final JSONObject old = previous.worksById.get(entry.getKey());
+				if (old == null) this.added.put(entry.getKey(), entry.getValue());
+				else {
+					final JSONObject changes = WorkSnapshot.diff(old, entry.getValue());
+					if (!changes.isEmpty()) this.updated.put(entry.getKey(), changes);
+				}
+			}
+			for (final Long workId : previous.worksById.keySet())
+				if (!snapshot.worksById.containsKey(workId)) this.removed.add(workId);
+		}
+	}
+
+	/** Number of snapshot changes kept for incremental updates */
+	private static final int HISTORY_SIZE = Math.max(Nxt.getIntProperty("nxt.workUpdateHistory", 60), 1);
+
+	private static final Listeners<WorkSnapshot, Event> listeners = new Listeners<>();
+
+	private static volatile WorkSnapshot current;
+
+	private static final Deque<Delta> history = new ArrayDeque<>();
+
+	static {
+		Nxt.getBlockchainProcessor().addListener(AsyncListener.named("WorkSnapshot", block -> {
+			if (!Nxt.getBlockchainProcessor().isDownloading()) WorkSnapshot.getSnapshot();
+		}), BlockchainProcessor.Event.BLOCK_PUSHED);
+	}
+
+	/**
+	 * Return the snapshot for the current last block, building it if necessary
+	 *
+	 * @return Current snapshot
+	 */
+	public static WorkSnapshot getSnapshot() {
+		final WorkSnapshot snapshot = WorkSnapshot.current;
+		if ((snapshot != null) && (snapshot.blockId == Nxt.getBlockchain().getLastBlock().getId())) return snapshot;
+		return WorkSnapshot.build();
+	}
+
+	private static synchronized WorkSnapshot build() {
+		final WorkSnapshot snapshot;
+		Nxt.getBlockchain().readLock();
+		try {
+			final WorkSnapshot previous = WorkSnapshot.current;
+			final Block lastBlock = Nxt.getBlockchain().getLastBlock();
+			if ((previous != null) && (previous.blockId == lastBlock.getId())) return previous;
+			snapshot = new WorkSnapshot(lastBlock, previous);
+			if (previous != null) {
+				WorkSnapshot.history.addLast(new Delta(previous, snapshot));
+				if (WorkSnapshot.history.size() > WorkSnapshot.HISTORY_SIZE) WorkSnapshot.history.removeFirst();
+			}
+			WorkSnapshot.current = snapshot;
+		} finally {
+			Nxt.getBlockchain().readUnlock();
+		}
+		WorkSnapshot.listeners.notify(snapshot, Event.SNAPSHOT_CREATED);
+		return snapshot;
+	}
+
+	public static boolean addListener(final Listener<WorkSnapshot> listener, final Event eventType) {
+		return WorkSnapshot.listeners.addListener(listener, eventType);
+	}
+
+	public static boolean removeListener(final Listener<WorkSnapshot> listener, final Event eventType) {
+		return WorkSnapshot.listeners.removeListener(listener, eventType);
+	}
+
+	/**
+	 * Return the id of the last block the current snapshot was built for
+	 * without building a new snapshot
+	 *
+	 * @return Block identifier or 0 if no snapshot has been built yet
+	 */
+	public static long getCurrentBlockId() {
+		final WorkSnapshot snapshot = WorkSnapshot.current;
+		return snapshot != null ? snapshot.blockId : 0;
+	}
+
+	/**
+	 * Return the work changes since a previous snapshot
+	 *
+	 * The changes are merged over all snapshots created since the given one.
+	 * The response contains the new work including its source code, the
+	 * changed fields of updated work and the identifiers of the work that is
+	 * no longer active.
+	 *
+	 * @param blockId
+	 *            Block identifier of the snapshot known to the client
+	 * @return Changes up to the current snapshot or null if the snapshot is
+	 *         not known anymore
+	 */
+	public static synchronized JSONObject getUpdates(final long blockId) {
+		final WorkSnapshot snapshot = WorkSnapshot.current;
+		if (snapshot == null) return null;
+		final Map<Long, JSONObject> added = new LinkedHashMap<>();
+		final Map<Long, JSONObject> updated = new LinkedHashMap<>();
+		final Set<Long> removed = new LinkedHashSet<>();
+		if (blockId != snapshot.blockId) {
+			final List<Delta> deltas = new ArrayList<>();
+			final Iterator<Delta> it = WorkSnapshot.history.descendingIterator();
+			boolean found = false;
+			while (it.hasNext() && !found) {
+				final Delta delta = it.next();
+				deltas.add(0, delta);
+				found = delta.fromBlockId == blockId;
+			}
+			if (!found) return null;
+			for (final Delta delta : deltas) {
+				added.putAll(delta.added);
+				delta.updated.forEach((workId, changes) -> {
+					final JSONObject work = added.get(workId);
+					if (work != null) {
+						final JSONObject merged = new JSONObject();
+						merged.putAll(work);
+						merged.putAll(changes);
+						added.put(workId, merged);
+					} else updated.merge(workId, changes, (previous, next) -> {
+						final JSONObject merged = new JSONObject();
+						merged.putAll(previous);
+						merged.putAll(next);
+						return merged;
+					});
+				});
+				for (final Long workId : delta.removed) {
+					updated.remove(workId);
+					if (added.remove(workId) == null) removed.add(workId);
+				}
+			}
+		}
+		final JSONArray addedJSON = new JSONArray();
+		addedJSON.addAll(added.values());
+		final JSONArray updatedJSON = new JSONArray();
+		updated.forEach((workId, changes) -> {
+			final JSONObject json = new JSONObject();
+			json.put("work_id", Convert.toUnsignedLong(workId));
+			json.putAll(changes);
+			updatedJSON.add(json);
+		});
+		final JSONArray removedJSON = new JSONArray();
+		removed.forEach(workId -> removedJSON.add(Convert.toUnsignedLong(workId)));
+		final JSONObject response = new JSONObject();
+		response.put("height", snapshot.height);
+		response.put("blockId", Long.toUnsignedString(snapshot.blockId));
+		response.put("added", addedJSON);
+		response.put("updated", updatedJSON);
+		response.put("removed", removedJSON);
+		return response;
+	}
+
+	private static JSONObject diff(final JSONObject previous, final JSONObject work) {
+		final JSONObject changes = new JSONObject();
+		for (final Object key : work.keySet()) {
+			// the storage height always is the snapshot height
+			if ("referenced_storage_height".equals(key)) continue;
+			final Object value = work.get(key);
+			if (!Objects.equals(value, previous.get(key))) changes.put(key, value);
+		}
+		return changes;
+	}
+
+	static void init() {
+	}
+
+	private final long blockId;
+	private final int height;
+	private final List<JSONObject> works;
+	private final Map<Long, JSONObject> worksById;
+	private final String[] serializedWorks;
+	private final Map<Long, String> sources;
+	private final byte[] response;
+
+	private WorkSnapshot(final Block lastBlock, final WorkSnapshot previous) {
+		this.blockId = lastBlock.getId();
+		this.height = lastBlock.getHeight();
+		final List<JSONObject> workList = new ArrayList<>();
+		this.worksById = new HashMap<>();
+		this.sources = new HashMap<>();
+		try (DbIterator<Work> iterator = Work.getActiveWorks(0, -1)) {
+			while (iterator.hasNext()) {
+				final Work work = iterator.next();
+				String source = previous != null ? previous.sources.get(work.getWork_id()) : null;
+				if (source == null) source = Work.getEncodedSource(work.getWork_id());
+				this.sources.put(work.getWork_id(), source);
+				final JSONObject json = work.toJsonObject();
+				json.put("source", source);
+				workList.add(json);
+				this.worksById.put(work.getWork_id(), json);
+			}
+		}
+		this.works = Collections.unmodifiableList(workList);
+		this.serializedWorks = new String[workList.size()];
+		for (int i = 0; i < this.serializedWorks.length; i++)
+			this.serializedWorks[i] = workList.get(i).toJSONString();
+		this.response = this.serialize(this.serializedWorks.length);
+	}
+
+	private byte[] serialize(final int count) {
+		final StringBuilder sb = new StringBuilder("{\"work_packages\":[");
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append(',');
+			sb.append(this.serializedWorks[i]);
+		}
+		sb.append("]}");
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	public long getBlockId() {
+		return this.blockId;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Return the active work in GetMineableWork order. The JSON objects must
+	 * not be modified.
+	 *
+	 * @return Active work including the source code
+	 */
+	public List<JSONObject> getWorks() {
+		return this.works;
+	}
+
+	/**
+	 * Return the entity tag of a GetMineableWork response
+	 *
+	 * @param limit
+	 *            Maximum number of work packages or a negative value for all
+	 * @return Quoted entity tag
+	 */
+	public String getETag(final int limit) {
+		final int count = this.getCount(limit);
+		return "\"" + Long.toUnsignedString(this.blockId)
+				+ (count < this.serializedWorks.length ? "-" + count : "") + "\"";
+	}
+
+	/**
+	 * Return the serialized GetMineableWork response
+	 *
+	 * @param limit
+	 *            Maximum number of work packages or a negative value for all
+	 * @return UTF-8 encoded JSON response
+	 */
+	public byte[] getResponse(final int limit) {
+		final int count = this.getCount(limit);
+		return count < this.serializedWorks.length ? this.serialize(count) : this.response;
+	}
+
+	private int getCount(final int limit) {
+		return limit < 0 ? this.serializedWorks.length : Math.min(limit, this.serializedWorks.length);
+	}
+
+}
@@ -25,7 +25,7 @@ import java.io.PrintWriter;
 import nxt.Block;
 import nxt.BlockchainProcessor;
 import nxt.Nxt;
-import nxt.util.Listener;
+import nxt.util.AsyncListener;
 import nxt.util.Logger;
 
 public final class DownloadTimer implements AddOn {
@@ -40,7 +40,7 @@ public final class DownloadTimer implements AddOn {
 			this.writer = new PrintWriter(
 					(new BufferedWriter(new OutputStreamWriter(new FileOutputStream("downloadtime.csv")))), true);
 			this.writer.println("height,time,dtime,bps,transations,dtransactions,tps");
-			Nxt.getBlockchainProcessor().addListener(new Listener<Block>() {
+			Nxt.getBlockchainProcessor().addListener(new AsyncListener<Block>() {
 
 				final int interval = 10000;
 				final long startTime = System.currentTimeMillis();
@@ -48,6 +48,11 @@ public final class DownloadTimer implements AddOn {
 				long transactions = 0;
 				long dtransactions = 0;
 
+				@Override
+				public String getName() {
+					return "DownloadTimer";
+				}
+
 				@Override
 				public void notify(final Block block) {
 					final int n = block.getTransactions().size();
@@ -56,6 +56,32 @@ public abstract class DerivedDbTable {
 		}
 	}
 
+	/**
+	 * Replace the rows of this table with the rows of a copy of the table
+	 *
+	 * @param sourceTable
+	 *            Name of the copy
+	 * @param height
+	 *            Height of the last block applied to the copy
+	 */
+	public void restore(final String sourceTable, final int height) {
+		if (!DerivedDbTable.db.isInTransaction()) throw new IllegalStateException("Not in transaction");
+		try (Connection con = DerivedDbTable.db.getConnection(); Statement stmt = con.createStatement()) {
+			stmt.executeUpdate("TRUNCATE TABLE " + this.table);
+			stmt.executeUpdate("INSERT INTO " + this.table + " SELECT * FROM " + sourceTable);
+		} catch (final SQLException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Rebuild the in-memory state derived from this table, called once the
+	 * rows restored from a copy of the table have been committed
+	 */
+	public void afterRestore() {
+		// nothing kept in memory
+	}
+
 	@Override
 	public final String toString() {
 		return this.table;
@@ -65,6 +91,22 @@ public abstract class DerivedDbTable {
 		// nothing to trim
 	}
 
+	/**
+	 * Trim the next slice of the table
+	 *
+	 * Versioned tables are trimmed incrementally, a bounded number of entities
+	 * per slice. All other tables are trimmed at once.
+	 *
+	 * @param height
+	 *            Trim height
+	 * @return Number of deleted rows or -1 if the table is trimmed to the
+	 *         height
+	 */
+	public int trimSlice(final int height) {
+		this.trim(height);
+		return -1;
+	}
+
 	public void truncate() {
 		if (!DerivedDbTable.db.isInTransaction()) throw new IllegalStateException("Not in transaction");
 		try (Connection con = DerivedDbTable.db.getConnection(); Statement stmt = con.createStatement()) {
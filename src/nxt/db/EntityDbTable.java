@@ -20,15 +20,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Set;
 
 import nxt.Nxt;
 import nxt.util.Logger;
 
 public abstract class EntityDbTable<T> extends DerivedDbTable {
 
-	private final boolean multiversion;
+	final boolean multiversion;
 	final DbKey.Factory<T> dbKeyFactory;
 	private final String defaultSort;
+	final UndoLog undoLog = new UndoLog();
+	private final IncrementalTrim incrementalTrim;
 
 	protected EntityDbTable(final String table, final DbKey.Factory<T> dbKeyFactory) {
 		this(table, dbKeyFactory, false, null);
@@ -40,6 +43,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
 		this.dbKeyFactory = dbKeyFactory;
 		this.multiversion = multiversion;
 		this.defaultSort = " ORDER BY " + (multiversion ? dbKeyFactory.getPKColumns() : " height DESC, db_id DESC ");
+		this.incrementalTrim = multiversion ? new IncrementalTrim(table, dbKeyFactory) : null;
 	}
 
 	protected EntityDbTable(final String table, final DbKey.Factory<T> dbKeyFactory,
@@ -369,19 +373,79 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
 			throw new IllegalStateException("Different instance found in Db cache, perhaps trying to save an object "
 					+ "that was read outside the current transaction");
 		}
+		if (!this.isPersistent()) this.undoLog.add(Nxt.getBlockchain().getHeight(), dbKey);
 		try (Connection con = DerivedDbTable.db.getConnection()) {
-			if (this.multiversion)
-				try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + this.table + " SET latest = FALSE "
-						+ this.dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
-					dbKey.setPK(pstmt);
-					pstmt.executeUpdate();
-				}
-			this.save(con, t);
+			if (this.supportsBatch()) this.insertBatched(con, dbKey, t);
+			else {
+				if (this.multiversion)
+					try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + this.table + " SET latest = FALSE "
+							+ this.dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
+						dbKey.setPK(pstmt);
+						pstmt.executeUpdate();
+					}
+				this.save(con, t);
+			}
 		} catch (final SQLException e) {
 			throw new RuntimeException(e.toString(), e);
 		}
 	}
 
+	/**
+	 * Add an insert to the batch of this table, the batch is executed when it
+	 * is full, before the next statement using this table or at commit
+	 */
+	private void insertBatched(final Connection con, final DbKey dbKey, final T t) throws SQLException {
+		final int height = Nxt.getBlockchain().getHeight();
+		InsertBatch batch = DerivedDbTable.db.getInsertBatch(this.table);
+		if (batch == null) {
+			batch = new InsertBatch(this.multiversion ? con.prepareStatement("UPDATE " + this.table
+					+ " SET latest = FALSE " + this.dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1") : null,
+					con.prepareStatement(this.getSaveStatement()));
+			DerivedDbTable.db.putInsertBatch(this.table, batch);
+		} else if (!batch.isEmpty() && (batch.getHeight() != height)) batch.flush();
+		if (this.multiversion) dbKey.setPK(batch.getSetNotLatestStatement());
+		this.setSaveParameters(batch.getSaveStatement(), t);
+		batch.add(height);
+	}
+
+	/**
+	 * Return true if the inserts of this table are collected in a JDBC batch
+	 * per database transaction instead of being saved one by one with
+	 * save(Connection, T)
+	 *
+	 * Tables opting in implement getSaveStatement and setSaveParameters. The
+	 * entity height has to be the current blockchain height.
+	 *
+	 * @return true if inserts are batched
+	 */
+	protected boolean supportsBatch() {
+		return false;
+	}
+
+	/**
+	 * Return the statement saving a single entity, only used if the table
+	 * supports batches
+	 *
+	 * @return SQL statement
+	 */
+	protected String getSaveStatement() {
+		return null;
+	}
+
+	/**
+	 * Set the parameters of the save statement for an entity, only used if
+	 * the table supports batches
+	 *
+	 * @param pstmt
+	 *            Statement returned by getSaveStatement
+	 * @param t
+	 *            Entity
+	 * @throws SQLException
+	 *             Unable to set the parameters
+	 */
+	protected void setSaveParameters(final PreparedStatement pstmt, final T t) throws SQLException {
+	}
+
 	protected abstract T load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException;
 
 	public final T newEntity(final DbKey dbKey) {
@@ -397,9 +461,15 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
 
 	@Override
 	public void rollback(final int height) {
-		if (this.multiversion)
-			VersionedEntityDbTable.rollback(DerivedDbTable.db, this.table, height, this.dbKeyFactory);
-		else super.rollback(height);
+		if (this.multiversion) {
+			VersionedEntityDbTable.rollback(DerivedDbTable.db, this.table, height, this.dbKeyFactory, this.undoLog);
+			this.incrementalTrim.rolledBack(height);
+		} else {
+			final Set<DbKey> dbKeys = this.undoLog.getKeys(height);
+			super.rollback(height);
+			this.undoLog.rolledBack(height);
+			UndoLog.removeFromCache(this.table, dbKeys);
+		}
 	}
 
 	protected abstract void save(Connection con, T t) throws SQLException;
@@ -430,10 +500,30 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
 		}
 	}
 
+	@Override
+	public void restore(final String sourceTable, final int height) {
+		super.restore(sourceTable, height);
+		this.undoLog.restored(height);
+		if (this.multiversion) this.incrementalTrim.rolledBack(0);
+		this.clearCache();
+	}
+
+	@Override
+	public void truncate() {
+		super.truncate();
+		this.undoLog.rolledBack(-1);
+		if (this.multiversion) this.incrementalTrim.rolledBack(0);
+	}
+
 	@Override
 	public void trim(final int height) {
-		if (this.multiversion) VersionedEntityDbTable.trim(DerivedDbTable.db, this.table, height, this.dbKeyFactory);
+		if (this.multiversion) this.incrementalTrim.trim(height);
 		else super.trim(height);
 	}
 
+	@Override
+	public int trimSlice(final int height) {
+		return this.multiversion ? this.incrementalTrim.trimSlice(height) : super.trimSlice(height);
+	}
+
 }
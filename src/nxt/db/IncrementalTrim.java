@@ -0,0 +1,164 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nxt.Nxt;
+
+/**
+ * Incremental trimming of a versioned table.
+ *
+ * New obsolete versions below the trim height can only exist for entities
+ * that have been changed since the last trim. The table keeps a watermark,
+ * the entities changed below it have been trimmed. Each slice trims a bounded
+ * number of the entities changed in the height range following the
+ * watermark, the watermark moves to the end of the range once all of its
+ * entities have been trimmed. A rollback or a truncate below the watermark
+ * moves it back.
+ */
+final class IncrementalTrim {
+
+	/** Number of entities trimmed per slice */
+	private static final int SLICE_SIZE = Math.max(Nxt.getIntProperty("nxt.trimSliceSize", 500), 1);
+
+	/** Number of heights whose changed entities are selected at once */
+	private static final int RANGE_SIZE = Math.max(Nxt.getIntProperty("nxt.trimFrequency"), 1);
+
+	private final String table;
+	private final DbKey.Factory<?> dbKeyFactory;
+
+	/** Entities changed below this height have been trimmed */
+	private int trimmedHeight;
+
+	/** End of the height range being trimmed */
+	private int rangeEnd;
+
+	/** Trim height of the height range being trimmed */
+	private int rangeTrimHeight;
+
+	/** Entities changed in the height range or null if no range is being trimmed */
+	private List<DbKey> rangeKeys;
+
+	/** Next entity to trim */
+	private int nextKey;
+
+	IncrementalTrim(final String table, final DbKey.Factory<?> dbKeyFactory) {
+		this.table = table;
+		this.dbKeyFactory = dbKeyFactory;
+	}
+
+	/**
+	 * Trim the next slice of entities
+	 *
+	 * @param height
+	 *            Trim height
+	 * @return Number of deleted rows or -1 if the table is trimmed to the
+	 *         height
+	 */
+	synchronized int trimSlice(final int height) {
+		if (!DerivedDbTable.db.isInTransaction()) throw new IllegalStateException("Not in transaction");
+		try (Connection con = DerivedDbTable.db.getConnection()) {
+			if (this.rangeKeys == null) {
+				if (this.trimmedHeight >= height) return -1;
+				this.rangeTrimHeight = height;
+				this.rangeEnd = (int) Math.min(height, (long) this.trimmedHeight + IncrementalTrim.RANGE_SIZE);
+				this.rangeKeys = this.selectKeys(con, this.trimmedHeight, this.rangeEnd);
+				this.nextKey = 0;
+			}
+			final int end = Math.min(this.nextKey + IncrementalTrim.SLICE_SIZE, this.rangeKeys.size());
+			final int deleted = this.trim(con, this.rangeKeys.subList(this.nextKey, end), this.rangeTrimHeight);
+			this.nextKey = end;
+			if (this.nextKey >= this.rangeKeys.size()) {
+				this.trimmedHeight = this.rangeEnd;
+				this.rangeKeys = null;
+			}
+			return deleted;
+		} catch (final SQLException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Trim the table to a height
+	 *
+	 * @param height
+	 *            Trim height
+	 */
+	void trim(final int height) {
+		int deleted;
+		do deleted = this.trimSlice(height);
+		while (deleted >= 0);
+	}
+
+	/**
+	 * Rows above a height have been deleted from the table
+	 *
+	 * @param height
+	 *            Rollback height
+	 */
+	synchronized void rolledBack(final int height) {
+		if (height < this.trimmedHeight) {
+			this.trimmedHeight = Math.max(height, 0);
+			this.rangeKeys = null;
+		} else if ((this.rangeKeys != null) && (height < this.rangeEnd)) this.rangeKeys = null;
+	}
+
+	private List<DbKey> selectKeys(final Connection con, final int fromHeight, final int toHeight)
+			throws SQLException {
+		try (PreparedStatement pstmt = con.prepareStatement("SELECT DISTINCT " + this.dbKeyFactory.getPKColumns()
+				+ " FROM " + this.table + " WHERE height >= ? AND height < ?")) {
+			pstmt.setInt(1, fromHeight);
+			pstmt.setInt(2, toHeight);
+			final List<DbKey> dbKeys = new ArrayList<>();
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) dbKeys.add(this.dbKeyFactory.newKey(rs));
+			}
+			return dbKeys;
+		}
+	}
+
+	private int trim(final Connection con, final List<DbKey> dbKeys, final int height) throws SQLException {
+		int deleted = 0;
+		try (PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + this.table
+				+ this.dbKeyFactory.getPKClause() + " AND height >= 0 AND height < (SELECT MAX(height) FROM "
+				+ this.table + this.dbKeyFactory.getPKClause() + " AND height < ?)");
+				PreparedStatement pstmtDeleteDeleted = con.prepareStatement("DELETE FROM " + this.table
+						+ this.dbKeyFactory.getPKClause() + " AND height >= 0 AND height < ? AND NOT EXISTS (SELECT 1 FROM "
+						+ this.table + this.dbKeyFactory.getPKClause() + " AND (latest = TRUE OR height >= ?))")) {
+			for (final DbKey dbKey : dbKeys) {
+				int i = dbKey.setPK(pstmtDelete);
+				i = dbKey.setPK(pstmtDelete, i);
+				pstmtDelete.setInt(i, height);
+				deleted += pstmtDelete.executeUpdate();
+				i = dbKey.setPK(pstmtDeleteDeleted);
+				pstmtDeleteDeleted.setInt(i++, height);
+				i = dbKey.setPK(pstmtDeleteDeleted, i);
+				pstmtDeleteDeleted.setInt(i, height);
+				deleted += pstmtDeleteDeleted.executeUpdate();
+			}
+		}
+		return deleted;
+	}
+
+}
@@ -0,0 +1,101 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.db;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Pending inserts of a single table within a database transaction.
+ *
+ * The statements are prepared once per transaction and reused for all
+ * batches. For versioned tables the previous versions are marked as no longer
+ * latest before the new rows are merged, just like single inserts do, so a
+ * batch must only contain rows of a single height.
+ *
+ * A batch is executed when it is full, when a statement uses its table and
+ * when the transaction is committed.
+ */
+final class InsertBatch {
+
+	private final PreparedStatement pstmtSetNotLatest;
+
+	private final PreparedStatement pstmtSave;
+
+	private int height = -1;
+
+	private int size;
+
+	/**
+	 * Create an empty batch
+	 *
+	 * @param pstmtSetNotLatest
+	 *            Statement clearing the latest flag of an entity or null if
+	 *            the table is not versioned
+	 * @param pstmtSave
+	 *            Statement saving an entity
+	 */
+	InsertBatch(final PreparedStatement pstmtSetNotLatest, final PreparedStatement pstmtSave) {
+		this.pstmtSetNotLatest = pstmtSetNotLatest;
+		this.pstmtSave = pstmtSave;
+	}
+
+	PreparedStatement getSetNotLatestStatement() {
+		return this.pstmtSetNotLatest;
+	}
+
+	PreparedStatement getSaveStatement() {
+		return this.pstmtSave;
+	}
+
+	int getHeight() {
+		return this.height;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Add the parameters currently set on the statements to the batch, the
+	 * batch is executed once it holds nxt.dbInsertBatchSize rows
+	 *
+	 * @param height
+	 *            Height of the saved row
+	 * @throws SQLException
+	 *             Unable to add the row
+	 */
+	void add(final int height) throws SQLException {
+		if (this.pstmtSetNotLatest != null) this.pstmtSetNotLatest.addBatch();
+		this.pstmtSave.addBatch();
+		this.height = height;
+		if (++this.size >= TransactionalDb.insertBatchSize) this.flush();
+	}
+
+	void flush() throws SQLException {
+		if (this.size == 0) return;
+		this.size = 0;
+		this.height = -1;
+		if (this.pstmtSetNotLatest != null) this.pstmtSetNotLatest.executeBatch();
+		this.pstmtSave.executeBatch();
+	}
+
+	void close() {
+		DbUtils.close(this.pstmtSetNotLatest, this.pstmtSave);
+	}
+
+}
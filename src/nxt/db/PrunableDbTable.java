@@ -59,4 +59,11 @@ public abstract class PrunableDbTable<T> extends PersistentDbTable<T> {
 		super.trim(height);
 	}
 
+	@Override
+	public final int trimSlice(final int height) {
+		final int deleted = super.trimSlice(height);
+		if ((deleted < 0) && this.multiversion) this.prune();
+		return deleted;
+	}
+
 }
@@ -23,6 +23,8 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -36,7 +38,7 @@ public class TransactionalDb extends BasicDb {
 		long txStart = 0;
 
 		private DbConnection(final Connection con) {
-			super(con, TransactionalDb.factory);
+			super(con, TransactionalDb.this.factory);
 		}
 
 		@Override
@@ -78,24 +80,35 @@ public class TransactionalDb extends BasicDb {
 
 	private static final class DbFactory implements FilteredFactory {
 
+		private final TransactionalDb db;
+
+		private DbFactory(final TransactionalDb db) {
+			this.db = db;
+		}
+
 		@Override
 		public PreparedStatement createPreparedStatement(final PreparedStatement stmt, final String sql) {
-			return new DbPreparedStatement(stmt, sql);
+			return new DbPreparedStatement(this.db, stmt, sql);
 		}
 
 		@Override
 		public Statement createStatement(final Statement stmt) {
-			return new DbStatement(stmt);
+			return new DbStatement(this.db, stmt);
 		}
 	}
 
 	private static final class DbPreparedStatement extends FilteredPreparedStatement {
-		private DbPreparedStatement(final PreparedStatement stmt, final String sql) {
+
+		private final TransactionalDb db;
+
+		private DbPreparedStatement(final TransactionalDb db, final PreparedStatement stmt, final String sql) {
 			super(stmt, sql);
+			this.db = db;
 		}
 
 		@Override
 		public boolean execute() throws SQLException {
+			this.db.flushInsertBatches(this.getSQL());
 			final long start = System.currentTimeMillis();
 			final boolean b = super.execute();
 			final long elapsed = System.currentTimeMillis() - start;
@@ -107,6 +120,7 @@ public class TransactionalDb extends BasicDb {
 
 		@Override
 		public ResultSet executeQuery() throws SQLException {
+			this.db.flushInsertBatches(this.getSQL());
 			final long start = System.currentTimeMillis();
 			final ResultSet r = super.executeQuery();
 			final long elapsed = System.currentTimeMillis() - start;
@@ -118,6 +132,7 @@ public class TransactionalDb extends BasicDb {
 
 		@Override
 		public int executeUpdate() throws SQLException {
+			this.db.flushInsertBatches(this.getSQL());
 			final long start = System.currentTimeMillis();
 			final int c = super.executeUpdate();
 			final long elapsed = System.currentTimeMillis() - start;
@@ -130,12 +145,16 @@ public class TransactionalDb extends BasicDb {
 
 	private static final class DbStatement extends FilteredStatement {
 
-		private DbStatement(final Statement stmt) {
+		private final TransactionalDb db;
+
+		private DbStatement(final TransactionalDb db, final Statement stmt) {
 			super(stmt);
+			this.db = db;
 		}
 
 		@Override
 		public boolean execute(final String sql) throws SQLException {
+			this.db.flushInsertBatches(sql);
 			final long start = System.currentTimeMillis();
 			final boolean b = super.execute(sql);
 			final long elapsed = System.currentTimeMillis() - start;
@@ -147,6 +166,7 @@ public class TransactionalDb extends BasicDb {
 
 		@Override
 		public ResultSet executeQuery(final String sql) throws SQLException {
+			this.db.flushInsertBatches(sql);
 			final long start = System.currentTimeMillis();
 			final ResultSet r = super.executeQuery(sql);
 			final long elapsed = System.currentTimeMillis() - start;
@@ -158,6 +178,7 @@ public class TransactionalDb extends BasicDb {
 
 		@Override
 		public int executeUpdate(final String sql) throws SQLException {
+			this.db.flushInsertBatches(sql);
 			final long start = System.currentTimeMillis();
 			final int c = super.executeUpdate(sql);
 			final long elapsed = System.currentTimeMillis() - start;
@@ -184,15 +205,16 @@ public class TransactionalDb extends BasicDb {
 		void rollback();
 	}
 
-	private static final DbFactory factory = new DbFactory();
 	private static final long stmtThreshold;
 	private static final long txThreshold;
 	private static final long txInterval;
+	static final int insertBatchSize;
 	static {
 		long temp;
 		stmtThreshold = (temp = Nxt.getIntProperty("nxt.statementLogThreshold")) != 0 ? temp : 1000;
 		txThreshold = (temp = Nxt.getIntProperty("nxt.transactionLogThreshold")) != 0 ? temp : 5000;
 		txInterval = (temp = Nxt.getIntProperty("nxt.transactionLogInterval")) != 0 ? temp * 60 * 1000 : 15 * 60 * 1000;
+		insertBatchSize = Math.max(Nxt.getIntProperty("nxt.dbInsertBatchSize", 500), 1);
 	}
 
 	private static void logThreshold(final String msg) {
@@ -216,6 +238,10 @@ public class TransactionalDb extends BasicDb {
 
 	private final ThreadLocal<Set<TransactionCallback>> transactionCallback = new ThreadLocal<>();
 
+	private final ThreadLocal<Map<String, InsertBatch>> insertBatches = new ThreadLocal<>();
+
+	private final DbFactory factory = new DbFactory(this);
+
 	private volatile long txTimes = 0;
 
 	private volatile long txCount = 0;
@@ -254,6 +280,7 @@ public class TransactionalDb extends BasicDb {
 		final DbConnection con = this.localConnection.get();
 		if (con == null) throw new IllegalStateException("Not in transaction");
 		try {
+			this.flushInsertBatches();
 			con.doCommit();
 			final Set<TransactionCallback> callbacks = this.transactionCallback.get();
 			if (callbacks != null) {
@@ -268,6 +295,7 @@ public class TransactionalDb extends BasicDb {
 	public void endTransaction() {
 		final Connection con = this.localConnection.get();
 		if (con == null) throw new IllegalStateException("Not in transaction");
+		this.closeInsertBatches();
 		this.localConnection.set(null);
 		this.transactionCaches.set(null);
 		final long now = System.currentTimeMillis();
@@ -294,6 +322,73 @@ public class TransactionalDb extends BasicDb {
 		DbUtils.close(con);
 	}
 
+	/**
+	 * Return the pending inserts of a table in the current transaction
+	 *
+	 * @param tableName
+	 *            Table name
+	 * @return Insert batch or null if the table has no batch yet
+	 */
+	InsertBatch getInsertBatch(final String tableName) {
+		final Map<String, InsertBatch> batches = this.insertBatches.get();
+		return batches == null ? null : batches.get(tableName.toLowerCase(Locale.ROOT));
+	}
+
+	void putInsertBatch(final String tableName, final InsertBatch batch) {
+		if (!this.isInTransaction()) throw new IllegalStateException("Not in transaction");
+		Map<String, InsertBatch> batches = this.insertBatches.get();
+		if (batches == null) {
+			batches = new LinkedHashMap<>();
+			this.insertBatches.set(batches);
+		}
+		batches.put(tableName.toLowerCase(Locale.ROOT), batch);
+	}
+
+	/**
+	 * Execute the pending inserts of the current transaction
+	 *
+	 * Called before the transaction is committed.
+	 *
+	 * @throws SQLException
+	 *             Unable to execute the inserts
+	 */
+	void flushInsertBatches() throws SQLException {
+		final Map<String, InsertBatch> batches = this.insertBatches.get();
+		if (batches == null) return;
+		for (final InsertBatch batch : batches.values()) batch.flush();
+	}
+
+	/**
+	 * Execute the pending inserts of the tables used by a statement
+	 *
+	 * Called before any other statement is executed on the transaction
+	 * connection. The table names are matched in the SQL text, so batched rows
+	 * are always visible to the statements using their table, while the
+	 * batches of the other tables keep growing.
+	 *
+	 * @param sql
+	 *            SQL of the statement
+	 * @throws SQLException
+	 *             Unable to execute the inserts
+	 */
+	private void flushInsertBatches(final String sql) throws SQLException {
+		final Map<String, InsertBatch> batches = this.insertBatches.get();
+		if (batches == null) return;
+		String lowerCaseSql = null;
+		for (final Map.Entry<String, InsertBatch> entry : batches.entrySet()) {
+			if (entry.getValue().isEmpty()) continue;
+			if (lowerCaseSql == null) lowerCaseSql = sql.toLowerCase(Locale.ROOT);
+			if (lowerCaseSql.contains(entry.getKey())) entry.getValue().flush();
+		}
+	}
+
+	private void closeInsertBatches() {
+		final Map<String, InsertBatch> batches = this.insertBatches.get();
+		if (batches == null) return;
+		batches.values().forEach(InsertBatch::close);
+		this.insertBatches.set(null);
+	}
+
 	Map<DbKey, Object> getCache(final String tableName) {
 		if (!this.isInTransaction()) throw new IllegalStateException("Not in transaction");
         return this.transactionCaches.get().computeIfAbsent(tableName, k -> new HashMap<>());
@@ -327,6 +422,7 @@ public class TransactionalDb extends BasicDb {
 		} catch (final SQLException e) {
 			throw new RuntimeException(e.toString(), e);
 		} finally {
+			this.closeInsertBatches();
 			this.transactionCaches.get().clear();
 			final Set<TransactionCallback> callbacks = this.transactionCallback.get();
 			if (callbacks != null) {
@@ -0,0 +1,233 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import nxt.Constants;
+import nxt.Nxt;
+
+/**
+ * Keys of the entities changed at each height of a derived table.
+ *
+ * A rollback uses the log to find the changed entities instead of selecting
+ * them from the table, and only these entities are removed from the
+ * transaction cache. The log is complete above a height once a rollback to or
+ * below that height has been committed, before that the changed rows are
+ * selected from the table. Entries are added when a row is saved and undone
+ * when the database transaction is rolled back, entries of rolled back
+ * heights are removed when the rollback of the table has been committed.
+ *
+ * Only keys are logged, not the prior images of the rows. A rollback still
+ * deletes the rolled back rows and updates the latest row of every logged key
+ * with one batched SQL statement per key, the log only replaces the selection
+ * of the changed keys.
+ */
+final class UndoLog {
+
+	/**
+	 * Change made by the current database transaction
+	 */
+	private static final class Change {
+
+		private final int height;
+		private final DbKey dbKey;
+		private final long sequence;
+		private final Long previousSequence;
+
+		private Change(final int height, final DbKey dbKey, final long sequence, final Long previousSequence) {
+			this.height = height;
+			this.dbKey = dbKey;
+			this.sequence = sequence;
+			this.previousSequence = previousSequence;
+		}
+	}
+
+	/** Number of heights kept in the log, rollbacks never go deeper */
+	private static final int MAX_HEIGHTS = Constants.MAX_ROLLBACK + Math.max(Nxt.getIntProperty("nxt.trimFrequency"), 1);
+
+	/** Changed keys by height, the key value is the sequence number of the change */
+	private final NavigableMap<Integer, Map<DbKey, Long>> entries = new TreeMap<>();
+
+	/** The log contains all changes above this height */
+	private int completeAbove = Integer.MAX_VALUE;
+
+	private long sequence;
+
+	/** Changes of the current database transaction */
+	private final ThreadLocal<List<Change>> pendingChanges = new ThreadLocal<>();
+
+	private final TransactionalDb.TransactionCallback pendingCallback = new TransactionalDb.TransactionCallback() {
+
+		@Override
+		public void commit() {
+			UndoLog.this.pendingChanges.remove();
+		}
+
+		@Override
+		public void rollback() {
+			UndoLog.this.undoPendingChanges();
+		}
+
+	};
+
+	/**
+	 * Record a change
+	 *
+	 * @param height
+	 *            Height of the saved row
+	 * @param dbKey
+	 *            Entity key
+	 */
+	synchronized void add(final int height, final DbKey dbKey) {
+		final long changeSequence = ++this.sequence;
+		final Long previousSequence = this.entries.computeIfAbsent(height, k -> new HashMap<>()).put(dbKey,
+				changeSequence);
+		List<Change> changes = this.pendingChanges.get();
+		if (changes == null) {
+			changes = new ArrayList<>();
+			this.pendingChanges.set(changes);
+			DerivedDbTable.db.registerCallback(this.pendingCallback);
+		}
+		changes.add(new Change(height, dbKey, changeSequence, previousSequence));
+		while (this.entries.size() > UndoLog.MAX_HEIGHTS)
+			this.completeAbove = Math.max(this.completeAbove, this.entries.pollFirstEntry().getKey());
+	}
+
+	/**
+	 * Return the keys of all entities changed above a height
+	 *
+	 * @param height
+	 *            Height
+	 * @return Changed keys or null if the log is not complete above the height
+	 */
+	synchronized Set<DbKey> getKeys(final int height) {
+		if (height < this.completeAbove) return null;
+		final Set<DbKey> dbKeys = new HashSet<>();
+		for (final Map<DbKey, Long> changes : this.entries.tailMap(height, false).values())
+			dbKeys.addAll(changes.keySet());
+		return dbKeys;
+	}
+
+	/**
+	 * Remove rolled back entities from the transaction cache
+	 *
+	 * @param table
+	 *            Table name
+	 * @param dbKeys
+	 *            Keys of the rolled back entities or null to clear the cache
+	 *            of the table
+	 */
+	static void removeFromCache(final String table, final Collection<DbKey> dbKeys) {
+		if (dbKeys == null) DerivedDbTable.db.clearCache(table);
+		else {
+			final Map<DbKey, Object> cache = DerivedDbTable.db.getCache(table);
+			dbKeys.forEach(cache::remove);
+		}
+	}
+
+	/**
+	 * The table has been rolled back, remove the changes above the height once
+	 * the database transaction is committed
+	 *
+	 * @param height
+	 *            Rollback height
+	 */
+	void rolledBack(final int height) {
+		final long rollbackSequence;
+		synchronized (this) {
+			rollbackSequence = this.sequence;
+		}
+		DerivedDbTable.db.registerCallback(new TransactionalDb.TransactionCallback() {
+
+			@Override
+			public void commit() {
+				UndoLog.this.removeAbove(height, rollbackSequence);
+			}
+
+			@Override
+			public void rollback() {
+			}
+
+		});
+	}
+
+	/**
+	 * The table has been replaced with the rows of a checkpoint, the log is
+	 * complete above the checkpoint height once the database transaction is
+	 * committed
+	 *
+	 * @param height
+	 *            Checkpoint height
+	 */
+	void restored(final int height) {
+		synchronized (this) {
+			this.entries.clear();
+			this.completeAbove = Integer.MAX_VALUE;
+		}
+		DerivedDbTable.db.registerCallback(new TransactionalDb.TransactionCallback() {
+
+			@Override
+			public void commit() {
+				synchronized (UndoLog.this) {
+					UndoLog.this.completeAbove = height;
+				}
+			}
+
+			@Override
+			public void rollback() {
+			}
+
+		});
+	}
+
+	private synchronized void undoPendingChanges() {
+		final List<Change> changes = this.pendingChanges.get();
+		this.pendingChanges.remove();
+		if (changes == null) return;
+		for (int i = changes.size() - 1; i >= 0; i--) {
+			final Change change = changes.get(i);
+			final Map<DbKey, Long> heightChanges = this.entries.get(change.height);
+			if ((heightChanges == null) || !Long.valueOf(change.sequence).equals(heightChanges.get(change.dbKey)))
+				continue;
+			if (change.previousSequence == null) heightChanges.remove(change.dbKey);
+			else heightChanges.put(change.dbKey, change.previousSequence);
+			if (heightChanges.isEmpty()) this.entries.remove(change.height);
+		}
+	}
+
+	private synchronized void removeAbove(final int height, final long rollbackSequence) {
+		final Iterator<Map<DbKey, Long>> it = this.entries.tailMap(height, false).values().iterator();
+		while (it.hasNext()) {
+			final Map<DbKey, Long> changes = it.next();
+			changes.values().removeIf(changeSequence -> changeSequence <= rollbackSequence);
+			if (changes.isEmpty()) it.remove();
+		}
+		this.completeAbove = Math.min(this.completeAbove, height);
+	}
+
+}
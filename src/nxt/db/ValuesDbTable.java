@@ -22,11 +22,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+
+import nxt.Nxt;
 
 public abstract class ValuesDbTable<T, V> extends DerivedDbTable {
 
 	private final boolean multiversion;
 	final DbKey.Factory<T> dbKeyFactory;
+	final UndoLog undoLog = new UndoLog();
+	private final IncrementalTrim incrementalTrim;
 
 	protected ValuesDbTable(final String table, final DbKey.Factory<T> dbKeyFactory) {
 		this(table, dbKeyFactory, false);
@@ -36,6 +41,7 @@ public abstract class ValuesDbTable<T, V> extends DerivedDbTable {
 		super(table);
 		this.dbKeyFactory = dbKeyFactory;
 		this.multiversion = multiversion;
+		this.incrementalTrim = multiversion ? new IncrementalTrim(table, dbKeyFactory) : null;
 	}
 
 	protected void clearCache() {
@@ -78,6 +84,7 @@ public abstract class ValuesDbTable<T, V> extends DerivedDbTable {
 		final DbKey dbKey = this.dbKeyFactory.newKey(t);
 		if (dbKey == null) throw new RuntimeException("DbKey not set");
 		DerivedDbTable.db.getCache(this.table).put(dbKey, values);
+		this.undoLog.add(Nxt.getBlockchain().getHeight(), dbKey);
 		try (Connection con = DerivedDbTable.db.getConnection()) {
 			if (this.multiversion)
 				try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + this.table + " SET latest = FALSE "
@@ -95,17 +102,43 @@ public abstract class ValuesDbTable<T, V> extends DerivedDbTable {
 
 	@Override
 	public final void rollback(final int height) {
-		if (this.multiversion)
-			VersionedEntityDbTable.rollback(DerivedDbTable.db, this.table, height, this.dbKeyFactory);
-		else super.rollback(height);
+		if (this.multiversion) {
+			VersionedEntityDbTable.rollback(DerivedDbTable.db, this.table, height, this.dbKeyFactory, this.undoLog);
+			this.incrementalTrim.rolledBack(height);
+		} else {
+			final Set<DbKey> dbKeys = this.undoLog.getKeys(height);
+			super.rollback(height);
+			this.undoLog.rolledBack(height);
+			UndoLog.removeFromCache(this.table, dbKeys);
+		}
 	}
 
 	protected abstract void save(Connection con, T t, V v) throws SQLException;
 
+	@Override
+	public final void restore(final String sourceTable, final int height) {
+		super.restore(sourceTable, height);
+		this.undoLog.restored(height);
+		if (this.multiversion) this.incrementalTrim.rolledBack(0);
+		this.clearCache();
+	}
+
+	@Override
+	public final void truncate() {
+		super.truncate();
+		this.undoLog.rolledBack(-1);
+		if (this.multiversion) this.incrementalTrim.rolledBack(0);
+	}
+
 	@Override
 	public final void trim(final int height) {
-		if (this.multiversion) VersionedEntityDbTable.trim(DerivedDbTable.db, this.table, height, this.dbKeyFactory);
+		if (this.multiversion) this.incrementalTrim.trim(height);
 		else super.trim(height);
 	}
 
+	@Override
+	public final int trimSlice(final int height) {
+		return this.multiversion ? this.incrementalTrim.trimSlice(height) : super.trimSlice(height);
+	}
+
 }
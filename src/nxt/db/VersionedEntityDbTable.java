@@ -22,14 +22,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import nxt.Nxt;
 
 public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
 
 	static void rollback(final TransactionalDb db, final String table, final int height,
-			final DbKey.Factory<?> dbKeyFactory) {
+			final DbKey.Factory<?> dbKeyFactory, final UndoLog undoLog) {
 		if (!db.isInTransaction()) throw new IllegalStateException("Not in transaction");
+		final Set<DbKey> loggedKeys = undoLog.getKeys(height);
 		try (Connection con = db.getConnection();
 				PreparedStatement pstmtSelectToDelete = con.prepareStatement(
 						"SELECT DISTINCT " + dbKeyFactory.getPKColumns() + " FROM " + table + " WHERE height > ?");
@@ -37,11 +39,14 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
 				PreparedStatement pstmtSetLatest = con.prepareStatement(
 						"UPDATE " + table + " SET latest = TRUE " + dbKeyFactory.getPKClause() + " AND height ="
 								+ " (SELECT MAX(height) FROM " + table + dbKeyFactory.getPKClause() + ")")) {
-            //noinspection SuspiciousNameCombination
-            pstmtSelectToDelete.setInt(1, height);
 			final List<DbKey> dbKeys = new ArrayList<>();
-			try (ResultSet rs = pstmtSelectToDelete.executeQuery()) {
-				while (rs.next()) dbKeys.add(dbKeyFactory.newKey(rs));
+			if (loggedKeys != null) dbKeys.addAll(loggedKeys);
+			else {
+				//noinspection SuspiciousNameCombination
+				pstmtSelectToDelete.setInt(1, height);
+				try (ResultSet rs = pstmtSelectToDelete.executeQuery()) {
+					while (rs.next()) dbKeys.add(dbKeyFactory.newKey(rs));
+				}
 			}
 			/*
 			 * if (dbKeys.size() > 0 && Logger.isDebugEnabled()) {
@@ -63,45 +68,11 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
 				i = dbKey.setPK(pstmtSetLatest, i);
 				//noinspection UnusedAssignment
 				i = dbKey.setPK(pstmtSetLatest, i);
-				pstmtSetLatest.executeUpdate();
-				// Db.getCache(table).remove(dbKey);
-			}
-		} catch (final SQLException e) {
-			throw new RuntimeException(e.toString(), e);
-		}
-	}
-
-	static void trim(final TransactionalDb db, final String table, final int height,
-			final DbKey.Factory<?> dbKeyFactory) {
-		if (!db.isInTransaction()) throw new IllegalStateException("Not in transaction");
-		try (Connection con = db.getConnection();
-				PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns()
-						+ ", MAX(height) AS max_height" + " FROM " + table + " WHERE height < ? GROUP BY "
-						+ dbKeyFactory.getPKColumns() + " HAVING COUNT(DISTINCT height) > 1");
-				PreparedStatement pstmtDelete = con.prepareStatement(
-						"DELETE FROM " + table + dbKeyFactory.getPKClause() + " AND height < ? AND height >= 0");
-				PreparedStatement pstmtDeleteDeleted = con.prepareStatement(
-						"DELETE FROM " + table + " WHERE height < ? AND height >= 0 AND latest = FALSE " + " AND ("
-								+ dbKeyFactory.getPKColumns() + ") NOT IN (SELECT (" + dbKeyFactory.getPKColumns()
-								+ ") FROM " + table + " WHERE height >= ?)")) {
-            //noinspection SuspiciousNameCombination
-            pstmtSelect.setInt(1, height);
-			try (ResultSet rs = pstmtSelect.executeQuery()) {
-				while (rs.next()) {
-					final DbKey dbKey = dbKeyFactory.newKey(rs);
-					final int maxHeight = rs.getInt("max_height");
-					int i = 1;
-					i = dbKey.setPK(pstmtDelete, i);
-                    //noinspection SuspiciousNameCombination
-                    pstmtDelete.setInt(i, maxHeight);
-					pstmtDelete.executeUpdate();
-				}
-                //noinspection SuspiciousNameCombination
-                pstmtDeleteDeleted.setInt(1, height);
-                //noinspection SuspiciousNameCombination
-                pstmtDeleteDeleted.setInt(2, height);
-				pstmtDeleteDeleted.executeUpdate();
+				pstmtSetLatest.addBatch();
 			}
+			if (!dbKeys.isEmpty()) pstmtSetLatest.executeBatch();
+			undoLog.rolledBack(height);
+			UndoLog.removeFromCache(table, dbKeys);
 		} catch (final SQLException e) {
 			throw new RuntimeException(e.toString(), e);
 		}
@@ -135,6 +106,7 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
 							+ this.dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
 						dbKey.setPK(pstmt);
 						pstmt.executeUpdate();
+						this.undoLog.add(Nxt.getBlockchain().getHeight(), dbKey);
 						this.save(con, t);
 						pstmt.executeUpdate(); // delete after the save
 					}
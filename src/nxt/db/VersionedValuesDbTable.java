@@ -52,6 +52,7 @@ abstract class VersionedValuesDbTable<T, V> extends ValuesDbTable<T, V> {
 					}
 					final List<V> values = this.get(dbKey);
 					if (values.isEmpty()) return false;
+					this.undoLog.add(height, dbKey);
 					for (final V v : values) this.save(con, t, v);
 					try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + this.table + " SET latest = FALSE "
 							+ this.dbKeyFactory.getPKClause() + " AND latest = TRUE")) {
@@ -205,7 +205,11 @@ public enum APIEnum {
             "getAccountWorkEfficiencyPlot",
             GetAccountWorkEfficiencyPlot.instance), GET_MINEABLE_WORK(
             "getMineableWork",
-            GetMineableWork.instance);
+            GetMineableWork.instance), GET_PERFORMANCE_STATISTICS(
+            "getPerformanceStatistics",
+            GetPerformanceStatistics.instance), GET_WORK_UPDATES(
+            "getWorkUpdates",
+            GetWorkUpdates.instance);
     private static final Map<String, APIEnum> apiByName = new HashMap<>();
 
     static {
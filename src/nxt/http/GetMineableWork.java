@@ -1,46 +1,78 @@
 package nxt.http;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import nxt.NxtException;
-import nxt.Work;
-import nxt.db.DbIterator;
+import nxt.WorkSnapshot;
+import nxt.util.Logger;
 
+/**
+ * Return the active work including the source code.
+ *
+ * The response is served from the precomputed work snapshot of the current
+ * block. The entity tag changes with every block, a request with a matching
+ * If-None-Match header is answered with 304 Not Modified.
+ */
 public final class GetMineableWork extends APIServlet.APIRequestHandler {
 
 	static final GetMineableWork instance = new GetMineableWork();
 
-	private GetMineableWork() {
-		super(new APITag[] { APITag.ACCOUNTS, APITag.WC });
-	}
-
-	@Override
-	protected JSONStreamAware processRequest(final HttpServletRequest req) throws NxtException {
+	private static int getLimit(final HttpServletRequest req) {
 		int n = -1;
 		try {
 			final String readParam = ParameterParser.getParameterMultipart(req, "n");
 			n = Integer.parseInt(readParam); // todo  check
 		} catch (final Exception ignored) {
 		}
+		// n is the index of the last work package returned
+		return n < 0 ? -1 : n + 1;
+	}
 
-		final JSONArray work_packages = new JSONArray();
-
-		try (DbIterator<? extends Work> iterator = Work.getActiveWorks(0, n)) {
-			while (iterator.hasNext()) {
-				final Work transaction = iterator.next();
-				work_packages.add(transaction.toJsonObjectWithSource());
-			}
+	private static boolean matches(final String ifNoneMatch, final String etag) {
+		if (ifNoneMatch == null) return false;
+		for (final String tag : ifNoneMatch.split(",")) {
+			final String trimmed = tag.trim();
+			if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) return true;
 		}
+		return false;
+	}
 
-		final JSONObject response = new JSONObject();
-		response.put("work_packages", work_packages);
+	private GetMineableWork() {
+		super(new APITag[] { APITag.ACCOUNTS, APITag.WC });
+	}
 
-		return response;
+	@Override
+	protected JSONStreamAware processRequest(final HttpServletRequest req) throws NxtException {
+		final byte[] response = WorkSnapshot.getSnapshot().getResponse(GetMineableWork.getLimit(req));
+		return writer -> writer.write(new String(response, StandardCharsets.UTF_8));
+	}
 
+	@Override
+	JSONStreamAware processRequest(final HttpServletRequest req, final HttpServletResponse resp) throws NxtException {
+		final int limit = GetMineableWork.getLimit(req);
+		final WorkSnapshot snapshot = WorkSnapshot.getSnapshot();
+		final String etag = snapshot.getETag(limit);
+		resp.setHeader("Cache-Control", "no-cache, private");
+		resp.setHeader("ETag", etag);
+		if (GetMineableWork.matches(req.getHeader("If-None-Match"), etag)) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return null;
+		}
+		final byte[] response = snapshot.getResponse(limit);
+		resp.setContentLength(response.length);
+		try (OutputStream out = resp.getOutputStream()) {
+			out.write(response);
+		} catch (final IOException e) {
+			Logger.logDebugMessage("Unable to send mineable work: " + e.toString());
+		}
+		return null;
 	}
 
 }
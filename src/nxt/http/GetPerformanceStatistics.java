@@ -0,0 +1,106 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.http;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import nxt.Nxt;
+import nxt.PowAndBounty;
+import nxt.SupernodeMagicManager;
+import nxt.util.Listeners;
+
+/**
+ * <p>
+ * The GetPerformanceStatistics API will return the internal counters of the
+ * caches and processing stages of this node.
+ * </p>
+ *
+ * <p>
+ * Response parameters:
+ * </p>
+ * <ul>
+ * <li>blockCache - Block cache size, hit and miss counters</li>
+ * <li>blockPipeline - Processed blocks, busy time and throughput of the
+ * fetch, verify and apply stages of block processing and of blockchain
+ * scans, and deleted rows and lock hold times of derived table trimming</li>
+ * <li>listeners - Number of notifications, total and maximum time and a
+ * latency histogram of every event listener, sorted by total time</li>
+ * <li>powHashFilter - Size of the duplicate submission hash filters and the
+ * number of lookups answered without querying the database</li>
+ * <li>supernodeSigning - Queue depth and capacity, sign rate, and the number
+ * of duplicate, dropped and rejected transactions relayed to this supernode
+ * for co-signing</li>
+ * <li>transactionIngest - Peer transactions parsed and verified without
+ * holding a lock, and the write lock hold time of adding them to the
+ * unconfirmed pool</li>
+ * </ul>
+ */
+public final class GetPerformanceStatistics extends APIServlet.APIRequestHandler {
+
+	/** GetPerformanceStatistics instance */
+	static final GetPerformanceStatistics instance = new GetPerformanceStatistics();
+
+	/**
+	 * Create the GetPerformanceStatistics instance
+	 */
+	private GetPerformanceStatistics() {
+		super(new APITag[] { APITag.DEBUG });
+	}
+
+	@Override
+	protected boolean allowRequiredBlockParameters() {
+		return false;
+	}
+
+	/**
+	 * Process the GetPerformanceStatistics API request
+	 *
+	 * @param req
+	 *            API request
+	 * @return API response
+	 */
+	@Override
+	protected JSONStreamAware processRequest(final HttpServletRequest req) {
+		final JSONObject response = new JSONObject();
+		response.put("blockCache", Nxt.getBlockchain().getBlockCacheStatistics());
+		response.put("blockPipeline", Nxt.getBlockchainProcessor().getBlockPipelineStatistics());
+		response.put("listeners", Listeners.getStatistics());
+		response.put("powHashFilter", PowAndBounty.getHashFilterStatistics());
+		response.put("supernodeSigning", SupernodeMagicManager.getStatistics());
+		response.put("transactionIngest", Nxt.getTransactionProcessor().getIngestStatistics());
+		return response;
+	}
+
+	@Override
+	protected boolean requireBlockchain() {
+		return false;
+	}
+
+	/**
+	 * Require the administrator password
+	 *
+	 * @return TRUE if the admin password is required
+	 */
+	@Override
+	protected boolean requirePassword() {
+		return true;
+	}
+
+}
@@ -26,7 +26,6 @@ import org.json.simple.JSONStreamAware;
 
 import nxt.Nxt;
 import nxt.Transaction;
-import nxt.db.DbIterator;
 import nxt.util.Convert;
 import nxt.util.Filter;
 
@@ -47,13 +46,8 @@ public final class GetUnconfirmedTransactionIds extends APIServlet.APIRequestHan
 						|| accountIds.contains(transaction.getRecipientId());
 
 		final JSONArray transactionIds = new JSONArray();
-		try (DbIterator<? extends Transaction> transactionsIterator = Nxt.getTransactionProcessor()
-				.getAllUnconfirmedTransactions()) {
-			while (transactionsIterator.hasNext()) {
-				final Transaction transaction = transactionsIterator.next();
-				if (filter.ok(transaction)) transactionIds.add(transaction.getStringId());
-			}
-		}
+		for (final Transaction transaction : Nxt.getTransactionProcessor().getAllUnconfirmedTransactions())
+			if (filter.ok(transaction)) transactionIds.add(transaction.getStringId());
 
 		final JSONObject response = new JSONObject();
 		response.put("unconfirmedTransactionIds", transactionIds);
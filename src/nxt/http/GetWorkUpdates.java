@@ -0,0 +1,224 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.http;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import nxt.NxtException;
+import nxt.WorkSnapshot;
+import nxt.util.Logger;
+
+/**
+ * <p>
+ * The GetWorkUpdates API returns the changes of the mineable work list since
+ * the snapshot identified by the blockId parameter. A full snapshot is
+ * returned if no block identifier is specified or if the snapshot is no longer
+ * known. If there are no changes, the request waits until the work list is
+ * updated by the next block or the timeout expires.
+ * </p>
+ *
+ * <p>
+ * Request parameters:
+ * </p>
+ * <ul>
+ * <li>blockId - Block identifier returned by the previous GetWorkUpdates
+ * request (optional)</li>
+ * <li>timeout - Number of seconds to wait for an update.
+ * nxt.apiEventTimeout will be used if no timeout value is specified or if the
+ * requested timeout is greater than nxt.apiEventTimeout.</li>
+ * </ul>
+ *
+ * <p>
+ * Response parameters:
+ * </p>
+ * <ul>
+ * <li>height - Height of the last block of the returned work list</li>
+ * <li>blockId - Identifier of the last block of the returned work list</li>
+ * <li>full - TRUE if work_packages contains the complete work list</li>
+ * <li>work_packages - Complete work list including the source code (full
+ * response)</li>
+ * <li>added - New work including the source code (incremental response)</li>
+ * <li>updated - Work identifier and changed fields of updated work
+ * (incremental response)</li>
+ * <li>removed - Identifiers of the work that is no longer mineable
+ * (incremental response)</li>
+ * </ul>
+ */
+public final class GetWorkUpdates extends APIServlet.APIRequestHandler {
+
+	/** GetWorkUpdates instance */
+	static final GetWorkUpdates instance = new GetWorkUpdates();
+
+	/** Incorrect timeout */
+	private static final JSONObject incorrectTimeout = new JSONObject();
+	static {
+		GetWorkUpdates.incorrectTimeout.put("errorCode", 4);
+		GetWorkUpdates.incorrectTimeout.put("errorDescription", "Wait timeout is not valid");
+	}
+
+	/** Pending waits and the block identifier known to the client */
+	private static final Map<AsyncContext, Long> pendingWaits = new HashMap<>();
+
+	/** Thread pool used to complete pending waits */
+	private static final ExecutorService threadPool = Executors.newCachedThreadPool();
+
+	/** Completes the pending waits when the wait times out or fails */
+	private static final AsyncListener asyncListener = new AsyncListener() {
+
+		@Override
+		public void onComplete(final AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(final AsyncEvent event) {
+			final AsyncContext context = event.getAsyncContext();
+			synchronized (GetWorkUpdates.pendingWaits) {
+				if (GetWorkUpdates.pendingWaits.remove(context) == null) return;
+			}
+			context.complete();
+		}
+
+		@Override
+		public void onStartAsync(final AsyncEvent event) {
+		}
+
+		@Override
+		public void onTimeout(final AsyncEvent event) {
+			final AsyncContext context = event.getAsyncContext();
+			final Long blockId;
+			synchronized (GetWorkUpdates.pendingWaits) {
+				blockId = GetWorkUpdates.pendingWaits.remove(context);
+			}
+			if (blockId != null) GetWorkUpdates.complete(context, blockId);
+		}
+	};
+
+	static {
+		WorkSnapshot.addListener(snapshot -> GetWorkUpdates.threadPool.submit(() -> {
+			final Map<AsyncContext, Long> waits;
+			synchronized (GetWorkUpdates.pendingWaits) {
+				waits = new HashMap<>(GetWorkUpdates.pendingWaits);
+				GetWorkUpdates.pendingWaits.clear();
+			}
+			waits.forEach(GetWorkUpdates::complete);
+		}), WorkSnapshot.Event.SNAPSHOT_CREATED);
+	}
+
+	/**
+	 * Write the response of a pending wait
+	 *
+	 * @param context
+	 *            Asynchronous context
+	 * @param blockId
+	 *            Block identifier known to the client
+	 */
+	private static void complete(final AsyncContext context, final long blockId) {
+		try (Writer writer = context.getResponse().getWriter()) {
+			GetWorkUpdates.getResponse(blockId).writeJSONString(writer);
+		} catch (final IOException | RuntimeException exc) {
+			Logger.logDebugMessage("Unable to return work updates: " + exc.toString());
+		}
+		context.complete();
+	}
+
+	/**
+	 * Return the full or incremental update for a client
+	 *
+	 * @param blockId
+	 *            Block identifier known to the client or 0
+	 * @return Response
+	 */
+	private static JSONObject getResponse(final long blockId) {
+		final WorkSnapshot snapshot = WorkSnapshot.getSnapshot();
+		JSONObject response = blockId != 0 ? WorkSnapshot.getUpdates(blockId) : null;
+		if (response != null) {
+			response.put("full", false);
+			return response;
+		}
+		final List<JSONObject> works = new ArrayList<>(snapshot.getWorks());
+		response = new JSONObject();
+		response.put("height", snapshot.getHeight());
+		response.put("blockId", Long.toUnsignedString(snapshot.getBlockId()));
+		response.put("full", true);
+		response.put("work_packages", works);
+		return response;
+	}
+
+	/**
+	 * Create the GetWorkUpdates instance
+	 */
+	private GetWorkUpdates() {
+		super(new APITag[] { APITag.WC }, "blockId", "timeout");
+	}
+
+	@Override
+	protected boolean allowRequiredBlockParameters() {
+		return false;
+	}
+
+	/**
+	 * Process the GetWorkUpdates API request
+	 *
+	 * The response will be returned immediately if the client is not up to
+	 * date. Otherwise, an asynchronous context will be created and the
+	 * response will be returned when the next work snapshot has been created
+	 * or the wait timed out.
+	 *
+	 * @param req
+	 *            API request
+	 * @return API response or null
+	 * @throws NxtException
+	 *             Invalid request parameter
+	 */
+	@Override
+	protected JSONStreamAware processRequest(final HttpServletRequest req) throws NxtException {
+		final long blockId = ParameterParser.getUnsignedLong(req, "blockId", false);
+		long timeout = EventListener.eventTimeout;
+		final String value = req.getParameter("timeout");
+		if (value != null) try {
+			timeout = Math.min(Long.valueOf(value), timeout);
+		} catch (final NumberFormatException exc) {
+			return GetWorkUpdates.incorrectTimeout;
+		}
+		if ((blockId == 0) || (timeout <= 0) || (WorkSnapshot.getSnapshot().getBlockId() != blockId))
+			return GetWorkUpdates.getResponse(blockId);
+		synchronized (GetWorkUpdates.pendingWaits) {
+			if (WorkSnapshot.getCurrentBlockId() != blockId) return GetWorkUpdates.getResponse(blockId);
+			final AsyncContext context = req.startAsync();
+			context.addListener(GetWorkUpdates.asyncListener);
+			context.setTimeout(timeout * 1000);
+			GetWorkUpdates.pendingWaits.put(context, blockId);
+		}
+		return null;
+	}
+
+}
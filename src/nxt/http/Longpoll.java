@@ -20,6 +20,7 @@ import nxt.BlockchainProcessorImpl;
 import nxt.Generator;
 import nxt.NxtException;
 import nxt.TransactionProcessorImpl;
+import nxt.util.AsyncListener;
 
 // TODO, FIXME fix to forbid a memory overload DOS attack. Maybe hard-limit number of longpolls per IP?
 // Otherwise user can create INT_MAX number of objects of type ExpiringListPointer in memory
@@ -111,33 +112,33 @@ public final class Longpoll extends APIServlet.APIRequestHandler {
 
 	private Longpoll() {
 		super(new APITag[] { APITag.AE }, "nil");
-		BlockchainProcessorImpl.getInstance().blockListeners.addListener(block -> {
+		BlockchainProcessorImpl.getInstance().blockListeners.addListener(AsyncListener.named("Longpoll", block -> {
 			final String event = "block " + block.getHeight();
 			final ArrayList<String> list = new ArrayList<>();
 			list.add(event);
 			Longpoll.instance.addEvents(list);
-		}, nxt.BlockchainProcessor.Event.BLOCK_SCANNED);
+		}), nxt.BlockchainProcessor.Event.BLOCK_SCANNED);
 
-		BlockchainProcessorImpl.getInstance().blockListeners.addListener(block -> {
+		BlockchainProcessorImpl.getInstance().blockListeners.addListener(AsyncListener.named("Longpoll", block -> {
 			final String event = "new block (" + block.getHeight() + ")";
 			final ArrayList<String> list = new ArrayList<>();
 			list.add(event);
 			Longpoll.instance.addEvents(list);
-		}, nxt.BlockchainProcessor.Event.BLOCK_PUSHED);
+		}), nxt.BlockchainProcessor.Event.BLOCK_PUSHED);
 
-		Generator.addListener(t -> {
+		Generator.addListener(AsyncListener.named("Longpoll", t -> {
 			final String event = "generator updated";
 			final ArrayList<String> list = new ArrayList<>();
 			list.add(event);
 			Longpoll.instance.addEvents(list);
-		}, nxt.Generator.Event.GENERATION_DEADLINE);
+		}), nxt.Generator.Event.GENERATION_DEADLINE);
 
-		TransactionProcessorImpl.getInstance().addListener(t -> {
+		TransactionProcessorImpl.getInstance().addListener(AsyncListener.named("Longpoll", t -> {
 			final String event = "broadcast transaction";
 			final ArrayList<String> list = new ArrayList<>();
 			list.add(event);
 			Longpoll.instance.addEvents(list);
-		}, nxt.TransactionProcessor.Event.BROADCASTED_OWN_TRANSACTION);
+		}), nxt.TransactionProcessor.Event.BROADCASTED_OWN_TRANSACTION);
 	}
 
 	private synchronized void addEvents(final List<String> l) {
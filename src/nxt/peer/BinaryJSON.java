@@ -0,0 +1,409 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.peer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import nxt.util.Convert;
+import nxt.util.JSON;
+
+/**
+ * Compact binary encoding of peer messages.
+ *
+ * Peers using WebSocket message version 2 or later exchange the high volume
+ * messages in this encoding instead of JSON text. The encoding maps one to one
+ * onto the JSON values, so the receiver rebuilds the same JSONObject it would
+ * have parsed from the text and the request handlers are not aware of the
+ * wire format. Hexadecimal strings (keys, hashes and signatures) are sent as
+ * raw bytes, unsigned identifiers as 8 byte values, numbers as variable length
+ * integers and the well known object keys as a single byte.
+ *
+ * The key table is part of the protocol: it may only be extended at the end
+ * and any other change requires a new WebSocket message version.
+ */
+final class BinaryJSON {
+
+	/**
+	 * Message that is available both as JSON text and in the binary encoding.
+	 *
+	 * Each encoding is created on first use, a message sent to several peers
+	 * is encoded at most once per format.
+	 */
+	static final class Message implements JSONStreamAware {
+
+		private final Supplier<String> textSupplier;
+		private final Supplier<byte[]> binarySupplier;
+		private volatile String text;
+		private volatile byte[] binary;
+
+		private Message(final Supplier<String> textSupplier, final Supplier<byte[]> binarySupplier) {
+			this.textSupplier = textSupplier;
+			this.binarySupplier = binarySupplier;
+		}
+
+		/**
+		 * Return the binary encoding of the message
+		 *
+		 * @return Encoded message or null if the message cannot be encoded
+		 */
+		byte[] getBytes() {
+			byte[] bytes = this.binary;
+			if (bytes == null) {
+				bytes = this.binarySupplier.get();
+				if (bytes == null) bytes = BinaryJSON.NOT_ENCODABLE;
+				this.binary = bytes;
+			}
+			return bytes == BinaryJSON.NOT_ENCODABLE ? null : bytes;
+		}
+
+		@Override
+		public void writeJSONString(final Writer writer) throws IOException {
+			String json = this.text;
+			if (json == null) {
+				json = this.textSupplier.get();
+				this.text = json;
+			}
+			writer.write(json);
+		}
+	}
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_FALSE = 1;
+	private static final byte TYPE_TRUE = 2;
+	private static final byte TYPE_LONG = 3;
+	private static final byte TYPE_DOUBLE = 4;
+	private static final byte TYPE_STRING = 5;
+	private static final byte TYPE_HEX = 6;
+	private static final byte TYPE_UNSIGNED_LONG = 7;
+	private static final byte TYPE_ARRAY = 8;
+	private static final byte TYPE_OBJECT = 9;
+
+	/** Key written as a string instead of a key table index */
+	private static final int KEY_STRING = 0xff;
+
+	/** Well known object keys, the index is the encoded key */
+	private static final String[] KEYS = { "requestType", "protocol", "transactions", "nextBlocks",
+			"unconfirmedTransactions", "version", "timestamp", "previousBlock", "totalAmountNQT", "totalFeeNQT",
+			"softforkVotes", "payloadLength", "payloadHash", "generatorPublicKey", "generationSignature",
+			"previousBlockHash", "blockSignature", "type", "subtype", "deadline", "senderPublicKey",
+			"superNodePublicKey", "recipient", "amountNQT", "feeNQT", "referencedTransactionFullHash",
+			"ecBlockHeight", "ecBlockId", "signature", "supernode_signature", "attachment", "blockId", "blockIds",
+			"limit", "exclude", "error", "cause" };
+
+	private static final Map<String, Integer> keyIndex = new HashMap<>();
+
+	static {
+		for (int i = 0; i < BinaryJSON.KEYS.length; i++) BinaryJSON.keyIndex.put(BinaryJSON.KEYS[i], i);
+	}
+
+	private static final byte[] NOT_ENCODABLE = new byte[0];
+
+	/** Values outside the JSON model, the message is sent as text */
+	private static final class NotEncodableException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private NotEncodableException() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Decode a binary message
+	 *
+	 * @param bytes
+	 *            Encoded message
+	 * @return JSON object
+	 * @throws ProtocolException
+	 *             Message is not a valid encoded JSON object
+	 */
+	static JSONObject decode(final byte[] bytes) throws ProtocolException {
+		try {
+			final ByteBuffer buf = ByteBuffer.wrap(bytes);
+			final Object value = BinaryJSON.readValue(buf, 0);
+			if (!(value instanceof JSONObject) || buf.hasRemaining())
+				throw new ProtocolException("Binary message is not a JSON object");
+			return (JSONObject) value;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new ProtocolException("Malformed binary message: " + e.toString());
+		}
+	}
+
+	/**
+	 * Encode a JSON object
+	 *
+	 * @param json
+	 *            JSON object
+	 * @return Encoded object or null if the object contains values that have
+	 *         no exact binary representation
+	 */
+	static byte[] encode(final JSONObject json) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+		try {
+			BinaryJSON.writeValue(out, json);
+		} catch (final NotEncodableException e) {
+			return null;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Return a message for a JSON object
+	 *
+	 * @param json
+	 *            JSON object, must not be modified afterwards
+	 * @return Message
+	 */
+	static Message message(final JSONObject json) {
+		return new Message(() -> JSON.toString(json), () -> BinaryJSON.encode(json));
+	}
+
+	/**
+	 * Return a message with separately produced encodings
+	 *
+	 * @param textSupplier
+	 *            Supplier of the JSON text
+	 * @param binarySupplier
+	 *            Supplier of the binary encoding, returns null if the message
+	 *            cannot be encoded
+	 * @return Message
+	 */
+	static Message message(final Supplier<String> textSupplier, final Supplier<byte[]> binarySupplier) {
+		return new Message(textSupplier, binarySupplier);
+	}
+
+	/**
+	 * Return a peer request message
+	 *
+	 * @param json
+	 *            Request, the protocol version is added
+	 * @return Message
+	 */
+	static Message prepareRequest(final JSONObject json) {
+		json.put("protocol", 1);
+		return BinaryJSON.message(json);
+	}
+
+	/**
+	 * Write the header of an object with a single array member, followed by
+	 * the array header. The encoded array elements are appended by the caller.
+	 *
+	 * @param out
+	 *            Output stream
+	 * @param key
+	 *            Array key
+	 * @param size
+	 *            Number of array elements
+	 */
+	static void writeArrayHeader(final ByteArrayOutputStream out, final String key, final int size) {
+		out.write(BinaryJSON.TYPE_OBJECT);
+		BinaryJSON.writeVarLong(out, 1);
+		BinaryJSON.writeKey(out, key);
+		out.write(BinaryJSON.TYPE_ARRAY);
+		BinaryJSON.writeVarLong(out, size);
+	}
+
+	private static Object readValue(final ByteBuffer buf, final int depth) throws ProtocolException {
+		if (depth > 32) throw new ProtocolException("Binary message nested too deeply");
+		final byte type = buf.get();
+		switch (type) {
+		case TYPE_NULL:
+			return null;
+		case TYPE_FALSE:
+			return Boolean.FALSE;
+		case TYPE_TRUE:
+			return Boolean.TRUE;
+		case TYPE_LONG:
+			final long zigzag = BinaryJSON.readVarLong(buf);
+			return (zigzag >>> 1) ^ -(zigzag & 1);
+		case TYPE_DOUBLE:
+			return buf.getDouble();
+		case TYPE_STRING:
+			return new String(BinaryJSON.readBytes(buf), StandardCharsets.UTF_8);
+		case TYPE_HEX:
+			return Convert.toHexString(BinaryJSON.readBytes(buf));
+		case TYPE_UNSIGNED_LONG:
+			return Long.toUnsignedString(buf.getLong());
+		case TYPE_ARRAY: {
+			final int size = BinaryJSON.readLength(buf);
+			final JSONArray array = new JSONArray();
+			for (int i = 0; i < size; i++) array.add(BinaryJSON.readValue(buf, depth + 1));
+			return array;
+		}
+		case TYPE_OBJECT: {
+			final int size = BinaryJSON.readLength(buf);
+			final JSONObject object = new JSONObject();
+			for (int i = 0; i < size; i++) {
+				final int key = buf.get() & 0xff;
+				String name;
+				if (key == BinaryJSON.KEY_STRING) name = new String(BinaryJSON.readBytes(buf), StandardCharsets.UTF_8);
+				else if (key < BinaryJSON.KEYS.length) name = BinaryJSON.KEYS[key];
+				else throw new ProtocolException("Unknown binary message key " + key);
+				object.put(name, BinaryJSON.readValue(buf, depth + 1));
+			}
+			return object;
+		}
+		default:
+			throw new ProtocolException("Unknown binary message value type " + type);
+		}
+	}
+
+	private static byte[] readBytes(final ByteBuffer buf) {
+		final byte[] bytes = new byte[BinaryJSON.readLength(buf)];
+		buf.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Read a length, every element takes at least one byte so a length
+	 * exceeding the remaining message is invalid
+	 */
+	private static int readLength(final ByteBuffer buf) {
+		final long length = BinaryJSON.readVarLong(buf);
+		if ((length < 0) || (length > buf.remaining())) throw new IllegalArgumentException("Invalid length " + length);
+		return (int) length;
+	}
+
+	private static long readVarLong(final ByteBuffer buf) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = buf.get();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IllegalArgumentException("Variable length integer too long");
+	}
+
+	private static void writeValue(final ByteArrayOutputStream out, final Object value) {
+		if (value == null) out.write(BinaryJSON.TYPE_NULL);
+		else if (value instanceof Boolean) out.write((Boolean) value ? BinaryJSON.TYPE_TRUE : BinaryJSON.TYPE_FALSE);
+		else if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)
+				|| (value instanceof Byte)) {
+			final long number = ((Number) value).longValue();
+			out.write(BinaryJSON.TYPE_LONG);
+			BinaryJSON.writeVarLong(out, (number << 1) ^ (number >> 63));
+		} else if (value instanceof Double) {
+			final double number = (Double) value;
+			// JSON text has no representation for these, the receiver would see null
+			if (Double.isNaN(number) || Double.isInfinite(number)) throw new NotEncodableException();
+			out.write(BinaryJSON.TYPE_DOUBLE);
+			final long bits = Double.doubleToLongBits(number);
+			for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (bits >>> shift));
+		} else if (value instanceof String) BinaryJSON.writeString(out, (String) value);
+		else if (value instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			int size = 0;
+			for (final Object key : map.keySet()) if (key != null) size++;
+			out.write(BinaryJSON.TYPE_OBJECT);
+			BinaryJSON.writeVarLong(out, size);
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				if (entry.getKey() == null) continue;
+				BinaryJSON.writeKey(out, entry.getKey().toString());
+				BinaryJSON.writeValue(out, entry.getValue());
+			}
+		} else if (value instanceof List) {
+			final List<?> list = (List<?>) value;
+			out.write(BinaryJSON.TYPE_ARRAY);
+			BinaryJSON.writeVarLong(out, list.size());
+			for (final Object element : list) BinaryJSON.writeValue(out, element);
+		} else if ((value instanceof BigInteger) && (((BigInteger) value).bitLength() < 64))
+			BinaryJSON.writeValue(out, ((BigInteger) value).longValue());
+		else throw new NotEncodableException();
+	}
+
+	private static void writeKey(final ByteArrayOutputStream out, final String key) {
+		final Integer index = BinaryJSON.keyIndex.get(key);
+		if (index != null) out.write(index);
+		else {
+			out.write(BinaryJSON.KEY_STRING);
+			BinaryJSON.writeBytes(out, key.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Write a string using the shortest of the string, hexadecimal and
+	 * unsigned identifier representations that reproduces it exactly
+	 */
+	private static void writeString(final ByteArrayOutputStream out, final String string) {
+		final int length = string.length();
+		if ((length > 9) && (length <= 20) && BinaryJSON.isUnsignedLong(string)) {
+			final long number = Long.parseUnsignedLong(string);
+			out.write(BinaryJSON.TYPE_UNSIGNED_LONG);
+			for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (number >>> shift));
+		} else if ((length >= 4) && ((length & 1) == 0) && BinaryJSON.isHex(string)) {
+			out.write(BinaryJSON.TYPE_HEX);
+			BinaryJSON.writeBytes(out, Convert.parseHexString(string));
+		} else {
+			out.write(BinaryJSON.TYPE_STRING);
+			BinaryJSON.writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static boolean isHex(final String string) {
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			if (((c < '0') || (c > '9')) && ((c < 'a') || (c > 'f'))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isUnsignedLong(final String string) {
+		if (string.charAt(0) == '0') return false;
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			if ((c < '0') || (c > '9')) return false;
+		}
+		try {
+			Long.parseUnsignedLong(string);
+			return true;
+		} catch (final NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static void writeBytes(final ByteArrayOutputStream out, final byte[] bytes) {
+		BinaryJSON.writeVarLong(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeVarLong(final ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private BinaryJSON() {
+	}
+
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.peer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+
+import nxt.Block;
+import nxt.BlockchainProcessor;
+import nxt.Nxt;
+import nxt.util.JSON;
+
+/**
+ * Cache of the JSON encoding of blocks sent to peers.
+ *
+ * Peers syncing from this node request the same ranges of blocks over and
+ * over again, and every pushed block is announced to several peers. The
+ * JSON text of a block only depends on the block itself, so it is encoded
+ * once and kept by height until the block is popped off or the entry is
+ * evicted as the least recently used one. The binary encoding used with
+ * peers supporting it is cached the same way.
+ */
+final class BlockJSONCache {
+
+	/**
+	 * Encoded block
+	 */
+	private static final class Entry {
+
+		private final long blockId;
+		private volatile String json;
+		private volatile byte[] binary;
+
+		private Entry(final long blockId) {
+			this.blockId = blockId;
+		}
+	}
+
+	/** Number of cached blocks */
+	private static final int CACHE_SIZE = Math.max(Nxt.getIntProperty("nxt.peerBlockJSONCacheSize", 256), 0);
+
+	private static final Map<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Integer, Entry> eldest) {
+			return this.size() > BlockJSONCache.CACHE_SIZE;
+		}
+
+	};
+
+	static {
+		Nxt.getBlockchainProcessor().addListener(block -> {
+			synchronized (BlockJSONCache.entries) {
+				final Entry entry = BlockJSONCache.entries.get(block.getHeight());
+				if ((entry != null) && (entry.blockId == block.getId()))
+					BlockJSONCache.entries.remove(block.getHeight());
+			}
+		}, BlockchainProcessor.Event.BLOCK_POPPED);
+
+		Nxt.getBlockchainProcessor().addListener(block -> {
+			synchronized (BlockJSONCache.entries) {
+				BlockJSONCache.entries.clear();
+			}
+		}, BlockchainProcessor.Event.RESCAN_BEGIN);
+	}
+
+	private static Entry getEntry(final Block block) {
+		synchronized (BlockJSONCache.entries) {
+			Entry entry = BlockJSONCache.entries.get(block.getHeight());
+			if ((entry == null) || (entry.blockId != block.getId())) {
+				entry = new Entry(block.getId());
+				if (BlockJSONCache.CACHE_SIZE > 0) BlockJSONCache.entries.put(block.getHeight(), entry);
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Return the JSON text of a block, encoding it if it is not cached yet
+	 *
+	 * @param block
+	 *            Block
+	 * @return JSON text as returned by Block.getJSONObject
+	 */
+	static String getJSONString(final Block block) {
+		final Entry entry = BlockJSONCache.getEntry(block);
+		String json = entry.json;
+		if (json == null) {
+			json = JSON.toString(block.getJSONObject());
+			entry.json = json;
+		}
+		return json;
+	}
+
+	/**
+	 * Return the binary encoding of a block, encoding it if it is not cached
+	 * yet
+	 *
+	 * @param block
+	 *            Block
+	 * @return Binary encoding of Block.getJSONObject or null if the block
+	 *         cannot be encoded
+	 */
+	static byte[] getBytes(final Block block) {
+		final Entry entry = BlockJSONCache.getEntry(block);
+		byte[] binary = entry.binary;
+		if (binary == null) {
+			binary = BinaryJSON.encode(block.getJSONObject());
+			entry.binary = binary;
+		}
+		return binary;
+	}
+
+	/**
+	 * Return a getNextBlocks response
+	 *
+	 * @param blocks
+	 *            Blocks
+	 * @return Response message
+	 */
+	static BinaryJSON.Message getNextBlocksResponse(final List<? extends Block> blocks) {
+		return BinaryJSON.message(() -> {
+			final StringBuilder sb = new StringBuilder(blocks.size() * 1024);
+			sb.append("{\"nextBlocks\":[");
+			for (int i = 0; i < blocks.size(); i++) {
+				if (i > 0) sb.append(',');
+				sb.append(BlockJSONCache.getJSONString(blocks.get(i)));
+			}
+			return sb.append("]}").toString();
+		}, () -> {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(blocks.size() * 1024);
+			BinaryJSON.writeArrayHeader(out, "nextBlocks", blocks.size());
+			for (final Block block : blocks) {
+				final byte[] binary = BlockJSONCache.getBytes(block);
+				if (binary == null) return null;
+				out.write(binary, 0, binary.length);
+			}
+			return out.toByteArray();
+		});
+	}
+
+	/**
+	 * Return a processBlock request for a block
+	 *
+	 * @param block
+	 *            Block
+	 * @return Request message
+	 */
+	static BinaryJSON.Message getProcessBlockRequest(final Block block) {
+		return BinaryJSON.message(() -> "{\"requestType\":\"processBlock\",\"protocol\":1,"
+				+ BlockJSONCache.getJSONString(block).substring(1), () -> {
+					final JSONObject request = block.getJSONObject();
+					request.put("requestType", "processBlock");
+					request.put("protocol", 1);
+					return BinaryJSON.encode(request);
+				});
+	}
+
+	static void init() {
+	}
+
+	private BlockJSONCache() {
+	}
+
+}
@@ -19,7 +19,6 @@ package nxt.peer;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
@@ -45,8 +44,6 @@ final class GetNextBlocks extends PeerServlet.PeerRequestHandler {
 	@Override
 	JSONStreamAware processRequest(final JSONObject request, final Peer peer) {
 
-		final JSONObject response = new JSONObject();
-		final JSONArray nextBlocksArray = new JSONArray();
 		List<? extends Block> blocks;
 		final long blockId = Convert.parseUnsignedLong((String) request.get("blockId"));
 		final List<String> stringList = (List<String>) request.get("blockIds");
@@ -60,10 +57,8 @@ final class GetNextBlocks extends PeerServlet.PeerRequestHandler {
 			if (limit > 36) return GetNextBlocks.TOO_MANY_BLOCKS_REQUESTED;
 			blocks = Nxt.getBlockchain().getBlocksAfter(blockId, limit > 0 ? (int) limit : 36);
 		}
-		blocks.forEach(block -> nextBlocksArray.add(block.getJSONObject()));
-		response.put("nextBlocks", nextBlocksArray);
-
-		return response;
+		// Blocks are written from their cached encoding instead of being encoded for every request
+		return BlockJSONCache.getNextBlocksResponse(blocks);
 	}
 
 	@Override
@@ -16,13 +16,16 @@
 
 package nxt.peer;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
+import nxt.InvertibleBloomLookupTable;
 import nxt.Nxt;
 import nxt.Transaction;
 import nxt.util.JSON;
@@ -37,20 +40,49 @@ final class GetUnconfirmedTransactions extends PeerServlet.PeerRequestHandler {
 	@Override
 	JSONStreamAware processRequest(final JSONObject request, final Peer peer) {
 
+		final JSONObject reconcile = (JSONObject) request.get("reconcile");
+		if (reconcile != null) return GetUnconfirmedTransactions.reconcile(reconcile);
+
 		final List<String> exclude = (List<String>) request.get("exclude");
 		if (exclude == null) return JSON.emptyJSON;
 
 		final SortedSet<? extends Transaction> transactionSet = Nxt.getTransactionProcessor()
 				.getCachedUnconfirmedTransactions(exclude);
+		final JSONObject response = new JSONObject();
+		response.put("unconfirmedTransactions", GetUnconfirmedTransactions.getTransactionsData(transactionSet));
+
+		return response;
+	}
+
+	/**
+	 * Reconcile the unconfirmed transactions with the lookup table sent by
+	 * the peer instead of a list of all of its transaction identifiers
+	 */
+	private static JSONStreamAware reconcile(final JSONObject reconcile) {
+		final InvertibleBloomLookupTable table = InvertibleBloomLookupTable.parse(reconcile);
+		final Set<Long> missing = new HashSet<>();
+		final SortedSet<? extends Transaction> transactionSet = Nxt.getTransactionProcessor()
+				.getCachedUnconfirmedTransactions(table, missing);
+		final JSONObject response = new JSONObject();
+		// Peers use our salt for the next request so we can reuse the lookup tables of our pool
+		response.put("salt", Nxt.getTransactionProcessor().getReconcileSalt());
+		if (transactionSet == null) {
+			response.put("reconciled", false);
+			return response;
+		}
+		response.put("reconciled", true);
+		response.put("differences", transactionSet.size() + missing.size());
+		response.put("unconfirmedTransactions", GetUnconfirmedTransactions.getTransactionsData(transactionSet));
+		return response;
+	}
+
+	private static JSONArray getTransactionsData(final SortedSet<? extends Transaction> transactionSet) {
 		final JSONArray transactionsData = new JSONArray();
 		for (final Transaction transaction : transactionSet) {
 			if (transactionsData.size() >= 100) break;
 			transactionsData.add(transaction.getJSONObject());
 		}
-		final JSONObject response = new JSONObject();
-		response.put("unconfirmedTransactions", transactionsData);
-
-		return response;
+		return transactionsData;
 	}
 
 	@Override
@@ -546,21 +546,35 @@ final class PeerImpl implements Peer {
 				//
 				// Send the request using the WebSocket session
 				//
-				final StringWriter wsWriter = new StringWriter(1000);
-				request.writeJSONString(wsWriter);
-				final String wsRequest = wsWriter.toString();
-				if (communicationLoggingMask != 0) log = "WebSocket " + this.host + ": " + wsRequest;
-				final String wsResponse = this.webSocket.doPost(wsRequest);
-				this.updateUploadedVolume(wsRequest.length());
+				final byte[] binaryRequest = this.webSocket.isBinaryEnabled() && (request instanceof BinaryJSON.Message)
+						? ((BinaryJSON.Message) request).getBytes() : null;
+				Object wsResponse;
+				if (binaryRequest != null) {
+					if (communicationLoggingMask != 0)
+						log = "WebSocket " + this.host + ": (binary) " + JSON.toString(request);
+					wsResponse = this.webSocket.doPost(binaryRequest);
+					this.updateUploadedVolume(binaryRequest.length);
+				} else {
+					final StringWriter wsWriter = new StringWriter(1000);
+					request.writeJSONString(wsWriter);
+					final String wsRequest = wsWriter.toString();
+					if (communicationLoggingMask != 0) log = "WebSocket " + this.host + ": " + wsRequest;
+					wsResponse = this.webSocket.doPost(wsRequest);
+					this.updateUploadedVolume(wsRequest.length());
+				}
 				if (maxResponseSize > 0) {
+					final int responseLength = wsResponse instanceof byte[] ? ((byte[]) wsResponse).length
+							: ((String) wsResponse).length();
 					if ((communicationLoggingMask & Peers.LOGGING_MASK_200_RESPONSES) != 0) {
-						log += " >>> " + wsResponse;
+						log += " >>> " + (wsResponse instanceof byte[] ? "(binary, " + responseLength + " bytes)"
+								: wsResponse);
 						showLog = true;
 					}
-					if (wsResponse.length() > maxResponseSize)
-                        throw new NxtException.NxtIOException("Maximum size exceeded: " + wsResponse.length());
-					response = (JSONObject) JSONValue.parseWithException(wsResponse);
-					this.updateDownloadedVolume(wsResponse.length());
+					if (responseLength > maxResponseSize)
+                        throw new NxtException.NxtIOException("Maximum size exceeded: " + responseLength);
+					if (wsResponse instanceof byte[]) response = BinaryJSON.decode((byte[]) wsResponse);
+					else response = (JSONObject) JSONValue.parseWithException((String) wsResponse);
+					this.updateDownloadedVolume(responseLength);
 				}
 			} else {
 				//
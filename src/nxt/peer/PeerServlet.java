@@ -21,6 +21,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -223,9 +224,9 @@ public final class PeerServlet extends WebSocketServlet {
 	 * @param requestId
 	 *            Request identifier
 	 * @param request
-	 *            Request message
+	 *            Request message, a String or the bytes of a binary message
 	 */
-	void doPost(final PeerWebSocket webSocket, final long requestId, final String request) {
+	void doPost(final PeerWebSocket webSocket, final long requestId, final Object request) {
 		JSONStreamAware jsonResponse;
 		//
 		// Process the peer request
@@ -237,17 +238,28 @@ public final class PeerServlet extends WebSocketServlet {
 		if (peer == null) jsonResponse = PeerServlet.UNKNOWN_PEER;
         else {
 			peer.setInboundWebSocket(webSocket);
-			jsonResponse = this.process(peer, new StringReader(request));
+			if (request instanceof byte[]) jsonResponse = this.process(peer, (byte[]) request);
+			else jsonResponse = this.process(peer, new StringReader((String) request));
 		}
 		//
 		// Return the response
 		//
 		try {
-			final StringWriter writer = new StringWriter(1000);
-			JSON.writeJSONString(jsonResponse, writer);
-			final String response = writer.toString();
-			webSocket.sendResponse(requestId, response);
-			if (peer != null) peer.updateUploadedVolume(response.length());
+			byte[] binaryResponse = null;
+			if (webSocket.isBinaryEnabled())
+				if (jsonResponse instanceof BinaryJSON.Message)
+					binaryResponse = ((BinaryJSON.Message) jsonResponse).getBytes();
+				else if (jsonResponse instanceof JSONObject) binaryResponse = BinaryJSON.encode((JSONObject) jsonResponse);
+			if (binaryResponse != null) {
+				webSocket.sendResponse(requestId, binaryResponse);
+				if (peer != null) peer.updateUploadedVolume(binaryResponse.length);
+			} else {
+				final StringWriter writer = new StringWriter(1000);
+				JSON.writeJSONString(jsonResponse, writer);
+				final String response = writer.toString();
+				webSocket.sendResponse(requestId, response);
+				if (peer != null) peer.updateUploadedVolume(response.length());
+			}
 		} catch (RuntimeException | IOException e) {
 			if (peer != null) {
 				if ((Peers.communicationLoggingMask & Peers.LOGGING_MASK_EXCEPTIONS) != 0)
@@ -260,6 +272,31 @@ public final class PeerServlet extends WebSocketServlet {
 		}
 	}
 
+	/**
+	 * Process a binary encoded peer request
+	 *
+	 * @param peer
+	 *            Peer
+	 * @param request
+	 *            Binary request message
+	 * @return JSON response
+	 */
+	private JSONStreamAware process(final PeerImpl peer, final byte[] request) {
+		if (peer.isBlacklisted()) return PeerServlet.blacklisted(peer);
+		Peers.addPeer(peer);
+		try {
+			if (request.length > Peers.MAX_REQUEST_SIZE)
+				throw new ProtocolException("Maximum request size exceeded: " + request.length);
+			final JSONObject jsonRequest = BinaryJSON.decode(request);
+			peer.updateDownloadedVolume(request.length);
+			return this.process(peer, jsonRequest);
+		} catch (RuntimeException | IOException e) {
+			Logger.logDebugMessage("Error processing POST request: " + e.toString());
+			peer.blacklist(e);
+			return PeerServlet.error(e);
+		}
+	}
+
 	/**
 	 * Process the peer request
 	 *
@@ -273,12 +310,7 @@ public final class PeerServlet extends WebSocketServlet {
 		//
 		// Check for blacklisted peer
 		//
-		if (peer.isBlacklisted()) {
-			final JSONObject jsonObject = new JSONObject();
-			jsonObject.put("error", Errors.BLACKLISTED);
-			jsonObject.put("cause", peer.getBlacklistingCause());
-			return jsonObject;
-		}
+		if (peer.isBlacklisted()) return PeerServlet.blacklisted(peer);
 		Peers.addPeer(peer);
 		//
 		// Process the request
@@ -286,30 +318,50 @@ public final class PeerServlet extends WebSocketServlet {
 		try (CountingInputReader cr = new CountingInputReader(inputReader, Peers.MAX_REQUEST_SIZE)) {
 			final JSONObject request = (JSONObject) JSONValue.parseWithException(cr);
 			peer.updateDownloadedVolume(cr.getCount());
-			if ((request.get("protocol") == null) || (((Number) request.get("protocol")).intValue() != 1)) {
-				Logger.logDebugMessage("Unsupported protocol " + request.get("protocol"));
-				return PeerServlet.UNSUPPORTED_PROTOCOL;
-			}
-			final PeerRequestHandler peerRequestHandler = PeerServlet.peerRequestHandlers
-					.get(request.get("requestType"));
-			if (peerRequestHandler == null) return PeerServlet.UNSUPPORTED_REQUEST_TYPE;
-			if (peer.getState() == Peer.State.DISCONNECTED) peer.setState(Peer.State.CONNECTED);
-			if ((peer.getVersion() == null) && !Objects.equals("getInfo", request.get("requestType")))
-                return PeerServlet.SEQUENCE_ERROR;
-			if (!peer.isInbound()) {
-				if (Peers.hasTooManyInboundPeers()) return PeerServlet.MAX_INBOUND_CONNECTIONS;
-				Peers.notifyListeners(peer, Peers.Event.ADD_INBOUND);
-			}
-			peer.setLastInboundRequest(Nxt.getEpochTime());
-			if (peerRequestHandler.rejectWhileDownloading()) {
-				if (PeerServlet.blockchainProcessor.isDownloading()) return PeerServlet.DOWNLOADING;
-				if (Constants.isLightClient) return PeerServlet.LIGHT_CLIENT;
-			}
-			return peerRequestHandler.processRequest(request, peer);
+			return this.process(peer, request);
 		} catch (RuntimeException | ParseException | IOException e) {
 			Logger.logDebugMessage("Error processing POST request: " + e.toString());
 			peer.blacklist(e);
 			return PeerServlet.error(e);
 		}
 	}
+
+	/**
+	 * Dispatch a decoded peer request
+	 *
+	 * @param peer
+	 *            Peer
+	 * @param request
+	 *            Request
+	 * @return JSON response
+	 */
+	private JSONStreamAware process(final PeerImpl peer, final JSONObject request) {
+		if ((request.get("protocol") == null) || (((Number) request.get("protocol")).intValue() != 1)) {
+			Logger.logDebugMessage("Unsupported protocol " + request.get("protocol"));
+			return PeerServlet.UNSUPPORTED_PROTOCOL;
+		}
+		final PeerRequestHandler peerRequestHandler = PeerServlet.peerRequestHandlers
+				.get(request.get("requestType"));
+		if (peerRequestHandler == null) return PeerServlet.UNSUPPORTED_REQUEST_TYPE;
+		if (peer.getState() == Peer.State.DISCONNECTED) peer.setState(Peer.State.CONNECTED);
+		if ((peer.getVersion() == null) && !Objects.equals("getInfo", request.get("requestType")))
+            return PeerServlet.SEQUENCE_ERROR;
+		if (!peer.isInbound()) {
+			if (Peers.hasTooManyInboundPeers()) return PeerServlet.MAX_INBOUND_CONNECTIONS;
+			Peers.notifyListeners(peer, Peers.Event.ADD_INBOUND);
+		}
+		peer.setLastInboundRequest(Nxt.getEpochTime());
+		if (peerRequestHandler.rejectWhileDownloading()) {
+			if (PeerServlet.blockchainProcessor.isDownloading()) return PeerServlet.DOWNLOADING;
+			if (Constants.isLightClient) return PeerServlet.LIGHT_CLIENT;
+		}
+		return peerRequestHandler.processRequest(request, peer);
+	}
+
+	private static JSONStreamAware blacklisted(final PeerImpl peer) {
+		final JSONObject jsonObject = new JSONObject();
+		jsonObject.put("error", Errors.BLACKLISTED);
+		jsonObject.put("cause", peer.getBlacklistingCause());
+		return jsonObject;
+	}
 }
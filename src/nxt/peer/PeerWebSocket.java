@@ -66,8 +66,8 @@ public class PeerWebSocket {
 		/** Request latch */
 		private final CountDownLatch latch = new CountDownLatch(1);
 
-		/** Response message */
-		private volatile String response;
+		/** Response message, a String or the bytes of a binary message */
+		private volatile Object response;
 
 		/** Socket exception */
 		private volatile IOException exception;
@@ -97,9 +97,10 @@ public class PeerWebSocket {
 		 * The caller must hold the lock for the request condition
 		 *
 		 * @param response
-		 *            Response message
+		 *            Response message, a String or the bytes of a binary
+		 *            message
 		 */
-		public void complete(final String response) {
+		public void complete(final Object response) {
 			this.response = response;
 			this.latch.countDown();
 		}
@@ -119,7 +120,7 @@ public class PeerWebSocket {
 		 * @throws IOException
 		 *             I/O error occurred
 		 */
-		public String get(final long timeout, final TimeUnit unit) throws InterruptedException, IOException {
+		public Object get(final long timeout, final TimeUnit unit) throws InterruptedException, IOException {
 			if (!this.latch.await(timeout, unit)) throw new SocketTimeoutException("WebSocket read timeout exceeded");
 			if (this.exception != null) throw this.exception;
 			return this.response;
@@ -129,8 +130,15 @@ public class PeerWebSocket {
 	/** Compressed message flag */
 	private static final int FLAG_COMPRESSED = 1;
 
+	/** Binary encoded message flag */
+	private static final int FLAG_BINARY = 2;
+
 	/** Our WebSocket message version */
-	private static final int VERSION = 1;
+	private static final int VERSION = 2;
+
+	/** First WebSocket message version supporting binary encoded messages */
+	private static final int BINARY_VERSION = 2;
+
 	/** Create the WebSocket client */
 	private static WebSocketClient peerClient;
 
@@ -154,6 +162,12 @@ public class PeerWebSocket {
 	/** Negotiated WebSocket message version */
 	private int version = PeerWebSocket.VERSION;
 
+	/**
+	 * Binary encoded messages may be sent. This is only known after a message
+	 * has been received from the peer, older peers never see the binary flag.
+	 */
+	private volatile boolean binaryEnabled;
+
 	/** WebSocket session */
 	private volatile Session session;
 
@@ -209,11 +223,30 @@ public class PeerWebSocket {
 	 *
 	 * @param request
 	 *            Request message
-	 * @return Response message
+	 * @return Response message, a String or the bytes of a binary message
 	 * @throws IOException
 	 *             I/O error occurred
 	 */
-	public String doPost(final String request) throws IOException {
+	public Object doPost(final String request) throws IOException {
+		return this.doPost(request.getBytes("UTF-8"), 0);
+	}
+
+	/**
+	 * Process a POST request by sending a binary encoded request message and
+	 * then waiting for a response. The caller must check isBinaryEnabled()
+	 * first.
+	 *
+	 * @param request
+	 *            Binary request message
+	 * @return Response message, a String or the bytes of a binary message
+	 * @throws IOException
+	 *             I/O error occurred
+	 */
+	public Object doPost(final byte[] request) throws IOException {
+		return this.doPost(request, PeerWebSocket.FLAG_BINARY);
+	}
+
+	private Object doPost(final byte[] request, final int messageFlags) throws IOException {
 		long requestId;
 		//
 		// Send the POST request
@@ -223,22 +256,7 @@ public class PeerWebSocket {
 			if ((this.session == null) || !this.session.isOpen())
                 throw new IOException("WebSocket session is not open");
 			requestId = this.nextRequestId++;
-			byte[] requestBytes = request.getBytes("UTF-8");
-			final int requestLength = requestBytes.length;
-			int flags = 0;
-			if (Peers.isGzipEnabled && (requestLength >= Peers.MIN_COMPRESS_SIZE)) {
-				flags |= PeerWebSocket.FLAG_COMPRESSED;
-				final ByteArrayOutputStream outStream = new ByteArrayOutputStream(requestLength);
-				try (GZIPOutputStream gzipStream = new GZIPOutputStream(outStream)) {
-					gzipStream.write(requestBytes);
-				}
-				requestBytes = outStream.toByteArray();
-			}
-			final ByteBuffer buf = ByteBuffer.allocate(requestBytes.length + 20);
-			buf.putInt(this.version).putLong(requestId).putInt(flags).putInt(requestLength).put(requestBytes).flip();
-			if (buf.limit() > Peers.MAX_MESSAGE_SIZE)
-                throw new ProtocolException("POST request length exceeds max message size");
-			this.session.getRemote().sendBytes(buf);
+			this.sendMessage(requestId, request, messageFlags, "POST request");
 		} catch (final WebSocketException exc) {
 			throw new SocketException(exc.getMessage());
 		} finally {
@@ -247,7 +265,7 @@ public class PeerWebSocket {
 		//
 		// Get the response
 		//
-		String response;
+		Object response;
 		try {
 			final PostRequest postRequest = new PostRequest();
 			this.requestMap.put(requestId, postRequest);
@@ -268,6 +286,15 @@ public class PeerWebSocket {
 		return (((s = this.session) != null) && s.isOpen() ? s.getRemoteAddress() : null);
 	}
 
+	/**
+	 * Check if binary encoded messages can be sent to the peer
+	 *
+	 * @return TRUE if the peer supports binary encoded messages
+	 */
+	public boolean isBinaryEnabled() {
+		return this.binaryEnabled;
+	}
+
 	/**
 	 * Check if we have a WebSocket connection
 	 *
@@ -346,6 +373,7 @@ public class PeerWebSocket {
 		try {
 			final ByteBuffer buf = ByteBuffer.wrap(inbuf, off, len);
 			this.version = Math.min(buf.getInt(), PeerWebSocket.VERSION);
+			this.binaryEnabled = Peers.isBinaryEnabled && (this.version >= PeerWebSocket.BINARY_VERSION);
 			final Long requestId = buf.getLong();
 			final int flags = buf.getInt();
 			final int length = buf.getInt();
@@ -363,7 +391,8 @@ public class PeerWebSocket {
 					}
 				}
 			}
-			final String message = new String(msgBytes, "UTF-8");
+			final Object message = (flags & PeerWebSocket.FLAG_BINARY) != 0 ? msgBytes
+					: new String(msgBytes, "UTF-8");
 			if (this.peerServlet != null)
                 PeerWebSocket.threadPool.execute(() -> this.peerServlet.doPost(this, requestId, message));
             else {
@@ -391,27 +420,30 @@ public class PeerWebSocket {
 	 *             I/O error occurred
 	 */
 	public void sendResponse(final long requestId, final String response) throws IOException {
+		this.sendResponse(requestId, response.getBytes("UTF-8"), 0);
+	}
+
+	/**
+	 * Send a binary encoded POST response. The caller must check
+	 * isBinaryEnabled() first.
+	 *
+	 * @param requestId
+	 *            Request identifier
+	 * @param response
+	 *            Binary response message
+	 * @throws IOException
+	 *             I/O error occurred
+	 */
+	public void sendResponse(final long requestId, final byte[] response) throws IOException {
+		this.sendResponse(requestId, response, PeerWebSocket.FLAG_BINARY);
+	}
+
+	private void sendResponse(final long requestId, final byte[] response, final int messageFlags)
+			throws IOException {
 		this.lock.lock();
 		try {
-			if ((this.session != null) && this.session.isOpen()) {
-				byte[] responseBytes = response.getBytes("UTF-8");
-				final int responseLength = responseBytes.length;
-				int flags = 0;
-				if (Peers.isGzipEnabled && (responseLength >= Peers.MIN_COMPRESS_SIZE)) {
-					flags |= PeerWebSocket.FLAG_COMPRESSED;
-					final ByteArrayOutputStream outStream = new ByteArrayOutputStream(responseLength);
-					try (GZIPOutputStream gzipStream = new GZIPOutputStream(outStream)) {
-						gzipStream.write(responseBytes);
-					}
-					responseBytes = outStream.toByteArray();
-				}
-				final ByteBuffer buf = ByteBuffer.allocate(responseBytes.length + 20);
-				buf.putInt(this.version).putLong(requestId).putInt(flags).putInt(responseLength).put(responseBytes)
-						.flip();
-				if (buf.limit() > Peers.MAX_MESSAGE_SIZE)
-                    throw new ProtocolException("POST response length exceeds max message size");
-				this.session.getRemote().sendBytes(buf);
-			}
+			if ((this.session != null) && this.session.isOpen())
+				this.sendMessage(requestId, response, messageFlags, "POST response");
 		} catch (final WebSocketException exc) {
 			throw new SocketException(exc.getMessage());
 		} finally {
@@ -419,6 +451,41 @@ public class PeerWebSocket {
 		}
 	}
 
+	/**
+	 * Send a message, compressing it if it is large enough
+	 *
+	 * The caller must hold the WebSocket lock
+	 *
+	 * @param requestId
+	 *            Request identifier
+	 * @param message
+	 *            Message bytes
+	 * @param messageFlags
+	 *            Message flags
+	 * @param description
+	 *            Message description for error messages
+	 * @throws IOException
+	 *             I/O error occurred
+	 */
+	private void sendMessage(final long requestId, byte[] message, final int messageFlags, final String description)
+			throws IOException {
+		final int messageLength = message.length;
+		int flags = messageFlags;
+		if (Peers.isGzipEnabled && (messageLength >= Peers.MIN_COMPRESS_SIZE)) {
+			flags |= PeerWebSocket.FLAG_COMPRESSED;
+			final ByteArrayOutputStream outStream = new ByteArrayOutputStream(messageLength);
+			try (GZIPOutputStream gzipStream = new GZIPOutputStream(outStream)) {
+				gzipStream.write(message);
+			}
+			message = outStream.toByteArray();
+		}
+		final ByteBuffer buf = ByteBuffer.allocate(message.length + 20);
+		buf.putInt(this.version).putLong(requestId).putInt(flags).putInt(messageLength).put(message).flip();
+		if (buf.limit() > Peers.MAX_MESSAGE_SIZE)
+            throw new ProtocolException(description + " length exceeds max message size");
+		this.session.getRemote().sendBytes(buf);
+	}
+
 	/**
 	 * Start a client session
 	 *
@@ -174,6 +174,7 @@ public final class Peers {
 			|| System.getProperty("http.proxyHost") != null;
 
 	static final boolean isGzipEnabled;
+	static final boolean isBinaryEnabled;
 	private static final int DEFAULT_PEER_PORT = 7874;
 	private static final int TESTNET_PEER_PORT = 6874;
 	private static final String myPlatform;
@@ -366,6 +367,7 @@ public final class Peers {
 		useWebSockets = Nxt.getBooleanProperty("nxt.useWebSockets");
 		webSocketIdleTimeout = Nxt.getIntProperty("nxt.webSocketIdleTimeout");
 		isGzipEnabled = Nxt.getBooleanProperty("nxt.enablePeerServerGZIPFilter");
+		isBinaryEnabled = Nxt.getBooleanProperty("nxt.enablePeerBinaryProtocol");
 
 		if(Nxt.supernodePass.length()==0)
 			blacklistingPeriod = Nxt.getIntProperty("nxt.blacklistingPeriod") / 1000;
@@ -1039,6 +1041,7 @@ public final class Peers {
 	}
 
 	public static void init() {
+		BlockJSONCache.init();
 		Init.init();
 	}
 
@@ -1086,54 +1089,52 @@ public final class Peers {
 	}
 
 	public static void sendToSomePeers(final Block block) {
-		final JSONObject request = block.getJSONObject();
-		request.put("requestType", "processBlock");
-		Peers.sendToSomePeers(request);
+		Peers.sendingService.submit(() -> Peers.sendRequestToSomePeers(BlockJSONCache.getProcessBlockRequest(block)));
 	}
 
 	private static void sendToSomePeers(final JSONObject request) {
-		Peers.sendingService.submit(() -> {
-			final JSONStreamAware jsonRequest = JSON.prepareRequest(request);
+		Peers.sendingService.submit(() -> Peers.sendRequestToSomePeers(BinaryJSON.prepareRequest(request)));
+	}
 
-			int successful = 0;
-			final List<Future<JSONObject>> expectedResponses = new ArrayList<>();
-			for (final Peer peer : Peers.peers.values()) {
+	private static void sendRequestToSomePeers(final JSONStreamAware jsonRequest) {
+		int successful = 0;
+		final List<Future<JSONObject>> expectedResponses = new ArrayList<>();
+		for (final Peer peer : Peers.peers.values()) {
 
-				if (Peers.enableHallmarkProtection && peer.getWeight() < Peers.pushThreshold) continue;
+			if (Peers.enableHallmarkProtection && peer.getWeight() < Peers.pushThreshold) continue;
 
-				if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED
-						&& peer.getAnnouncedAddress() != null
-						&& peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT) {
-					final Future<JSONObject> futureResponse = Peers.peersService.submit(() -> peer.send(jsonRequest));
-					expectedResponses.add(futureResponse);
-				}
-				if (expectedResponses.size() >= Peers.sendToPeersLimit - successful) {
-					for (final Future<JSONObject> future : expectedResponses)
-                        try {
-                            final JSONObject response = future.get();
-                            if (response != null && response.get("error") == null) successful += 1;
-                        } catch (final InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        } catch (final ExecutionException e) {
-                            Logger.logDebugMessage("Error in sendToSomePeers", e);
-                        }
-					expectedResponses.clear();
-				}
-				if (successful >= Peers.sendToPeersLimit) return;
+			if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED
+					&& peer.getAnnouncedAddress() != null
+					&& peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT) {
+				final Future<JSONObject> futureResponse = Peers.peersService.submit(() -> peer.send(jsonRequest));
+				expectedResponses.add(futureResponse);
 			}
-		});
+			if (expectedResponses.size() >= Peers.sendToPeersLimit - successful) {
+				for (final Future<JSONObject> future : expectedResponses)
+                    try {
+                        final JSONObject response = future.get();
+                        if (response != null && response.get("error") == null) successful += 1;
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (final ExecutionException e) {
+                        Logger.logDebugMessage("Error in sendToSomePeers", e);
+                    }
+				expectedResponses.clear();
+			}
+			if (successful >= Peers.sendToPeersLimit) return;
+		}
 	}
 
 	private static void sendToSomeSnPeers(final JSONObject request) {
 		Peers.sendingService.submit(() -> {
-			final JSONStreamAware jsonRequest = JSON.prepareRequest(request);
+			final JSONStreamAware jsonRequest = BinaryJSON.prepareRequest(request);
 
 			int successful = 0;
 			final List<Future<JSONObject>> expectedResponses = new ArrayList<>();
 			for (final Peer peer : Peers.getConnectedSnPeers()) {
 				if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED) {
 					final Future<JSONObject> futureResponse = Peers.peersService.submit(() -> peer.send(jsonRequest));
-					Logger.logInfoMessage("One SN pinged (" + peer.getHost() + ").");
+					Logger.logInfoMessage(() -> "One SN pinged (" + peer.getHost() + ").");
 					expectedResponses.add(futureResponse);
 				}
 
@@ -1141,7 +1142,8 @@ public final class Peers {
 					for (final Future<JSONObject> future : expectedResponses)
                         try {
                             final JSONObject response = future.get();
-                            if (response != null && response.get("error") == null) {
+                            // a busy supernode reports the transactions it dropped
+                            if (response != null && response.get("error") == null && response.get("dropped") == null) {
                                 successful += 1;
                                 Logger.logInfoMessage("One SN ponged back.");
                             }
@@ -1174,14 +1176,15 @@ public final class Peers {
 
 	public static void sendToSomeSnPeers(final List<? extends Transaction> transactions) {
 		int nextBatchStart = 0;
-		Logger.logInfoMessage("Sending SN Relevant TX: #" + transactions.size() + ", connected SN peers: " + Peers.getConnectedSnPeers().size());
+		Logger.logInfoMessage(() -> "Sending SN Relevant TX: #" + transactions.size() + ", connected SN peers: " + Peers.getConnectedSnPeers().size());
 		while (nextBatchStart < transactions.size()) {
 			final JSONObject request = new JSONObject();
 			final JSONArray transactionsData = new JSONArray();
 			for (int i = nextBatchStart; i < nextBatchStart + Peers.sendTransactionsBatchSize
 					&& i < transactions.size(); i++) {
-				transactionsData.add(transactions.get(i).getJSONObject());
-				Logger.logInfoMessage(transactions.get(i).getJSONObject().toJSONString()); // To remove
+				final JSONObject transactionJSON = transactions.get(i).getJSONObject();
+				transactionsData.add(transactionJSON);
+				Logger.log(Logger.Level.DEBUG, transactionJSON::toJSONString);
 			}
 			request.put("requestType", "processSupernodeTransactions");
 			request.put("transactions", transactionsData);
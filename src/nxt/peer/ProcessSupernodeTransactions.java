@@ -36,9 +36,9 @@ final class ProcessSupernodeTransactions extends PeerServlet.PeerRequestHandler
 	private ProcessSupernodeTransactions() {
 	}
 
-	private void doEverything(final JSONArray transactionsData, final Peer peer) throws NxtException.NotValidException {
+	private int doEverything(final JSONArray transactionsData, final Peer peer) throws NxtException.NotValidException {
 
-		if ((transactionsData == null) || transactionsData.isEmpty()) return;
+		if ((transactionsData == null) || transactionsData.isEmpty()) return 0;
 		final long arrivalTimestamp = System.currentTimeMillis();
 		final List<TransactionImpl> receivedTransactions = new ArrayList<>();
 		final List<Exception> exceptions = new ArrayList<>();
@@ -59,16 +59,19 @@ final class ProcessSupernodeTransactions extends PeerServlet.PeerRequestHandler
 
 		// TODO: Ratelimiting per peer
 
-		// Process everything by submitting it to the thread pool queue! Will be worked off later on
+		// Process everything by submitting it to the signing queue! Will be worked off later on
+		int dropped = 0;
+		final long deadline = SupernodeMagicManager.getOfferDeadline();
 		for(TransactionImpl t : receivedTransactions)
             try {
                 t.validateWithoutSn(); // Validate if everything is working fine with this TX
                 System.out.println("  -> handling TX " + t.getId() + " (" + t.getType().getName() + "). Validates: true");
-                SupernodeMagicManager.add(t, peer);
+                if (!SupernodeMagicManager.add(t, peer, deadline)) dropped++;
             } catch (NxtException.ValidationException e) {
                 // Ignore shitty TX that was sent to supernode, also ... blacklist peer
                 peer.blacklist(e);
             }
+		return dropped;
 	}
 
 	@Override
@@ -79,7 +82,14 @@ final class ProcessSupernodeTransactions extends PeerServlet.PeerRequestHandler
 		try {
 			final JSONArray transactionsData = (JSONArray) request.get("transactions");
 			Logger.logInfoMessage("SN received " + transactionsData.size() + " TX to process.");
-			doEverything(transactionsData, peer);
+			final int dropped = doEverything(transactionsData, peer);
+			if (dropped > 0) {
+				// Signing queue is full, let the peer try another supernode. This
+				// is not reported as an error, the peer would disconnect.
+				final JSONObject response = new JSONObject();
+				response.put("dropped", dropped);
+				return response;
+			}
 			return JSON.emptyJSON;
 		} catch (RuntimeException | NxtException.ValidationException e) {
 			// Logger.logDebugMessage("Failed to parse peer transactions: " +
@@ -30,7 +30,6 @@ import nxt.BlockImpl;
 import nxt.Constants;
 import nxt.Nxt;
 import nxt.Transaction;
-import nxt.db.DbIterator;
 import nxt.peer.Peer;
 import nxt.peer.Peers;
 import nxt.util.Convert;
@@ -49,23 +48,19 @@ final class GetInitialData extends UserServlet.UserRequestHandler {
 		final JSONArray activePeers = new JSONArray(), knownPeers = new JSONArray(), blacklistedPeers = new JSONArray();
 		final JSONArray recentBlocks = new JSONArray();
 
-		try (DbIterator<? extends Transaction> transactions = Nxt.getTransactionProcessor()
-				.getAllUnconfirmedTransactions()) {
-			while (transactions.hasNext()) {
-				final Transaction transaction = transactions.next();
-
-				final JSONObject unconfirmedTransaction = new JSONObject();
-				unconfirmedTransaction.put("index", Users.getIndex(transaction));
-				unconfirmedTransaction.put("timestamp", transaction.getTimestamp());
-				unconfirmedTransaction.put("deadline", transaction.getDeadline());
-				unconfirmedTransaction.put("recipient", Long.toUnsignedString(transaction.getRecipientId()));
-				unconfirmedTransaction.put("amountNQT", transaction.getAmountNQT());
-				unconfirmedTransaction.put("feeNQT", transaction.getFeeNQT());
-				unconfirmedTransaction.put("sender", Long.toUnsignedString(transaction.getSenderId()));
-				unconfirmedTransaction.put("id", transaction.getStringId());
-
-				unconfirmedTransactions.add(unconfirmedTransaction);
-			}
+		for (final Transaction transaction : Nxt.getTransactionProcessor().getAllUnconfirmedTransactions()) {
+
+			final JSONObject unconfirmedTransaction = new JSONObject();
+			unconfirmedTransaction.put("index", Users.getIndex(transaction));
+			unconfirmedTransaction.put("timestamp", transaction.getTimestamp());
+			unconfirmedTransaction.put("deadline", transaction.getDeadline());
+			unconfirmedTransaction.put("recipient", Long.toUnsignedString(transaction.getRecipientId()));
+			unconfirmedTransaction.put("amountNQT", transaction.getAmountNQT());
+			unconfirmedTransaction.put("feeNQT", transaction.getFeeNQT());
+			unconfirmedTransaction.put("sender", Long.toUnsignedString(transaction.getSenderId()));
+			unconfirmedTransaction.put("id", transaction.getStringId());
+
+			unconfirmedTransactions.add(unconfirmedTransaction);
 		}
 
 		for (final Peer peer : Peers.getAllPeers())
@@ -30,7 +30,6 @@ import nxt.Block;
 import nxt.BlockImpl;
 import nxt.Nxt;
 import nxt.Transaction;
-import nxt.db.DbIterator;
 
 final class UnlockAccount extends UserServlet.UserRequestHandler {
 
@@ -77,41 +76,37 @@ final class UnlockAccount extends UserServlet.UserRequestHandler {
 
 			final JSONArray myTransactions = new JSONArray();
 			final byte[] accountPublicKey = Account.getPublicKey(accountId);
-			try (DbIterator<? extends Transaction> transactions = Nxt.getTransactionProcessor()
-					.getAllUnconfirmedTransactions()) {
-				while (transactions.hasNext()) {
-					final Transaction transaction = transactions.next();
-					if (Arrays.equals(transaction.getSenderPublicKey(), accountPublicKey)) {
-
-						final JSONObject myTransaction = new JSONObject();
-						myTransaction.put("index", Users.getIndex(transaction));
-						myTransaction.put("transactionTimestamp", transaction.getTimestamp());
-						myTransaction.put("deadline", transaction.getDeadline());
-						myTransaction.put("account", Long.toUnsignedString(transaction.getRecipientId()));
-						myTransaction.put("sentAmountNQT", transaction.getAmountNQT());
-						if (accountId == transaction.getRecipientId())
+			for (final Transaction transaction : Nxt.getTransactionProcessor().getAllUnconfirmedTransactions()) {
+				if (Arrays.equals(transaction.getSenderPublicKey(), accountPublicKey)) {
+
+					final JSONObject myTransaction = new JSONObject();
+					myTransaction.put("index", Users.getIndex(transaction));
+					myTransaction.put("transactionTimestamp", transaction.getTimestamp());
+					myTransaction.put("deadline", transaction.getDeadline());
+					myTransaction.put("account", Long.toUnsignedString(transaction.getRecipientId()));
+					myTransaction.put("sentAmountNQT", transaction.getAmountNQT());
+					if (accountId == transaction.getRecipientId())
                             myTransaction.put("receivedAmountNQT", transaction.getAmountNQT());
-						myTransaction.put("feeNQT", transaction.getFeeNQT());
-						myTransaction.put("numberOfConfirmations", -1);
-						myTransaction.put("id", transaction.getStringId());
+					myTransaction.put("feeNQT", transaction.getFeeNQT());
+					myTransaction.put("numberOfConfirmations", -1);
+					myTransaction.put("id", transaction.getStringId());
 
-						myTransactions.add(myTransaction);
+					myTransactions.add(myTransaction);
 
-					} else if (accountId == transaction.getRecipientId()) {
+				} else if (accountId == transaction.getRecipientId()) {
 
-						final JSONObject myTransaction = new JSONObject();
-						myTransaction.put("index", Users.getIndex(transaction));
-						myTransaction.put("transactionTimestamp", transaction.getTimestamp());
-						myTransaction.put("deadline", transaction.getDeadline());
-						myTransaction.put("account", Long.toUnsignedString(transaction.getSenderId()));
-						myTransaction.put("receivedAmountNQT", transaction.getAmountNQT());
-						myTransaction.put("feeNQT", transaction.getFeeNQT());
-						myTransaction.put("numberOfConfirmations", -1);
-						myTransaction.put("id", transaction.getStringId());
+					final JSONObject myTransaction = new JSONObject();
+					myTransaction.put("index", Users.getIndex(transaction));
+					myTransaction.put("transactionTimestamp", transaction.getTimestamp());
+					myTransaction.put("deadline", transaction.getDeadline());
+					myTransaction.put("account", Long.toUnsignedString(transaction.getSenderId()));
+					myTransaction.put("receivedAmountNQT", transaction.getAmountNQT());
+					myTransaction.put("feeNQT", transaction.getFeeNQT());
+					myTransaction.put("numberOfConfirmations", -1);
+					myTransaction.put("id", transaction.getStringId());
 
-						myTransactions.add(myTransaction);
+					myTransactions.add(myTransaction);
 
-					}
 				}
 			}
 
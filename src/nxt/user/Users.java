@@ -57,6 +57,7 @@ import nxt.Transaction;
 import nxt.TransactionProcessor;
 import nxt.peer.Peer;
 import nxt.peer.Peers;
+import nxt.util.AsyncListener;
 import nxt.util.Convert;
 import nxt.util.Logger;
 import nxt.util.ThreadPool;
@@ -179,7 +180,7 @@ public final class Users {
 
 	static {
 		if (Users.userServer != null) {
-			Account.addListener(account -> {
+			Account.addListener(AsyncListener.named("Users", account -> {
 				final JSONObject response = new JSONObject();
 				response.put("response", "setBalance");
 				response.put("balanceNQT", account.getUnconfirmedBalanceNQT());
@@ -188,7 +189,7 @@ public final class Users {
 					if ((user.getSecretPhrase() != null) && Arrays.equals(user.getPublicKey(), accountPublicKey))
 						user.send(response);
 				});
-			}, Account.Event.UNCONFIRMED_BALANCE);
+			}), Account.Event.UNCONFIRMED_BALANCE);
 
 			Peers.addListener(peer -> {
 				final JSONObject response = new JSONObject();
@@ -340,7 +341,7 @@ public final class Users {
 				Users.sendNewDataToAll(response);
 			}, Peers.Event.NEW_PEER);
 
-			Nxt.getTransactionProcessor().addListener(transactions -> {
+			Nxt.getTransactionProcessor().addListener(AsyncListener.named("Users", transactions -> {
 				final JSONObject response = new JSONObject();
 				final JSONArray removedUnconfirmedTransactions = new JSONArray();
 				for (final Transaction transaction : transactions) {
@@ -350,9 +351,9 @@ public final class Users {
 				}
 				response.put("removedUnconfirmedTransactions", removedUnconfirmedTransactions);
 				Users.sendNewDataToAll(response);
-			}, TransactionProcessor.Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
+			}), TransactionProcessor.Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
 
-			Nxt.getTransactionProcessor().addListener(transactions -> {
+			Nxt.getTransactionProcessor().addListener(AsyncListener.named("Users", transactions -> {
 				final JSONObject response = new JSONObject();
 				final JSONArray addedUnconfirmedTransactions = new JSONArray();
 				for (final Transaction transaction : transactions) {
@@ -369,9 +370,9 @@ public final class Users {
 				}
 				response.put("addedUnconfirmedTransactions", addedUnconfirmedTransactions);
 				Users.sendNewDataToAll(response);
-			}, TransactionProcessor.Event.ADDED_UNCONFIRMED_TRANSACTIONS);
+			}), TransactionProcessor.Event.ADDED_UNCONFIRMED_TRANSACTIONS);
 
-			Nxt.getTransactionProcessor().addListener(transactions -> {
+			Nxt.getTransactionProcessor().addListener(AsyncListener.named("Users", transactions -> {
 				final JSONObject response = new JSONObject();
 				final JSONArray addedConfirmedTransactions = new JSONArray();
 				for (final Transaction transaction : transactions) {
@@ -388,9 +389,9 @@ public final class Users {
 				}
 				response.put("addedConfirmedTransactions", addedConfirmedTransactions);
 				Users.sendNewDataToAll(response);
-			}, TransactionProcessor.Event.ADDED_CONFIRMED_TRANSACTIONS);
+			}), TransactionProcessor.Event.ADDED_CONFIRMED_TRANSACTIONS);
 
-			Nxt.getBlockchainProcessor().addListener(block -> {
+			Nxt.getBlockchainProcessor().addListener(AsyncListener.named("Users", block -> {
 				final JSONObject response = new JSONObject();
 				final JSONArray addedOrphanedBlocks = new JSONArray();
 				final JSONObject addedOrphanedBlock = new JSONObject();
@@ -410,9 +411,9 @@ public final class Users {
 				addedOrphanedBlocks.add(addedOrphanedBlock);
 				response.put("addedOrphanedBlocks", addedOrphanedBlocks);
 				Users.sendNewDataToAll(response);
-			}, BlockchainProcessor.Event.BLOCK_POPPED);
+			}), BlockchainProcessor.Event.BLOCK_POPPED);
 
-			Nxt.getBlockchainProcessor().addListener(block -> {
+			Nxt.getBlockchainProcessor().addListener(AsyncListener.named("Users", block -> {
 				final JSONObject response = new JSONObject();
 				final JSONArray addedRecentBlocks = new JSONArray();
 				final JSONObject addedRecentBlock = new JSONObject();
@@ -432,16 +433,16 @@ public final class Users {
 				addedRecentBlocks.add(addedRecentBlock);
 				response.put("addedRecentBlocks", addedRecentBlocks);
 				Users.sendNewDataToAll(response);
-			}, BlockchainProcessor.Event.BLOCK_PUSHED);
+			}), BlockchainProcessor.Event.BLOCK_PUSHED);
 
-			Generator.addListener(generator -> {
+			Generator.addListener(AsyncListener.named("Users", generator -> {
 				final JSONObject response = new JSONObject();
 				response.put("response", "setBlockGenerationDeadline");
 				response.put("deadline", generator.getDeadline());
 				Users.users.values().forEach(user -> {
 					if (Arrays.equals(generator.getPublicKey(), user.getPublicKey())) user.send(response);
 				});
-			}, Generator.Event.GENERATION_DEADLINE);
+			}), Generator.Event.GENERATION_DEADLINE);
 		}
 
 	}
@@ -0,0 +1,65 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.util;
+
+/**
+ * Listener that does not take part in the processing of an event.
+ *
+ * Asynchronous listeners are notified on a dispatch thread of the event type
+ * instead of the thread raising the event, in the order the events were
+ * raised. They must not rely on the state of the notifying thread, such as an
+ * open database transaction or a held lock.
+ */
+@FunctionalInterface
+public interface AsyncListener<T> extends Listener<T> {
+
+	/**
+	 * Create a named asynchronous listener
+	 *
+	 * @param name
+	 *            Listener name reported in the listener statistics
+	 * @param listener
+	 *            Listener
+	 * @return Asynchronous listener
+	 */
+	static <T> AsyncListener<T> named(final String name, final Listener<T> listener) {
+		return new AsyncListener<T>() {
+
+			@Override
+			public void notify(final T t) {
+				listener.notify(t);
+			}
+
+			@Override
+			public String getName() {
+				return name;
+			}
+
+		};
+	}
+
+	/**
+	 * Return the listener name reported in the listener statistics
+	 *
+	 * @return Listener name, the class name unless the listener was created by
+	 *         {@link #named(String, Listener)}
+	 */
+	default String getName() {
+		return this.getClass().getName();
+	}
+
+}
@@ -16,32 +16,205 @@
 
 package nxt.util;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Event listeners of a component.
+ *
+ * Listeners are notified on the thread raising the event in the order they
+ * were added. Listeners implementing {@link AsyncListener} are instead handed
+ * to a single dispatch thread per event type with a bounded queue. The
+ * notifying thread never waits for the dispatch thread, an event is dropped
+ * for the asynchronous listeners if the queue is full. The notification
+ * latency and the dropped events of every listener are recorded and can be
+ * retrieved with {@link #getStatistics()}.
+ */
 public final class Listeners<T, E extends Enum<E>> {
 
-	private final ConcurrentHashMap<Enum<E>, List<Listener<T>>> listenersMap = new ConcurrentHashMap<>();
+	/**
+	 * Notification latency of the listeners of one class and event type
+	 */
+	private static final class ListenerStatistics {
+
+		/** Upper bounds of the latency histogram buckets in nanoseconds */
+		private static final long[] BUCKET_LIMITS = { 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+				1000000000L };
+
+		/** Names of the latency histogram buckets, the last one is unbounded */
+		private static final String[] BUCKET_NAMES = { "10us", "100us", "1ms", "10ms", "100ms", "1s", "more" };
+
+		private final String event;
+		private final String listener;
+		private final boolean async;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+		private final AtomicLongArray buckets = new AtomicLongArray(ListenerStatistics.BUCKET_NAMES.length);
+
+		private ListenerStatistics(final String event, final String listener, final boolean async) {
+			this.event = event;
+			this.listener = listener;
+			this.async = async;
+		}
+
+		private void record(final long nanos) {
+			this.count.incrementAndGet();
+			this.totalNanos.addAndGet(nanos);
+			this.maxNanos.accumulateAndGet(nanos, Math::max);
+			int bucket = 0;
+			while ((bucket < ListenerStatistics.BUCKET_LIMITS.length)
+					&& (nanos >= ListenerStatistics.BUCKET_LIMITS[bucket]))
+				bucket++;
+			this.buckets.incrementAndGet(bucket);
+		}
+
+		private JSONObject getStatistics() {
+			final JSONObject json = new JSONObject();
+			json.put("event", this.event);
+			json.put("listener", this.listener);
+			json.put("async", this.async);
+			json.put("count", this.count.get());
+			json.put("totalTime", this.totalNanos.get() / 1000000);
+			json.put("maxTime", this.maxNanos.get() / 1000000);
+			if (this.async) json.put("dropped", this.dropped.get());
+			final JSONObject histogram = new JSONObject();
+			for (int i = 0; i < ListenerStatistics.BUCKET_NAMES.length; i++)
+				histogram.put(ListenerStatistics.BUCKET_NAMES[i], this.buckets.get(i));
+			json.put("histogram", histogram);
+			return json;
+		}
+	}
+
+	/**
+	 * Registered listener
+	 */
+	private static final class Registration<T> {
+
+		private final Listener<T> listener;
+		private final ListenerStatistics statistics;
+
+		private Registration(final Listener<T> listener, final ListenerStatistics statistics) {
+			this.listener = listener;
+			this.statistics = statistics;
+		}
+
+		private void notify(final T t) {
+			final long start = System.nanoTime();
+			try {
+				this.listener.notify(t);
+			} finally {
+				this.statistics.record(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/** Maximum number of queued events of each asynchronous event type */
+	private static final int ASYNC_QUEUE_SIZE = 1024;
+
+	/** Statistics of all listeners, indexed by event type and listener name */
+	private static final Map<String, ListenerStatistics> statistics = new ConcurrentHashMap<>();
+
+	/**
+	 * Return the notification latency of all listeners
+	 *
+	 * @return Listener statistics sorted by descending total notification time
+	 */
+	public static JSONArray getStatistics() {
+		final List<ListenerStatistics> list = new ArrayList<>(Listeners.statistics.values());
+		list.sort((s1, s2) -> Long.compare(s2.totalNanos.get(), s1.totalNanos.get()));
+		final JSONArray json = new JSONArray();
+		list.forEach(s -> json.add(s.getStatistics()));
+		return json;
+	}
+
+	private static ListenerStatistics getStatistics(final Listener<?> listener, final Enum<?> eventType) {
+		final String event = eventType.getDeclaringClass().getName() + "." + eventType.name();
+		final String name = listener instanceof AsyncListener ? ((AsyncListener<?>) listener).getName()
+				: listener.getClass().getName();
+		return Listeners.statistics.computeIfAbsent(event + " " + name,
+				k -> new ListenerStatistics(event, name, listener instanceof AsyncListener));
+	}
+
+	private final ConcurrentHashMap<Enum<E>, List<Registration<T>>> listenersMap = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<Enum<E>, ExecutorService> executors = new ConcurrentHashMap<>();
 
 	public boolean addListener(final Listener<T> listener, final Enum<E> eventType) {
 		synchronized (eventType) {
-            List<Listener<T>> listeners = this.listenersMap.computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>());
-            return listeners.add(listener);
+			final List<Registration<T>> listeners = this.listenersMap.computeIfAbsent(eventType,
+					k -> new CopyOnWriteArrayList<>());
+			return listeners.add(new Registration<>(listener, Listeners.getStatistics(listener, eventType)));
 		}
 	}
 
 	public void notify(final T t, final Enum<E> eventType) {
-		final List<Listener<T>> listeners = this.listenersMap.get(eventType);
-		if (listeners != null) for (final Listener<T> listener : listeners) listener.notify(t);
+		final List<Registration<T>> listeners = this.listenersMap.get(eventType);
+		if (listeners == null) return;
+		List<Registration<T>> asyncListeners = null;
+		for (final Registration<T> registration : listeners)
+			if (registration.listener instanceof AsyncListener) {
+				if (asyncListeners == null) asyncListeners = new ArrayList<>();
+				asyncListeners.add(registration);
+			} else registration.notify(t);
+		if (asyncListeners != null) {
+			final List<Registration<T>> dispatch = asyncListeners;
+			try {
+				this.getExecutor(eventType).execute(() -> dispatch.forEach(registration -> {
+					try {
+						registration.notify(t);
+					} catch (final RuntimeException e) {
+						Logger.logErrorMessage("Listener " + registration.statistics.listener + " failed on "
+								+ registration.statistics.event, e);
+					}
+				}));
+			} catch (final RejectedExecutionException e) {
+				dispatch.forEach(registration -> registration.statistics.dropped.incrementAndGet());
+			}
+		}
 	}
 
 	public boolean removeListener(final Listener<T> listener, final Enum<E> eventType) {
 		synchronized (eventType) {
-			final List<Listener<T>> listeners = this.listenersMap.get(eventType);
-			if (listeners != null) return listeners.remove(listener);
+			final List<Registration<T>> listeners = this.listenersMap.get(eventType);
+			if (listeners != null) for (final Registration<T> registration : listeners)
+				if (registration.listener.equals(listener)) return listeners.remove(registration);
 		}
 		return false;
 	}
 
+	/**
+	 * Return the dispatch thread of an event type
+	 *
+	 * The thread is a daemon thread so pending notifications do not delay the
+	 * shutdown. Events are rejected when the queue is full.
+	 *
+	 * @param eventType
+	 *            Event type
+	 * @return Single threaded executor
+	 */
+	private ExecutorService getExecutor(final Enum<E> eventType) {
+		return this.executors.computeIfAbsent(eventType, k -> new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Listeners.ASYNC_QUEUE_SIZE), runnable -> {
+					final Thread thread = new Thread(runnable,
+							"Listeners-" + eventType.getDeclaringClass().getSimpleName() + "-" + eventType.name());
+					thread.setDaemon(true);
+					return thread;
+				}));
+	}
+
 }
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Properties;
+import java.util.function.Supplier;
 import java.util.logging.LogManager;
 
 import nxt.Constants;
@@ -27,6 +28,10 @@ import nxt.Nxt;
 
 /**
  * Handle logging for the Nxt node server
+ *
+ * Messages that are expensive to build should use the Supplier or format
+ * overloads. The message is then only built if the level (and the signing
+ * or Kimoto category) is enabled, so a disabled message costs one check.
  */
 public final class Logger {
 
@@ -194,12 +199,96 @@ public final class Logger {
 		return Logger.log.isWarnEnabled();
 	}
 
+	/**
+	 * Check if messages of a level are logged
+	 *
+	 * @param level
+	 *            Log level
+	 * @return TRUE if the level is enabled
+	 */
+	public static boolean isEnabled(final Level level) {
+		switch (level) {
+		case DEBUG:
+			return Logger.log.isDebugEnabled();
+		case INFO:
+			return Logger.log.isInfoEnabled();
+		case WARN:
+			return Logger.log.isWarnEnabled();
+		default:
+			return Logger.log.isErrorEnabled();
+		}
+	}
+
+	/**
+	 * Check if signing events are logged
+	 *
+	 * @return TRUE if signing events are logged
+	 */
+	public static boolean isSignEnabled() {
+		return Constants.logSigningEvents && Logger.log.isInfoEnabled();
+	}
+
+	/**
+	 * Check if Kimoto retargeting events are logged
+	 *
+	 * @return TRUE if retargeting events are logged
+	 */
+	public static boolean isKomotoEnabled() {
+		return Constants.logKimotoEvents && Logger.log.isInfoEnabled();
+	}
+
+	/**
+	 * Log a message built on demand
+	 *
+	 * @param level
+	 *            Log level
+	 * @param message
+	 *            Message supplier, only called if the level is enabled
+	 */
+	public static void log(final Level level, final Supplier<String> message) {
+		if (Logger.isEnabled(level)) Logger.doLog(level, message.get(), null);
+	}
+
 	public static void logSignMessage(final String message) {
-		if(Constants.logSigningEvents) Logger.doLog(Level.INFO, "[SIGN] " + message, null);
+		if (Logger.isSignEnabled()) Logger.doLog(Level.INFO, "[SIGN] " + message, null);
+	}
+
+	/**
+	 * Log a signing event built on demand
+	 *
+	 * @param message
+	 *            Message supplier, only called if signing events are logged
+	 */
+	public static void logSignMessage(final Supplier<String> message) {
+		if (Logger.isSignEnabled()) Logger.doLog(Level.INFO, "[SIGN] " + message.get(), null);
 	}
 
 	public static void logKomotoMessage(final String message) {
-		if(Constants.logKimotoEvents) Logger.doLog(Level.INFO, "[KIMOTO] " + message, null);
+		if (Logger.isKomotoEnabled()) Logger.doLog(Level.INFO, "[KIMOTO] " + message, null);
+	}
+
+	/**
+	 * Log a Kimoto retargeting event
+	 *
+	 * @param format
+	 *            Message format, only formatted if retargeting events are
+	 *            logged
+	 * @param args
+	 *            Message args
+	 */
+	public static void logKomotoMessage(final String format, final Object... args) {
+		if (Logger.isKomotoEnabled()) Logger.doLog(Level.INFO, "[KIMOTO] " + String.format(format, args), null);
+	}
+
+	/**
+	 * Log a Kimoto retargeting event built on demand
+	 *
+	 * @param message
+	 *            Message supplier, only called if retargeting events are
+	 *            logged
+	 */
+	public static void logKomotoMessage(final Supplier<String> message) {
+		if (Logger.isKomotoEnabled()) Logger.doLog(Level.INFO, "[KIMOTO] " + message.get(), null);
 	}
 
 	/**
@@ -221,7 +310,17 @@ public final class Logger {
 	 *            Message args
 	 */
 	public static void logDebugMessage(final String format, final Object... args) {
-		Logger.doLog(Level.INFO, String.format(format, args), null);
+		if (Logger.log.isInfoEnabled()) Logger.doLog(Level.INFO, String.format(format, args), null);
+	}
+
+	/**
+	 * Log a debug message built on demand
+	 *
+	 * @param message
+	 *            Message supplier
+	 */
+	public static void logDebugMessage(final Supplier<String> message) {
+		if (Logger.log.isInfoEnabled()) Logger.doLog(Level.INFO, message.get(), null);
 	}
 
 	/**
@@ -277,7 +376,17 @@ public final class Logger {
 	 *            Message args
 	 */
 	public static void logInfoMessage(final String format, final Object... args) {
-		Logger.doLog(Level.INFO, String.format(format, args), null);
+		if (Logger.log.isInfoEnabled()) Logger.doLog(Level.INFO, String.format(format, args), null);
+	}
+
+	/**
+	 * Log an INFO message built on demand
+	 *
+	 * @param message
+	 *            Message supplier
+	 */
+	public static void logInfoMessage(final Supplier<String> message) {
+		if (Logger.log.isInfoEnabled()) Logger.doLog(Level.INFO, message.get(), null);
 	}
 
 	/**
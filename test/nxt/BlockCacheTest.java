@@ -0,0 +1,109 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockCacheTest extends AbstractForgingTest {
+
+    @Before
+    public void init() {
+        AbstractForgingTest.init(AbstractForgingTest.newTestProperties());
+        BlockCache.clear();
+    }
+
+    @After
+    public void destroy() {
+        BlockCache.clear();
+        AbstractForgingTest.shutdown();
+    }
+
+    private static BlockImpl newBlock(int height) {
+        return new BlockImpl(1, height, height - 1, 0, 0, 0, 0, new byte[32], 0, new byte[32], new byte[64],
+                new byte[32], BigInteger.ZERO, 0, 0, height, 1000000 + height, Collections.emptyList(), null);
+    }
+
+    private static void pushTo(int fromHeight, int toHeight) {
+        for (int height = fromHeight; height <= toHeight; height++)
+            BlockCache.push(newBlock(height));
+    }
+
+    @Test
+    public void windowEviction() {
+        int top = BlockCache.WINDOW_SIZE + 9;
+        pushTo(0, top);
+        int windowStart = top - BlockCache.WINDOW_SIZE + 1;
+        for (int height = windowStart; height <= top; height++)
+            Assert.assertEquals(height, BlockCache.getBlockAtHeight(height).getHeight());
+        List<BlockImpl> after = BlockCache.getBlocksAfter(1000000 + windowStart);
+        Assert.assertEquals(BlockCache.WINDOW_SIZE - 1, after.size());
+        Assert.assertEquals(top, after.get(after.size() - 1).getHeight());
+        // blocks pushed out of the window move to the tail
+        Assert.assertNull(BlockCache.getBlocksAfter(1000000 + windowStart - 1));
+        Assert.assertEquals(windowStart - 1, BlockCache.getBlock(1000000 + windowStart - 1).getHeight());
+    }
+
+    @Test
+    public void tailEviction() {
+        int size = BlockCache.TAIL_SIZE;
+        for (int height = 0; height < size; height++)
+            BlockCache.loaded(newBlock(height), BlockCache.getGeneration());
+        // a referenced block gets a second chance
+        Assert.assertNotNull(BlockCache.getBlockAtHeight(0));
+        for (int height = size; height < size + 10; height++)
+            BlockCache.loaded(newBlock(height), BlockCache.getGeneration());
+        Assert.assertNotNull(BlockCache.getBlockAtHeight(0));
+        for (int height = 1; height <= 10; height++)
+            Assert.assertNull(BlockCache.getBlockAtHeight(height));
+        for (int height = 11; height < size + 10; height++)
+            Assert.assertNotNull(BlockCache.getBlockAtHeight(height));
+        Assert.assertEquals(size, BlockCache.getStatistics().get("tailBlocks"));
+    }
+
+    @Test
+    public void staleLoadIsIgnored() {
+        long generation = BlockCache.getGeneration();
+        BlockCache.removeFrom(0);
+        BlockCache.loaded(newBlock(5), generation);
+        Assert.assertNull(BlockCache.getBlockAtHeight(5));
+    }
+
+    @Test
+    public void popKeepsLowerBlocks() {
+        pushTo(0, 19);
+        BlockCache.loaded(newBlock(100), BlockCache.getGeneration());
+        BlockCache.removeFrom(15);
+        for (int height = 0; height < 15; height++)
+            Assert.assertNotNull(BlockCache.getBlockAtHeight(height));
+        for (int height = 15; height < 20; height++)
+            Assert.assertNull(BlockCache.getBlockAtHeight(height));
+        Assert.assertNull(BlockCache.getBlockAtHeight(100));
+        Assert.assertEquals(14, BlockCache.getBlocksAfter(1000000 + 13).get(0).getHeight());
+        // the next block continues the window
+        BlockCache.push(newBlock(15));
+        Assert.assertEquals(2, BlockCache.getBlocksAfter(1000000 + 13).size());
+    }
+
+}
@@ -0,0 +1,63 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClockCacheTest {
+
+    @Test
+    public void hitAndMiss() {
+        ClockCache<String> cache = new ClockCache<>(16);
+        Assert.assertNull(cache.get(1));
+        cache.put(1, "a");
+        Assert.assertEquals("a", cache.get(1));
+        Assert.assertNull(cache.get(2));
+        cache.put(1, 2, "b");
+        Assert.assertEquals("b", cache.get(1, 2));
+        Assert.assertNull(cache.get(2, 1));
+        Assert.assertEquals("a", cache.get(1));
+        cache.put(1, "c");
+        Assert.assertEquals("c", cache.get(1));
+    }
+
+    @Test
+    public void clockEviction() {
+        // two slots in a single probe window
+        ClockCache<Long> cache = new ClockCache<>(2);
+        cache.put(1, 1L);
+        cache.put(2, 2L);
+        // the clock hand unmarks both entries and evicts one of them
+        cache.put(3, 3L);
+        // the entry inserted since then is still marked and gets a second chance,
+        // the remaining unmarked one is evicted
+        cache.put(4, 4L);
+        Assert.assertEquals(0, count(cache, 1, 3));
+        Assert.assertEquals(Long.valueOf(3), cache.get(3));
+        Assert.assertEquals(Long.valueOf(4), cache.get(4));
+    }
+
+    private static int count(ClockCache<Long> cache, long from, long to) {
+        int count = 0;
+        for (long key = from; key < to; key++)
+            if (cache.get(key) != null) count++;
+        return count;
+    }
+
+}
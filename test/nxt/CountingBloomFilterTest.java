@@ -0,0 +1,95 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CountingBloomFilterTest {
+
+    private static byte[] value(int i) {
+        return ByteBuffer.allocate(32).putInt(i).putInt(28, ~i).array();
+    }
+
+    @Test
+    public void addAndRemove() {
+        CountingBloomFilter filter = new CountingBloomFilter(4096, 0.01);
+        byte[] value = value(1);
+        Assert.assertFalse(filter.mightContain(value));
+        filter.add(value);
+        Assert.assertTrue(filter.mightContain(value));
+        Assert.assertEquals(1, filter.getEntries());
+        filter.remove(value);
+        Assert.assertFalse(filter.mightContain(value));
+        Assert.assertEquals(0, filter.getEntries());
+    }
+
+    @Test
+    public void duplicateAddNeedsTwoRemoves() {
+        CountingBloomFilter filter = new CountingBloomFilter(4096, 0.01);
+        byte[] value = value(7);
+        filter.add(value);
+        filter.add(value);
+        filter.remove(value);
+        Assert.assertTrue(filter.mightContain(value));
+        filter.remove(value);
+        Assert.assertFalse(filter.mightContain(value));
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        int capacity = CountingBloomFilter.getCapacity(4096, 0.01);
+        CountingBloomFilter filter = new CountingBloomFilter(4096, 0.01);
+        for (int i = 0; i < capacity; i++) filter.add(value(i));
+        for (int i = 0; i < capacity; i++) Assert.assertTrue(filter.mightContain(value(i)));
+        // removing half of the values must keep the other half
+        for (int i = 0; i < capacity; i += 2) filter.remove(value(i));
+        for (int i = 1; i < capacity; i += 2) Assert.assertTrue(filter.mightContain(value(i)));
+        Assert.assertEquals(capacity / 2, filter.getEntries());
+    }
+
+    @Test
+    public void falsePositiveRateAtCapacity() {
+        int capacity = CountingBloomFilter.getCapacity(4096, 0.01);
+        CountingBloomFilter filter = new CountingBloomFilter(4096, 0.01);
+        for (int i = 0; i < capacity; i++) filter.add(value(i));
+        int falsePositives = 0;
+        int lookups = 100000;
+        for (int i = capacity; i < capacity + lookups; i++) if (filter.mightContain(value(i))) falsePositives++;
+        Assert.assertTrue("false positive rate " + (double) falsePositives / lookups,
+                falsePositives < lookups * 0.03);
+    }
+
+    @Test
+    public void overfullFilterHasNoFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(8, 0.5);
+        List<byte[]> values = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            values.add(value(i));
+            filter.add(value(i));
+        }
+        for (int i = 1; i < values.size(); i++) filter.remove(values.get(i));
+        // saturated counters are never decremented, the remaining value is still found
+        Assert.assertTrue(filter.mightContain(values.get(0)));
+    }
+
+}
@@ -0,0 +1,163 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.json.simple.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvertibleBloomLookupTableTest {
+
+    private static final long SALT = 0x1234567890abcdefL;
+
+    private static InvertibleBloomLookupTable newTable(int cells, Set<Long> ids) {
+        InvertibleBloomLookupTable table = new InvertibleBloomLookupTable(SALT, cells);
+        ids.forEach(table::add);
+        return table;
+    }
+
+    private static Set<Long> randomIds(Random random, int count) {
+        Set<Long> ids = new HashSet<>();
+        while (ids.size() < count)
+            ids.add(random.nextLong());
+        return ids;
+    }
+
+    @Test
+    public void encodeAndParse() {
+        Set<Long> ids = randomIds(new Random(1), 100);
+        InvertibleBloomLookupTable table = newTable(96, ids);
+        InvertibleBloomLookupTable parsed = InvertibleBloomLookupTable.parse(table.getJSONObject());
+        Assert.assertEquals(SALT, parsed.getSalt());
+        Assert.assertEquals(96, parsed.getCellCount());
+        Assert.assertEquals(table.getJSONObject(), parsed.getJSONObject());
+        Assert.assertEquals(InvertibleBloomLookupTable.getEncodedLength(96),
+                ((String) table.getJSONObject().get("cells")).length());
+    }
+
+    @Test
+    public void decodeDifferences() {
+        Random random = new Random(2);
+        Set<Long> common = randomIds(random, 1000);
+        Set<Long> onlyLocal = randomIds(random, 10);
+        Set<Long> onlyRemote = randomIds(random, 5);
+        Set<Long> local = new HashSet<>(common);
+        local.addAll(onlyLocal);
+        Set<Long> remote = new HashSet<>(common);
+        remote.addAll(onlyRemote);
+        InvertibleBloomLookupTable remoteTable = InvertibleBloomLookupTable.parse(newTable(48, remote).getJSONObject());
+        Set<Long> onlyHere = new HashSet<>();
+        Set<Long> onlyThere = new HashSet<>();
+        Assert.assertTrue(newTable(48, local).subtractAndDecode(remoteTable, onlyHere, onlyThere));
+        Assert.assertEquals(onlyLocal, onlyHere);
+        Assert.assertEquals(onlyRemote, onlyThere);
+    }
+
+    @Test
+    public void identicalTablesHaveNoDifferences() {
+        Set<Long> ids = randomIds(new Random(3), 500);
+        Set<Long> onlyHere = new HashSet<>();
+        Set<Long> onlyThere = new HashSet<>();
+        Assert.assertTrue(newTable(48, ids).subtractAndDecode(newTable(48, ids), onlyHere, onlyThere));
+        Assert.assertTrue(onlyHere.isEmpty());
+        Assert.assertTrue(onlyThere.isEmpty());
+    }
+
+    @Test
+    public void tooManyDifferences() {
+        Random random = new Random(4);
+        Set<Long> onlyHere = new HashSet<>();
+        Set<Long> onlyThere = new HashSet<>();
+        Assert.assertFalse(newTable(48, randomIds(random, 200)).subtractAndDecode(newTable(48, randomIds(random, 200)),
+                onlyHere, onlyThere));
+    }
+
+    @Test
+    public void removeAndCopy() {
+        Random random = new Random(5);
+        Set<Long> ids = randomIds(random, 100);
+        Set<Long> removed = randomIds(random, 20);
+        InvertibleBloomLookupTable table = newTable(96, ids);
+        removed.forEach(table::add);
+        InvertibleBloomLookupTable copy = table.copy();
+        removed.forEach(table::remove);
+        Assert.assertEquals(newTable(96, ids).getJSONObject(), table.getJSONObject());
+        Set<Long> onlyHere = new HashSet<>();
+        Set<Long> onlyThere = new HashSet<>();
+        Assert.assertTrue(copy.subtractAndDecode(table, onlyHere, onlyThere));
+        Assert.assertEquals(removed, onlyHere);
+        Assert.assertTrue(onlyThere.isEmpty());
+    }
+
+    private static final int CELL_LENGTH = InvertibleBloomLookupTable.getEncodedLength(1);
+
+    private static String getCell(String cells, int index) {
+        return cells.substring(index * CELL_LENGTH, (index + 1) * CELL_LENGTH);
+    }
+
+    private static String setCell(String cells, int index, String cell) {
+        return cells.substring(0, index * CELL_LENGTH) + cell + cells.substring((index + 1) * CELL_LENGTH);
+    }
+
+    @Test(timeout = 5000)
+    public void reappearingIdentifier() {
+        // one cell per partition, only the first of the three cells of the identifier is kept
+        JSONObject json = newTable(3, Collections.singleton(42L)).getJSONObject();
+        String cells = (String) json.get("cells");
+        String empty = getCell((String) new InvertibleBloomLookupTable(SALT, 3).getJSONObject().get("cells"), 0);
+        json.put("cells", setCell(setCell(cells, 1, empty), 2, empty));
+        Assert.assertFalse(new InvertibleBloomLookupTable(SALT, 3).subtractAndDecode(
+                InvertibleBloomLookupTable.parse(json), new HashSet<>(), new HashSet<>()));
+    }
+
+    @Test(timeout = 5000)
+    public void identifierInForeignCell() {
+        // a pure cell holding an identifier that does not hash to that cell
+        JSONObject json = newTable(48, Collections.singleton(42L)).getJSONObject();
+        String cells = (String) json.get("cells");
+        String empty = getCell((String) new InvertibleBloomLookupTable(SALT, 3).getJSONObject().get("cells"), 0);
+        int used = -1;
+        int unused = -1;
+        for (int i = 0; i < 16; i++)
+            if (getCell(cells, i).equals(empty)) unused = i;
+            else used = i;
+        Assert.assertTrue(used >= 0 && unused >= 0);
+        json.put("cells", setCell(setCell(cells, unused, getCell(cells, used)), used, empty));
+        Assert.assertFalse(new InvertibleBloomLookupTable(SALT, 48).subtractAndDecode(
+                InvertibleBloomLookupTable.parse(json), new HashSet<>(), new HashSet<>()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void saltMismatch() {
+        new InvertibleBloomLookupTable(SALT, 48).subtractAndDecode(new InvertibleBloomLookupTable(SALT + 1, 48),
+                new HashSet<>(), new HashSet<>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSize() {
+        JSONObject json = new InvertibleBloomLookupTable(SALT, 48).getJSONObject();
+        json.put("cells", ((String) json.get("cells")).substring(2));
+        InvertibleBloomLookupTable.parse(json);
+    }
+
+}
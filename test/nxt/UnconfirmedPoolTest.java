@@ -0,0 +1,160 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+package nxt;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nxt.crypto.Crypto;
+
+public class UnconfirmedPoolTest extends AbstractForgingTest {
+
+    private static final String secretPhrase = "Marty Mc Fly";
+    private static final long recipientId = Account.getId(Crypto.getPublicKey("Doc Brown"));
+
+    private UnconfirmedPool pool;
+
+    @Before
+    public void init() {
+        AbstractForgingTest.init(AbstractForgingTest.newTestProperties());
+        pool = new UnconfirmedPool();
+    }
+
+    @After
+    public void destroy() {
+        AbstractForgingTest.shutdown();
+    }
+
+    private static UnconfirmedTransaction newTransaction(long feeNQT, int timestamp, short deadline, long arrival) throws Exception {
+        TransactionImpl transaction = (TransactionImpl) Nxt.newTransactionBuilder(Crypto.getPublicKey(secretPhrase), 1,
+                feeNQT, deadline, Attachment.ORDINARY_PAYMENT).recipientId(recipientId).timestamp(timestamp)
+                .build(secretPhrase);
+        return new UnconfirmedTransaction(transaction, arrival);
+    }
+
+    @Test
+    public void priorityOrder() throws Exception {
+        int timestamp = Nxt.getEpochTime();
+        UnconfirmedTransaction low = newTransaction(Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        UnconfirmedTransaction high = newTransaction(3 * Constants.ONE_NXT, timestamp, (short) 60, 3000);
+        UnconfirmedTransaction early = newTransaction(2 * Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        UnconfirmedTransaction late = newTransaction(2 * Constants.ONE_NXT, timestamp + 1, (short) 60, 2000);
+        pool.add(late, 1);
+        pool.add(low, 1);
+        pool.add(high, 1);
+        pool.add(early, 1);
+        Assert.assertEquals(Arrays.asList(high, early, late, low), pool.getAll());
+        Assert.assertSame(low, pool.remove(low.getId()));
+        Assert.assertNull(pool.remove(low.getId()));
+        Assert.assertEquals(Arrays.asList(high, early, late), pool.getAll());
+        Assert.assertEquals(3, pool.size());
+    }
+
+    @Test
+    public void expiration() throws Exception {
+        int timestamp = Nxt.getEpochTime();
+        UnconfirmedTransaction shortDeadline = newTransaction(Constants.ONE_NXT, timestamp, (short) 1, 1000);
+        UnconfirmedTransaction longDeadline = newTransaction(Constants.ONE_NXT, timestamp, (short) 10, 1000);
+        pool.add(longDeadline, 1);
+        pool.add(shortDeadline, 1);
+        Assert.assertTrue(pool.getExpired(timestamp + 60).isEmpty());
+        Assert.assertEquals(Arrays.asList(shortDeadline), pool.getExpired(timestamp + 61));
+        Assert.assertEquals(Arrays.asList(shortDeadline, longDeadline), pool.getExpired(timestamp + 601));
+    }
+
+    @Test
+    public void removeAbove() throws Exception {
+        int timestamp = Nxt.getEpochTime();
+        UnconfirmedTransaction first = newTransaction(Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        UnconfirmedTransaction second = newTransaction(Constants.ONE_NXT, timestamp + 1, (short) 60, 1000);
+        pool.add(first, 10);
+        pool.add(second, 11);
+        List<UnconfirmedTransaction> removed = pool.removeAbove(10);
+        Assert.assertEquals(Arrays.asList(second), removed);
+        Assert.assertEquals(Arrays.asList(first), pool.getAll());
+    }
+
+    @Test
+    public void rollbackUndoesChanges() throws Exception {
+        int timestamp = Nxt.getEpochTime();
+        UnconfirmedTransaction kept = newTransaction(Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        UnconfirmedTransaction added = newTransaction(2 * Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        pool.add(kept, 1);
+        try {
+            Db.db.beginTransaction();
+            pool.add(added, 1);
+            Assert.assertSame(kept, pool.remove(kept.getId()));
+            Assert.assertEquals(Arrays.asList(added), pool.getAll());
+            Db.db.rollbackTransaction();
+        } finally {
+            Db.db.endTransaction();
+        }
+        Assert.assertEquals(Arrays.asList(kept), pool.getAll());
+        Assert.assertNull(pool.get(added.getId()));
+        Assert.assertSame(kept, pool.getBySNCleanId(kept.getSNCleanedId()));
+    }
+
+    @Test
+    public void commitKeepsChanges() throws Exception {
+        int timestamp = Nxt.getEpochTime();
+        UnconfirmedTransaction added = newTransaction(Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        try {
+            Db.db.beginTransaction();
+            pool.add(added, 1);
+            Db.db.commitTransaction();
+            Db.db.rollbackTransaction();
+        } finally {
+            Db.db.endTransaction();
+        }
+        Assert.assertEquals(Arrays.asList(added), pool.getAll());
+    }
+
+    @Test
+    public void lookupTableFollowsChanges() throws Exception {
+        int timestamp = Nxt.getEpochTime();
+        UnconfirmedTransaction kept = newTransaction(Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        UnconfirmedTransaction removed = newTransaction(2 * Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        UnconfirmedTransaction rolledBack = newTransaction(3 * Constants.ONE_NXT, timestamp, (short) 60, 1000);
+        pool.add(kept, 1);
+        pool.add(removed, 1);
+        Assert.assertEquals(lookupTable(kept, removed).getJSONObject(), pool.getLookupTable(48).getJSONObject());
+        pool.remove(removed.getId());
+        try {
+            Db.db.beginTransaction();
+            pool.add(rolledBack, 1);
+            Assert.assertEquals(lookupTable(kept, rolledBack).getJSONObject(), pool.getLookupTable(48).getJSONObject());
+            Db.db.rollbackTransaction();
+        } finally {
+            Db.db.endTransaction();
+        }
+        Assert.assertEquals(lookupTable(kept).getJSONObject(), pool.getLookupTable(48).getJSONObject());
+    }
+
+    private InvertibleBloomLookupTable lookupTable(UnconfirmedTransaction... transactions) {
+        InvertibleBloomLookupTable table = new InvertibleBloomLookupTable(pool.getLookupSalt(), 48);
+        for (UnconfirmedTransaction transaction : transactions)
+            table.add(transaction.getId());
+        return table;
+    }
+
+}
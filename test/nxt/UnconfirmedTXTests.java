@@ -1,9 +1,9 @@
 package nxt;
 
-import nxt.db.DbIterator;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.Properties;
 
 /**
@@ -17,7 +17,7 @@ public class UnconfirmedTXTests {
     }
     @Test
     public void TXDecode() throws Exception {
-        final DbIterator<UnconfirmedTransaction> it = TransactionProcessorImpl.getInstance().getAllUnconfirmedTransactions();
+        final Iterator<UnconfirmedTransaction> it = TransactionProcessorImpl.getInstance().getAllUnconfirmedTransactions().iterator();
         while (it.hasNext()) {
             final UnconfirmedTransaction u = it.next();
             final TransactionImpl tImpl = u.getTransaction();
@@ -0,0 +1,143 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.db;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nxt.Nxt;
+
+public class UndoLogTest {
+
+    private static final DbKey.LongKeyFactory<Object> keyFactory = new DbKey.LongKeyFactory<Object>("id") {
+
+        @Override
+        public DbKey newKey(Object object) {
+            throw new UnsupportedOperationException();
+        }
+
+    };
+
+    private UndoLog undoLog;
+
+    @BeforeClass
+    public static void initNxt() {
+        Properties properties = new Properties();
+        properties.setProperty("nxt.isTestnet", "true");
+        properties.setProperty("nxt.isOffline", "true");
+        properties.setProperty("nxt.disableGenerateBlocksThread", "true");
+        Nxt.init(properties);
+    }
+
+    @Before
+    public void init() {
+        undoLog = new UndoLog();
+        DerivedDbTable.db.beginTransaction();
+        try {
+            undoLog.restored(10);
+            DerivedDbTable.db.commitTransaction();
+        } finally {
+            DerivedDbTable.db.endTransaction();
+        }
+    }
+
+    private static DbKey key(long id) {
+        return keyFactory.newKey(id);
+    }
+
+    private static Set<DbKey> keys(long... ids) {
+        Set<DbKey> keys = new HashSet<>();
+        for (long id : ids) keys.add(key(id));
+        return keys;
+    }
+
+    @Test
+    public void restore() {
+        Assert.assertEquals(keys(), undoLog.getKeys(10));
+        Assert.assertNull(undoLog.getKeys(9));
+        DerivedDbTable.db.beginTransaction();
+        try {
+            undoLog.add(11, key(1));
+            undoLog.restored(20);
+            // the log is not complete until the restore is committed
+            Assert.assertNull(undoLog.getKeys(20));
+            DerivedDbTable.db.commitTransaction();
+        } finally {
+            DerivedDbTable.db.endTransaction();
+        }
+        Assert.assertEquals(keys(), undoLog.getKeys(20));
+        Assert.assertNull(undoLog.getKeys(10));
+    }
+
+    @Test
+    public void commit() {
+        DerivedDbTable.db.beginTransaction();
+        try {
+            undoLog.add(11, key(1));
+            undoLog.add(12, key(2));
+            undoLog.add(12, key(1));
+            DerivedDbTable.db.commitTransaction();
+        } finally {
+            DerivedDbTable.db.endTransaction();
+        }
+        Assert.assertEquals(keys(1, 2), undoLog.getKeys(10));
+        Assert.assertEquals(keys(1, 2), undoLog.getKeys(11));
+        Assert.assertEquals(keys(), undoLog.getKeys(12));
+    }
+
+    @Test
+    public void rollback() {
+        DerivedDbTable.db.beginTransaction();
+        try {
+            undoLog.add(11, key(1));
+            DerivedDbTable.db.commitTransaction();
+            undoLog.add(11, key(1));
+            undoLog.add(12, key(2));
+            DerivedDbTable.db.rollbackTransaction();
+        } finally {
+            DerivedDbTable.db.endTransaction();
+        }
+        // the committed change of key 1 is kept
+        Assert.assertEquals(keys(1), undoLog.getKeys(10));
+        Assert.assertEquals(keys(), undoLog.getKeys(11));
+    }
+
+    @Test
+    public void rolledBack() {
+        DerivedDbTable.db.beginTransaction();
+        try {
+            undoLog.add(11, key(1));
+            undoLog.add(13, key(2));
+            DerivedDbTable.db.commitTransaction();
+            undoLog.rolledBack(12);
+            // the changes are removed once the table rollback is committed
+            Assert.assertEquals(keys(1, 2), undoLog.getKeys(10));
+            DerivedDbTable.db.commitTransaction();
+        } finally {
+            DerivedDbTable.db.endTransaction();
+        }
+        Assert.assertEquals(keys(1), undoLog.getKeys(10));
+        Assert.assertEquals(keys(), undoLog.getKeys(12));
+    }
+
+}
@@ -0,0 +1,147 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The XEL Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package nxt.peer;
+
+import java.net.ProtocolException;
+import java.util.Arrays;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryJSONTest {
+
+    private static JSONObject roundTrip(JSONObject json) throws ProtocolException {
+        byte[] bytes = BinaryJSON.encode(json);
+        Assert.assertNotNull(bytes);
+        JSONObject decoded = BinaryJSON.decode(bytes);
+        Assert.assertEquals(json, decoded);
+        return decoded;
+    }
+
+    private static void assertMalformed(byte[] bytes) {
+        try {
+            BinaryJSON.decode(bytes);
+            Assert.fail("Malformed message decoded: " + Arrays.toString(bytes));
+        } catch (ProtocolException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void nestedObjects() throws ProtocolException {
+        JSONObject inner = new JSONObject();
+        inner.put("requestType", "getNextBlocks");
+        inner.put("custom", 1.5);
+        JSONArray array = new JSONArray();
+        array.add(1L);
+        array.add(inner);
+        array.add(null);
+        array.add(Boolean.TRUE);
+        array.add(Boolean.FALSE);
+        array.add(new JSONArray());
+        JSONObject json = new JSONObject();
+        json.put("nextBlocks", array);
+        json.put("empty", new JSONObject());
+        json.put("protocol", 1L);
+        roundTrip(json);
+    }
+
+    @Test
+    public void largeLongs() throws ProtocolException {
+        JSONObject json = new JSONObject();
+        json.put("max", Long.MAX_VALUE);
+        json.put("min", Long.MIN_VALUE);
+        json.put("minusOne", -1L);
+        json.put("zero", 0L);
+        // unsigned identifiers above Long.MAX_VALUE are sent as 8 byte values
+        json.put("blockId", "18446744073709551615");
+        json.put("ecBlockId", "9223372036854775808");
+        // strings that are not exact unsigned longs stay strings
+        json.put("tooLarge", "18446744073709551616");
+        json.put("leadingZero", "01234567890");
+        roundTrip(json);
+        // integer values are decoded as long values
+        JSONObject small = new JSONObject();
+        small.put("timestamp", 42);
+        Assert.assertEquals(42L, BinaryJSON.decode(BinaryJSON.encode(small)).get("timestamp"));
+    }
+
+    @Test
+    public void hexStrings() throws ProtocolException {
+        JSONObject json = new JSONObject();
+        json.put("payloadHash", "00ff10a0b1c2d3e4f5");
+        json.put("upperCase", "00FF");
+        json.put("oddLength", "abc");
+        roundTrip(json);
+    }
+
+    @Test
+    public void unicode() throws ProtocolException {
+        JSONObject json = new JSONObject();
+        json.put("message", "Gr\u00fc\u00dfe \u20ac \u4e2d\u6587 \ud83d\ude00");
+        json.put("schl\u00fcssel", "\u0000\u007f");
+        json.put("", "");
+        roundTrip(json);
+    }
+
+    @Test
+    public void notEncodable() {
+        JSONObject json = new JSONObject();
+        json.put("value", Double.NaN);
+        Assert.assertNull(BinaryJSON.encode(json));
+        json.put("value", new Object());
+        Assert.assertNull(BinaryJSON.encode(json));
+    }
+
+    @Test
+    public void malformedInput() throws ProtocolException {
+        JSONObject json = new JSONObject();
+        json.put("requestType", "getInfo");
+        json.put("custom", "value");
+        byte[] bytes = BinaryJSON.encode(json);
+        // truncated message
+        assertMalformed(Arrays.copyOf(bytes, bytes.length - 1));
+        assertMalformed(new byte[0]);
+        // trailing data
+        assertMalformed(Arrays.copyOf(bytes, bytes.length + 1));
+        // not an object
+        assertMalformed(new byte[] { 8, 0 });
+        assertMalformed(new byte[] { 0 });
+        // unknown value type
+        assertMalformed(new byte[] { 9, 1, 0, 0x7f });
+        // unknown key
+        assertMalformed(new byte[] { 9, 1, (byte) 0xfe, 0 });
+        // length beyond the message
+        assertMalformed(new byte[] { 9, 1, (byte) 0xff, 0x7f });
+        // variable length integer without end
+        assertMalformed(new byte[] { 9, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80 });
+        // nested too deeply
+        byte[] nested = new byte[203];
+        nested[0] = 9;
+        nested[1] = 1;
+        nested[2] = 0;
+        for (int i = 3; i < nested.length - 1; i += 2) {
+            nested[i] = 8;
+            nested[i + 1] = 1;
+        }
+        assertMalformed(nested);
+    }
+
+}